@@ -0,0 +1,354 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Generates inputs for the benchmarks at any size. Everything is written as a stream so inputs of
+ * several GB can be produced without holding them in memory, the same seed always produces the same
+ * bytes so runs across releases are comparable.
+ */
+public final class SyntheticData {
+
+  private static final String[] OUTCOMES = {
+    "COMPLETED", "COMPLETED", "COMPLETED", "FAILED", "CANCELED"
+  };
+  private static final String[] QUEUES = {
+    "High Cost User Queries", "Low Cost User Queries", "UI Previews", "High Cost Reflections"
+  };
+  private static final String[] QUERY_TYPES = {
+    "UI_RUN", "ODBC", "JDBC", "REST", "ACCELERATOR_CREATE", "METADATA_REFRESH"
+  };
+  private static final String[] USERS = {"dremio", "analyst1", "analyst2", "etl", "dashboard"};
+
+  private SyntheticData() {}
+
+  /**
+   * writes queries.json rows shaped like the ones Dremio produces, including the nested fields the
+   * parser has to skip
+   *
+   * @param out stream to write to, it is flushed but not closed
+   * @param rows number of rows to write
+   * @param seed random seed
+   * @throws IOException when the stream cannot be written to
+   */
+  public static void writeQueriesJson(final OutputStream out, final long rows, final long seed)
+      throws IOException {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    // one day of queries starting at 2024-01-01
+    long start = 1704067200000L;
+    for (long i = 0; i < rows; i++) {
+      start += random.nextInt(0, 2000);
+      final long pending = random.nextInt(0, 50);
+      final long metadata = random.nextInt(0, 500);
+      final long planning = random.nextInt(1, 2000);
+      final long queued = random.nextInt(0, 3000);
+      final long running = random.nextInt(1, 60000);
+      final long finish = start + pending + metadata + planning + queued + running;
+      final String outcome = OUTCOMES[random.nextInt(OUTCOMES.length)];
+      writer.write(
+          String.format(
+              Locale.US,
+              "{\"queryId\":\"%016x-%08x\",\"context\":\"[\\\"space\\\"]\",\"queryText\":\"SELECT *"
+                  + " FROM space.folder.table_%d WHERE id > %d\",\"start\":%d,\"finish\":%d,"
+                  + "\"outcome\":\"%s\",\"outcomeReason\":\"%s\",\"username\":\"%s\","
+                  + "\"inputRecords\":%d,\"inputBytes\":%d,\"outputRecords\":%d,\"outputBytes\":%d,"
+                  + "\"requestType\":\"RUN_SQL\",\"queryType\":\"%s\",\"parentsList\":[],"
+                  + "\"accelerated\":false,\"reflectionRelationships\":[],\"queryCost\":%.1f,"
+                  + "\"queueName\":\"%s\",\"poolWaitTime\":%d,\"pendingTime\":%d,"
+                  + "\"metadataRetrievalTime\":%d,\"planningTime\":%d,\"engineStartTime\":0,"
+                  + "\"queuedTime\":%d,\"executionPlanningTime\":%d,\"startingTime\":%d,"
+                  + "\"runningTime\":%d,\"engineName\":\"\",\"attemptCount\":1,"
+                  + "\"submitted\":%d,\"metadataRetrieval\":%d,\"planningStart\":%d,"
+                  + "\"queryEnqueued\":%d,\"engineStart\":0,\"executionPlanningStart\":%d,"
+                  + "\"executionStart\":%d,\"scannedDatasets\":[{\"name\":\"space.folder.table_%d\","
+                  + "\"type\":\"PARQUET\",\"columns\":[\"id\",\"name\",\"value\"]}],"
+                  + "\"executionNodes\":[{\"hostname\":\"executor-%d\",\"maxMemoryUsedKb\":%d}],"
+                  + "\"executionCpuTimeNs\":%d,\"setupTimeNs\":%d,\"waitTimeNs\":%d,\"memoryAllocated\":%d}\n",
+              random.nextLong(),
+              i,
+              random.nextInt(1000),
+              i,
+              start,
+              finish,
+              outcome,
+              "COMPLETED".equals(outcome) ? "" : "java.lang.RuntimeException: failure " + i,
+              USERS[random.nextInt(USERS.length)],
+              random.nextLong(0, 1_000_000_000L),
+              random.nextLong(0, 100_000_000_000L),
+              random.nextLong(0, 1_000_000L),
+              random.nextLong(0, 100_000_000L),
+              QUERY_TYPES[random.nextInt(QUERY_TYPES.length)],
+              random.nextDouble(0, 100_000_000),
+              QUEUES[random.nextInt(QUEUES.length)],
+              random.nextInt(0, 100),
+              pending,
+              metadata,
+              planning,
+              queued,
+              random.nextInt(0, 100),
+              random.nextInt(0, 100),
+              running,
+              start,
+              start + pending,
+              start + pending + metadata,
+              start + pending + metadata + planning,
+              start + pending + metadata + planning + queued,
+              start + pending + metadata + planning + queued + 1,
+              random.nextInt(1000),
+              random.nextInt(16),
+              random.nextLong(0, 64_000_000L),
+              random.nextLong(0, 10_000_000_000_000L),
+              random.nextLong(0, 1_000_000_000L),
+              random.nextLong(0, 1_000_000_000_000L),
+              random.nextLong(0, 100_000_000_000L)));
+    }
+    writer.flush();
+  }
+
+  /**
+   * writes a tar.gz containing gzipped queries.json entries like a Dremio diagnostics bundle
+   *
+   * @param target file to create
+   * @param entries number of queries.json.gz entries
+   * @param rowsPerEntry rows in each entry
+   * @param seed random seed
+   * @throws IOException when the file cannot be written
+   */
+  public static void writeQueriesJsonTarGz(
+      final Path target, final int entries, final long rowsPerEntry, final long seed)
+      throws IOException {
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(target), 1 << 16))) {
+      tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+      for (int i = 0; i < entries; i++) {
+        // tar needs the entry size up front so each entry is built in a temp file first
+        final Path entry = Files.createTempFile("dqd-bench", ".json.gz");
+        try {
+          try (OutputStream gz = new GZIPOutputStream(Files.newOutputStream(entry), 1 << 16)) {
+            writeQueriesJson(gz, rowsPerEntry, seed + i);
+          }
+          final TarArchiveEntry tarEntry =
+              new TarArchiveEntry("queries/%d/queries.json.gz".formatted(i));
+          tarEntry.setSize(Files.size(entry));
+          tar.putArchiveEntry(tarEntry);
+          Files.copy(entry, tar);
+          tar.closeArchiveEntry();
+        } finally {
+          Files.deleteIfExists(entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * writes the output of "top -H -b -d 1" for a number of snapshots
+   *
+   * @param out stream to write to, it is flushed but not closed
+   * @param snapshots number of one second snapshots
+   * @param threads number of thread lines in each snapshot
+   * @param seed random seed
+   * @throws IOException when the stream cannot be written to
+   */
+  public static void writeTop(
+      final OutputStream out, final int snapshots, final int threads, final long seed)
+      throws IOException {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    LocalTime time = LocalTime.of(12, 0, 0);
+    for (int s = 0; s < snapshots; s++) {
+      final double user = random.nextDouble(0, 90);
+      final double sys = random.nextDouble(0, 100 - user);
+      writer.write(
+          String.format(
+              Locale.US,
+              "top - %s up  3:07,  0 users,  load average: 3.18, 1.16, 0.41\n"
+                  + "Threads: %d total,   6 running, %d sleeping,   0 stopped,   0 zombie\n"
+                  + "%%Cpu(s): %.1f us, %.1f sy,  0.0 ni, %.1f id,  1.4 wa,  0.0 hi,  0.0 si,  0.0"
+                  + " st\n"
+                  + "MiB Mem :  16008.2 total,  %.1f free,   %.1f used,   1341.1 buff/cache\n"
+                  + "MiB Swap:      0.0 total,      0.0 free,      0.0 used.  12032.0 avail Mem \n"
+                  + "\n"
+                  + "    PID USER      PR  NI    VIRT    RES    SHR S  %%CPU  %%MEM     TIME+"
+                  + " COMMAND\n",
+              time.format(DateTimeFormatter.ISO_LOCAL_TIME),
+              threads,
+              threads - 6,
+              user,
+              sys,
+              100 - user - sys,
+              random.nextDouble(1000, 12000),
+              random.nextDouble(1000, 12000)));
+      for (int t = 0; t < threads; t++) {
+        writer.write(
+            String.format(
+                Locale.US,
+                "%7d dremio    20   0 7009048   3.4g  98412 S %5.1f  21.9   1:36.52 thread-%d\n",
+                1000 + t,
+                random.nextDouble(0, 100),
+                t));
+      }
+      writer.write("\n");
+      time = time.plusSeconds(1);
+    }
+    writer.flush();
+  }
+
+  /**
+   * writes the output of "iostat -x -c -d -t 1" for a number of samples
+   *
+   * @param out stream to write to, it is flushed but not closed
+   * @param samples number of one second samples
+   * @param devices number of disks in each sample
+   * @param seed random seed
+   * @throws IOException when the stream cannot be written to
+   */
+  public static void writeIOStat(
+      final OutputStream out, final int samples, final int devices, final long seed)
+      throws IOException {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yy HH:mm:ss");
+    LocalDateTime time = LocalDateTime.of(2024, 9, 4, 12, 0, 0);
+    writer.write(
+        "Linux 5.10.0-32-cloud-amd64 (dqd-benchmark) \t09/04/24 \t_x86_64_\t(%d CPU)\n\n"
+            .formatted(16));
+    for (int s = 0; s < samples; s++) {
+      final double user = random.nextDouble(0, 90);
+      final double sys = random.nextDouble(0, 100 - user);
+      writer.write(time.format(formatter));
+      writer.write("\navg-cpu:  %user   %nice %system %iowait  %steal   %idle\n");
+      writer.write(
+          String.format(
+              Locale.US,
+              "          %6.2f    0.00  %6.2f    %4.2f    0.00   %5.2f\n\n",
+              user,
+              sys,
+              random.nextDouble(0, 5),
+              100 - user - sys));
+      writer.write(
+          "Device            r/s     rkB/s   rrqm/s  %rrqm r_await rareq-sz     w/s     wkB/s  "
+              + " wrqm/s  %wrqm w_await wareq-sz     d/s     dkB/s   drqm/s  %drqm d_await"
+              + " dareq-sz     f/s f_await  aqu-sz  %util\n");
+      for (int d = 0; d < devices; d++) {
+        writer.write(
+            String.format(
+                Locale.US,
+                "sd%-14s %6.2f %9.2f %8.2f %6.2f %7.2f %8.2f %7.2f %9.2f %8.2f %6.2f %7.2f %8.2f"
+                    + " %7.2f %9.2f %8.2f %6.2f %7.2f %8.2f %7.2f %7.2f %7.2f %6.2f\n",
+                (char) ('a' + d % 26),
+                random.nextDouble(0, 500),
+                random.nextDouble(0, 50000),
+                random.nextDouble(0, 100),
+                random.nextDouble(0, 50),
+                random.nextDouble(0, 10),
+                random.nextDouble(0, 100),
+                random.nextDouble(0, 500),
+                random.nextDouble(0, 50000),
+                random.nextDouble(0, 100),
+                random.nextDouble(0, 50),
+                random.nextDouble(0, 10),
+                random.nextDouble(0, 100),
+                0.0,
+                0.0,
+                0.0,
+                0.0,
+                0.0,
+                0.0,
+                random.nextDouble(0, 100),
+                random.nextDouble(0, 1),
+                random.nextDouble(0, 5),
+                random.nextDouble(0, 100)));
+      }
+      writer.write("\n\n");
+      time = time.plusSeconds(1);
+    }
+    writer.flush();
+  }
+
+  /**
+   * scales the sample profile from the test resources by repeating the threads of every phase, so
+   * the number of minor fragments (and operators) grows by the given factor
+   *
+   * @param threadMultiplier how many copies of each minor fragment to create
+   * @return profile.json bytes
+   * @throws IOException when the sample profile cannot be read
+   */
+  public static byte[] profileJson(final int threadMultiplier) throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    final JsonNode profile;
+    try (InputStream is = SyntheticData.class.getResourceAsStream("/testprofile.zip");
+        ZipInputStream zip = new ZipInputStream(is)) {
+      ZipEntry entry;
+      JsonNode found = null;
+      while (null != (entry = zip.getNextEntry())) {
+        if (entry.getName().startsWith("profile_attempt_")) {
+          found = mapper.readTree(zip.readAllBytes());
+          break;
+        }
+      }
+      if (found == null) {
+        throw new IOException("no profile_attempt_ entry in testprofile.zip");
+      }
+      profile = found;
+    }
+    for (JsonNode phase : profile.path("fragmentProfile")) {
+      final JsonNode threads = phase.path("minorFragmentProfile");
+      if (!threads.isArray() || threads.isEmpty()) {
+        continue;
+      }
+      final ArrayNode scaled = mapper.createArrayNode();
+      int minorFragmentId = 0;
+      for (int copy = 0; copy < threadMultiplier; copy++) {
+        for (JsonNode thread : threads) {
+          final ObjectNode clone = thread.deepCopy();
+          clone.put("minorFragmentId", minorFragmentId++);
+          scaled.add(clone);
+        }
+      }
+      ((ObjectNode) phase).set("minorFragmentProfile", scaled);
+    }
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    mapper.writeValue(baos, profile);
+    return baos.toByteArray();
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.iostat;
+
+import com.dremio.support.diagnostics.SyntheticData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parsing and rendering of "iostat -x -c -d -t" captures, sized with -p samples=... */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IOStatBenchmark {
+
+  /** one second samples in the capture */
+  @Param({"3600"})
+  public int samples;
+
+  /** disks per sample */
+  @Param({"8"})
+  public int devices;
+
+  private byte[] iostat;
+
+  @Setup
+  public void setup() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SyntheticData.writeIOStat(out, samples, devices, 42);
+    iostat = out.toByteArray();
+  }
+
+  @Benchmark
+  public ReportStats parseReport() throws IOException {
+    return new IOStatExec().parseReport(new ByteArrayInputStream(iostat));
+  }
+
+  @Benchmark
+  public void exec() throws IOException {
+    IOStatExec.exec(new ByteArrayInputStream(iostat), OutputStream.nullOutputStream());
+  }
+}
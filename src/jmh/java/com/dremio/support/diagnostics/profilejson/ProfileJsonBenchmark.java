@@ -0,0 +1,82 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import com.dremio.support.diagnostics.SyntheticData;
+import com.dremio.support.diagnostics.profilejson.singlefile.SingleProfileJsonHtmlReport;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and rendering of a single profile.json. The sample profile from the test resources is
+ * scaled with -p threadMultiplier=... to model queries with thousands of minor fragments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProfileJsonBenchmark {
+
+  /** copies of every minor fragment in the generated profile */
+  @Param({"1", "50"})
+  public int threadMultiplier;
+
+  private byte[] profile;
+  private ProfileJSON parsed;
+
+  @Setup
+  public void setup() throws IOException {
+    profile = SyntheticData.profileJson(threadMultiplier);
+    parsed = new ProfileJSONParser().parseFile(new ByteArrayInputStream(profile));
+  }
+
+  @Benchmark
+  public ProfileJSON parseFile() throws IOException {
+    return new ProfileJSONParser().parseFile(new ByteArrayInputStream(profile));
+  }
+
+  @Benchmark
+  public ProfileJSON parseFileDatasetsOnly() throws IOException {
+    return new ProfileJSONParser(Set.of(ProfileSection.DATASETS))
+        .parseFile(new ByteArrayInputStream(profile));
+  }
+
+  @Benchmark
+  public void writeReport() throws IOException {
+    new SingleProfileJsonHtmlReport(true, true, parsed).writeTo(OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void parseAndWriteReport() throws IOException {
+    final ProfileJSON p = new ProfileJSONParser().parseFile(new ByteArrayInputStream(profile));
+    new SingleProfileJsonHtmlReport(true, true, p).writeTo(OutputStream.nullOutputStream());
+  }
+}
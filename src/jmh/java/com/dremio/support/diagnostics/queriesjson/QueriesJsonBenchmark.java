@@ -0,0 +1,264 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import com.dremio.support.diagnostics.SyntheticData;
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.*;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the queries.json pipeline: raw row parsing, the chunked parser, reading a whole
+ * archive and rendering the html report. Sizes are controlled with -p rows=... so the same
+ * benchmark covers the small test bundle and multi GB synthetic inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueriesJsonBenchmark {
+
+  /** rows in the synthetic queries.json, 1,000,000 rows is roughly 1.5GB */
+  @Param({"100000"})
+  public long rows;
+
+  /** gzipped queries.json entries in the synthetic tarball */
+  @Param({"4"})
+  public int entries;
+
+  /** workers used by the chunked parser and the archive reader */
+  @Param({"2"})
+  public int threads;
+
+  private Path dir;
+  private Path queriesJson;
+  private Path syntheticTarGz;
+  private Path bigQueriesTarGz;
+  private DateRangeQueryFilter filter;
+  private QueriesJsonHtmlReport report;
+
+  @Setup(org.openjdk.jmh.annotations.Level.Trial)
+  public void setup() throws Exception {
+    // the parsers log every entry, which would otherwise end up in the measurements
+    Logger.getLogger("com.dremio.support.diagnostics").setLevel(Level.WARNING);
+    dir = Files.createTempDirectory("dqd-bench");
+    queriesJson = dir.resolve("queries.json");
+    try (OutputStream out = Files.newOutputStream(queriesJson)) {
+      SyntheticData.writeQueriesJson(out, rows, 42);
+    }
+    syntheticTarGz = dir.resolve("queries.tgz");
+    SyntheticData.writeQueriesJsonTarGz(syntheticTarGz, entries, rows / entries, 42);
+    bigQueriesTarGz = dir.resolve("big-queries.json.tgz");
+    try (InputStream is = QueriesJsonBenchmark.class.getResourceAsStream("/big-queries.json.tgz")) {
+      Files.copy(is, bigQueriesTarGz);
+    }
+    filter = new DateRangeQueryFilter(0, Instant.now().toEpochMilli());
+    final Reporters reporters = new Reporters(300_000, 10);
+    readArchive(syntheticTarGz, reporters.all());
+    report = reporters.report(List.of());
+  }
+
+  @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+  public void tearDown() throws IOException {
+    try (var files = Files.list(dir)) {
+      for (Path p : files.toList()) {
+        Files.delete(p);
+      }
+    }
+    Files.delete(dir);
+  }
+
+  @Benchmark
+  public SearchedFile parseFile() throws Exception {
+    final TotalQueriesReporter total = new TotalQueriesReporter();
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(queriesJson), 1 << 16)) {
+      return QueriesJsonFileParser.parseFile("queries.json", is, List.of(total), filter);
+    }
+  }
+
+  /** every row is out of range, measures what a rejected row costs */
+  @Benchmark
+  public SearchedFile parseFileOutOfRange() throws Exception {
+    return parseFileWith(new DateRangeQueryFilter(0, 1));
+  }
+
+  /** the same range as {@link #parseFileOutOfRange} checked only once rows are bound */
+  @Benchmark
+  public SearchedFile parseFileOutOfRangeWithoutPushdown() throws Exception {
+    final DateRangeQueryFilter outOfRange = new DateRangeQueryFilter(0, 1);
+    return parseFileWith(outOfRange::isValid);
+  }
+
+  private SearchedFile parseFileWith(final QueryFilter queryFilter) throws Exception {
+    final TotalQueriesReporter total = new TotalQueriesReporter();
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(queriesJson), 1 << 16)) {
+      return QueriesJsonFileParser.parseFile("queries.json", is, List.of(total), queryFilter);
+    }
+  }
+
+  @Benchmark
+  public SearchedFile parseFileAllReporters() throws Exception {
+    final Reporters reporters = new Reporters(300_000, 10);
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(queriesJson), 1 << 16)) {
+      return QueriesJsonFileParser.parseFile("queries.json", is, reporters.all(), filter);
+    }
+  }
+
+  @Benchmark
+  public SearchedFile parseChunked() throws Exception {
+    final Reporters reporters = new Reporters(300_000, 10);
+    try (InputStream is = Files.newInputStream(queriesJson)) {
+      return new ChunkedQueriesJsonParser(threads)
+          .parse("queries.json", is, reporters.all(), filter);
+    }
+  }
+
+  @Benchmark
+  public Collection<SearchedFile> readTarGzSynthetic() throws Exception {
+    final Reporters reporters = new Reporters(300_000, 10);
+    return readArchive(syntheticTarGz, reporters.all());
+  }
+
+  @Benchmark
+  public Collection<SearchedFile> readTarGzBigQueries() throws Exception {
+    final Reporters reporters = new Reporters(300_000, 10);
+    return readArchive(bigQueriesTarGz, reporters.all());
+  }
+
+  @Benchmark
+  public void writeReport() throws IOException {
+    report.writeTo(OutputStream.nullOutputStream());
+  }
+
+  private Collection<SearchedFile> readArchive(final Path tarGz, final List<QueryReporter> all)
+      throws Exception {
+    return new ReadArchive(filter).readTarGz(tarGz.toString(), all, threads);
+  }
+
+  /** the same reporter set the queries-json command runs */
+  private static final class Reporters {
+    private final long window;
+    private final int limit;
+    private final ConcurrentQueriesReporter concurrentQueries;
+    private final ConcurrentQueueReporter concurrentQueue;
+    private final ConcurrentSchemaOpsReporter concurrentSchemaOps;
+    private final MaxMemoryQueriesReporter maxMemory;
+    private final MaxCPUQueriesReporter maxCpu;
+    private final MaxTimeReporter maxTime;
+    private final MemoryAllocatedReporter memoryAllocated;
+    private final RequestCounterReporter requestCounter;
+    private final RequestsByQueueReporter requestsByQueue;
+    private final SlowestMetadataQueriesReporter slowestMetadata;
+    private final SlowestPlanningQueriesReporter slowestPlanning;
+    private final StartFinishReporter startFinish;
+    private final TotalQueriesReporter total;
+    private final FailedQueriesReporter failed;
+    private final QueryShapesReporter shapes;
+    private final LatencyQuantilesReporter latency;
+
+    Reporters(final long window, final int limit) {
+      this.window = window;
+      this.limit = limit;
+      concurrentQueries = new ConcurrentQueriesReporter(window);
+      concurrentQueue = new ConcurrentQueueReporter(window);
+      concurrentSchemaOps = new ConcurrentSchemaOpsReporter(window);
+      maxMemory = new MaxMemoryQueriesReporter(limit);
+      maxCpu = new MaxCPUQueriesReporter(limit);
+      maxTime = new MaxTimeReporter(window);
+      memoryAllocated = new MemoryAllocatedReporter(window);
+      requestCounter = new RequestCounterReporter();
+      requestsByQueue = new RequestsByQueueReporter();
+      slowestMetadata = new SlowestMetadataQueriesReporter(limit);
+      slowestPlanning = new SlowestPlanningQueriesReporter(limit);
+      startFinish = new StartFinishReporter();
+      total = new TotalQueriesReporter();
+      failed = new FailedQueriesReporter(limit);
+      shapes = new QueryShapesReporter();
+      latency = new LatencyQuantilesReporter(window);
+    }
+
+    List<QueryReporter> all() {
+      final List<QueryReporter> all = new ArrayList<>();
+      all.add(concurrentQueries);
+      all.add(concurrentQueue);
+      all.add(concurrentSchemaOps);
+      all.add(maxMemory);
+      all.add(maxCpu);
+      all.add(maxTime);
+      all.add(memoryAllocated);
+      all.add(requestCounter);
+      all.add(requestsByQueue);
+      all.add(slowestMetadata);
+      all.add(slowestPlanning);
+      all.add(startFinish);
+      all.add(total);
+      all.add(failed);
+      all.add(shapes);
+      all.add(latency);
+      return all;
+    }
+
+    QueriesJsonHtmlReport report(final Collection<SearchedFile> filesSearched) {
+      return new QueriesJsonHtmlReport(
+          filesSearched,
+          Instant.ofEpochMilli(startFinish.getStart()),
+          Instant.ofEpochMilli(startFinish.getFinish()),
+          window,
+          concurrentQueries,
+          concurrentQueue,
+          concurrentSchemaOps,
+          maxMemory,
+          maxCpu,
+          maxTime,
+          memoryAllocated,
+          requestCounter,
+          requestsByQueue,
+          slowestMetadata,
+          slowestPlanning,
+          startFinish,
+          total,
+          failed,
+          shapes,
+          latency,
+          limit);
+    }
+  }
+}
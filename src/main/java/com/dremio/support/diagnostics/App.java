@@ -21,6 +21,7 @@ import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Level.WARNING;
 
 import com.dremio.support.diagnostics.cmds.IOStat;
+import com.dremio.support.diagnostics.cmds.ProfileBatch;
 import com.dremio.support.diagnostics.cmds.ProfileJson;
 import com.dremio.support.diagnostics.cmds.QueriesJson;
 import com.dremio.support.diagnostics.cmds.Repro;
@@ -43,6 +44,7 @@ import picocli.CommandLine.ScopeType;
     subcommands = {
       CommandLine.HelpCommand.class,
       ProfileJson.class,
+      ProfileBatch.class,
       ProfileJSONSimplified.Cli.class,
       QueriesJson.class,
       Repro.class,
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.cmds;
+
+import com.dremio.support.diagnostics.profilejson.batch.BatchProfileAnalyzer;
+import com.dremio.support.diagnostics.profilejson.batch.BatchProfileReport;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * ProfileBatch contains the command line bindings and is the primary entry point of the
+ * profile-batch subcommand
+ */
+@Command(
+    name = "profile-batch",
+    description =
+        "analyze every profile in a directory or archive and rank the worst findings across all of"
+            + " them",
+    footer =
+        """
+
+#### EXAMPLES
+~~~~~~~~~~~~~
+
+##### Rank every profile in a directory
+
+\tdqd profile-batch ./profiles
+
+##### Rank the profiles of a diagnostics bundle, keeping the top 50 of each ranking
+
+\tdqd profile-batch bundle.tar.gz -n 50 -o bundle.html
+
+""",
+    subcommands = CommandLine.HelpCommand.class)
+public class ProfileBatch implements Callable<Integer> {
+  private static final Logger LOGGER = Logger.getLogger(ProfileBatch.class.getName());
+
+  @CommandLine.Parameters(
+      index = "0",
+      description = "directory or .zip, .tar, .tgz or .tar.gz archive of profiles to analyze")
+  private File input;
+
+  @Option(
+      names = {"-o", "--output"},
+      description = "html file to write the report to, defaults to profiles<epoch>.html")
+  private File output;
+
+  @Option(
+      names = {"-n", "--top"},
+      description = "number of entries kept for each ranking",
+      defaultValue = "" + BatchProfileReport.DEFAULT_TOP)
+  private int top;
+
+  /**
+   * the actual initialization of the profile-batch subcommand, this is executed by pico-cli
+   *
+   * @return the exit code, zero is success anything else is an error
+   * @throws Exception when the command fails
+   */
+  @Override
+  public Integer call() throws Exception {
+    final BatchProfileReport report = new BatchProfileReport(top);
+    new BatchProfileAnalyzer().analyze(input.toPath(), report);
+    final String fileName =
+        output == null
+            ? String.format("profiles%d.html", Instant.now().getEpochSecond())
+            : output.toString();
+    try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(fileName))) {
+      report.writeTo(stream);
+    }
+    LOGGER.info(
+        () ->
+            String.format(
+                "%d profiles analyzed, %d failed, report written to '%s'",
+                report.getAnalyzed(), report.getFailed(), Paths.get(fileName).toAbsolutePath()));
+    return 0;
+  }
+}
@@ -14,22 +14,30 @@
 package com.dremio.support.diagnostics.cmds;
 
 import com.dremio.support.diagnostics.queriesjson.Exec;
-import com.dremio.support.diagnostics.queriesjson.QueriesJsonFileParser;
 import com.dremio.support.diagnostics.queriesjson.QueriesJsonHtmlReport;
 import com.dremio.support.diagnostics.queriesjson.ReadArchive;
 import com.dremio.support.diagnostics.queriesjson.SearchedFile;
 import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryPredicate;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryPredicates;
 import com.dremio.support.diagnostics.queriesjson.reporters.*;
+import com.dremio.support.diagnostics.queriesjson.store.QueriesJsonTail;
+import com.dremio.support.diagnostics.queriesjson.store.QueryStore;
+import com.dremio.support.diagnostics.queriesjson.store.QueryStoreWriter;
 import com.dremio.support.diagnostics.shared.Reporter;
 import com.dremio.support.diagnostics.shared.StreamWriterReporter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -50,7 +58,16 @@ import picocli.CommandLine;
             + "##### Generate summary analysis of one or several queries.json in the CLI:\n\n"
             + "\tdqd queries-json ./queries.json output.html\n\n"
             + "\tdqd queries-json ./queries.zip output.html\n\n"
-            + "\tdqd queries-json ./queriesjsons/ output.html\n\n",
+            + "\tdqd queries-json ./queriesjsons/ output.html\n\n"
+            + "##### Parse once into a query store and report from it with another window:\n\n"
+            + "\tdqd queries-json ./queries.tgz output.html --store ./queries-store\n\n"
+            + "\tdqd queries-json ./queries-store output.html -w 3600000\n\n"
+            + "##### Only report the failed queries of one user:\n\n"
+            + "\tdqd queries-json ./queries.tgz output.html --filter outcome=failed --filter"
+            + " user=etl\n\n"
+            + "##### Follow a coordinator log directory and refresh the report every minute:\n\n"
+            + "\tdqd queries-json /opt/dremio/log output.html --store ./queries-store --watch"
+            + " 60\n\n",
     subcommands = CommandLine.HelpCommand.class)
 public class QueriesJson implements Callable<Integer> {
 
@@ -107,6 +124,38 @@ public class QueriesJson implements Callable<Integer> {
       showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
   private Integer limit;
 
+  @CommandLine.Option(
+      names = {"--filter"},
+      description =
+          "only report the queries matching every filter given, one of user=NAME, queue=NAME,"
+              + " outcome=NAME, engine=NAME, type=NAME or text~REGEX. Rows that do not match are"
+              + " skipped before they are parsed")
+  private List<String> filters = new ArrayList<>();
+
+  @CommandLine.Option(
+      names = {"--store"},
+      description =
+          "parse the input into a query store in this directory before reporting, later runs can"
+              + " pass the store directory as the input and skip parsing")
+  private File store;
+
+  @CommandLine.Option(
+      names = {"--watch"},
+      description =
+          "with a log directory as the input and --store, parse what was appended to the directory"
+              + " and rewrite the report every this many seconds until interrupted")
+  private Integer watch;
+
+  /** where the rows of a report come from */
+  @FunctionalInterface
+  private interface Source {
+    /**
+     * @return the files searched or null when the input cannot be read
+     */
+    List<SearchedFile> read(QueryPredicate filter, Collection<QueryReporter> reporters, int cpus)
+        throws IOException, InterruptedException, ExecutionException;
+  }
+
   /**
    * call() takes the values from the command line flags and just passes those
    * values to the
@@ -118,83 +167,127 @@ public class QueriesJson implements Callable<Integer> {
    */
   @Override
   public Integer call() throws IOException, InterruptedException, ExecutionException {
-    try (var outputStream = Files.newOutputStream(outputFile.toPath())) {
-      var startMs = start.toEpochSecond(LocalTime.of(0, 0, 0, 0), ZoneOffset.UTC) * 1000;
-      var endMs = end.toEpochSecond(LocalTime.of(0, 0, 0, 0), ZoneOffset.UTC) * 1000;
-      var filter = new DateRangeQueryFilter(startMs, endMs);
-
-      final Reporter reporter = new StreamWriterReporter(outputStream);
-      var reporters = new ArrayList<QueryReporter>();
-      final ConcurrentQueriesReporter concurrentQueriesReporter =
-          new ConcurrentQueriesReporter(this.window);
-      reporters.add(concurrentQueriesReporter);
-      final ConcurrentQueueReporter concurrentQueueReporter =
-          new ConcurrentQueueReporter(this.window);
-      reporters.add(concurrentQueueReporter);
-      final ConcurrentSchemaOpsReporter concurrentSchemaOpsReporter =
-          new ConcurrentSchemaOpsReporter(this.window);
-      reporters.add(concurrentSchemaOpsReporter);
-      final MaxMemoryQueriesReporter maxMemoryQueriesReporter =
-          new MaxMemoryQueriesReporter(this.limit);
-      reporters.add(maxMemoryQueriesReporter);
-      final MaxCPUQueriesReporter maxCPUQueriesReporter = new MaxCPUQueriesReporter(this.limit);
-      reporters.add(maxCPUQueriesReporter);
-      final MaxTimeReporter maxTimeReporter = new MaxTimeReporter(this.window);
-      reporters.add(maxTimeReporter);
-      final MemoryAllocatedReporter memoryAllocatedReporter =
-          new MemoryAllocatedReporter(this.window);
-      reporters.add(memoryAllocatedReporter);
-      final RequestCounterReporter requestCounterReporter = new RequestCounterReporter();
-      reporters.add(requestCounterReporter);
-      final RequestsByQueueReporter requestsByQueueReporter = new RequestsByQueueReporter();
-      reporters.add(requestsByQueueReporter);
-      final SlowestMetadataQueriesReporter slowestMetadataQueriesReporter =
-          new SlowestMetadataQueriesReporter(this.limit);
-      reporters.add(slowestMetadataQueriesReporter);
-      final SlowestPlanningQueriesReporter slowestPlanningQueriesReporter =
-          new SlowestPlanningQueriesReporter(this.limit);
-      reporters.add(slowestPlanningQueriesReporter);
-      final StartFinishReporter startFinishReporter = new StartFinishReporter();
-      reporters.add(startFinishReporter);
-      final TotalQueriesReporter totalQueriesReporter = new TotalQueriesReporter();
-      reporters.add(totalQueriesReporter);
-      final FailedQueriesReporter failedQueriesReporter = new FailedQueriesReporter(limit);
-      reporters.add(failedQueriesReporter);
-
-      var archive = new ReadArchive(filter);
-      var cpus = Runtime.getRuntime().availableProcessors() / 2;
-      List<SearchedFile> filesSearched = new ArrayList<SearchedFile>();
-      if (file.toString().endsWith(".tgz") || file.toString().endsWith(".tar.gz")) {
-        filesSearched = archive.readTarGz(file.toString(), reporters, cpus).stream().toList();
-      } else if (file.toString().endsWith(".tar.xz")) {
-        filesSearched = archive.readTarXz(file.toString(), reporters, cpus).stream().toList();
-      } else if (file.toString().endsWith(".tar.bzip2")) {
-        filesSearched = archive.readTarBzip2(file.toString(), reporters, cpus).stream().toList();
-      } else if (file.toString().endsWith(".tar")) {
-        filesSearched = archive.readTar(file.toString(), reporters, cpus).stream().toList();
-      } else if (file.toString().endsWith(".zip")) {
-        filesSearched = archive.readZip(file.toString(), reporters, cpus).stream().toList();
-      } else if (file.toString().endsWith(".gz")) {
-        var searchedFile = archive.parseGzip(file.toString(), file.toPath(), reporters);
-        filesSearched.add(searchedFile);
-      } else if (file.toString().endsWith(".bzip2")) {
-        var searchedFile = archive.parseBzip2(file.toString(), reporters);
-        filesSearched.add(searchedFile);
-      } else if (file.toString().endsWith(".json")) {
-        try (var is = Files.newInputStream(file.toPath())) {
-          var searchedFile =
-              QueriesJsonFileParser.parseFile(
-                  file.toString(), is, reporters, new DateRangeQueryFilter(startMs, endMs));
-          filesSearched.add(searchedFile);
-        }
-      } else {
+    var startMs = start.toEpochSecond(LocalTime.of(0, 0, 0, 0), ZoneOffset.UTC) * 1000;
+    var endMs = end.toEpochSecond(LocalTime.of(0, 0, 0, 0), ZoneOffset.UTC) * 1000;
+    final List<QueryPredicate> predicates = new ArrayList<>();
+    predicates.add(new DateRangeQueryFilter(startMs, endMs));
+    try {
+      for (String expression : filters) {
+        predicates.add(QueryPredicates.parse(expression));
+      }
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return 1;
+    }
+    var filter = QueryPredicates.and(predicates);
+    var cpus = Runtime.getRuntime().availableProcessors() / 2;
+    final Source source;
+    if (QueryStore.isStore(file.toPath())) {
+      source =
+          (f, reporters, threads) -> QueryStore.open(file.toPath()).scan(f, reporters, threads);
+    } else if (store != null && file.isDirectory()) {
+      // a log directory, only what was appended since the last run is parsed into the store
+      final QueriesJsonTail tail = new QueriesJsonTail(file.toPath(), store.toPath(), cpus);
+      source = (f, reporters, threads) -> tail.update().scan(f, reporters, threads);
+    } else if (store != null) {
+      final Path storeDir = store.toPath();
+      if (QueryStore.isStore(storeDir)) {
         System.out.println(
-            "unknown extension for file "
-                + file.toString()
-                + ": only supported extensions are .tar, .tar.gz, .tgz,"
-                + " tar.xz, tar.bzip2, .bzip2, .gz, .zip and .json");
+            "%s already holds a query store, pass it as the input to report from it"
+                .formatted(storeDir));
         return 1;
       }
+      source =
+          (f, reporters, threads) -> {
+            // every query is kept in the store, the date range is applied when it is scanned
+            final QueryStoreWriter writer = new QueryStoreWriter(storeDir);
+            final List<SearchedFile> ingested =
+                read(new ReadArchive(QueryStoreWriter.KEEP_ALL), List.of(writer), threads);
+            if (ingested == null) {
+              return null;
+            }
+            return writer.finish(ingested).scan(f, reporters, threads);
+          };
+    } else {
+      source = (f, reporters, threads) -> read(new ReadArchive(f), reporters, threads);
+    }
+    if (watch == null) {
+      return report(source, filter, startMs, endMs, cpus);
+    }
+    if (store == null || !file.isDirectory() || QueryStore.isStore(file.toPath())) {
+      System.out.println("--watch needs a log directory as the input and --store");
+      return 1;
+    }
+    while (true) {
+      final int result = report(source, filter, startMs, endMs, cpus);
+      if (result != 0) {
+        return result;
+      }
+      Thread.sleep(Duration.ofSeconds(watch).toMillis());
+    }
+  }
+
+  /**
+   * reads the source into a fresh set of reporters and writes the report, the previous report is
+   * only replaced once the new one is complete
+   */
+  private int report(
+      final Source source,
+      final QueryPredicate filter,
+      final long startMs,
+      final long endMs,
+      final int cpus)
+      throws IOException, InterruptedException, ExecutionException {
+    var reporters = new ArrayList<QueryReporter>();
+    final ConcurrentQueriesReporter concurrentQueriesReporter =
+        new ConcurrentQueriesReporter(this.window);
+    reporters.add(concurrentQueriesReporter);
+    final ConcurrentQueueReporter concurrentQueueReporter =
+        new ConcurrentQueueReporter(this.window);
+    reporters.add(concurrentQueueReporter);
+    final ConcurrentSchemaOpsReporter concurrentSchemaOpsReporter =
+        new ConcurrentSchemaOpsReporter(this.window);
+    reporters.add(concurrentSchemaOpsReporter);
+    final MaxMemoryQueriesReporter maxMemoryQueriesReporter =
+        new MaxMemoryQueriesReporter(this.limit);
+    reporters.add(maxMemoryQueriesReporter);
+    final MaxCPUQueriesReporter maxCPUQueriesReporter = new MaxCPUQueriesReporter(this.limit);
+    reporters.add(maxCPUQueriesReporter);
+    final MaxTimeReporter maxTimeReporter = new MaxTimeReporter(this.window);
+    reporters.add(maxTimeReporter);
+    final MemoryAllocatedReporter memoryAllocatedReporter =
+        new MemoryAllocatedReporter(this.window);
+    reporters.add(memoryAllocatedReporter);
+    final RequestCounterReporter requestCounterReporter = new RequestCounterReporter();
+    reporters.add(requestCounterReporter);
+    final RequestsByQueueReporter requestsByQueueReporter = new RequestsByQueueReporter();
+    reporters.add(requestsByQueueReporter);
+    final SlowestMetadataQueriesReporter slowestMetadataQueriesReporter =
+        new SlowestMetadataQueriesReporter(this.limit);
+    reporters.add(slowestMetadataQueriesReporter);
+    final SlowestPlanningQueriesReporter slowestPlanningQueriesReporter =
+        new SlowestPlanningQueriesReporter(this.limit);
+    reporters.add(slowestPlanningQueriesReporter);
+    final StartFinishReporter startFinishReporter = new StartFinishReporter();
+    reporters.add(startFinishReporter);
+    final TotalQueriesReporter totalQueriesReporter = new TotalQueriesReporter();
+    reporters.add(totalQueriesReporter);
+    final FailedQueriesReporter failedQueriesReporter = new FailedQueriesReporter(limit);
+    reporters.add(failedQueriesReporter);
+    final QueryShapesReporter queryShapesReporter = new QueryShapesReporter();
+    reporters.add(queryShapesReporter);
+    final LatencyQuantilesReporter latencyQuantilesReporter =
+        new LatencyQuantilesReporter(this.window);
+    reporters.add(latencyQuantilesReporter);
+
+    final List<SearchedFile> filesSearched = source.read(filter, reporters, cpus);
+    if (filesSearched == null) {
+      return 1;
+    }
+    final Path output = outputFile.toPath().toAbsolutePath();
+    final Path partial = output.resolveSibling(output.getFileName() + ".tmp");
+    try (var outputStream = Files.newOutputStream(partial)) {
+      final Reporter reporter = new StreamWriterReporter(outputStream);
       new Exec()
           .run(
               new QueriesJsonHtmlReport(
@@ -216,9 +309,52 @@ public class QueriesJson implements Callable<Integer> {
                   startFinishReporter,
                   totalQueriesReporter,
                   failedQueriesReporter,
+                  queryShapesReporter,
+                  latencyQuantilesReporter,
                   limit),
               reporter);
-      return 0;
     }
+    Files.move(
+        partial, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return 0;
+  }
+
+  /**
+   * reads the input file with the reader matching its extension
+   *
+   * @return the files searched or null when the extension is not supported
+   */
+  private List<SearchedFile> read(
+      final ReadArchive archive, final Collection<QueryReporter> reports, final int cpus)
+      throws IOException, InterruptedException, ExecutionException {
+    List<SearchedFile> filesSearched = new ArrayList<SearchedFile>();
+    if (file.toString().endsWith(".tgz") || file.toString().endsWith(".tar.gz")) {
+      filesSearched = archive.readTarGz(file.toString(), reports, cpus).stream().toList();
+    } else if (file.toString().endsWith(".tar.xz")) {
+      filesSearched = archive.readTarXz(file.toString(), reports, cpus).stream().toList();
+    } else if (file.toString().endsWith(".tar.bzip2")) {
+      filesSearched = archive.readTarBzip2(file.toString(), reports, cpus).stream().toList();
+    } else if (file.toString().endsWith(".tar")) {
+      filesSearched = archive.readTar(file.toString(), reports, cpus).stream().toList();
+    } else if (file.toString().endsWith(".zip")) {
+      filesSearched = archive.readZip(file.toString(), reports, cpus).stream().toList();
+    } else if (file.toString().endsWith(".gz")) {
+      var searchedFile = archive.parseGzip(file.toString(), file.toPath(), reports, cpus);
+      filesSearched.add(searchedFile);
+    } else if (file.toString().endsWith(".bzip2")) {
+      var searchedFile = archive.parseBzip2(file.toString(), reports, cpus);
+      filesSearched.add(searchedFile);
+    } else if (file.toString().endsWith(".json")) {
+      var searchedFile = archive.parseJSON(file.toString(), file.toPath(), reports, cpus);
+      filesSearched.add(searchedFile);
+    } else {
+      System.out.println(
+          "unknown extension for file "
+              + file.toString()
+              + ": only supported extensions are .tar, .tar.gz, .tgz,"
+              + " tar.xz, tar.bzip2, .bzip2, .gz, .zip and .json");
+      return null;
+    }
+    return filesSearched;
   }
 }
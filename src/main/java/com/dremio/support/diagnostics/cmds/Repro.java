@@ -181,7 +181,8 @@ public class Repro implements Callable<Integer> {
       final ReproProfileParserImpl profileParser =
           ArgSetup.getReproProfile(this.records, columnDefYaml);
       final ProfileProvider profileProvider =
-          ArgSetup.getProfileProvider(new PathAndStream(this.file.toPath(), fs));
+          ArgSetup.getProfileProvider(
+              new PathAndStream(this.file.toPath(), fs), ReproProfileParserImpl.PROFILE_SECTIONS);
       final SqlOutput[] sqlOutput =
           ArgSetup.getSqlOutput(
               dremioUser,
@@ -13,7 +13,14 @@
  */
 package com.dremio.support.diagnostics.cmds;
 
+import com.dremio.support.diagnostics.server.AnalysisJobQueue;
 import com.dremio.support.diagnostics.server.DQDWebServer;
+import com.dremio.support.diagnostics.server.ReportCache;
+import com.dremio.support.diagnostics.server.ReportCacheFilter;
+import com.google.common.base.Ticker;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
@@ -32,10 +39,124 @@ public class Server implements Runnable {
       showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
   private Integer port;
 
+  @CommandLine.Option(
+      names = {"--external-assets"},
+      defaultValue = "false",
+      description =
+          "serve the javascript libraries once under /assets/ instead of inlining them in every"
+              + " report, saved reports then need the server to render",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private boolean externalAssets;
+
+  @CommandLine.Option(
+      names = {"--cache-mb"},
+      defaultValue = "0",
+      description =
+          "megabytes of rendered reports kept in memory so repeated uploads of the same file and"
+              + " form values are answered without parsing them again, 0 disables the cache."
+              + " Uploads up to --cache-max-upload-mb are then buffered in memory before they are"
+              + " parsed",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long cacheMb;
+
+  @CommandLine.Option(
+      names = {"--cache-ttl-minutes"},
+      defaultValue = "60",
+      description = "how long a cached report is served after it was rendered",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long cacheTtlMinutes;
+
+  @CommandLine.Option(
+      names = {"--cache-max-upload-mb"},
+      defaultValue = "128",
+      description =
+          "largest upload that is buffered and looked up in the cache, larger uploads are parsed"
+              + " while they are uploaded and never cached, at most 2047",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long cacheMaxUploadMb;
+
+  @CommandLine.Option(
+      names = {"--cache-buffer-mb"},
+      defaultValue = "512",
+      description =
+          "megabytes of uploads buffered in memory for the cache at the same time, uploads that"
+              + " do not fit are parsed while they are uploaded and never cached",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long cacheBufferMb;
+
+  @CommandLine.Option(
+      names = {"--cache-spill-dir"},
+      description =
+          "directory reports evicted from memory are written to instead of being dropped, by"
+              + " default nothing is written to disk")
+  private Path cacheSpillDir;
+
+  @CommandLine.Option(
+      names = {"--cache-spill-mb"},
+      defaultValue = "1024",
+      description = "megabytes of reports kept in the spill directory",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long cacheSpillMb;
+
+  @CommandLine.Option(
+      names = {"--jobs-dir"},
+      description =
+          "directory uploads to /jobs are spooled to while they wait to be analyzed, defaults to a"
+              + " new temporary directory")
+  private Path jobsDir;
+
+  @CommandLine.Option(
+      names = {"--jobs-running"},
+      defaultValue = "0",
+      description =
+          "analysis jobs run at the same time, 0 picks as many as half the heap and half the cores"
+              + " allow",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private int jobsRunning;
+
+  @CommandLine.Option(
+      names = {"--jobs-queued"},
+      defaultValue = "" + AnalysisJobQueue.DEFAULT_MAX_QUEUED,
+      description = "analysis jobs waiting for a free worker before new ones are rejected",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private int jobsQueued;
+
+  @CommandLine.Option(
+      names = {"--jobs-spool-mb"},
+      defaultValue = "20480",
+      description =
+          "megabytes of uploads waiting in the jobs directory before new ones are rejected",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+  private long jobsSpoolMb;
+
   @Override
   public void run() {
     try {
-      DQDWebServer.start(port);
+      final long mb = 1024L * 1024L;
+      if (cacheMaxUploadMb > ReportCacheFilter.MAX_UPLOAD_BYTES / mb) {
+        throw new IllegalArgumentException(
+            "--cache-max-upload-mb must be at most %d but was %d"
+                .formatted(ReportCacheFilter.MAX_UPLOAD_BYTES / mb, cacheMaxUploadMb));
+      }
+      final ReportCache reportCache =
+          cacheMb > 0
+              ? new ReportCache(
+                  cacheMb * mb,
+                  Duration.ofMinutes(cacheTtlMinutes),
+                  cacheSpillDir,
+                  cacheSpillMb * mb,
+                  Ticker.systemTicker())
+              : null;
+      final AnalysisJobQueue jobQueue =
+          new AnalysisJobQueue(
+              jobsRunning > 0 ? jobsRunning : AnalysisJobQueue.defaultMaxRunning(),
+              jobsQueued,
+              jobsDir != null ? jobsDir : Files.createTempDirectory("dqd-jobs"),
+              jobsSpoolMb * mb,
+              AnalysisJobQueue.DEFAULT_KEEP,
+              reportCache);
+      DQDWebServer.start(
+          port, externalAssets, reportCache, cacheMaxUploadMb * mb, cacheBufferMb * mb, jobQueue);
     } catch (final Exception e) {
       throw new RuntimeException(e);
     }
@@ -18,6 +18,7 @@ import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
+import com.dremio.support.diagnostics.shared.ReportOutput;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -39,10 +40,9 @@ public class IOStatReporter {
       throws UnsupportedEncodingException, IOException {
     final Summary summary = this.summaryStats(reportStats);
     try (BufferedOutputStream output = new BufferedOutputStream(streamWriter)) {
-      final String template =
-          String.format(
-              Locale.US,
-              """
+      final ReportOutput out = new ReportOutput(output);
+      out.template(
+          """
  <!DOCTYPE html>
  <html lang="en">
  <head>
@@ -212,16 +212,16 @@ public class IOStatReporter {
  </body>
 </html>
 """,
-              jsLibraryTextProvider.getTableCSS(),
-              jsLibraryTextProvider.getPlotlyJsText(),
-              jsLibraryTextProvider.getCSVExportText(),
-              jsLibraryTextProvider.getSortableCSSText(),
-              jsLibraryTextProvider.getSortableText(),
-              jsLibraryTextProvider.getFilterTableText(),
-              this.summaryText(summary),
-              this.recommendations(summary),
-              this.detailGraph(reportStats));
-      output.write(template.getBytes("UTF-8"));
+          jsLibraryTextProvider.getTableCSS(),
+          jsLibraryTextProvider.getLibSection(JsLibraryTextProvider.PLOTLY),
+          jsLibraryTextProvider.getCSVExportText(),
+          jsLibraryTextProvider.getSortableCSSText(),
+          jsLibraryTextProvider.getSortableText(),
+          jsLibraryTextProvider.getFilterTableText(),
+          this.summaryText(summary),
+          this.recommendations(summary),
+          this.detailGraph(reportStats));
+      out.flush();
     }
   }
 
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Process wide pool used by the profile reports to spread per operator work over the cores.
+ *
+ * <p>The pool is created once and shared by every report and every request in server mode, so
+ * analysing a profile never creates threads of its own. Work is handed over as ranges of positions
+ * that are split in half until they are small enough, idle workers steal the other halves. Worker
+ * threads are daemons so the pool never keeps the jvm alive.
+ */
+public final class AnalysisExecutor {
+
+  /** ranges at or below this size run on a single thread without being split */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private static final ForkJoinPool pool =
+      new ForkJoinPool(
+          Math.max(Runtime.getRuntime().availableProcessors() - 1, 1),
+          p -> {
+            final ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("profile-analysis-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+          },
+          null,
+          false);
+
+  private AnalysisExecutor() {}
+
+  /**
+   * @return the shared pool
+   */
+  public static ForkJoinPool pool() {
+    return pool;
+  }
+
+  /**
+   * runs the action for every position in [0, count) and waits for all of them, ranges no larger
+   * than {@link #DEFAULT_BATCH_SIZE} run on the calling thread. The action must only write state
+   * owned by its position (for example a slot of an array) as positions run concurrently.
+   *
+   * @param count number of positions
+   * @param action called once for each position
+   */
+  public static void forEach(final int count, final IntConsumer action) {
+    forEach(count, DEFAULT_BATCH_SIZE, action);
+  }
+
+  /**
+   * runs the action for every position in [0, count) in batches of at most batchSize positions and
+   * waits for all of them, exceptions thrown by the action are rethrown on the calling thread
+   *
+   * @param count number of positions
+   * @param batchSize largest range run as one task, values below 1 are treated as 1
+   * @param action called once for each position
+   */
+  public static void forEach(final int count, final int batchSize, final IntConsumer action) {
+    final int batch = Math.max(1, batchSize);
+    if (count <= batch) {
+      for (int i = 0; i < count; i++) {
+        action.accept(i);
+      }
+      return;
+    }
+    pool.invoke(new RangeAction(0, count, batch, action));
+  }
+
+  /**
+   * the results of {@link #invokeBoth(Callable, Callable)}
+   *
+   * @param first result of the first task
+   * @param second result of the second task
+   * @param <A> type of the first result
+   * @param <B> type of the second result
+   */
+  public record Both<A, B>(A first, B second) {}
+
+  /**
+   * runs the second task on the pool while the first runs on the calling thread and waits for
+   * both, used to read or index two profiles at the same time
+   *
+   * @param first task run on the calling thread
+   * @param second task run on the pool
+   * @param <A> type of the first result
+   * @param <B> type of the second result
+   * @return both results
+   * @throws IOException when either task throws one, the first task's failure wins
+   */
+  public static <A, B> Both<A, B> invokeBoth(final Callable<A> first, final Callable<B> second)
+      throws IOException {
+    final CallTask<B> forked = new CallTask<>(second);
+    pool.execute(forked);
+    final A firstResult;
+    try {
+      firstResult = first.call();
+    } catch (Exception e) {
+      forked.quietlyJoin();
+      throw rethrow(e);
+    }
+    final B secondResult = forked.join();
+    if (forked.failure != null) {
+      throw rethrow(forked.failure);
+    }
+    return new Both<>(firstResult, secondResult);
+  }
+
+  private static IOException rethrow(final Exception e) {
+    if (e instanceof IOException io) {
+      return io;
+    }
+    if (e instanceof RuntimeException runtime) {
+      throw runtime;
+    }
+    throw new RuntimeException(e);
+  }
+
+  /** keeps the exception of the callable instead of letting the pool wrap it */
+  private static final class CallTask<T> extends RecursiveTask<T> {
+    private final Callable<T> callable;
+    private Exception failure;
+
+    CallTask(final Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    @Override
+    protected T compute() {
+      try {
+        return callable.call();
+      } catch (Exception e) {
+        failure = e;
+        return null;
+      }
+    }
+  }
+
+  private static final class RangeAction extends RecursiveAction {
+    private final int start;
+    private final int end;
+    private final int batch;
+    private final IntConsumer action;
+
+    RangeAction(final int start, final int end, final int batch, final IntConsumer action) {
+      this.start = start;
+      this.end = end;
+      this.batch = batch;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= batch) {
+        for (int i = start; i < end; i++) {
+          action.accept(i);
+        }
+        return;
+      }
+      final int middle = (start + end) >>> 1;
+      invokeAll(
+          new RangeAction(start, middle, batch, action),
+          new RangeAction(middle, end, batch, action));
+    }
+  }
+}
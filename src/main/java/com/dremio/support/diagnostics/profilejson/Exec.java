@@ -15,7 +15,9 @@ package com.dremio.support.diagnostics.profilejson;
 
 import com.dremio.support.diagnostics.shared.ProfileProvider;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
@@ -39,8 +41,12 @@ public class Exec {
   }
 
   public void run() throws IOException {
-    final ProfileJSON profile1 = this.profile1Provider.getProfile();
-    final ProfileJSON profile2 = this.profile2Provider.getProfile();
+    // both profiles are read at the same time
+    final AnalysisExecutor.Both<ProfileJSON, ProfileJSON> profiles =
+        AnalysisExecutor.invokeBoth(
+            this.profile1Provider::getProfile, this.profile2Provider::getProfile);
+    final ProfileJSON profile1 = profiles.first();
+    final ProfileJSON profile2 = profiles.second();
     final List<Difference> differences =
         differ.getDifferences(
             this.profile1Provider.getFilePath().toString(),
@@ -59,7 +65,9 @@ public class Exec {
             differences);
     final long epoch = Instant.now().toEpochMilli();
     String path = String.format("profile-compare-%d.html", epoch);
-    Files.write(Path.of(path), report.getText().getBytes());
+    try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(Path.of(path)))) {
+      report.writeTo(os);
+    }
     System.out.printf("wrote report %s to disk", path.toString());
   }
 }
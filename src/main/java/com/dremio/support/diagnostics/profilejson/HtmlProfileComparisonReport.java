@@ -15,30 +15,23 @@ package com.dremio.support.diagnostics.profilejson;
 
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
-import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraph;
-import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraphParser;
-import com.dremio.support.diagnostics.profilejson.singlefile.GraphWriter;
+import com.dremio.support.diagnostics.profilejson.singlefile.ConvertToRelMermaidCache;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
 import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
 import com.dremio.support.diagnostics.shared.Report;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.io.IOException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 
 public class HtmlProfileComparisonReport implements Report {
 
   private final JsLibraryTextProvider jsLibraryTextProvider = new JsLibraryTextProvider();
-  private final ConvertToRelGraphParser convertToRelGraphParser = new ConvertToRelGraphParser();
   private final boolean showConvertToRel;
 
   private final ProfileJSON parsed;
@@ -98,7 +91,9 @@ public class HtmlProfileComparisonReport implements Report {
         "<div style=\"white-space:pre-wrap;font-family:monospace\">"
             + this.displayDiff()
             + "</div>";
-    final TraceData profile2TraceData = convertToPhaseThreads(this.parsed2);
+    final ProfileIndex index1 = ProfileIndex.of(this.parsed);
+    final ProfileIndex index2 = ProfileIndex.of(this.parsed2);
+    final TraceData profile2TraceData = convertToPhaseThreads(index2);
     final String profile2PhaseProcessTrace =
         writeTrace(
             "profile2PhaseProcessTrace",
@@ -106,7 +101,7 @@ public class HtmlProfileComparisonReport implements Report {
             profile2TraceData.getPhaseThreadNames(),
             profile2TraceData.getPhaseProcessTimes(),
             Optional.of(profile2TraceData.getPhaseThreadTextNames()));
-    final TraceData profile1TraceData = convertToPhaseThreads(this.parsed);
+    final TraceData profile1TraceData = convertToPhaseThreads(index1);
     final String phaseProcessTrace =
         writeTrace(
             "profile1PhaseProcessTrace",
@@ -125,7 +120,7 @@ public class HtmlProfileComparisonReport implements Report {
             100,
             barMode);
     // graph out operators by process time
-    final TraceData profile2OperatorTraceData = getTraceDataForOperators(this.parsed2);
+    final TraceData profile2OperatorTraceData = getTraceDataForOperators(index2);
     final String profile2OperatorTrace =
         writeTrace(
             "profile2OperatorTrace",
@@ -133,7 +128,7 @@ public class HtmlProfileComparisonReport implements Report {
             profile2OperatorTraceData.getPhaseThreadNames(),
             profile2OperatorTraceData.getPhaseProcessTimes(),
             Optional.of(profile2OperatorTraceData.getPhaseThreadTextNames()));
-    final TraceData profile1OperatorTraceData = getTraceDataForOperators(this.parsed);
+    final TraceData profile1OperatorTraceData = getTraceDataForOperators(index1);
     final String operatorTrace =
         writeTrace(
             "profile1OperatorTrace",
@@ -184,22 +179,19 @@ public class HtmlProfileComparisonReport implements Report {
     final String convertToRel1;
     final String convertToRel2;
     if (showConvertToRel) {
-      final ConvertToRelGraph convertToRelProfile1 =
-          convertToRelGraphParser.parseConvertToRel(this.parsed);
-      if (convertToRelProfile1 != null) {
-        convertToRel1 =
-            "<h2>Convert To Rel Profile 1</h2>"
-                + new GraphWriter().writeMermaid(convertToRelProfile1.getConvertToRelTree());
+      // the cache skips parsing and rendering a baseline that has already been compared
+      final Optional<String> convertToRelProfile1 =
+          ConvertToRelMermaidCache.shared().getMermaid(this.parsed);
+      if (convertToRelProfile1.isPresent()) {
+        convertToRel1 = "<h2>Convert To Rel Profile 1</h2>" + convertToRelProfile1.get();
       } else {
-        convertToRel1 = "<h2>Convert To Rel Profile 2</h2><p>No Convert To Rel Found</p>";
+        convertToRel1 = "<h2>Convert To Rel Profile 1</h2><p>No Convert To Rel Found</p>";
       }
 
-      final ConvertToRelGraph convertToRelProfile2 =
-          convertToRelGraphParser.parseConvertToRel(this.parsed2);
-      if (convertToRelProfile2 != null) {
-        convertToRel2 =
-            "<h2>Convert To Rel Profile 2</h2>"
-                + new GraphWriter().writeMermaid(convertToRelProfile2.getConvertToRelTree());
+      final Optional<String> convertToRelProfile2 =
+          ConvertToRelMermaidCache.shared().getMermaid(this.parsed2);
+      if (convertToRelProfile2.isPresent()) {
+        convertToRel2 = "<h2>Convert To Rel Profile 2</h2>" + convertToRelProfile2.get();
       } else {
         convertToRel2 = "<h2>Convert To Rel Profile 2</h2><p>No Convert To Rel Found</p>";
       }
@@ -442,103 +434,65 @@ public class HtmlProfileComparisonReport implements Report {
     return builder.toString();
   }
 
-  private TraceData convertToPhaseThreads(final ProfileJSON parsed) {
-    final List<PhaseThread> phaseThreads = new ArrayList<>();
-    if (parsed.getFragmentProfile() == null) {
-      return new TraceData(
-          new String[] {}, new String[] {}, new long[] {}, new long[] {}, new long[] {});
-    }
-    for (final FragmentProfile phase : parsed.getFragmentProfile()) {
-      final int phaseId = phase.getMajorFragmentId();
-      for (final MinorFragmentProfile phaseThread : phase.getMinorFragmentProfile()) {
-        final long threadId = phaseThread.getMinorFragmentId();
-        final PhaseThread pt = new PhaseThread();
-        pt.setPhaseId(phaseId);
-        pt.setThreadId(threadId);
-        pt.setRunDuration(phaseThread.getRunDuration());
-        pt.setBlockedDuration(phaseThread.getBlockedDuration());
-        pt.setBlockedOnUpstreamDuration(phaseThread.getBlockedOnUpstreamDuration());
-        pt.setBlockedOnDownstreamDuration(phaseThread.getBlockedOnDownstreamDuration());
-        pt.setBlockedOnSharedResourceDuration(phaseThread.getBlockedOnSharedResourceDuration());
-        pt.setSleepingDuration(phaseThread.getSleepingDuration());
-        pt.setTotalTimeMillis(phaseThread.getEndTime() - phaseThread.getStartTime());
-        pt.setStartTime(phaseThread.getEndTime() - phaseThread.getRunDuration());
-        pt.setEndTime(phaseThread.getEndTime());
-        phaseThreads.add(pt);
-      }
-    }
-    final long[] startTimes = new long[phaseThreads.size()];
-    final long[] endTimes = new long[phaseThreads.size()];
-    final String[] phaseThreadNames = new String[phaseThreads.size()];
-    final String[] phaseThreadTextNames = new String[phaseThreads.size()];
-    final long[] phaseProcessTimes = new long[phaseThreads.size()];
-    for (int i = 0; i < phaseThreads.size(); i++) {
-      final PhaseThread phaseThread = phaseThreads.get(i);
-      phaseThreadNames[i] = String.format("%02d", phaseThread.getPhaseId());
-      phaseThreadTextNames[i] =
-          String.format(
-              "%02d-%02d-XX - run %s, sleep %s, blocked { total %s, upstream %s, downwstream %s,"
-                  + " shared %s }",
-              phaseThread.getPhaseId(),
-              phaseThread.getThreadId(),
-              Human.getHumanDurationFromMillis(phaseThread.getRunDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getSleepingDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnUpstreamDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnDownstreamDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnSharedResourceDuration()));
-      phaseProcessTimes[i] = phaseThread.getTotalTimeMillis();
-      startTimes[i] = phaseThread.getStartTime();
-      endTimes[i] = phaseThread.getEndTime();
-    }
+  private TraceData convertToPhaseThreads(final ProfileIndex index) {
+    final int threads = index.threadCount();
+    final long[] startTimes = new long[threads];
+    final long[] endTimes = new long[threads];
+    final String[] phaseThreadNames = new String[threads];
+    final String[] phaseThreadTextNames = new String[threads];
+    final long[] phaseProcessTimes = new long[threads];
+    AnalysisExecutor.forEach(
+        threads,
+        i -> {
+          final String phaseName = index.phaseName(index.threadPhase(i));
+          phaseThreadNames[i] = phaseName;
+          phaseThreadTextNames[i] =
+              String.format(
+                  "%s-%s-XX - run %s, sleep %s, blocked { total %s, upstream %s, downwstream %s,"
+                      + " shared %s }",
+                  phaseName,
+                  ProfileIndex.twoDigits(index.threadId(i)),
+                  Human.getHumanDurationFromMillis(index.threadRunDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadSleepingDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnUpstreamDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnDownstreamDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnSharedResourceDuration(i)));
+          phaseProcessTimes[i] = index.threadEndTime(i) - index.threadStartTime(i);
+          startTimes[i] = index.threadEndTime(i) - index.threadRunDuration(i);
+          endTimes[i] = index.threadEndTime(i);
+        });
     return new TraceData(
         phaseThreadNames, phaseThreadTextNames, phaseProcessTimes, startTimes, endTimes);
   }
 
-  private TraceData getTraceDataForOperators(final ProfileJSON parsed) {
-    final List<Operator> operators = new ArrayList<>();
-    if (parsed.getFragmentProfile() == null) {
-      return new TraceData(
-          new String[] {}, new String[] {}, new long[] {}, new long[] {}, new long[] {});
-    }
-    for (final FragmentProfile fragmentProfile : parsed.getFragmentProfile()) {
-      final int phaseId = fragmentProfile.getMajorFragmentId();
-      for (final MinorFragmentProfile minorProfile : fragmentProfile.getMinorFragmentProfile()) {
-        final long threadId = minorProfile.getMinorFragmentId();
-        for (final OperatorProfile operatorProfile : minorProfile.getOperatorProfile()) {
-          final Operator operator =
-              Operator.createFromOperatorProfile(
-                  operatorProfile, parsed.getOperatorTypeMetricsMap().getMetricsDef());
-          operator.setParentPhaseId(phaseId);
-          operator.setThreadId(threadId);
-          operators.add(operator);
-        }
-      }
-    }
-    final String[] operatorNames = new String[operators.size()];
-    final String[] operatorText = new String[operators.size()];
-    final long[] operatorTimes = new long[operators.size()];
-    final TraceData traceData =
-        new TraceData(operatorNames, operatorText, operatorTimes, new long[] {}, new long[] {});
-    for (int i = 0; i < operators.size(); i++) {
-      final Operator operator = operators.get(i);
-      // calculate relative id number to provide a clean layout with only phases labeled using the
-      // prefix feature
-      operatorNames[i] = String.format("%02d", operator.getParentPhaseId());
-      operatorText[i] =
-          String.format(
-              "%s %02d-%02d-%02d { records: %s, batches: %s, setup: %s, wait: %s, process: %s}",
-              operator.getKind(),
-              operator.getParentPhaseId(),
-              operator.getThreadId(),
-              operator.getId(),
-              operator.getRecords(),
-              operator.getBatches(),
-              Human.getHumanDurationFromMillis(operator.getSetupMillis()),
-              Human.getHumanDurationFromMillis(operator.getWaitMillis()),
-              Human.getHumanDurationFromMillis(operator.getProcessTimeMillis()));
-      operatorTimes[i] = operator.getTotalTimeMillis();
-    }
-    return traceData;
+  private TraceData getTraceDataForOperators(final ProfileIndex index) {
+    final int operators = index.operatorCount();
+    final String[] operatorNames = new String[operators];
+    final String[] operatorText = new String[operators];
+    final long[] operatorTimes = new long[operators];
+    AnalysisExecutor.forEach(
+        operators,
+        i -> {
+          // calculate relative id number to provide a clean layout with only phases labeled using
+          // the
+          // prefix feature
+          final String phaseName = index.phaseName(index.operatorPhase(i));
+          operatorNames[i] = phaseName;
+          operatorText[i] =
+              String.format(
+                  "%s %s-%s-%s { records: %s, batches: %s, setup: %s, wait: %s, process: %s}",
+                  index.operatorType(i),
+                  phaseName,
+                  ProfileIndex.twoDigits(index.threadId(index.operatorThread(i))),
+                  ProfileIndex.twoDigits(index.operatorId(i)),
+                  index.operatorRecords(i),
+                  index.operatorBatches(i),
+                  Human.getHumanDurationFromMillis(index.operatorSetupNanos(i) / 1000000),
+                  Human.getHumanDurationFromMillis(index.operatorWaitNanos(i) / 1000000),
+                  Human.getHumanDurationFromMillis(index.operatorProcessNanos(i) / 1000000));
+          operatorTimes[i] = index.operatorTotalTimeMillis(i);
+        });
+    return new TraceData(operatorNames, operatorText, operatorTimes, new long[] {}, new long[] {});
   }
 }
@@ -19,13 +19,19 @@ import com.dremio.support.diagnostics.shared.dto.profilejson.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.difflib.DiffUtils;
+import com.github.difflib.algorithm.myers.MeyersDiffWithLinearSpace;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Patch;
 import com.github.difflib.text.DiffRow;
 import com.github.difflib.text.DiffRowGenerator;
 import com.google.common.base.Splitter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 /** generates a difference report between two profiles */
@@ -83,46 +89,42 @@ public class ProfileDifferenceReport implements Differ {
     return ret;
   }
 
-  private static boolean scanOperators(final OperatorProfile operatorProfile) {
-    return operatorTypeFromId(operatorProfile.getOperatorType()).name().endsWith("_SCAN");
+  private static boolean scanOperators(final ProfileIndex index, final int operator) {
+    final CoreOperatorType type = index.operatorType(operator);
+    return type != null && type.name().endsWith("_SCAN");
   }
 
-  private static boolean noOpOperator(final OperatorProfile operatorProfile) {
+  private static boolean noOpOperator(final ProfileIndex index, final int operator) {
     return true;
   }
 
-  private static CoreOperatorType operatorTypeFromId(final int id) {
-    return CoreOperatorType.values()[id];
-  }
-
   private static Operator findSlowestOperator(
-      final ProfileJSON profile, final Predicate<OperatorProfile> filter) {
-    final List<Operator> operators = new ArrayList<>();
-    if (profile.getFragmentProfile() != null) {
-      for (final FragmentProfile fragment : profile.getFragmentProfile()) {
-        if (fragment.getMinorFragmentProfile() != null)
-          for (final MinorFragmentProfile minorFragment : fragment.getMinorFragmentProfile()) {
-            if (minorFragment.getOperatorProfile() != null) {
-              for (final OperatorProfile operator : minorFragment.getOperatorProfile()) {
-                if (filter.test(operator) && profile.getOperatorTypeMetricsMap() != null) {
-                  final Operator scanOperator =
-                      Operator.createFromOperatorProfile(
-                          operator, profile.getOperatorTypeMetricsMap().getMetricsDef());
-                  operators.add(scanOperator);
-                }
-              }
-            }
-          }
-        operators.sort(Comparator.comparing(Operator::getTotalTimeMillis).reversed());
+      final ProfileIndex index, final BiPredicate<ProfileIndex, Integer> filter) {
+    final ProfileJSON profile = index.profile();
+    if (profile == null || profile.getOperatorTypeMetricsMap() == null) {
+      return null;
+    }
+    // only the winner is turned into an Operator, ties keep the first operator in profile order
+    int slowest = -1;
+    long slowestTime = Long.MIN_VALUE;
+    for (int o = 0; o < index.operatorCount(); o++) {
+      if (!filter.test(index, o)) {
+        continue;
+      }
+      final long time = index.operatorTotalTimeMillis(o);
+      if (slowest < 0 || time > slowestTime) {
+        slowest = o;
+        slowestTime = time;
       }
     }
-    if (operators.isEmpty()) {
+    if (slowest < 0) {
       return null;
     }
-    return operators.get(0);
+    return Operator.createFromOperatorProfile(
+        index.operatorProfile(slowest), profile.getOperatorTypeMetricsMap().getMetricsDef());
   }
 
-  private String escapeForVersion24Plus(String json) {
+  private static String escapeForVersion24Plus(String json) {
     if (json == null) {
       return null;
     }
@@ -133,6 +135,172 @@ public class ProfileDifferenceReport implements Differ {
         .replace("\\\\\\\"", "\\\"");
   }
 
+  /** lists with more lines than this are diffed by line id with the linear space myers diff */
+  static final int LONG_TEXT_LINES = 1000;
+
+  /** index and parsed plan of one of the profiles being compared */
+  private record Side(ProfileIndex index, Map<String, Object> plan) {
+    static Side of(final ProfileJSON profile, final String path) {
+      final ProfileIndex index = ProfileIndex.of(profile);
+      final String planStr = escapeForVersion24Plus(profile.getJsonPlan());
+      if (planStr == null) {
+        return new Side(index, new HashMap<>());
+      }
+      try {
+        return new Side(
+            index,
+            new ObjectMapper().readValue(planStr, new TypeReference<HashMap<String, Object>>() {}));
+      } catch (final JsonProcessingException e) {
+        throw new InvalidJsonException(e, path);
+      }
+    }
+  }
+
+  private static Difference planKeyDifference(
+      final DiffRowGenerator generator, final String key, final String v1, final String v2) {
+    final Difference diff = new Difference();
+    diff.setName("planning key '" + key + "' not equal");
+    final Map<String, String> v1Map = splitTopLevelKeys(v1);
+    final Map<String, String> v2Map = splitTopLevelKeys(v2);
+    final List<String> keysOnlyInV1 = new ArrayList<>();
+    final List<String> keysOnlyInV2 = new ArrayList<>();
+    final List<String> keysThatNeedDiff = new ArrayList<>();
+    for (final Map.Entry<String, String> kvp : v1Map.entrySet()) {
+      final String k = kvp.getKey();
+      if (!v2Map.containsKey(k)) {
+        keysOnlyInV1.add(k);
+      } else if (!v2Map.get(k).equals(v1Map.get(k))) {
+        keysThatNeedDiff.add(k);
+      }
+    }
+    for (final String k : v2Map.keySet()) {
+      if (!v1Map.containsKey(k)) {
+        keysOnlyInV2.add(k);
+      }
+    }
+    Collections.sort(keysOnlyInV1);
+    Collections.sort(keysOnlyInV2);
+    Collections.sort(keysThatNeedDiff);
+    final StringBuilder advice = new StringBuilder();
+    if (!keysOnlyInV1.isEmpty()) {
+      advice.append("only in profile1:\n");
+      for (final String row : keysOnlyInV1) {
+        advice.append(row);
+        advice.append('\n');
+      }
+      advice.append("---end---\n");
+    }
+    if (!keysOnlyInV2.isEmpty()) {
+      advice.append("only in profile2:\n");
+      for (final String row : keysOnlyInV2) {
+        advice.append(row);
+        advice.append('\n');
+      }
+      advice.append("---end---\n");
+    }
+    if (!keysThatNeedDiff.isEmpty()) {
+      advice.append("keys that have diffs\nprofile1 = <<<\nprofile2 = >>>\n\n");
+      for (final String k : keysThatNeedDiff) {
+        String v1Value = v1Map.get(k);
+        String v2Value = v2Map.get(k);
+        advice.append("key: ");
+        advice.append(k);
+        advice.append("\n---start---\n");
+        List<String> v1Lines = Collections.singletonList(v1Value);
+        if (v1Value.startsWith("{") && v1Value.endsWith("}")) {
+          v1Value = v1Value.substring(1, v1Value.length() - 1);
+          v1Lines = Arrays.stream(v1Value.split(",")).collect(Collectors.toList());
+        }
+        List<String> v2Lines = Collections.singletonList(v2Value);
+        if (v2Value.startsWith("{") && v2Value.endsWith("}")) {
+          v2Value = v2Value.substring(1, v2Value.length() - 1);
+          v2Lines = Arrays.stream(v2Value.split(",")).collect(Collectors.toList());
+        }
+        // comparison
+        if (v1Lines.size() + v2Lines.size() > LONG_TEXT_LINES) {
+          appendLineIdDiff(v1Lines, v2Lines, advice);
+        } else {
+          final List<DiffRow> rows = generator.generateDiffRows(v1Lines, v2Lines);
+          for (final DiffRow row : rows) {
+            appendRow(advice, row.getOldLine(), row.getNewLine());
+          }
+        }
+        advice.append("---end---\n\n");
+      }
+    }
+
+    diff.setProfile1Value(v1);
+    diff.setProfile2Value(v2);
+    diff.setAdvice(advice.toString());
+    return diff;
+  }
+
+  private static void appendRow(
+      final StringBuilder advice, final String oldLine, final String newLine) {
+    if (oldLine.equals(newLine)) {
+      return;
+    }
+    if (!oldLine.isEmpty()) {
+      advice.append("<<<");
+      advice.append(oldLine).append('\n');
+    }
+    if (!"".equals(newLine)) {
+      advice.append(">>>");
+      advice.append(newLine).append("\n\n");
+    }
+  }
+
+  /**
+   * line diff for very long texts. Every distinct line is swapped for a small integer id so the diff
+   * compares ints instead of strings, and the linear space myers diff keeps memory proportional to
+   * the number of lines. Changed lines are written without the word level inline diff.
+   */
+  static void appendLineIdDiff(
+      final List<String> oldLines, final List<String> newLines, final StringBuilder advice) {
+    final Map<String, Integer> ids = new HashMap<>();
+    final List<Integer> oldIds = new ArrayList<>(oldLines.size());
+    for (final String line : oldLines) {
+      oldIds.add(ids.computeIfAbsent(line, x -> ids.size()));
+    }
+    final List<Integer> newIds = new ArrayList<>(newLines.size());
+    for (final String line : newLines) {
+      newIds.add(ids.computeIfAbsent(line, x -> ids.size()));
+    }
+    final Patch<Integer> patch =
+        DiffUtils.diff(oldIds, newIds, new MeyersDiffWithLinearSpace<Integer>());
+    final List<AbstractDelta<Integer>> deltas = patch.getDeltas();
+    int i = 0;
+    while (i < deltas.size()) {
+      // the linear space algorithm can split a changed line into a delete and an insert, touching
+      // deltas are merged back so the old and new lines are shown as a pair
+      final int oldStart = deltas.get(i).getSource().getPosition();
+      final int newStart = deltas.get(i).getTarget().getPosition();
+      int oldEnd = oldStart + deltas.get(i).getSource().size();
+      int newEnd = newStart + deltas.get(i).getTarget().size();
+      i++;
+      while (i < deltas.size()
+          && deltas.get(i).getSource().getPosition() == oldEnd
+          && deltas.get(i).getTarget().getPosition() == newEnd) {
+        oldEnd += deltas.get(i).getSource().size();
+        newEnd += deltas.get(i).getTarget().size();
+        i++;
+      }
+      final int oldSize = oldEnd - oldStart;
+      final int newSize = newEnd - newStart;
+      for (int r = 0; r < Math.max(oldSize, newSize); r++) {
+        final String oldLine =
+            r < oldSize
+                ? DiffRowGenerator.LINE_NORMALIZER_FOR_HTML.apply(oldLines.get(oldStart + r))
+                : "";
+        final String newLine =
+            r < newSize
+                ? DiffRowGenerator.LINE_NORMALIZER_FOR_HTML.apply(newLines.get(newStart + r))
+                : "";
+        appendRow(advice, oldLine, newLine);
+      }
+    }
+  }
+
   @Override
   public List<Difference> getDifferences(
       final String profile1Path,
@@ -141,30 +309,21 @@ public class ProfileDifferenceReport implements Differ {
       final ProfileJSON profile1,
       final ProfileJSON profile2) {
     final List<Difference> differences = new ArrayList<>();
+    // both profiles are indexed and have their plan read at the same time
+    final AnalysisExecutor.Both<Side, Side> sides;
+    try {
+      sides =
+          AnalysisExecutor.invokeBoth(
+              () -> Side.of(profile1, profile1Path), () -> Side.of(profile2, profile2Path));
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final ProfileIndex index1 = sides.first().index();
+    final ProfileIndex index2 = sides.second().index();
 
     // compare planning
-    final ObjectMapper mapper = new ObjectMapper();
-    final TypeReference<HashMap<String, Object>> typeRef = new TypeReference<>() {};
-
-    Map<String, Object> profile1Plan = new HashMap<>();
-    Map<String, Object> profile2Plan = new HashMap<>();
-    final String profile1PlanStr = escapeForVersion24Plus(profile1.getJsonPlan());
-    if (profile1PlanStr != null) {
-      try {
-        profile1Plan = mapper.readValue(profile1PlanStr, typeRef);
-      } catch (final JsonProcessingException e) {
-        throw new InvalidJsonException(e, profile1Path);
-      }
-    }
-
-    final String profile2PlanStr = escapeForVersion24Plus(profile2.getJsonPlan());
-    if (profile2PlanStr != null) {
-      try {
-        profile2Plan = mapper.readValue(profile2PlanStr, typeRef);
-      } catch (final JsonProcessingException e) {
-        throw new InvalidJsonException(e, profile1Path);
-      }
-    }
+    final Map<String, Object> profile1Plan = sides.first().plan();
+    final Map<String, Object> profile2Plan = sides.second().plan();
 
     final List<String> keys = new ArrayList<>(profile1Plan.keySet());
     // add any keys missing
@@ -205,95 +364,16 @@ public class ProfileDifferenceReport implements Differ {
             .oldTag(f -> "")
             .newTag(f -> "")
             .build();
+    final List<String> differingKeys = new ArrayList<>();
+    final List<String> differingV1 = new ArrayList<>();
+    final List<String> differingV2 = new ArrayList<>();
     for (final String key : keys) {
       final String v1 = profile1Plan.getOrDefault(key, "").toString();
       final String v2 = profile2Plan.getOrDefault(key, "").toString();
       if (!v1.equals(v2)) {
-        if (showPlanningDetail) {
-
-          final Difference diff = new Difference();
-          diff.setName("planning key '" + key + "' not equal");
-          final Map<String, String> v1Map = splitTopLevelKeys(v1);
-          final Map<String, String> v2Map = splitTopLevelKeys(v2);
-          final List<String> keysOnlyInV1 = new ArrayList<>();
-          final List<String> keysOnlyInV2 = new ArrayList<>();
-          final List<String> keysThatNeedDiff = new ArrayList<>();
-          for (final Map.Entry<String, String> kvp : v1Map.entrySet()) {
-            final String k = kvp.getKey();
-            if (!v2Map.containsKey(k)) {
-              keysOnlyInV1.add(k);
-            } else if (!v2Map.get(k).equals(v1Map.get(k))) {
-              keysThatNeedDiff.add(k);
-            }
-          }
-          for (final String k : v2Map.keySet()) {
-            if (!v1Map.containsKey(k)) {
-              keysOnlyInV2.add(k);
-            }
-          }
-          Collections.sort(keysOnlyInV1);
-          Collections.sort(keysOnlyInV2);
-          Collections.sort(keysThatNeedDiff);
-          final StringBuilder advice = new StringBuilder();
-          if (!keysOnlyInV1.isEmpty()) {
-            advice.append("only in profile1:\n");
-            for (final String row : keysOnlyInV1) {
-              advice.append(row);
-              advice.append('\n');
-            }
-            advice.append("---end---\n");
-          }
-          if (!keysOnlyInV2.isEmpty()) {
-            advice.append("only in profile2:\n");
-            for (final String row : keysOnlyInV2) {
-              advice.append(row);
-              advice.append('\n');
-            }
-            advice.append("---end---\n");
-          }
-          if (!keysThatNeedDiff.isEmpty()) {
-            advice.append("keys that have diffs\nprofile1 = <<<\nprofile2 = >>>\n\n");
-            for (final String k : keysThatNeedDiff) {
-              String v1Value = v1Map.get(k);
-              String v2Value = v2Map.get(k);
-              advice.append("key: ");
-              advice.append(k);
-              advice.append("\n---start---\n");
-              List<String> v1Lines = Collections.singletonList(v1Value);
-              if (v1Value.startsWith("{") && v1Value.endsWith("}")) {
-                v1Value = v1Value.substring(1, v1Value.length() - 1);
-                v1Lines = Arrays.stream(v1Value.split(",")).collect(Collectors.toList());
-              }
-              List<String> v2Lines = Collections.singletonList(v2Value);
-              if (v2Value.startsWith("{") && v2Value.endsWith("}")) {
-                v2Value = v2Value.substring(1, v2Value.length() - 1);
-                v2Lines = Arrays.stream(v2Value.split(",")).collect(Collectors.toList());
-              }
-              // comparison
-              final List<DiffRow> rows = generator.generateDiffRows(v1Lines, v2Lines);
-              for (final DiffRow row : rows) {
-                if (row.getOldLine().equals(row.getNewLine())) {
-                  continue;
-                }
-                if (!row.getOldLine().isEmpty()) {
-                  advice.append("<<<");
-                  advice.append(row.getOldLine()).append('\n');
-                }
-                if (!"".equals(row.getNewLine())) {
-                  advice.append(">>>");
-                  advice.append(row.getNewLine()).append("\n\n");
-                }
-              }
-              advice.append("---end---\n\n");
-            }
-          }
-
-          diff.setProfile1Value(v1);
-          diff.setProfile2Value(v2);
-          diff.setAdvice(advice.toString());
-          differences.add(diff);
-        }
-
+        differingKeys.add(key);
+        differingV1.add(v1);
+        differingV2.add(v2);
         differencesCount++;
         if (v1.isEmpty()) {
           // add to the v2 profile since v1 is empty, and they are not the same
@@ -305,6 +385,19 @@ public class ProfileDifferenceReport implements Differ {
         }
       }
     }
+    if (showPlanningDetail) {
+      // the text diffs are the slow part, each key is diffed on the pool and the results are
+      // added in key order so the report does not depend on which key finished first
+      final Difference[] details = new Difference[differingKeys.size()];
+      AnalysisExecutor.forEach(
+          details.length,
+          1,
+          i ->
+              details[i] =
+                  planKeyDifference(
+                      generator, differingKeys.get(i), differingV1.get(i), differingV2.get(i)));
+      differences.addAll(Arrays.asList(details));
+    }
     if (differencesCount > 0) {
       final Difference diff = new Difference();
       diff.setName("found " + differencesCount + "/" + keys.size() + " plan keys differ");
@@ -471,50 +564,10 @@ public class ProfileDifferenceReport implements Differ {
       diff.setAdvice("not being accelerated can hurt performance");
       differences.add(diff);
     }
-    long totalRecordsProfile1 = 0L;
-    long totalBatchesProfile1 = 0L;
-    if (profile1.getFragmentProfile() != null) {
-      for (final FragmentProfile fragment : profile1.getFragmentProfile()) {
-        if (fragment != null && fragment.getMinorFragmentProfile() != null) {
-          for (final MinorFragmentProfile minorProfile : fragment.getMinorFragmentProfile()) {
-            if (minorProfile != null && minorProfile.getOperatorProfile() != null) {
-              for (final OperatorProfile operator : minorProfile.getOperatorProfile()) {
-                if (operator != null && operator.getInputProfile() != null) {
-                  for (final InputProfile input : operator.getInputProfile()) {
-                    if (input != null) {
-                      totalRecordsProfile1 += input.getRecords();
-                      totalBatchesProfile1 += input.getBatches();
-                    }
-                  }
-                }
-              }
-            }
-          }
-        }
-      }
-    }
-    long totalBatchesProfile2 = 0;
-    long totalRecordsProfile2 = 0;
-    if (profile2.getFragmentProfile() != null) {
-      for (final FragmentProfile fragment : profile2.getFragmentProfile()) {
-        if (fragment != null && fragment.getMinorFragmentProfile() != null) {
-          for (final MinorFragmentProfile minorProfile : fragment.getMinorFragmentProfile()) {
-            if (minorProfile != null && minorProfile.getOperatorProfile() != null) {
-              for (final OperatorProfile operator : minorProfile.getOperatorProfile()) {
-                if (operator != null && operator.getInputProfile() != null) {
-                  for (final InputProfile input : operator.getInputProfile()) {
-                    if (input != null) {
-                      totalRecordsProfile2 += input.getRecords();
-                      totalBatchesProfile2 += input.getBatches();
-                    }
-                  }
-                }
-              }
-            }
-          }
-        }
-      }
-    }
+    final long totalRecordsProfile1 = index1.totalRecords();
+    final long totalBatchesProfile1 = index1.totalBatches();
+    final long totalRecordsProfile2 = index2.totalRecords();
+    final long totalBatchesProfile2 = index2.totalBatches();
     if (totalBatchesProfile1 != totalBatchesProfile2) {
       final Difference diff = new Difference();
       diff.setName("operator batch count varies");
@@ -592,9 +645,9 @@ public class ProfileDifferenceReport implements Differ {
 
     // slowest of all operators
     final Operator profile1SlowOperator =
-        findSlowestOperator(profile1, ProfileDifferenceReport::noOpOperator);
+        findSlowestOperator(index1, ProfileDifferenceReport::noOpOperator);
     final Operator profile2SlowOperator =
-        findSlowestOperator(profile2, ProfileDifferenceReport::noOpOperator);
+        findSlowestOperator(index2, ProfileDifferenceReport::noOpOperator);
     if (!Objects.equals(profile1SlowOperator, profile2SlowOperator)) {
       final Difference diff = new Difference();
       diff.setName("slowest operator");
@@ -613,9 +666,9 @@ public class ProfileDifferenceReport implements Differ {
     }
     // compare the slowest scan
     final Operator profile1SlowScanOperator =
-        findSlowestOperator(profile1, ProfileDifferenceReport::scanOperators);
+        findSlowestOperator(index1, ProfileDifferenceReport::scanOperators);
     final Operator profile2SlowScanOperator =
-        findSlowestOperator(profile2, ProfileDifferenceReport::scanOperators);
+        findSlowestOperator(index2, ProfileDifferenceReport::scanOperators);
     if (!Objects.equals(profile1SlowOperator, profile1SlowScanOperator)
         && !Objects.equals(profile2SlowOperator, profile2SlowScanOperator)) {
       if (!Objects.equals(profile1SlowScanOperator, profile2SlowScanOperator)) {
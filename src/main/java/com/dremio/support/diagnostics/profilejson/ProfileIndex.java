@@ -0,0 +1,589 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
+import com.dremio.support.diagnostics.profilejson.plan.PlanRelationshipParser;
+import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.InputProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable columnar view of the fragment, minor fragment and operator tree of a profile.
+ *
+ * <p>The tree is walked once when the index is built, after that every report reads the metrics
+ * from primitive arrays instead of walking the DTOs again. Phases, threads and operators are
+ * addressed by their position in the index (not by their ids), the threads of a phase and the
+ * operators of a thread are contiguous so a range of positions covers them. Names such as "01" for
+ * a phase or "01-03" for a phase operator are built once here and shared by all the reports, and
+ * so is the plan relation graph which is parsed the first time a report asks for it.
+ */
+public final class ProfileIndex {
+
+  private static final CoreOperatorType[] OPERATOR_TYPES = CoreOperatorType.values();
+
+  private final ProfileJSON profile;
+
+  // phases
+  private final int phaseCount;
+  private final int[] phaseMajorId;
+  private final String[] phaseName;
+  private final int[] phaseThreadStart;
+  private final long[] phaseMaxRun;
+  private final long[] phaseMaxSleeping;
+  private final long[] phaseMaxBlockedOnUpstream;
+  private final long[] phaseMaxBlockedOnDownstream;
+  private final Map<String, Integer> phaseByName;
+
+  // threads (minor fragments)
+  private final int threadCount;
+  private final int[] threadPhase;
+  private final long[] threadMinorId;
+  private final String[] threadHost;
+  private final long[] threadStart;
+  private final long[] threadEnd;
+  private final long[] threadRun;
+  private final long[] threadSleeping;
+  private final long[] threadBlocked;
+  private final long[] threadBlockedOnUpstream;
+  private final long[] threadBlockedOnDownstream;
+  private final long[] threadBlockedOnSharedResource;
+  private final int[] threadOperatorStart;
+
+  // operators
+  private final int operatorCount;
+  private final int[] operatorThread;
+  private final long[] operatorId;
+  private final int[] operatorType;
+  private final boolean[] operatorHasInputs;
+  private final long[] operatorRecords;
+  private final long[] operatorBatches;
+  private final long[] operatorSizeBytes;
+  private final long[] operatorProcessNanos;
+  private final long[] operatorSetupNanos;
+  private final long[] operatorWaitNanos;
+  private final long[] operatorPeakMemory;
+  private final String[] operatorPhaseOperatorName;
+  private final OperatorProfile[] operatorProfile;
+
+  private final long totalRecords;
+  private final long totalBatches;
+
+  // parsed on first use, guarded by this
+  private List<PlanRelation> planRelations;
+
+  /**
+   * walks the profile once and builds the index
+   *
+   * @param profile parsed profile, may be null in which case the index is empty
+   * @return the index
+   */
+  public static ProfileIndex of(final ProfileJSON profile) {
+    return new ProfileIndex(profile);
+  }
+
+  private ProfileIndex(final ProfileJSON profile) {
+    this.profile = profile;
+    final List<FragmentProfile> fragments =
+        profile == null || profile.getFragmentProfile() == null
+            ? List.of()
+            : profile.getFragmentProfile();
+    // size everything up front so the columns are allocated exactly once
+    int phases = 0;
+    int threads = 0;
+    int operators = 0;
+    for (final FragmentProfile fragment : fragments) {
+      if (fragment == null) {
+        continue;
+      }
+      phases++;
+      if (fragment.getMinorFragmentProfile() == null) {
+        continue;
+      }
+      for (final MinorFragmentProfile minor : fragment.getMinorFragmentProfile()) {
+        if (minor == null) {
+          continue;
+        }
+        threads++;
+        if (minor.getOperatorProfile() == null) {
+          continue;
+        }
+        for (final OperatorProfile operator : minor.getOperatorProfile()) {
+          if (operator != null) {
+            operators++;
+          }
+        }
+      }
+    }
+    this.phaseCount = phases;
+    this.phaseMajorId = new int[phases];
+    this.phaseName = new String[phases];
+    this.phaseThreadStart = new int[phases + 1];
+    this.phaseMaxRun = new long[phases];
+    this.phaseMaxSleeping = new long[phases];
+    this.phaseMaxBlockedOnUpstream = new long[phases];
+    this.phaseMaxBlockedOnDownstream = new long[phases];
+    this.phaseByName = new HashMap<>();
+    this.threadCount = threads;
+    this.threadPhase = new int[threads];
+    this.threadMinorId = new long[threads];
+    this.threadHost = new String[threads];
+    this.threadStart = new long[threads];
+    this.threadEnd = new long[threads];
+    this.threadRun = new long[threads];
+    this.threadSleeping = new long[threads];
+    this.threadBlocked = new long[threads];
+    this.threadBlockedOnUpstream = new long[threads];
+    this.threadBlockedOnDownstream = new long[threads];
+    this.threadBlockedOnSharedResource = new long[threads];
+    this.threadOperatorStart = new int[threads + 1];
+    this.operatorCount = operators;
+    this.operatorThread = new int[operators];
+    this.operatorId = new long[operators];
+    this.operatorType = new int[operators];
+    this.operatorHasInputs = new boolean[operators];
+    this.operatorRecords = new long[operators];
+    this.operatorBatches = new long[operators];
+    this.operatorSizeBytes = new long[operators];
+    this.operatorProcessNanos = new long[operators];
+    this.operatorSetupNanos = new long[operators];
+    this.operatorWaitNanos = new long[operators];
+    this.operatorPeakMemory = new long[operators];
+    this.operatorPhaseOperatorName = new String[operators];
+    this.operatorProfile = new OperatorProfile[operators];
+
+    long records = 0;
+    long batches = 0;
+    int p = 0;
+    int t = 0;
+    int o = 0;
+    for (final FragmentProfile fragment : fragments) {
+      if (fragment == null) {
+        continue;
+      }
+      final int majorId = fragment.getMajorFragmentId();
+      phaseMajorId[p] = majorId;
+      final String name = twoDigits(majorId);
+      phaseName[p] = name;
+      phaseByName.putIfAbsent(name, p);
+      phaseThreadStart[p] = t;
+      // every thread of a phase runs the same operators, so the names are only built once
+      final Map<Long, String> phaseOperatorNames = new HashMap<>();
+      if (fragment.getMinorFragmentProfile() != null) {
+        for (final MinorFragmentProfile minor : fragment.getMinorFragmentProfile()) {
+          if (minor == null) {
+            continue;
+          }
+          threadPhase[t] = p;
+          threadMinorId[t] = minor.getMinorFragmentId();
+          if (minor.getEndpoint() != null) {
+            threadHost[t] = minor.getEndpoint().getAddress();
+          }
+          threadStart[t] = minor.getStartTime();
+          threadEnd[t] = minor.getEndTime();
+          threadRun[t] = minor.getRunDuration();
+          threadSleeping[t] = minor.getSleepingDuration();
+          threadBlocked[t] = minor.getBlockedDuration();
+          threadBlockedOnUpstream[t] = minor.getBlockedOnUpstreamDuration();
+          threadBlockedOnDownstream[t] = minor.getBlockedOnDownstreamDuration();
+          threadBlockedOnSharedResource[t] = minor.getBlockedOnSharedResourceDuration();
+          phaseMaxRun[p] = Math.max(phaseMaxRun[p], threadRun[t]);
+          phaseMaxSleeping[p] = Math.max(phaseMaxSleeping[p], threadSleeping[t]);
+          phaseMaxBlockedOnUpstream[p] =
+              Math.max(phaseMaxBlockedOnUpstream[p], threadBlockedOnUpstream[t]);
+          phaseMaxBlockedOnDownstream[p] =
+              Math.max(phaseMaxBlockedOnDownstream[p], threadBlockedOnDownstream[t]);
+          threadOperatorStart[t] = o;
+          if (minor.getOperatorProfile() != null) {
+            for (final OperatorProfile operator : minor.getOperatorProfile()) {
+              if (operator == null) {
+                continue;
+              }
+              operatorThread[o] = t;
+              final long id = operator.getOperatorId();
+              operatorId[o] = id;
+              operatorType[o] = operator.getOperatorType();
+              operatorProcessNanos[o] = operator.getProcessNanos();
+              operatorSetupNanos[o] = operator.getSetupNanos();
+              operatorWaitNanos[o] = operator.getWaitNanos();
+              operatorPeakMemory[o] = operator.getPeakLocalMemoryAllocated();
+              operatorPhaseOperatorName[o] =
+                  phaseOperatorNames.computeIfAbsent(id, k -> name + "-" + twoDigits(k));
+              operatorProfile[o] = operator;
+              final List<InputProfile> inputs = operator.getInputProfile();
+              if (inputs != null) {
+                operatorHasInputs[o] = true;
+                for (final InputProfile input : inputs) {
+                  if (input == null) {
+                    continue;
+                  }
+                  operatorRecords[o] += input.getRecords();
+                  operatorBatches[o] += input.getBatches();
+                  operatorSizeBytes[o] += input.getSize();
+                }
+                records += operatorRecords[o];
+                batches += operatorBatches[o];
+              }
+              o++;
+            }
+          }
+          t++;
+        }
+      }
+      p++;
+    }
+    phaseThreadStart[phases] = t;
+    threadOperatorStart[threads] = o;
+    this.totalRecords = records;
+    this.totalBatches = batches;
+  }
+
+  /**
+   * zero pads ids the same way Dremio displays them, 3 becomes "03" and 123 stays "123"
+   *
+   * @param id phase, thread or operator id
+   * @return the padded id
+   */
+  public static String twoDigits(final long id) {
+    if (id >= 0 && id < 10) {
+      return "0" + id;
+    }
+    return String.valueOf(id);
+  }
+
+  /**
+   * @return the profile the index was built from, null when the index was built from a null
+   *     profile
+   */
+  public ProfileJSON profile() {
+    return profile;
+  }
+
+  /**
+   * parses the plan of the profile the first time it is called, later calls return the same
+   * relations so every report of a profile shares one graph
+   *
+   * @return the plan relations of the profile, empty when there is no profile or no plan
+   */
+  public synchronized List<PlanRelation> planRelations() {
+    if (planRelations == null) {
+      planRelations =
+          profile == null
+              ? List.of()
+              : Collections.unmodifiableList(
+                  new PlanRelationshipParser().getPlanRelations(profile));
+    }
+    return planRelations;
+  }
+
+  /**
+   * @return number of phases (fragments) in the profile
+   */
+  public int phaseCount() {
+    return phaseCount;
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return major fragment id of the phase
+   */
+  public int phaseId(final int phase) {
+    return phaseMajorId[phase];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return two digit name of the phase, "01" for major fragment 1
+   */
+  public String phaseName(final int phase) {
+    return phaseName[phase];
+  }
+
+  /**
+   * @param name two digit name of the phase, "01" for major fragment 1
+   * @return position of the phase in the index or -1 when there is no such phase
+   */
+  public int phaseIndex(final String name) {
+    return phaseByName.getOrDefault(name, -1);
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return position of the first thread of the phase
+   */
+  public int phaseThreadStart(final int phase) {
+    return phaseThreadStart[phase];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return position after the last thread of the phase
+   */
+  public int phaseThreadEnd(final int phase) {
+    return phaseThreadStart[phase + 1];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return longest run duration of any thread in the phase in millis
+   */
+  public long phaseMaxRunDuration(final int phase) {
+    return phaseMaxRun[phase];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return longest sleeping duration of any thread in the phase in millis
+   */
+  public long phaseMaxSleepingDuration(final int phase) {
+    return phaseMaxSleeping[phase];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return longest time any thread in the phase was blocked on upstream in millis
+   */
+  public long phaseMaxBlockedOnUpstreamDuration(final int phase) {
+    return phaseMaxBlockedOnUpstream[phase];
+  }
+
+  /**
+   * @param phase position of the phase in the index
+   * @return longest time any thread in the phase was blocked on downstream in millis
+   */
+  public long phaseMaxBlockedOnDownstreamDuration(final int phase) {
+    return phaseMaxBlockedOnDownstream[phase];
+  }
+
+  /**
+   * @return number of threads (minor fragments) across all phases
+   */
+  public int threadCount() {
+    return threadCount;
+  }
+
+  /**
+   * @param thread position of the thread in the index
+   * @return position of the phase the thread belongs to
+   */
+  public int threadPhase(final int thread) {
+    return threadPhase[thread];
+  }
+
+  /**
+   * @param thread position of the thread in the index
+   * @return minor fragment id of the thread
+   */
+  public long threadId(final int thread) {
+    return threadMinorId[thread];
+  }
+
+  /**
+   * @param thread position of the thread in the index
+   * @return address of the node the thread ran on, null when the profile has no endpoint
+   */
+  public String threadHost(final int thread) {
+    return threadHost[thread];
+  }
+
+  public long threadStartTime(final int thread) {
+    return threadStart[thread];
+  }
+
+  public long threadEndTime(final int thread) {
+    return threadEnd[thread];
+  }
+
+  public long threadRunDuration(final int thread) {
+    return threadRun[thread];
+  }
+
+  public long threadSleepingDuration(final int thread) {
+    return threadSleeping[thread];
+  }
+
+  public long threadBlockedDuration(final int thread) {
+    return threadBlocked[thread];
+  }
+
+  public long threadBlockedOnUpstreamDuration(final int thread) {
+    return threadBlockedOnUpstream[thread];
+  }
+
+  public long threadBlockedOnDownstreamDuration(final int thread) {
+    return threadBlockedOnDownstream[thread];
+  }
+
+  public long threadBlockedOnSharedResourceDuration(final int thread) {
+    return threadBlockedOnSharedResource[thread];
+  }
+
+  /**
+   * @param thread position of the thread in the index
+   * @return position of the first operator of the thread
+   */
+  public int threadOperatorStart(final int thread) {
+    return threadOperatorStart[thread];
+  }
+
+  /**
+   * @param thread position of the thread in the index
+   * @return position after the last operator of the thread
+   */
+  public int threadOperatorEnd(final int thread) {
+    return threadOperatorStart[thread + 1];
+  }
+
+  /**
+   * @return number of operators across all threads
+   */
+  public int operatorCount() {
+    return operatorCount;
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return position of the thread the operator ran in
+   */
+  public int operatorThread(final int operator) {
+    return operatorThread[operator];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return position of the phase the operator ran in
+   */
+  public int operatorPhase(final int operator) {
+    return threadPhase[operatorThread[operator]];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return operator id inside the phase
+   */
+  public long operatorId(final int operator) {
+    return operatorId[operator];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return raw operator type id as found in the profile
+   */
+  public int operatorTypeId(final int operator) {
+    return operatorType[operator];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return operator type or null when the id is not one this version knows about
+   */
+  public CoreOperatorType operatorType(final int operator) {
+    final int type = operatorType[operator];
+    if (type < 0 || type >= OPERATOR_TYPES.length) {
+      return null;
+    }
+    return OPERATOR_TYPES[type];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return the phase operator name used by the plan, "01-03" for operator 3 of phase 1
+   */
+  public String phaseOperatorName(final int operator) {
+    return operatorPhaseOperatorName[operator];
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return true when the operator has an input profile list, even an empty one
+   */
+  public boolean operatorHasInputs(final int operator) {
+    return operatorHasInputs[operator];
+  }
+
+  public long operatorRecords(final int operator) {
+    return operatorRecords[operator];
+  }
+
+  public long operatorBatches(final int operator) {
+    return operatorBatches[operator];
+  }
+
+  public long operatorSizeBytes(final int operator) {
+    return operatorSizeBytes[operator];
+  }
+
+  public long operatorProcessNanos(final int operator) {
+    return operatorProcessNanos[operator];
+  }
+
+  public long operatorSetupNanos(final int operator) {
+    return operatorSetupNanos[operator];
+  }
+
+  public long operatorWaitNanos(final int operator) {
+    return operatorWaitNanos[operator];
+  }
+
+  public long operatorPeakMemory(final int operator) {
+    return operatorPeakMemory[operator];
+  }
+
+  /**
+   * total time in millis the same way {@link Operator#getTotalTimeMillis()} computes it, each part
+   * is truncated to millis before they are added
+   *
+   * @param operator position of the operator in the index
+   * @return process, wait and setup time in millis
+   */
+  public long operatorTotalTimeMillis(final int operator) {
+    return operatorProcessNanos[operator] / 1000000
+        + operatorWaitNanos[operator] / 1000000
+        + operatorSetupNanos[operator] / 1000000;
+  }
+
+  /**
+   * @param operator position of the operator in the index
+   * @return the operator profile for the rare cases that need the full metrics
+   */
+  public OperatorProfile operatorProfile(final int operator) {
+    return operatorProfile[operator];
+  }
+
+  /**
+   * @return records of all operator inputs across the profile
+   */
+  public long totalRecords() {
+    return totalRecords;
+  }
+
+  /**
+   * @return batches of all operator inputs across the profile
+   */
+  public long totalBatches() {
+    return totalBatches;
+  }
+
+  @Override
+  public String toString() {
+    return "ProfileIndex{phases=%d, threads=%d, operators=%d}"
+        .formatted(phaseCount, threadCount, operatorCount);
+  }
+}
@@ -15,15 +15,71 @@ package com.dremio.support.diagnostics.profilejson;
 
 import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.PerResourceBlockedDuration;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** ProfileJSONParser reads a json file and converts it to a json object */
+/**
+ * ProfileJSONParser reads a json file and converts it to a json object, only the {@link
+ * ProfileSection}s asked for are bound, the rest is skipped at the token level
+ */
 public class ProfileJSONParser implements Parser {
 
+  /** readers are expensive to build and thread safe so there is one per set of sections */
+  private static final Map<Set<ProfileSection>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+  private final ObjectReader reader;
+
+  /** parser for the whole profile */
+  public ProfileJSONParser() {
+    this(ProfileSection.ALL);
+  }
+
+  /**
+   * @param sections sections of the profile the caller will read, everything else is left null
+   */
+  public ProfileJSONParser(final Set<ProfileSection> sections) {
+    final Set<ProfileSection> key =
+        sections.isEmpty()
+            ? Collections.emptySet()
+            : Collections.unmodifiableSet(EnumSet.copyOf(sections));
+    this.reader = readers.computeIfAbsent(key, ProfileJSONParser::createReader);
+  }
+
+  private static ObjectReader createReader(final Set<ProfileSection> sections) {
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final List<String> skipped = new ArrayList<>();
+    for (final ProfileSection section : ProfileSection.values()) {
+      if (!sections.contains(section)) {
+        skipped.addAll(section.profileFields());
+      }
+    }
+    // ignored properties are passed over with skipChildren, so their strings are never decoded and
+    // their objects never allocated
+    objectMapper
+        .configOverride(ProfileJSON.class)
+        .setIgnorals(
+            JsonIgnoreProperties.Value.forIgnoredProperties(skipped.toArray(String[]::new)));
+    if (!sections.contains(ProfileSection.OPERATOR_METRICS)) {
+      objectMapper
+          .configOverride(OperatorProfile.class)
+          .setIgnorals(JsonIgnoreProperties.Value.forIgnoredProperties("metric"));
+    }
+    return objectMapper.readerFor(ProfileJSON.class);
+  }
+
   /**
    * this delegates to the jackson file parser so it should be as memory efficient as possible
    *
@@ -32,14 +88,13 @@ public class ProfileJSONParser implements Parser {
    */
   @Override
   public ProfileJSON parseFile(final InputStream file) throws IOException {
-    final ObjectMapper objectMapper = new ObjectMapper();
-    ProfileJSON profileJson = objectMapper.readValue(file, ProfileJSON.class);
+    ProfileJSON profileJson = reader.readValue(file);
     if (profileJson.getFragmentProfile() != null) {
       // correct time in minor profile before we can rely on it.. this is stealing
       // code from
       // https://github.com/dremio/dremio-oss/blame/master/dac/backend/src/main/java/com/dremio/dac/server/admin/profile/FragmentWrapper.java
       for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-        if (fragmentProfile == null) {
+        if (fragmentProfile == null || fragmentProfile.getMinorFragmentProfile() == null) {
           continue;
         }
         for (final MinorFragmentProfile minor : fragmentProfile.getMinorFragmentProfile()) {
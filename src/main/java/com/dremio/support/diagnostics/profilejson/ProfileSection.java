@@ -0,0 +1,57 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The heavy parts of a profile.json that a consumer can ask {@link ProfileJSONParser} for.
+ *
+ * <p>The small top level values (query text, user, state, start, end, version and so on) are always
+ * read. Every section that is not requested is skipped by the parser without being bound, its
+ * fields are left null on the {@link
+ * com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON}.
+ */
+public enum ProfileSection {
+  /** plan, jsonPlan, serializedPlan, planPhases and accelerationProfile */
+  PLAN(List.of("plan", "jsonPlan", "serializedPlan", "planPhases", "accelerationProfile")),
+  /** fragmentProfile and nodeProfile */
+  FRAGMENTS(List.of("fragmentProfile", "nodeProfile")),
+  /** operatorTypeMetricsMap and the metric array of every operator */
+  OPERATOR_METRICS(List.of("operatorTypeMetricsMap")),
+  /** datasetProfile */
+  DATASETS(List.of("datasetProfile")),
+  /** nonDefaultOptionsJSON */
+  OPTIONS(List.of("nonDefaultOptionsJSON"));
+
+  /** every section, what the reports that show the whole profile need */
+  public static final Set<ProfileSection> ALL =
+      Collections.unmodifiableSet(EnumSet.allOf(ProfileSection.class));
+
+  private final List<String> profileFields;
+
+  ProfileSection(final List<String> profileFields) {
+    this.profileFields = profileFields;
+  }
+
+  /**
+   * @return top level fields of the profile that belong to this section
+   */
+  public List<String> profileFields() {
+    return profileFields;
+  }
+}
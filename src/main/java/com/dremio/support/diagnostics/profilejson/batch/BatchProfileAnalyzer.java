@@ -0,0 +1,221 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.batch;
+
+import com.dremio.support.diagnostics.profilejson.AnalysisExecutor;
+import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
+import com.dremio.support.diagnostics.profilejson.ProfileSection;
+import com.dremio.support.diagnostics.repro.ArgSetup;
+import com.dremio.support.diagnostics.shared.PathAndStream;
+import com.dremio.support.diagnostics.shared.ZipProfileProvider;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.dremio.support.diagnostics.shared.zip.UnzipperImpl;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+
+/**
+ * Analyzes every profile found in a directory or an archive, such as a cluster diagnostics bundle.
+ *
+ * <p>Files and archive entries are read on the calling thread and handed to the shared {@link
+ * AnalysisExecutor} pool, where each profile is parsed, digested and merged into a {@link
+ * BatchProfileReport}. Only a bounded number of profiles are in flight at once and each parsed
+ * profile is dropped as soon as its digest has been merged, so memory does not grow with the size
+ * of the batch.
+ */
+public class BatchProfileAnalyzer {
+  private static final Logger LOGGER = Logger.getLogger(BatchProfileAnalyzer.class.getName());
+
+  /** sections the digest reads, operator metrics, datasets and options are skipped */
+  public static final Set<ProfileSection> PROFILE_SECTIONS =
+      Set.of(ProfileSection.PLAN, ProfileSection.FRAGMENTS);
+
+  private final int inFlight;
+
+  /** analyzer keeping two profiles per core in flight */
+  public BatchProfileAnalyzer() {
+    this(AnalysisExecutor.pool().getParallelism() * 2);
+  }
+
+  /**
+   * @param inFlight maximum number of profiles read but not yet digested, values below 1 are
+   *     treated as 1
+   */
+  public BatchProfileAnalyzer(final int inFlight) {
+    this.inFlight = Math.max(1, inFlight);
+  }
+
+  /**
+   * @param name file or archive entry name, directories are ignored
+   * @return true if the name looks like a profile json or a profile zip
+   */
+  public static boolean isProfile(final String name) {
+    final String fileName = Path.of(name).getFileName().toString();
+    return (fileName.startsWith("profile") && fileName.endsWith(".json"))
+        || fileName.endsWith(".zip");
+  }
+
+  /**
+   * analyzes every profile under a directory, or inside a zip, tar, tgz or tar.gz archive
+   *
+   * @param input directory or archive
+   * @param report report the digests are merged into
+   * @throws IOException when the directory or archive cannot be read
+   * @throws InterruptedException if the thread is interrupted while waiting on the pool
+   */
+  public void analyze(final Path input, final BatchProfileReport report)
+      throws IOException, InterruptedException {
+    final Semaphore permits = new Semaphore(inFlight);
+    final List<Future<?>> futures = new ArrayList<>();
+    try {
+      if (Files.isDirectory(input)) {
+        readDirectory(input, report, permits, futures);
+      } else {
+        readArchive(input, report, permits, futures);
+      }
+    } finally {
+      for (final Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // every task records its own failure, this is only reached on an unexpected error
+          LOGGER.log(Level.SEVERE, "unexpected error in batch analysis", e);
+        }
+      }
+    }
+  }
+
+  private void readDirectory(
+      final Path dir,
+      final BatchProfileReport report,
+      final Semaphore permits,
+      final List<Future<?>> futures)
+      throws IOException, InterruptedException {
+    final List<Path> files;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      files =
+          walk.filter(Files::isRegularFile)
+              .filter(x -> isProfile(x.getFileName().toString()))
+              .sorted()
+              .toList();
+    }
+    for (final Path file : files) {
+      permits.acquire();
+      // files are opened by the worker so the channel is available for random access to zips
+      futures.add(
+          AnalysisExecutor.pool()
+              .submit(
+                  () -> {
+                    try (FileInputStream fs = new FileInputStream(file.toFile())) {
+                      final ProfileJSON profile =
+                          ArgSetup.getProfileProvider(new PathAndStream(file, fs), PROFILE_SECTIONS)
+                              .getProfile();
+                      report.add(ProfileDigest.of(dir.relativize(file).toString(), profile));
+                    } catch (Exception e) {
+                      fail(report, file.toString(), e);
+                    } finally {
+                      permits.release();
+                    }
+                  }));
+    }
+  }
+
+  private void readArchive(
+      final Path archive,
+      final BatchProfileReport report,
+      final Semaphore permits,
+      final List<Future<?>> futures)
+      throws IOException, InterruptedException {
+    try (InputStream fs = Files.newInputStream(archive);
+        ArchiveInputStream<?> entries = open(archive.getFileName().toString(), fs)) {
+      ArchiveEntry entry;
+      while (null != (entry = entries.getNextEntry())) {
+        if (entry.isDirectory() || !isProfile(entry.getName())) {
+          continue;
+        }
+        final String name = entry.getName();
+        permits.acquire();
+        final byte[] bytes;
+        try {
+          bytes = entries.readAllBytes();
+        } catch (IOException e) {
+          permits.release();
+          throw e;
+        }
+        futures.add(
+            AnalysisExecutor.pool()
+                .submit(
+                    () -> {
+                      try {
+                        report.add(ProfileDigest.of(name, parse(name, bytes)));
+                      } catch (Exception e) {
+                        fail(report, name, e);
+                      } finally {
+                        permits.release();
+                      }
+                    }));
+      }
+    }
+  }
+
+  private static ArchiveInputStream<?> open(final String fileName, final InputStream is)
+      throws IOException {
+    if (fileName.endsWith(".zip")) {
+      return new ZipArchiveInputStream(is);
+    } else if (fileName.endsWith(".tgz") || fileName.endsWith(".tar.gz")) {
+      return new TarArchiveInputStream(new GZIPInputStream(is));
+    } else if (fileName.endsWith(".tar")) {
+      return new TarArchiveInputStream(is);
+    }
+    throw new IllegalArgumentException(
+        "unknown extension for file "
+            + fileName
+            + " only directories and .zip, .tar, .tgz and .tar.gz archives are supported");
+  }
+
+  private static ProfileJSON parse(final String name, final byte[] bytes) throws IOException {
+    final ProfileJSONParser parser = new ProfileJSONParser(PROFILE_SECTIONS);
+    if (name.endsWith(".zip")) {
+      return new ZipProfileProvider(
+              parser,
+              new UnzipperImpl(),
+              new PathAndStream(Path.of(name), new ByteArrayInputStream(bytes)))
+          .getProfile();
+    }
+    return parser.parseFile(new ByteArrayInputStream(bytes));
+  }
+
+  private static void fail(
+      final BatchProfileReport report, final String source, final Exception e) {
+    LOGGER.log(Level.WARNING, "unable to analyze profile %s".formatted(source), e);
+    report.fail(source, e.getMessage());
+  }
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.batch;
+
+import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
+
+import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.OperatorRecordDetail;
+import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
+import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
+import com.dremio.support.diagnostics.shared.Human;
+import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
+import com.dremio.support.diagnostics.shared.ReportOutput;
+import com.dremio.support.diagnostics.shared.TopK;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cross profile rankings of a batch run.
+ *
+ * <p>Every ranking is a bounded {@link TopK} so the report holds at most a few entries per ranking
+ * no matter how many profiles are added. Digests can be added from several threads at once.
+ */
+public class BatchProfileReport {
+
+  /** default number of entries kept per ranking */
+  public static final int DEFAULT_TOP = 20;
+
+  /** how many failures are listed in the report, the rest are only counted */
+  private static final int MAX_LISTED_FAILURES = 100;
+
+  /**
+   * an item found in one of the profiles
+   *
+   * @param source file or archive entry of the profile
+   * @param item the ranked item
+   * @param <T> type of the item
+   */
+  public record Ranked<T>(String source, T item) {}
+
+  /**
+   * @param source file or archive entry of the profile
+   * @param message why it could not be analyzed
+   */
+  public record Failure(String source, String message) {}
+
+  private final TopK<ProfileDigest> slowest;
+  private final TopK<ProfileDigest> mostFindings;
+  private final TopK<Ranked<ProfileDigest.BlockedPhase>> mostBlocked;
+  private final TopK<Ranked<OperatorRecordDetail>> mostRecords;
+  private final TopK<Ranked<OperatorRecordDetail>> mostPeakMemory;
+  private final List<Failure> failures = new ArrayList<>();
+  private long analyzed;
+  private long failed;
+
+  /** report keeping the top {@link #DEFAULT_TOP} of each ranking */
+  public BatchProfileReport() {
+    this(DEFAULT_TOP);
+  }
+
+  /**
+   * @param top number of entries kept per ranking
+   */
+  public BatchProfileReport(final int top) {
+    this.slowest = new TopK<>(top, Comparator.comparingLong(ProfileDigest::durationMillis));
+    this.mostFindings = new TopK<>(top, Comparator.comparingInt(x -> x.findings().size()));
+    this.mostBlocked = new TopK<>(top, Comparator.comparingLong(x -> x.item().totalMillis()));
+    this.mostRecords = new TopK<>(top, Comparator.comparingLong(x -> x.item().getRecords()));
+    this.mostPeakMemory =
+        new TopK<>(top, Comparator.comparingLong(x -> x.item().getPeakLocalMemoryAllocated()));
+  }
+
+  /**
+   * merges a digest into the rankings, the digest is only kept if it ranks
+   *
+   * @param digest digest of one profile
+   */
+  public synchronized void add(final ProfileDigest digest) {
+    analyzed++;
+    slowest.offer(digest);
+    if (!digest.findings().isEmpty()) {
+      mostFindings.offer(digest);
+    }
+    if (digest.mostBlockedPhase() != null && digest.mostBlockedPhase().totalMillis() > 0) {
+      mostBlocked.offer(new Ranked<>(digest.source(), digest.mostBlockedPhase()));
+    }
+    for (final OperatorRecordDetail detail : digest.mostRecords()) {
+      if (detail.getRecords() > 0) {
+        mostRecords.offer(new Ranked<>(digest.source(), detail));
+      }
+    }
+    for (final OperatorRecordDetail detail : digest.mostPeakMemory()) {
+      mostPeakMemory.offer(new Ranked<>(digest.source(), detail));
+    }
+  }
+
+  /**
+   * records a profile that could not be read or analyzed
+   *
+   * @param source file or archive entry of the profile
+   * @param message why it failed
+   */
+  public synchronized void fail(final String source, final String message) {
+    failed++;
+    if (failures.size() < MAX_LISTED_FAILURES) {
+      failures.add(new Failure(source, message));
+    }
+  }
+
+  /**
+   * @return number of profiles analyzed
+   */
+  public synchronized long getAnalyzed() {
+    return analyzed;
+  }
+
+  /**
+   * @return number of profiles that failed
+   */
+  public synchronized long getFailed() {
+    return failed;
+  }
+
+  /**
+   * @return slowest profiles, slowest first
+   */
+  public synchronized List<ProfileDigest> getSlowest() {
+    return slowest.toSortedList();
+  }
+
+  /**
+   * @return profiles with the most findings, most first
+   */
+  public synchronized List<ProfileDigest> getMostFindings() {
+    return mostFindings.toSortedList();
+  }
+
+  /**
+   * @return most blocked phases across all profiles, most blocked first
+   */
+  public synchronized List<Ranked<ProfileDigest.BlockedPhase>> getMostBlocked() {
+    return mostBlocked.toSortedList();
+  }
+
+  /**
+   * @return operators with the most records across all profiles, most first
+   */
+  public synchronized List<Ranked<OperatorRecordDetail>> getMostRecords() {
+    return mostRecords.toSortedList();
+  }
+
+  /**
+   * @return operators with the highest peak memory across all profiles, highest first
+   */
+  public synchronized List<Ranked<OperatorRecordDetail>> getMostPeakMemory() {
+    return mostPeakMemory.toSortedList();
+  }
+
+  /**
+   * @return the first failures, at most 100 are kept
+   */
+  public synchronized List<Failure> getFailures() {
+    return List.copyOf(failures);
+  }
+
+  /**
+   * writes the rankings as a html page
+   *
+   * @param stream stream to write to, it is flushed but not closed
+   * @throws IOException when the stream cannot be written to
+   */
+  public void writeTo(final OutputStream stream) throws IOException {
+    final HtmlTableBuilder builder = new HtmlTableBuilder();
+    final JsLibraryTextProvider provider = new JsLibraryTextProvider();
+    final ReportOutput out = new ReportOutput(stream);
+    out.template(
+        """
+        <!DOCTYPE html>
+        <html lang="en">
+          <head>
+            <meta charset="UTF-8">
+            <meta name="viewport" content="width=device-width, initial-scale=1.0">
+            <title>Profile Batch Summary</title>
+            <script>%s</script>
+            <script>%s</script>
+            <style>%s</style>
+            <style>%s</style>
+            <script>%s</script>
+          </head>
+          <body>
+            <main>
+              <h1>Profile Batch Summary</h1>
+              <p>%s profiles analyzed, %s failed</p>
+              %s
+              %s
+              %s
+              %s
+              %s
+              %s
+            </main>
+          </body>
+        </html>
+        """,
+        provider.getCSVExportText(),
+        provider.getSortableText(),
+        provider.getSortableCSSText(),
+        provider.getTableCSS(),
+        provider.getFilterTableText(),
+        getAnalyzed(),
+        getFailed(),
+        (ReportOutput.Section) o -> o.write(blockedTable(builder)),
+        (ReportOutput.Section)
+            o ->
+                o.write(
+                    operatorTable(
+                        builder, "mostRecords", "Operators With Most Records", getMostRecords())),
+        (ReportOutput.Section)
+            o ->
+                o.write(
+                    operatorTable(
+                        builder,
+                        "mostPeakMemory",
+                        "Operators With Most Peak Memory",
+                        getMostPeakMemory())),
+        (ReportOutput.Section) o -> o.write(slowestTable(builder)),
+        (ReportOutput.Section) o -> o.write(findingsTable(builder)),
+        (ReportOutput.Section) o -> o.write(failuresTable(builder)));
+    out.flush();
+  }
+
+  private String blockedTable(final HtmlTableBuilder builder) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (final Ranked<ProfileDigest.BlockedPhase> ranked : getMostBlocked()) {
+      final ProfileDigest.BlockedPhase phase = ranked.item();
+      rows.add(
+          Arrays.asList(
+              col(ranked.source()),
+              col(phase.phase()),
+              col(Human.getHumanDurationFromMillis(phase.totalMillis()), phase.totalMillis()),
+              col(Human.getHumanDurationFromMillis(phase.upstreamMillis()), phase.upstreamMillis()),
+              col(
+                  Human.getHumanDurationFromMillis(phase.downstreamMillis()),
+                  phase.downstreamMillis()),
+              col(Human.getHumanDurationFromMillis(phase.sharedMillis()), phase.sharedMillis())));
+    }
+    return builder.generateTable(
+        "mostBlockedPhases",
+        "Most Blocked Phases",
+        Arrays.asList("profile", "phase", "blocked", "upstream", "downstream", "shared"),
+        rows);
+  }
+
+  private static String operatorTable(
+      final HtmlTableBuilder builder,
+      final String id,
+      final String caption,
+      final List<Ranked<OperatorRecordDetail>> operators) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (final Ranked<OperatorRecordDetail> ranked : operators) {
+      final OperatorRecordDetail detail = ranked.item();
+      rows.add(
+          Arrays.asList(
+              col(ranked.source()),
+              col(detail.getName()),
+              col(
+                  Human.getHumanDurationFromNanos(detail.getRunTimeNanos()),
+                  detail.getRunTimeNanos()),
+              col(String.format("%,d", detail.getRecords()), detail.getRecords()),
+              col(
+                  Human.getHumanBytes1024(detail.getPeakLocalMemoryAllocated()),
+                  detail.getPeakLocalMemoryAllocated())));
+    }
+    return builder.generateTable(
+        id,
+        caption,
+        Arrays.asList("profile", "operator", "process time", "records", "peak memory"),
+        rows);
+  }
+
+  private String slowestTable(final HtmlTableBuilder builder) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (final ProfileDigest digest : getSlowest()) {
+      rows.add(
+          Arrays.asList(
+              col(digest.source()),
+              col(String.valueOf(digest.user())),
+              col(
+                  Human.getHumanDurationFromMillis(digest.durationMillis()),
+                  digest.durationMillis()),
+              col(String.valueOf(digest.findings().size()), digest.findings().size())));
+    }
+    return builder.generateTable(
+        "slowestProfiles",
+        "Slowest Profiles",
+        Arrays.asList("profile", "user", "duration", "findings"),
+        rows);
+  }
+
+  private String findingsTable(final HtmlTableBuilder builder) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (final ProfileDigest digest : getMostFindings()) {
+      rows.add(
+          Arrays.asList(
+              col(digest.source()),
+              col(String.valueOf(digest.findings().size()), digest.findings().size()),
+              col(String.join("<br>", digest.findings()), true)));
+    }
+    return builder.generateTable(
+        "mostFindings",
+        "Profiles With Most Findings",
+        Arrays.asList("profile", "count", "findings"),
+        rows);
+  }
+
+  private String failuresTable(final HtmlTableBuilder builder) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (final Failure failure : getFailures()) {
+      rows.add(Arrays.asList(col(failure.source()), col(String.valueOf(failure.message()))));
+    }
+    return builder.generateTable(
+        "failedProfiles", "Failed Profiles", Arrays.asList("profile", "error"), rows);
+  }
+}
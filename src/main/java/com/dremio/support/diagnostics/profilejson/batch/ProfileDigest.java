@@ -0,0 +1,104 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.batch;
+
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
+import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
+import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.BlockReport;
+import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.FindingsReport;
+import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.OperatorRecordDetail;
+import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.OperatorsRecordsScannedReport;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * What a batch run keeps of a profile once it has been analyzed, small enough that the profile
+ * itself can be dropped straight away.
+ *
+ * @param source file or archive entry the profile was read from
+ * @param user user that ran the query
+ * @param durationMillis query duration
+ * @param findings findings from the {@link FindingsReport}
+ * @param mostBlockedPhase most blocked phase from the {@link BlockReport}, null when nothing is
+ *     blocked
+ * @param mostRecords operators that produced the most records
+ * @param mostPeakMemory operators with the highest peak memory
+ */
+public record ProfileDigest(
+    String source,
+    String user,
+    long durationMillis,
+    List<String> findings,
+    BlockedPhase mostBlockedPhase,
+    List<OperatorRecordDetail> mostRecords,
+    List<OperatorRecordDetail> mostPeakMemory) {
+
+  /**
+   * @param phase phase name
+   * @param upstreamMillis time the phase was blocked waiting on upstream phases
+   * @param downstreamMillis time the phase was blocked waiting on downstream phases
+   * @param sharedMillis time the phase was blocked on shared resources
+   */
+  public record BlockedPhase(
+      String phase, long upstreamMillis, long downstreamMillis, long sharedMillis) {
+
+    /**
+     * @return total blocked time
+     */
+    public long totalMillis() {
+      return upstreamMillis + downstreamMillis + sharedMillis;
+    }
+  }
+
+  /**
+   * runs the findings, records scanned and blocking analyses against a parsed profile
+   *
+   * @param source file or archive entry the profile was read from
+   * @param profile parsed profile, it is not referenced by the digest
+   * @return the digest
+   */
+  public static ProfileDigest of(final String source, final ProfileJSON profile) {
+    final ProfileIndex index = ProfileIndex.of(profile);
+    final Collection<PlanRelation> relations = index.planRelations();
+    final List<String> findings = List.copyOf(FindingsReport.searchForFindings(index, relations));
+    final OperatorsRecordsScannedReport.OperatorRecordsScannedReportResult records =
+        OperatorsRecordsScannedReport.generateRecordReport(index, relations);
+    final BlockReport.MostBlockedReport blocked =
+        BlockReport.getBlockingOperatorReport(relations, index);
+    final BlockedPhase blockedPhase;
+    if (blocked == null) {
+      blockedPhase = null;
+    } else {
+      blockedPhase =
+          new BlockedPhase(
+              blocked.getName(),
+              blocked.getBlockedUpstreamMillis(),
+              blocked.getBlockedDownstreamMillis(),
+              blocked.getBlockedOnSharedMillis());
+    }
+    return new ProfileDigest(
+        source,
+        profile.getUser(),
+        profile.getEnd() - profile.getStart(),
+        findings,
+        blockedPhase,
+        orEmpty(records.getTop10RecordsScanned()),
+        orEmpty(records.getTop10MostPeakMemory()));
+  }
+
+  private static <T> List<T> orEmpty(final List<T> list) {
+    return list == null ? List.of() : list;
+  }
+}
@@ -13,7 +13,9 @@
  */
 package com.dremio.support.diagnostics.profilejson.converttorel;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 public class ConvertToRelGraph {
@@ -47,43 +49,48 @@ public class ConvertToRelGraph {
     if (this.nodes.isEmpty()) {
       return null;
     }
-    ConvertToRelNode parent = this.nodes.get(0);
-    return mapFromNode(parent);
-  }
-
-  private boolean isChild(final int change) {
-    return change > 0;
+    return mapFromNode(0, getChildPositions());
   }
 
   private boolean isDirectChild(final int change) {
     return change == 2;
   }
 
-  private List<ConvertToRel> getChildrenForNode(final ConvertToRelNode node) {
-    final List<ConvertToRel> children = new ArrayList<>();
-    boolean countActive = false;
-    for (ConvertToRelNode n : this.nodes) {
-      if (countActive) {
-        int change = n.getIndentDepth() - node.getIndentDepth();
-        if (isChild(change)) {
+  /**
+   * finds the direct children of every node in one pass. The parent of a node is the nearest node
+   * before it that is indented less than one level deeper, and only when it is exactly one level
+   * (two spaces) shallower. Nodes with a shallower indent close the ones before them so a stack of
+   * open nodes is all that is needed.
+   */
+  private List<List<Integer>> getChildPositions() {
+    final List<List<Integer>> children = new ArrayList<>(this.nodes.size());
+    final Deque<Integer> open = new ArrayDeque<>();
+    for (int i = 0; i < this.nodes.size(); i++) {
+      children.add(new ArrayList<>());
+      final int depth = this.nodes.get(i).getIndentDepth();
+      while (!open.isEmpty() && this.nodes.get(open.peek()).getIndentDepth() >= depth) {
+        open.pop();
+      }
+      for (final int candidate : open) {
+        final int change = depth - this.nodes.get(candidate).getIndentDepth();
+        if (change >= 2) {
           if (isDirectChild(change)) {
-            children.add(mapFromNode(n));
+            children.get(candidate).add(i);
           }
-        } else {
-          // stop counting when the child increases
           break;
         }
       }
-      if (n.getId() == node.getId()) {
-        countActive = true;
-        continue;
-      }
+      open.push(i);
     }
     return children;
   }
 
-  private ConvertToRel mapFromNode(final ConvertToRelNode node) {
-    final List<ConvertToRel> children = getChildrenForNode(node);
+  private ConvertToRel mapFromNode(final int position, final List<List<Integer>> childPositions) {
+    final ConvertToRelNode node = this.nodes.get(position);
+    final List<ConvertToRel> children = new ArrayList<>();
+    for (final int child : childPositions.get(position)) {
+      children.add(mapFromNode(child, childPositions));
+    }
     switch (node.getNodeType()) {
       case "ScanCrel":
         return new ScanCrel(children, node.getProperties());
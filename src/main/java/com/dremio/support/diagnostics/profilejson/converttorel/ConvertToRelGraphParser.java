@@ -16,10 +16,7 @@ package com.dremio.support.diagnostics.profilejson.converttorel;
 import com.dremio.support.diagnostics.shared.dto.profilejson.PlanPhases;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class ConvertToRelGraphParser {
 
@@ -36,19 +33,26 @@ public class ConvertToRelGraphParser {
       for (final PlanPhases phase : profileJSON.getPlanPhases()) {
         // we are only interested in the Convert To Rel plan phase
         if ("Convert To Rel".equals(phase.getPhaseName())) {
-          // oddly the \n is visible in the file so we need to escape the \ so we can grab the line
-          // endings, also this results in an empty string which we should filter
-          final List<String> tokens =
-              Arrays.stream(phase.getPlan().split("\\n"))
-                  .filter(x -> !x.isEmpty())
-                  .collect(Collectors.toList());
-          // for each line parse and add to the list of nodes found
-          IntStream.range(0, tokens.size())
-              .forEach(
-                  index ->
-                      nodes.add(
-                          ConvertToRelParser.parseConvertToRelFormattedLine(
-                              index, tokens.get(index))));
+          final String plan = phase.getPlan();
+          if (plan == null) {
+            continue;
+          }
+          // walk the line endings in place instead of splitting the plan, empty lines are skipped
+          int index = 0;
+          int lineStart = 0;
+          while (lineStart <= plan.length()) {
+            int lineEnd = plan.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+              lineEnd = plan.length();
+            }
+            if (lineEnd > lineStart) {
+              nodes.add(
+                  ConvertToRelParser.parseConvertToRelFormattedLine(
+                      index, plan, lineStart, lineEnd));
+              index++;
+            }
+            lineStart = lineEnd + 1;
+          }
         }
       }
       return new ConvertToRelGraph(nodes);
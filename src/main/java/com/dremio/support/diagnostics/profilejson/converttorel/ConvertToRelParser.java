@@ -32,6 +32,24 @@ public class ConvertToRelParser {
    */
   public static ConvertToRelNode parseConvertToRelFormattedLine(
       final int id, final String nodeText) {
+    return parseConvertToRelFormattedLine(id, nodeText, 0, nodeText.length());
+  }
+
+  /**
+   * Same as {@link #parseConvertToRelFormattedLine(int, String)} but reads the line in place from a
+   * larger text so the whole plan phase does not have to be split into lines first. The node type,
+   * property names and property values are collected in reusable buffers and only turned into
+   * strings once each of them is complete.
+   *
+   * @param id id to set when creating the ConvertToRelNode
+   * @param text text holding the line, usually the whole Convert To Rel plan phase
+   * @param start index of the first character of the line
+   * @param end index after the last character of the line
+   * @return the line as represented by it's various components; name, properties, indention level
+   *     in plan
+   */
+  public static ConvertToRelNode parseConvertToRelFormattedLine(
+      final int id, final CharSequence text, final int start, final int end) {
     // track parens to know when the line is done
     int openParens = 0;
     int closedParens = 0;
@@ -43,7 +61,7 @@ public class ConvertToRelParser {
     // this is to know when we are parsing spaces to find the indent depth
     boolean parsedStartingSpaces = false;
     // the type of node we are parsing
-    String nodeType = "";
+    final StringBuilder nodeType = new StringBuilder();
     // when we have finished parsing the node type
     boolean nodeTypeFound = false;
     // properties of the node
@@ -53,12 +71,12 @@ public class ConvertToRelParser {
     // we are going to search for a property
     boolean startSearchingProperty = false;
     // current property name we are parsing. Is reset for each property found
-    String currentPropertyName = "";
+    final StringBuilder currentPropertyName = new StringBuilder();
     // current property value we are parsing. Is reset for each property found
-    String currentPropertyValue = "";
+    final StringBuilder currentPropertyValue = new StringBuilder();
 
-    for (int i = 0; i < nodeText.length(); i++) {
-      final char c = nodeText.charAt(i);
+    for (int i = start; i < end; i++) {
+      final char c = text.charAt(i);
 
       // Phase 1: count the number of spaces the line starts with to find child and parent
       // relationships between nodes
@@ -85,7 +103,7 @@ public class ConvertToRelParser {
           continue;
         }
         // so we have not found the entity name it is safe to add to it
-        nodeType += c;
+        nodeType.append(c);
       } else {
         // phase 4: find the end of the file, this is before phase 3 in the code to guard against
         // adding more when the file is effectively already done.
@@ -123,10 +141,11 @@ public class ConvertToRelParser {
         if (closedBrackets > 0 && closedBrackets == openBrackets) {
           // since we are not picky about what types of characters we stored, go ahead and trim
           // spaces out
-          properties.put(currentPropertyName.trim(), currentPropertyValue.trim());
+          properties.put(
+              currentPropertyName.toString().trim(), currentPropertyValue.toString().trim());
           // blank out properties now for the next property found
-          currentPropertyName = "";
-          currentPropertyValue = "";
+          currentPropertyName.setLength(0);
+          currentPropertyValue.setLength(0);
           // blank out bracket count for next property
           openBrackets = 0;
           closedBrackets = 0;
@@ -157,14 +176,14 @@ public class ConvertToRelParser {
           if (propertyNameFound) {
             // since we have already parsed the property name it is assumed we are interested in
             // parsing property value
-            currentPropertyValue += c;
+            currentPropertyValue.append(c);
           } else {
             // since we have not yet found the property name we need to continue adding to it
-            currentPropertyName += c;
+            currentPropertyName.append(c);
           }
         }
       }
     }
-    return new ConvertToRelNode(id, nodeType, properties, indentDepth);
+    return new ConvertToRelNode(id, nodeType.toString(), properties, indentDepth);
   }
 }
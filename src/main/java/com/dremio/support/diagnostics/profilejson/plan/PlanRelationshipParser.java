@@ -14,119 +14,258 @@
 package com.dremio.support.diagnostics.profilejson.plan;
 
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class PlanRelationshipParser {
-  private final Pattern costPattern =
-      Pattern.compile(
-          "\\{(?<rows>(.*)) rows, (?<cpu>(.*)) cpu, (?<io>(.*)) io, (?<network>(.*)) network,"
-              + " (?<memory>(.*)) memory}");
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  /** the cost labels in the order the planner writes them */
+  private static final String[] costLabels = {"rows", "cpu", "io", "network", "memory"};
+
+  /** exact powers of ten, every decimal with at most 15 digits divides by them exactly rounded */
+  private static final double[] powersOfTen = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+  };
+
+  private static final int maxFastDigits = 15;
 
   // private final Pattern isNestedRow =
   // Pattern.compile("RecordType\\((?<data>(.*))\\) (?<columnName>(.*))");
   // private final Pattern recordTypePattern =
   // Pattern.compile("(?<type>^\\w*)(?<precision>\\(.*\\))?\\s?(?<complex>\\w*)?
   // (?<name>.*$)");
-  private final Map<String, PlanRelation> knownInstances = new HashMap<>();
 
   /**
    * Summarizes and parses a plan to break to read the important parts in the plan for analysis of
-   * the query
+   * the query.
+   *
+   * <p>The plan is read in a single streaming pass, the escaped quotes Dremio leaves in the names
+   * and values are dropped as they are read instead of rewriting the whole plan first. Upstream and
+   * downstream links are then wired from the inputs of each node through a name index, so the cost
+   * grows with the number of edges rather than with the square of the number of nodes.
    *
    * @param profileJSON the profile json to search for plan relationships
-   * @return a list of plans and their relationships
+   * @return a list of plans and their relationships, in the order they appear in the plan
    */
   public List<PlanRelation> getPlanRelations(final ProfileJSON profileJSON) {
     if (profileJSON.getJsonPlan() == null) {
       return new ArrayList<>();
     }
-    final ObjectMapper mapper = new ObjectMapper();
-    final String jsonString = profileJSON.getJsonPlan().replaceAll("\\n", "\n").replace("\\\"", "");
-
-    Map<String, PlanNode> map;
+    final Map<String, PlanNode> nodes;
     try {
-      map =
-          mapper.readValue(
-              jsonString.getBytes(StandardCharsets.UTF_8),
-              new TypeReference<Map<String, PlanNode>>() {});
+      nodes = readPlan(profileJSON.getJsonPlan());
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
-    List<PlanRelation> planRelations = new ArrayList<>();
-    for (final Map.Entry<String, PlanNode> kvp : map.entrySet()) {
-      planRelations.add(fromPlanNode(kvp.getKey(), kvp.getValue(), map));
+    final Map<String, PlanRelation> byName = new HashMap<>(nodes.size() * 2);
+    final List<PlanRelation> planRelations = new ArrayList<>(nodes.size());
+    for (final Map.Entry<String, PlanNode> kvp : nodes.entrySet()) {
+      final PlanNode planNode = kvp.getValue();
+      final PlanRelation rel =
+          new PlanRelation(
+              kvp.getKey(),
+              planNode.getOp(),
+              planNode.getValues(),
+              new ArrayList<>(),
+              new ArrayList<>(),
+              planNode.getRowCount(),
+              getCumulativeCost(planNode.getCumulativeCost()));
+      byName.put(kvp.getKey(), rel);
+      planRelations.add(rel);
     }
-    for (PlanRelation rel : planRelations) {
-      mapUpstream(rel, map);
+    for (final PlanRelation parent : planRelations) {
+      final List<String> inputs = nodes.get(parent.getName()).getInputs();
+      for (int i = 0; i < inputs.size(); i++) {
+        final PlanRelation child = byName.get(inputs.get(i));
+        if (child == null) {
+          continue;
+        }
+        parent.getUpstream().add(child);
+        // a parent listing the same input twice is still only one downstream of it
+        if (inputs.indexOf(inputs.get(i)) == i) {
+          child.getDownstream().add(parent);
+        }
+      }
     }
     return planRelations;
   }
 
-  private CumulativeCost getCumulativeCost(final String rawCumulativeCost) {
-    if (rawCumulativeCost.equals("{tiny}")) {
-      return new CumulativeCost(0d, 0d, 0d, 0d, 0d);
+  private static Map<String, PlanNode> readPlan(final String jsonPlan) throws IOException {
+    final Map<String, PlanNode> nodes = new LinkedHashMap<>();
+    try (JsonParser parser = jsonFactory.createParser(jsonPlan)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "expected the plan to be an object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = unquote(parser.currentName());
+        parser.nextToken();
+        nodes.put(name, readNode(parser));
+      }
     }
-    final Matcher match = costPattern.matcher(rawCumulativeCost);
-    if (match.find()) {
-      final String rowsRaw = match.group("rows");
-      final double rows = Double.parseDouble(rowsRaw);
-      final String cpuRaw = match.group("cpu");
-      final double cpu = Double.parseDouble(cpuRaw);
-      final String ioRaw = match.group("io");
-      final double io = Double.parseDouble(ioRaw);
-      final String networkRaw = match.group("network");
-      final double network = Double.parseDouble(networkRaw);
-      final String memoryRaw = match.group("memory");
-      final double memory = Double.parseDouble(memoryRaw);
-      return new CumulativeCost(rows, cpu, io, network, memory);
+    return nodes;
+  }
+
+  private static PlanNode readNode(final JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "expected a plan node to be an object");
+    }
+    final PlanNode node = new PlanNode();
+    node.setInputs(new ArrayList<>());
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = unquote(parser.currentName());
+      final JsonToken token = parser.nextToken();
+      switch (field) {
+        case "op" -> node.setOp(readString(parser));
+        case "rowType" -> node.setRowType(readString(parser));
+        case "cumulativeCost" -> node.setCumulativeCost(readString(parser));
+        case "rowCount" -> node.setRowCount(parser.getValueAsDouble());
+        case "values" -> {
+          @SuppressWarnings("unchecked")
+          final Map<String, Object> values =
+              token == JsonToken.VALUE_NULL ? null : (Map<String, Object>) readValue(parser);
+          node.setValues(values);
+        }
+        case "inputs" -> {
+          if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+              node.getInputs().add(readString(parser));
+            }
+          }
+        }
+        default -> parser.skipChildren();
+      }
+    }
+    return node;
+  }
+
+  private static String readString(final JsonParser parser) throws IOException {
+    return unquote(parser.getValueAsString());
+  }
+
+  /** reads any json value the same way an untyped jackson map would, dropping quotes from text */
+  private static Object readValue(final JsonParser parser) throws IOException {
+    switch (parser.currentToken()) {
+      case START_OBJECT -> {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String key = unquote(parser.currentName());
+          parser.nextToken();
+          map.put(key, readValue(parser));
+        }
+        return map;
+      }
+      case START_ARRAY -> {
+        final List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          list.add(readValue(parser));
+        }
+        return list;
+      }
+      case VALUE_STRING -> {
+        return readString(parser);
+      }
+      case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+        return parser.getNumberValue();
+      }
+      case VALUE_TRUE -> {
+        return Boolean.TRUE;
+      }
+      case VALUE_FALSE -> {
+        return Boolean.FALSE;
+      }
+      default -> {
+        return null;
+      }
     }
-    throw new RuntimeException("unable to parse '" + rawCumulativeCost + "'");
   }
 
-  private PlanRelation fromPlanNode(
-      final String name, final PlanNode planNode, final Map<String, PlanNode> map) {
-    if (knownInstances.containsKey(name)) {
-      return knownInstances.get(name);
+  /** Dremio writes every name and text value of the plan wrapped in escaped quotes */
+  private static String unquote(final String text) {
+    if (text == null || text.indexOf('"') < 0) {
+      return text;
     }
-    PlanRelation rel =
-        new PlanRelation(
-            name.replaceAll("\"", ""),
-            planNode.getOp(),
-            planNode.getValues(),
-            findDownstream(name, map),
-            new ArrayList<>(),
-            planNode.getRowCount(),
-            getCumulativeCost(planNode.getCumulativeCost()));
-    knownInstances.put(name, rel);
-    return rel;
+    return text.replace("\"", "");
   }
 
-  private List<PlanRelation> findDownstream(final String name, final Map<String, PlanNode> map) {
-    List<PlanRelation> parents = new ArrayList<>();
-    for (final Map.Entry<String, PlanNode> entry : map.entrySet()) {
-      if (entry.getValue().inputs.contains(name)) {
-        parents.add(fromPlanNode(entry.getKey(), entry.getValue(), map));
+  /**
+   * reads a planner cost such as "{1.0 rows, 2.0 cpu, 0.0 io, 0.0 network, 4.5 memory}" without
+   * regular expressions
+   *
+   * @param rawCumulativeCost cost as written in the plan
+   * @return the parsed cost
+   */
+  static CumulativeCost getCumulativeCost(final String rawCumulativeCost) {
+    if ("{tiny}".equals(rawCumulativeCost)) {
+      return new CumulativeCost(0d, 0d, 0d, 0d, 0d);
+    }
+    final int open = rawCumulativeCost == null ? -1 : rawCumulativeCost.indexOf('{');
+    if (open < 0) {
+      throw new RuntimeException("unable to parse '" + rawCumulativeCost + "'");
+    }
+    final double[] costs = new double[costLabels.length];
+    int pos = open + 1;
+    for (int i = 0; i < costLabels.length; i++) {
+      final int space = rawCumulativeCost.indexOf(' ', pos);
+      if (space <= pos || !rawCumulativeCost.startsWith(costLabels[i], space + 1)) {
+        throw new RuntimeException("unable to parse '" + rawCumulativeCost + "'");
+      }
+      costs[i] = parseNumber(rawCumulativeCost, pos, space);
+      pos = space + 1 + costLabels[i].length();
+      final String separator = i == costLabels.length - 1 ? "}" : ", ";
+      if (!rawCumulativeCost.startsWith(separator, pos)) {
+        throw new RuntimeException("unable to parse '" + rawCumulativeCost + "'");
       }
+      pos += separator.length();
     }
-    return parents;
+    return new CumulativeCost(costs[0], costs[1], costs[2], costs[3], costs[4]);
   }
 
-  private void mapUpstream(final PlanRelation parent, final Map<String, PlanNode> map) {
-    PlanNode planNode = map.get(parent.getName());
-    for (final String child : planNode.inputs) {
-      for (final Map.Entry<String, PlanNode> entry : map.entrySet()) {
-        if (entry.getKey().equals(child)) {
-          final PlanNode childNode = entry.getValue();
-          final PlanRelation childConvertToRel = fromPlanNode(child, childNode, map);
-          parent.getUpstream().add(childConvertToRel);
+  /**
+   * plain decimals of up to 15 digits are converted in place, they and their power of ten are exact
+   * doubles so the division rounds exactly like {@link Double#parseDouble(String)}. Anything else
+   * (exponents, Infinity, NaN, long fractions) falls back to it.
+   */
+  private static double parseNumber(final String text, final int start, final int end) {
+    int i = start;
+    final boolean negative = text.charAt(i) == '-';
+    if (negative) {
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    for (; i < end; i++) {
+      final char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (fraction) {
+          fractionDigits++;
         }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        digits = Integer.MAX_VALUE;
+        break;
+      }
+      if (digits > maxFastDigits) {
+        break;
+      }
+    }
+    if (digits == 0 || digits > maxFastDigits) {
+      try {
+        return Double.parseDouble(text.substring(start, end));
+      } catch (final NumberFormatException e) {
+        throw new RuntimeException("unable to parse '" + text + "'", e);
       }
     }
+    final double value = mantissa / powersOfTen[fractionDigits];
+    return negative ? -value : value;
   }
 }
@@ -13,82 +13,53 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile;
 
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
-import org.apache.commons.lang3.StringUtils;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 
 public class BlockFinder {
 
   public PhaseBlockStats getUpstreamPhaseBlockStats(
-      final String phase, final MinorFragmentProfile mostBlocked, final ProfileJSON profileJson) {
+      final String phase, final int mostBlocked, final ProfileIndex index) {
+    final int phaseIndex = index.phaseIndex(phase);
     long maxBlock = 0;
     long maxSleep = 0;
     long maxRunTime = 0;
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0")
-          .equals(phase)) {
-        for (MinorFragmentProfile minorFragmentProfile :
-            fragmentProfile.getMinorFragmentProfile()) {
-          if (minorFragmentProfile.getBlockedOnUpstreamDuration() > maxBlock) {
-            maxBlock = minorFragmentProfile.getBlockedOnUpstreamDuration();
-          }
-          if (minorFragmentProfile.getSleepingDuration() > maxSleep) {
-            maxSleep = minorFragmentProfile.getSleepingDuration();
-          }
-          if (minorFragmentProfile.getRunDuration() > maxRunTime) {
-            maxRunTime = minorFragmentProfile.getRunDuration();
-          }
-        }
-      }
+    if (phaseIndex >= 0) {
+      maxBlock = index.phaseMaxBlockedOnUpstreamDuration(phaseIndex);
+      maxSleep = index.phaseMaxSleepingDuration(phaseIndex);
+      maxRunTime = index.phaseMaxRunDuration(phaseIndex);
     }
+    final long mostBlockedDuration = index.threadBlockedOnUpstreamDuration(mostBlocked);
     PhaseBlockStats phaseBlockStats = new PhaseBlockStats();
     phaseBlockStats.setPhase(phase);
     phaseBlockStats.setMaxBlockTime(maxBlock);
-    phaseBlockStats.setMaxBlockTimePercentage(
-        (maxBlock * 100.0f) / mostBlocked.getBlockedOnUpstreamDuration());
+    phaseBlockStats.setMaxBlockTimePercentage((maxBlock * 100.0f) / mostBlockedDuration);
     phaseBlockStats.setRunTime(maxRunTime);
-    phaseBlockStats.setRunTimePercentage(
-        (maxRunTime * 100.0f) / mostBlocked.getBlockedOnUpstreamDuration());
+    phaseBlockStats.setRunTimePercentage((maxRunTime * 100.0f) / mostBlockedDuration);
     phaseBlockStats.setSleepTime(maxSleep);
-    phaseBlockStats.setSleepTimePercentage(
-        (maxSleep * 100.0f) / mostBlocked.getBlockedOnUpstreamDuration());
+    phaseBlockStats.setSleepTimePercentage((maxSleep * 100.0f) / mostBlockedDuration);
     return phaseBlockStats;
   }
 
   public PhaseBlockStats getDownstreamPhaseBlockStats(
-      final String phase, final MinorFragmentProfile mostBlocked, final ProfileJSON profileJson) {
+      final String phase, final int mostBlocked, final ProfileIndex index) {
+    final int phaseIndex = index.phaseIndex(phase);
     long maxBlock = 0;
     long maxSleep = 0;
     long maxRunTime = 0;
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0")
-          .equals(phase)) {
-        for (MinorFragmentProfile minorFragmentProfile :
-            fragmentProfile.getMinorFragmentProfile()) {
-          if (minorFragmentProfile.getBlockedOnDownstreamDuration() > maxBlock) {
-            maxBlock = minorFragmentProfile.getBlockedOnDownstreamDuration();
-          }
-          if (minorFragmentProfile.getSleepingDuration() > maxSleep) {
-            maxSleep = minorFragmentProfile.getSleepingDuration();
-          }
-          if (minorFragmentProfile.getRunDuration() > maxRunTime) {
-            maxRunTime = minorFragmentProfile.getRunDuration();
-          }
-        }
-      }
+    if (phaseIndex >= 0) {
+      maxBlock = index.phaseMaxBlockedOnDownstreamDuration(phaseIndex);
+      maxSleep = index.phaseMaxSleepingDuration(phaseIndex);
+      maxRunTime = index.phaseMaxRunDuration(phaseIndex);
     }
+    final long mostBlockedDuration = index.threadBlockedOnDownstreamDuration(mostBlocked);
     PhaseBlockStats phaseBlockStats = new PhaseBlockStats();
     phaseBlockStats.setPhase(phase);
     phaseBlockStats.setMaxBlockTime(maxBlock);
-    phaseBlockStats.setMaxBlockTimePercentage(
-        (maxBlock * 100.0f) / mostBlocked.getBlockedOnDownstreamDuration());
+    phaseBlockStats.setMaxBlockTimePercentage((maxBlock * 100.0f) / mostBlockedDuration);
     phaseBlockStats.setRunTime(maxRunTime);
-    phaseBlockStats.setRunTimePercentage(
-        (maxRunTime * 100.0f) / mostBlocked.getBlockedOnDownstreamDuration());
+    phaseBlockStats.setRunTimePercentage((maxRunTime * 100.0f) / mostBlockedDuration);
     phaseBlockStats.setSleepTime(maxSleep);
-    phaseBlockStats.setSleepTimePercentage(
-        (maxSleep * 100.0f) / (float) mostBlocked.getBlockedOnDownstreamDuration());
+    phaseBlockStats.setSleepTimePercentage((maxSleep * 100.0f) / (float) mostBlockedDuration);
     return phaseBlockStats;
   }
 }
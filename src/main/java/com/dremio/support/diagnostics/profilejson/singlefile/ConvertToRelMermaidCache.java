@@ -0,0 +1,124 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.singlefile;
+
+import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRel;
+import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraph;
+import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraphParser;
+import com.dremio.support.diagnostics.shared.dto.profilejson.PlanPhases;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the rendered Convert To Rel graph of recently seen profiles.
+ *
+ * <p>Entries are keyed by a sha-256 of the Convert To Rel plan text, so uploading the same profile
+ * again, or comparing several profiles against the same baseline, reuses the graph without parsing
+ * or rendering it again. Only the hash and the rendered text are kept, never the profile, and the
+ * number of entries is bounded with least recently used eviction. The shared instance lives for the
+ * whole process so in server mode it spans requests.
+ */
+public final class ConvertToRelMermaidCache {
+
+  /** rendered graphs kept by the shared cache */
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+
+  private static final ConvertToRelMermaidCache shared =
+      new ConvertToRelMermaidCache(DEFAULT_MAX_ENTRIES, GraphWriter.DEFAULT_MAX_NODES);
+
+  private final Cache<String, Optional<String>> cache;
+  private final int maxNodes;
+
+  /**
+   * @param maxEntries rendered graphs to keep
+   * @param maxNodes nodes drawn per graph before the rest are collapsed, see {@link GraphWriter}
+   */
+  public ConvertToRelMermaidCache(final int maxEntries, final int maxNodes) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxEntries).recordStats().build();
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * @return the cache shared by the html reports
+   */
+  public static ConvertToRelMermaidCache shared() {
+    return shared;
+  }
+
+  /**
+   * parses and renders the Convert To Rel graph of the profile unless a profile with the same
+   * Convert To Rel plan has already been rendered
+   *
+   * @param profile parsed profile
+   * @return the mermaid graph, empty when the profile has no Convert To Rel phase
+   */
+  public Optional<String> getMermaid(final ProfileJSON profile) {
+    final String key = key(profile);
+    if (key == null) {
+      return Optional.empty();
+    }
+    try {
+      return cache.get(key, () -> render(profile));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * @return hit, miss and eviction counts since the cache was created
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private Optional<String> render(final ProfileJSON profile) {
+    final ConvertToRelGraph graph = new ConvertToRelGraphParser().parseConvertToRel(profile);
+    if (graph == null) {
+      return Optional.empty();
+    }
+    final ConvertToRel tree = graph.getConvertToRelTree();
+    if (tree == null) {
+      return Optional.empty();
+    }
+    return Optional.of(new GraphWriter(maxNodes).writeMermaid(tree));
+  }
+
+  /** hash of every Convert To Rel plan in the profile, null when there is nothing to render */
+  private static String key(final ProfileJSON profile) {
+    if (profile == null || profile.getPlanPhases() == null) {
+      return null;
+    }
+    final Hasher hasher = Hashing.sha256().newHasher();
+    boolean found = false;
+    for (final PlanPhases phase : profile.getPlanPhases()) {
+      if ("Convert To Rel".equals(phase.getPhaseName()) && phase.getPlan() != null) {
+        found = true;
+        hasher.putInt(phase.getPlan().length());
+        hasher.putString(phase.getPlan(), StandardCharsets.UTF_8);
+      }
+    }
+    return found ? hasher.hash().toString() : null;
+  }
+}
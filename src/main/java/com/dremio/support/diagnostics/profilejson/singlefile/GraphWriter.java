@@ -19,24 +19,48 @@ import com.dremio.support.diagnostics.profilejson.converttorel.LogicalJoin;
 import com.dremio.support.diagnostics.profilejson.converttorel.LogicalSort;
 import com.dremio.support.diagnostics.profilejson.converttorel.ScanCrel;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class GraphWriter {
 
+  /** mermaid becomes unusable in the browser well before a few thousand nodes */
+  public static final int DEFAULT_MAX_NODES = 500;
+
+  private final int maxNodes;
+
+  /** writer that collapses graphs larger than {@link #DEFAULT_MAX_NODES} */
+  public GraphWriter() {
+    this(DEFAULT_MAX_NODES);
+  }
+
+  /**
+   * @param maxNodes nodes drawn before the remaining subtrees are collapsed into a single node,
+   *     values below 1 are treated as 1
+   */
+  public GraphWriter(final int maxNodes) {
+    this.maxNodes = Math.max(1, maxNodes);
+  }
+
+  /**
+   * writes the tree as a mermaid graph in a single walk. Once {@link #maxNodes} nodes have been
+   * drawn the children that are left under each node are replaced by one "Collapsed" node that
+   * counts how many nodes it hides.
+   *
+   * @param convertToRel root of the tree
+   * @return the mermaid graph wrapped in a pre tag
+   */
   public String writeMermaid(final ConvertToRel convertToRel) {
     id = 0;
-    LabelData labelData = writeNodeLabel(convertToRel);
-    StringBuilder builder = new StringBuilder();
+    final StringBuilder links = new StringBuilder();
+    final StringBuilder clicks = new StringBuilder();
+    writeNode(convertToRel, writeNodeLabel(convertToRel), links, clicks);
+    final StringBuilder builder = new StringBuilder();
     builder.append("<pre class=\"mermaid\">\ngraph TD;\n");
-    String[] links =
-        Arrays.stream(labelData.getLinks()).map(x -> String.format("%s", x)).toArray(String[]::new);
-    builder.append(String.join("\n", links));
+    builder.append(links);
     builder.append("\n");
-    String[] data = Arrays.stream(labelData.getAllCustomData()).toArray(String[]::new);
-    builder.append(String.join("\n", data));
+    builder.append(clicks);
     builder.append("\n");
     builder.append("</pre>\n");
     return builder.toString();
@@ -44,9 +68,72 @@ public class GraphWriter {
 
   private int id = 0;
 
+  private void writeNode(
+      final ConvertToRel node,
+      final LabelData label,
+      final StringBuilder links,
+      final StringBuilder clicks) {
+    appendLine(clicks, clickText(label));
+    final List<ConvertToRel> children = new ArrayList<>(node.getChildren());
+    for (int i = 0; i < children.size(); i++) {
+      id++;
+      final LabelData childLabel;
+      final ConvertToRel child;
+      if (id >= maxNodes) {
+        int hidden = 0;
+        for (int j = i; j < children.size(); j++) {
+          hidden += countNodes(children.get(j));
+        }
+        child = null;
+        childLabel =
+            new LabelData(id, id + "-Collapsed\\nnodes:" + hidden, new ArrayList<>(), Map.of());
+        i = children.size();
+      } else {
+        child = children.get(i);
+        childLabel = writeNodeLabel(child);
+      }
+      appendLine(links, String.format("%s-->%s;", label.getLabel(), childLabel.getLabel()));
+      if (child != null) {
+        writeNode(child, childLabel, links, clicks);
+      }
+    }
+  }
+
+  private static void appendLine(final StringBuilder builder, final String line) {
+    if (line == null) {
+      return;
+    }
+    if (builder.length() > 0) {
+      builder.append("\n");
+    }
+    builder.append(line);
+  }
+
+  /** the mouse over text of a node, null when it has nothing to show */
+  private static String clickText(final LabelData label) {
+    final List<String> data = new ArrayList<>();
+    for (final Map.Entry<String, String> entry : label.getCustomData().entrySet()) {
+      if (!entry.getKey().equals("columns")) {
+        data.add(String.format("%s=[%s]", entry.getKey(), entry.getValue()));
+      }
+    }
+    if (data.isEmpty()) {
+      return null;
+    }
+    return String.format(
+        "click %s callback \"%s\";", label.getLabel(), String.join(", ", data).replace("\"", "'"));
+  }
+
+  private static int countNodes(final ConvertToRel node) {
+    int count = 1;
+    for (final ConvertToRel child : node.getChildren()) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+
   private LabelData writeNodeLabel(ConvertToRel node) {
     List<LabelData> children = new ArrayList<>();
-
     String typeName = node.getTypeName();
     LabelData label;
     switch (typeName) {
@@ -95,10 +182,6 @@ public class GraphWriter {
           break;
         }
     }
-    for (ConvertToRel child : node.getChildren()) {
-      id++;
-      children.add(writeNodeLabel(child));
-    }
     return label;
   }
 }
@@ -15,7 +15,9 @@ package com.dremio.support.diagnostics.profilejson.singlefile;
 
 import com.dremio.support.diagnostics.shared.ProfileProvider;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.InvalidParameterException;
@@ -53,7 +55,9 @@ public class SingleFileExec {
     long epoch = Instant.now().toEpochMilli();
     var reporter = new SingleProfileJsonHtmlReport(true, true, parsed);
     var path = String.format("profile%d.html", epoch);
-    Files.write(Path.of(path), reporter.getText().getBytes());
+    try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(Path.of(path)))) {
+      reporter.writeTo(os);
+    }
     logger.info("report written to '%s'".formatted(path));
   }
 }
@@ -14,10 +14,6 @@
 package com.dremio.support.diagnostics.profilejson.singlefile;
 
 import com.dremio.support.diagnostics.profilejson.*;
-import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraph;
-import com.dremio.support.diagnostics.profilejson.converttorel.ConvertToRelGraphParser;
-import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
-import com.dremio.support.diagnostics.profilejson.plan.PlanRelationshipParser;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileSummaryReport;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.plots.OperatorDurationPlot;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.plots.OperatorRecordsPlot;
@@ -26,20 +22,22 @@ import com.dremio.support.diagnostics.profilejson.singlefile.reports.plots.Timel
 import com.dremio.support.diagnostics.shared.Human;
 import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
 import com.dremio.support.diagnostics.shared.Report;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
+import com.dremio.support.diagnostics.shared.ReportOutput;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public class SingleProfileJsonHtmlReport implements Report {
 
   private final ProfileJSON parsed;
   private final boolean showConvertToRel;
   private final boolean showPlanDetails;
-  private final GraphWriter sankeyWriter = new GraphWriter();
   private static final JsLibraryTextProvider jsLibProvider = new JsLibraryTextProvider();
 
   /**
@@ -64,49 +62,66 @@ public class SingleProfileJsonHtmlReport implements Report {
    */
   @Override
   public String getText() {
-    final List<PhaseThread> phaseThreads = getPhaseThreads();
-    final long[] startTimes = new long[phaseThreads.size()];
-    final long[] endTimes = new long[phaseThreads.size()];
-    final String[] phaseThreadNames = new String[phaseThreads.size()];
-    final String[] phaseThreadTextNames = new String[phaseThreads.size()];
-    final long[] phaseProcessTimes = new long[phaseThreads.size()];
-    for (int i = 0; i < phaseThreads.size(); i++) {
-      final PhaseThread phaseThread = phaseThreads.get(i);
-      startTimes[i] = phaseThread.getStartTime();
-      endTimes[i] = phaseThread.getEndTime();
-      phaseThreadNames[i] = String.format("%02d", phaseThread.getPhaseId());
-      phaseThreadTextNames[i] =
-          String.format(
-              "%02d-%02d-XX - run %s, sleep %s, blocked { total %s, upstream %s, downstream %s,"
-                  + " shared %s }",
-              phaseThread.getPhaseId(),
-              phaseThread.getThreadId(),
-              Human.getHumanDurationFromMillis(phaseThread.getRunDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getSleepingDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnUpstreamDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnDownstreamDuration()),
-              Human.getHumanDurationFromMillis(phaseThread.getBlockedOnSharedResourceDuration()));
-      phaseProcessTimes[i] = phaseThread.getTotalTimeMillis();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      writeTo(baos);
+    } catch (IOException e) {
+      // only the stream can fail and a ByteArrayOutputStream never does
+      throw new UncheckedIOException(e);
     }
-    final List<String> scripts = new ArrayList<>();
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * streams the same html as {@link #getText()}, the embedded javascript libraries are written
+   * straight to the stream instead of being copied into the page text
+   *
+   * @param stream stream to write the html to
+   * @throws IOException when the stream cannot be written to
+   */
+  @Override
+  public void writeTo(final OutputStream stream) throws IOException {
+    final ProfileIndex index = ProfileIndex.of(this.parsed);
+    final int threads = index.threadCount();
+    final long[] startTimes = new long[threads];
+    final long[] endTimes = new long[threads];
+    final String[] phaseThreadNames = new String[threads];
+    final String[] phaseThreadTextNames = new String[threads];
+    final long[] phaseProcessTimes = new long[threads];
+    // formatting the labels dominates for large profiles, each slot is owned by one task
+    AnalysisExecutor.forEach(
+        threads,
+        i -> {
+          final int phase = index.threadPhase(i);
+          startTimes[i] = index.threadEndTime(i) - index.threadRunDuration(i);
+          endTimes[i] = index.threadEndTime(i);
+          phaseThreadNames[i] = index.phaseName(phase);
+          phaseThreadTextNames[i] =
+              String.format(
+                  "%s-%s-XX - run %s, sleep %s, blocked { total %s, upstream %s, downstream %s,"
+                      + " shared %s }",
+                  index.phaseName(phase),
+                  ProfileIndex.twoDigits(index.threadId(i)),
+                  Human.getHumanDurationFromMillis(index.threadRunDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadSleepingDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnUpstreamDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnDownstreamDuration(i)),
+                  Human.getHumanDurationFromMillis(index.threadBlockedOnSharedResourceDuration(i)));
+          phaseProcessTimes[i] = index.threadEndTime(i) - index.threadStartTime(i);
+        });
+    boolean embedLibraries = false;
     final List<String> htmlFragments = new ArrayList<>();
     final List<String> sections = new ArrayList<>();
     final List<String> titles = new ArrayList<>();
-    final List<Operator> operators = new ArrayList<>();
     if (this.parsed != null) {
-      final Collection<PlanRelation> planRelations =
-          new PlanRelationshipParser().getPlanRelations(this.parsed);
       SummaryOut out =
           new ProfileSummaryReport()
-              .generateSummary(this.showPlanDetails, this.parsed, planRelations);
+              .generateSummary(this.showPlanDetails, index, index.planRelations());
       sections.addAll(out.sections());
       titles.addAll(out.titles());
       htmlFragments.add(out.htmlString());
-      final String plotlyJsText = jsLibProvider.getPlotlyJsText();
-      scripts.add("<script>" + plotlyJsText + "</script>");
-      final String mermaidJsText = jsLibProvider.getMermaidJsText();
-      scripts.add("<script>" + mermaidJsText + "</script>");
+      embedLibraries = true;
       htmlFragments.add(
           """
           <section id="phases-section">
@@ -132,53 +147,34 @@ public class SingleProfileJsonHtmlReport implements Report {
       sections.add("timeline-section");
       titles.add("Timeline");
       // graph out operators by process time
-      if (this.parsed.getFragmentProfile() != null) {
-        for (final FragmentProfile fragmentProfile : this.parsed.getFragmentProfile()) {
-          if (fragmentProfile != null && fragmentProfile.getMinorFragmentProfile() != null) {
-            final int phaseId = fragmentProfile.getMajorFragmentId();
-            for (final MinorFragmentProfile minorProfile :
-                fragmentProfile.getMinorFragmentProfile()) {
-              if (minorProfile != null && minorProfile.getOperatorProfile() != null) {
-                for (final OperatorProfile operatorProfile : minorProfile.getOperatorProfile()) {
-                  final Operator operator =
-                      Operator.createFromOperatorProfile(
-                          operatorProfile, this.parsed.getOperatorTypeMetricsMap().getMetricsDef());
-                  operator.setParentPhaseId(phaseId);
-                  operator.setThreadId(minorProfile.getMinorFragmentId());
-                  operators.add(operator);
-                }
-              }
-            }
-          }
-        }
-      }
-      final String[] operatorNames = new String[operators.size()];
-      final String[] operatorText = new String[operators.size()];
-      final long[] operatorTimes = new long[operators.size()];
-      final long[] operatorRecords = new long[operators.size()];
-      for (int i = 0; i < operators.size(); i++) {
-        final Operator operator = operators.get(i);
-        // calculate relative id number to provide a clean layout with only phases
-        // labeled using the
-        // prefix feature
-        operatorNames[i] = String.format("%02d", operator.getParentPhaseId());
-        operatorText[i] =
-            String.format(
-                "%s { records: %s batches: %s setup: %s wait: %s process: %s }",
+      final int operators = index.operatorCount();
+      final String[] operatorNames = new String[operators];
+      final String[] operatorText = new String[operators];
+      final long[] operatorTimes = new long[operators];
+      final long[] operatorRecords = new long[operators];
+      AnalysisExecutor.forEach(
+          operators,
+          i -> {
+            // calculate relative id number to provide a clean layout with only phases
+            // labeled using the
+            // prefix feature
+            final String phaseName = index.phaseName(index.operatorPhase(i));
+            operatorNames[i] = phaseName;
+            operatorText[i] =
                 String.format(
-                    "%s %02d-%02d-%02d",
-                    operator.getKind(),
-                    operator.getParentPhaseId(),
-                    operator.getThreadId(),
-                    operator.getId()),
-                operator.getRecords(),
-                operator.getBatches(),
-                Human.getHumanDurationFromMillis(operator.getSetupMillis()),
-                Human.getHumanDurationFromMillis(operator.getWaitMillis()),
-                Human.getHumanDurationFromMillis(operator.getProcessTimeMillis()));
-        operatorTimes[i] = operator.getTotalTimeMillis();
-        operatorRecords[i] = operator.getRecords();
-      }
+                    "%s %s-%s-%s { records: %s batches: %s setup: %s wait: %s process: %s }",
+                    index.operatorType(i),
+                    phaseName,
+                    ProfileIndex.twoDigits(index.threadId(index.operatorThread(i))),
+                    ProfileIndex.twoDigits(index.operatorId(i)),
+                    index.operatorRecords(i),
+                    index.operatorBatches(i),
+                    Human.getHumanDurationFromMillis(index.operatorSetupNanos(i) / 1000000),
+                    Human.getHumanDurationFromMillis(index.operatorWaitNanos(i) / 1000000),
+                    Human.getHumanDurationFromMillis(index.operatorProcessNanos(i) / 1000000));
+            operatorTimes[i] = index.operatorTotalTimeMillis(i);
+            operatorRecords[i] = index.operatorRecords(i);
+          });
 
       htmlFragments.add(
           """
@@ -207,13 +203,13 @@ public class SingleProfileJsonHtmlReport implements Report {
       titles.add("Records Graph");
       final String convertToRel;
       if (showConvertToRel) {
-        final ConvertToRelGraph c = new ConvertToRelGraphParser().parseConvertToRel(parsed);
-        if (c != null) {
+        final Optional<String> mermaid = ConvertToRelMermaidCache.shared().getMermaid(parsed);
+        if (mermaid.isPresent()) {
           sections.add("convert-to-rel-section");
           titles.add("Convert To Rel");
           convertToRel =
               "<section id=\"convert-to-rel-section\"><h2>Convert To Rel</h2>\n"
-                  + sankeyWriter.writeMermaid(c.getConvertToRelTree())
+                  + mermaid.get()
                   + " </section>";
         } else {
           convertToRel = "";
@@ -234,79 +230,81 @@ public class SingleProfileJsonHtmlReport implements Report {
       sectionBuilder.append(
           String.format("<a class=\"nav-link\" href=\"#%s\">%s</a>\n", sectionName, title));
     }
-    return "<!doctype html>\n"
-        + "<html   lang=\"en\">\n"
-        + "<head>\n"
-        + "  <meta charset=\"utf-8\">\n"
-        + "  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n"
-        + "  <title>"
-        + this.getTitle()
-        + " </title>\n"
-        + "  <meta name\"description\" content=\"report for "
-        + this.getTitle()
-        + " \">\n"
-        + "  <meta name=\"author\" content=\"dremio\">\n"
-        + "  <meta property=\"og:title\" content=\""
-        + this.getTitle()
-        + "\">\n"
-        + "  <meta property=\"og:type\" content=\"website\">\n"
-        + "  <meta property=\"og:description\" content=\"plotly generated graphs\">\n"
-        + "<style>\n"
-        + "caption {\n"
-        + "font-weight: bold;\n"
-        + "font-size: 24px;\n"
-        + "text-align: left;\n"
-        + "color: #333;\n"
-        + "	margin-bottom: 16px;\n"
-        + "	margin-top: 16px;\n"
-        + "}\n"
-        + "table {\n"
-        + "border-collapse: collapse;\n"
-        + "text-align: center;\n"
-        + "vertical-align: middle;\n"
-        + "}\n"
-        + "th, td {\n"
-        + "border: 1px solid black;\n"
-        + "padding: 8px;\n"
-        + "}\n"
-        + "thead {\n"
-        + "background-color: #333;\n"
-        + "color: white;\n"
-        + "font-size: 0.875rem;\n"
-        + "text-transform: uppercase;\n"
-        + "letter-spacing: 2%;\n"
-        + "}\n"
-        + "tbody tr:nth-child(odd) {\n"
-        + "background-color: #fff;\n"
-        + "}\n"
-        + "tbody tr:nth-child(even) {\n"
-        + "background-color: #eee;\n"
-        + "}\n"
-        + "tbody th {\n"
-        + "background-color: #36c;\n"
-        + "color: #fff;\n"
-        + " text-align: left;\n"
-        + "}\n"
-        + "tbody tr:nth-child(even) th {\n"
-        + "background-color: #25c;\n"
-        + "}\n"
-        + "</style>\n"
-        + " <style> \n"
-        + "  .mermaidTooltip { \n"
-        + "    position: absolute; \n"
-        + "    text-align: center; \n"
-        + "    max-width: 200px; \n"
-        + "    padding: 2px; \n"
-        + "    font-family: 'trebuchet ms', verdana, arial; \n"
-        + "    font-size: 12px; \n"
-        + "    background: #ffffde;\n"
-        + "    border: 1px solid #aaaa33;\n"
-        + "    border-radius: 2px;\n"
-        + "    pointer-events: none;\n"
-        + "    z-index: 100; \n"
-        + "}\n"
-        + " </style>\n"
-        + """
+    final ReportOutput out = new ReportOutput(stream);
+    out.write(
+        "<!doctype html>\n"
+            + "<html   lang=\"en\">\n"
+            + "<head>\n"
+            + "  <meta charset=\"utf-8\">\n"
+            + "  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n"
+            + "  <title>"
+            + this.getTitle()
+            + " </title>\n"
+            + "  <meta name\"description\" content=\"report for "
+            + this.getTitle()
+            + " \">\n"
+            + "  <meta name=\"author\" content=\"dremio\">\n"
+            + "  <meta property=\"og:title\" content=\""
+            + this.getTitle()
+            + "\">\n"
+            + "  <meta property=\"og:type\" content=\"website\">\n"
+            + "  <meta property=\"og:description\" content=\"plotly generated graphs\">\n"
+            + "<style>\n"
+            + "caption {\n"
+            + "font-weight: bold;\n"
+            + "font-size: 24px;\n"
+            + "text-align: left;\n"
+            + "color: #333;\n"
+            + "	margin-bottom: 16px;\n"
+            + "	margin-top: 16px;\n"
+            + "}\n"
+            + "table {\n"
+            + "border-collapse: collapse;\n"
+            + "text-align: center;\n"
+            + "vertical-align: middle;\n"
+            + "}\n"
+            + "th, td {\n"
+            + "border: 1px solid black;\n"
+            + "padding: 8px;\n"
+            + "}\n"
+            + "thead {\n"
+            + "background-color: #333;\n"
+            + "color: white;\n"
+            + "font-size: 0.875rem;\n"
+            + "text-transform: uppercase;\n"
+            + "letter-spacing: 2%;\n"
+            + "}\n"
+            + "tbody tr:nth-child(odd) {\n"
+            + "background-color: #fff;\n"
+            + "}\n"
+            + "tbody tr:nth-child(even) {\n"
+            + "background-color: #eee;\n"
+            + "}\n"
+            + "tbody th {\n"
+            + "background-color: #36c;\n"
+            + "color: #fff;\n"
+            + " text-align: left;\n"
+            + "}\n"
+            + "tbody tr:nth-child(even) th {\n"
+            + "background-color: #25c;\n"
+            + "}\n"
+            + "</style>\n"
+            + " <style> \n"
+            + "  .mermaidTooltip { \n"
+            + "    position: absolute; \n"
+            + "    text-align: center; \n"
+            + "    max-width: 200px; \n"
+            + "    padding: 2px; \n"
+            + "    font-family: 'trebuchet ms', verdana, arial; \n"
+            + "    font-size: 12px; \n"
+            + "    background: #ffffde;\n"
+            + "    border: 1px solid #aaaa33;\n"
+            + "    border-radius: 2px;\n"
+            + "    pointer-events: none;\n"
+            + "    z-index: 100; \n"
+            + "}\n"
+            + " </style>\n"
+            + """
          <style>
     html {
      scroll-behavior: smooth;
@@ -388,36 +386,49 @@ public class SingleProfileJsonHtmlReport implements Report {
     }
 </style>
 """
-        + "<style>\n"
-        + jsLibProvider.getSortableCSSText()
-        + "</style>\n"
-        + "<script>\n"
-        + jsLibProvider.getSortableText()
-        + "</script>\n"
-        + "<script>\n"
-        + jsLibProvider.getCSVExportText()
-        + "</script>\n"
-        + "<script>\n"
-        + jsLibProvider.getFilterTableText()
-        + "</script>\n"
-        + String.join("\n", scripts)
-        + "</head>\n"
-        + """
-                 <body>
+            + "<style>\n"
+            + jsLibProvider.getSortableCSSText()
+            + "</style>\n"
+            + "<script>\n"
+            + jsLibProvider.getSortableText()
+            + "</script>\n"
+            + "<script>\n"
+            + jsLibProvider.getCSVExportText()
+            + "</script>\n"
+            + "<script>\n"
+            + jsLibProvider.getFilterTableText()
+            + "</script>\n");
+    if (embedLibraries) {
+      out.write("<script>");
+      jsLibProvider.getLibSection(JsLibraryTextProvider.PLOTLY).writeTo(out);
+      out.write("</script>\n<script>");
+      jsLibProvider.getLibSection(JsLibraryTextProvider.MERMAID).writeTo(out);
+      out.write("</script>");
+    }
+    out.write(
+        "</head>\n"
+            + """
+                     <body>
 
-          <div id="navbar">
-            <div style="float: left;">
-            <h3 style="color: white" >Profile</h3>
-            </div>
-            <div style="float:right;">
-            %s
-            </div>
-          </div>
-                 <main class="content">
-          """
-            .formatted(sectionBuilder.toString())
-        + String.join("\n", htmlFragments)
-        + """
+              <div id="navbar">
+                <div style="float: left;">
+                <h3 style="color: white" >Profile</h3>
+                </div>
+                <div style="float:right;">
+                %s
+                </div>
+              </div>
+                     <main class="content">
+              """
+                .formatted(sectionBuilder.toString()));
+    for (int i = 0; i < htmlFragments.size(); i++) {
+      if (i > 0) {
+        out.write("\n");
+      }
+      out.write(htmlFragments.get(i));
+    }
+    out.write(
+        """
        </main>
        <script>
   // When the user scrolls the page, execute myFunction
@@ -457,41 +468,8 @@ public class SingleProfileJsonHtmlReport implements Report {
    });
  </script>
 """
-        + "</body>";
-  }
-
-  private List<PhaseThread> getPhaseThreads() {
-    final List<PhaseThread> phaseThreads = new ArrayList<>();
-    if (this.parsed != null && this.parsed.getFragmentProfile() != null) {
-      for (final FragmentProfile phase : this.parsed.getFragmentProfile()) {
-        if (phase != null && phase.getMinorFragmentProfile() != null) {
-          final int phaseId = phase.getMajorFragmentId();
-          for (final MinorFragmentProfile phaseThread : phase.getMinorFragmentProfile()) {
-            final long threadId = phaseThread.getMinorFragmentId();
-            final PhaseThread pt = getPhaseThread(phaseThread, phaseId, threadId);
-            phaseThreads.add(pt);
-          }
-        }
-      }
-    }
-    return phaseThreads;
-  }
-
-  private static PhaseThread getPhaseThread(
-      MinorFragmentProfile phaseThread, int phaseId, long threadId) {
-    final PhaseThread pt = new PhaseThread();
-    pt.setPhaseId(phaseId);
-    pt.setThreadId(threadId);
-    pt.setRunDuration(phaseThread.getRunDuration());
-    pt.setBlockedDuration(phaseThread.getBlockedDuration());
-    pt.setBlockedOnUpstreamDuration(phaseThread.getBlockedOnUpstreamDuration());
-    pt.setBlockedOnDownstreamDuration(phaseThread.getBlockedOnDownstreamDuration());
-    pt.setBlockedOnSharedResourceDuration(phaseThread.getBlockedOnSharedResourceDuration());
-    pt.setSleepingDuration(phaseThread.getSleepingDuration());
-    pt.setTotalTimeMillis(phaseThread.getEndTime() - phaseThread.getStartTime());
-    pt.setEndTime(phaseThread.getEndTime());
-    pt.setStartTime(phaseThread.getEndTime() - pt.getRunDuration());
-    return pt;
+            + "</body>");
+    out.flush();
   }
 
   public ProfileJSON getParsed() {
@@ -13,22 +13,28 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.util.Collection;
 
 public abstract class ProfileJSONReport {
-  public final String generateReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  /**
+   * renders the report as an html section
+   *
+   * @param index index of the profile, built once and shared by all the reports of a page
+   * @param relations plan relations of the profile
+   * @return the html section
+   */
+  public final String generateReport(ProfileIndex index, Collection<PlanRelation> relations) {
     return """
            <section id="%s">
            %s
            </section>
            """
-        .formatted(htmlSectionName(), createReport(profileJson, relations));
+        .formatted(htmlSectionName(), createReport(index, relations));
   }
 
-  protected abstract String createReport(
-      ProfileJSON profileJson, Collection<PlanRelation> relations);
+  protected abstract String createReport(ProfileIndex index, Collection<PlanRelation> relations);
 
   public abstract String htmlSectionName();
 
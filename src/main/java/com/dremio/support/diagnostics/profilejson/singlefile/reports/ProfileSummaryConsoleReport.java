@@ -13,9 +13,9 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.QueryState;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
-import com.dremio.support.diagnostics.profilejson.plan.PlanRelationshipParser;
 import com.dremio.support.diagnostics.profilejson.singlefile.PhaseBlockStats;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.BlockReport;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.BlockReport.MostBlockedReport;
@@ -48,7 +48,6 @@ public class ProfileSummaryConsoleReport implements Report {
       Logger.getLogger(ProfileSummaryConsoleReport.class.getName());
   private final ProfileJSON parsed;
   private final boolean showPlanDetails;
-  private final PlanRelationshipParser planParser = new PlanRelationshipParser();
   private final String operatorTemplate =
       "%s. records(%,d) batches(%,d) memory used(%s) run time(%s) p/sec(%,.2f) name(%s)\n"
           + "\t|\n"
@@ -98,13 +97,8 @@ public class ProfileSummaryConsoleReport implements Report {
         builder,
         "command pool    ",
         Human.getHumanDurationFromMillis(this.parsed.getCommandPoolWaitMillis()));
-    final List<PlanRelation> planRelations;
-    final String jsonPlan = this.parsed.getJsonPlan();
-    if (jsonPlan != null) {
-      planRelations = planParser.getPlanRelations(this.parsed);
-    } else {
-      planRelations = new ArrayList<>();
-    }
+    final ProfileIndex index = ProfileIndex.of(this.parsed);
+    final List<PlanRelation> planRelations = index.planRelations();
     LOGGER.fine(() -> String.format("%d plans phases found%n", planRelations.size()));
     final long phaseCount =
         planRelations.stream()
@@ -143,7 +137,7 @@ public class ProfileSummaryConsoleReport implements Report {
     }
 
     final OperatorRecordsScannedReportResult recordsReport =
-        OperatorsRecordsScannedReport.generateRecordReport(parsed, planRelations);
+        OperatorsRecordsScannedReport.generateRecordReport(index, planRelations);
     if (recordsReport != null) {
       if (recordsReport.getTop10RecordsScanned() != null) {
         builder.append("\n");
@@ -235,7 +229,7 @@ public class ProfileSummaryConsoleReport implements Report {
       }
     }
     final Collection<Collection<HtmlTableDataColumn<String, Long>>> memoryByPhaseReport =
-        MemoryUsed.generateMemoryByPhaseReport(this.parsed);
+        MemoryUsed.generateMemoryByPhaseReport(index);
 
     if (!memoryByPhaseReport.isEmpty()) {
       builder.append("\n");
@@ -248,7 +242,7 @@ public class ProfileSummaryConsoleReport implements Report {
       }
     }
     final Collection<Collection<HtmlTableDataColumn<String, Long>>> memoryByPhaseByNodeReport =
-        MemoryUsedPerNode.generateMemoryByPhaseReport(this.parsed);
+        MemoryUsedPerNode.generateMemoryByPhaseReport(index);
     if (!memoryByPhaseByNodeReport.isEmpty()) {
       builder.append("\n");
       builder.append("memory usage by phase by node\n");
@@ -266,7 +260,7 @@ public class ProfileSummaryConsoleReport implements Report {
     builder.append("row estimate comparisons\n");
     builder.append("------------------------\n");
     final Collection<RowEstimateDetail> estimates =
-        RowEstimateReport.getEstimates(this.parsed, planRelations);
+        RowEstimateReport.getEstimates(index, planRelations);
     if (estimates.isEmpty()) {
       builder.append("* no row estimates found\n");
     } else {
@@ -304,7 +298,7 @@ public class ProfileSummaryConsoleReport implements Report {
     builder.append("------------\n");
     final List<String> blockingBlockingOperatorFindings = new ArrayList<>();
     final MostBlockedReport blockingOperatorReport =
-        BlockReport.getBlockingOperatorReport(planRelations, this.parsed);
+        BlockReport.getBlockingOperatorReport(planRelations, index);
     if (blockingOperatorReport.getBlockedDownstreamMillis() > 0) {
       final String blockedUpstreamTime =
           Human.getHumanDurationFromMillis(blockingOperatorReport.getBlockedDownstreamMillis());
@@ -374,7 +368,7 @@ public class ProfileSummaryConsoleReport implements Report {
     builder.append("\n");
     builder.append("findings\n");
     builder.append("--------\n");
-    final Collection<String> findings = FindingsReport.searchForFindings(parsed, planRelations);
+    final Collection<String> findings = FindingsReport.searchForFindings(index, planRelations);
     if (findings.isEmpty()) {
       builder.append("no findings\n");
     } else {
@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.SummaryOut;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.BlockReport;
@@ -25,7 +26,6 @@ import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.Pla
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.RowEstimateReport;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.StateTimingsReport;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.TopLineProfileSummary;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -35,7 +35,7 @@ public class ProfileSummaryReport {
 
   public SummaryOut generateSummary(
       final boolean showPlanDetails,
-      final ProfileJSON parsed,
+      final ProfileIndex index,
       final Collection<PlanRelation> relations) {
     final StringBuilder builder = new StringBuilder();
     List<String> sections = new ArrayList<>();
@@ -54,10 +54,10 @@ public class ProfileSummaryReport {
     for (final ProfileJSONReport report : reports) {
       sections.add(report.htmlSectionName());
       titles.add(report.htmlTitle());
-      builder.append(report.generateReport(parsed, relations));
+      builder.append(report.generateReport(index, relations));
     }
     if (showPlanDetails) {
-      builder.append(new PlanDetailsReport().generateReport(parsed, relations));
+      builder.append(new PlanDetailsReport().generateReport(index, relations));
     }
     return new SummaryOut(builder.toString(), sections, titles);
   }
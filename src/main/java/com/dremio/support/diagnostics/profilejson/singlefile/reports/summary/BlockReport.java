@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.BlockFinder;
 import com.dremio.support.diagnostics.profilejson.singlefile.PhaseBlockStats;
@@ -20,10 +21,6 @@ import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSON
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import java.util.ArrayList;
@@ -33,7 +30,6 @@ import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import org.apache.commons.lang3.StringUtils;
 
 public class BlockReport extends ProfileJSONReport {
 
@@ -42,9 +38,9 @@ public class BlockReport extends ProfileJSONReport {
 
   @Override
   protected String createReport(
-      final ProfileJSON profileJson, final Collection<PlanRelation> relations) {
+      final ProfileIndex index, final Collection<PlanRelation> relations) {
     final MostBlockedReport blockingOperatorReport =
-        BlockReport.getBlockingOperatorReport(relations, profileJson);
+        BlockReport.getBlockingOperatorReport(relations, index);
     if (blockingOperatorReport == null) {
       return "";
     }
@@ -295,59 +291,44 @@ public class BlockReport extends ProfileJSONReport {
   }
 
   public static MostBlockedReport getBlockingOperatorReport(
-      final Collection<PlanRelation> planRelations, final ProfileJSON profileJSON) {
-    return new BlockReport().getBlockingOperator(planRelations, profileJSON);
+      final Collection<PlanRelation> planRelations, final ProfileIndex index) {
+    return new BlockReport().getBlockingOperator(planRelations, index);
   }
 
   public MostBlockedReport getBlockingOperator(
-      final Collection<PlanRelation> planRelations, final ProfileJSON profileJSON) {
-    MinorFragmentProfile mostBlocked = null;
-    long mostBlockedDuration = 0;
-    List<String> blockedPhaseOperatorNames = new ArrayList<>();
-    String fullName = "";
-    String blockedPhaseName = "";
-    if (profileJSON.getFragmentProfile() == null) {
+      final Collection<PlanRelation> planRelations, final ProfileIndex index) {
+    if (index.profile() == null || index.profile().getFragmentProfile() == null) {
       return new MostBlockedReport();
     }
-    for (final FragmentProfile fragment : profileJSON.getFragmentProfile()) {
-      if (fragment == null || fragment.getMinorFragmentProfile() == null) {
-        continue;
-      }
-      for (final MinorFragmentProfile minorFragment : fragment.getMinorFragmentProfile()) {
-        if (minorFragment == null) {
-          continue;
-        }
-        final long blockedDuration = minorFragment.getBlockedDuration();
-        if (blockedDuration > mostBlockedDuration) {
-          mostBlocked = minorFragment;
-          mostBlockedDuration = blockedDuration;
-          blockedPhaseOperatorNames = new ArrayList<>();
-          final String phaseName =
-              StringUtils.leftPad(String.valueOf(fragment.getMajorFragmentId()), 2, "0");
-          final String threadId =
-              StringUtils.leftPad(String.valueOf(minorFragment.getMinorFragmentId()), 2, "0");
-          fullName = String.format("%s-%s-xx", phaseName, threadId);
-          blockedPhaseName = phaseName;
-          if (minorFragment.getOperatorProfile() == null) {
-            continue;
-          }
-          for (final OperatorProfile operatorProfile : minorFragment.getOperatorProfile()) {
-            final String operatorId =
-                StringUtils.leftPad(String.valueOf(operatorProfile.getOperatorId()), 2, "0");
-            blockedPhaseOperatorNames.add(String.format("%s-%s", phaseName, operatorId));
-          }
-        }
+    int mostBlocked = -1;
+    long mostBlockedDuration = 0;
+    for (int t = 0; t < index.threadCount(); t++) {
+      final long blockedDuration = index.threadBlockedDuration(t);
+      if (blockedDuration > mostBlockedDuration) {
+        mostBlocked = t;
+        mostBlockedDuration = blockedDuration;
       }
     }
-    if (mostBlocked == null) {
+    if (mostBlocked < 0) {
       return new MostBlockedReport();
     }
+    final String blockedPhaseName = index.phaseName(index.threadPhase(mostBlocked));
+    final String fullName =
+        String.format(
+            "%s-%s-xx", blockedPhaseName, ProfileIndex.twoDigits(index.threadId(mostBlocked)));
+    final List<String> blockedPhaseOperatorNames = new ArrayList<>();
+    for (int o = index.threadOperatorStart(mostBlocked);
+        o < index.threadOperatorEnd(mostBlocked);
+        o++) {
+      blockedPhaseOperatorNames.add(index.phaseOperatorName(o));
+    }
     final MostBlockedReport blockedReport = new MostBlockedReport();
     blockedReport.setName(fullName);
-    blockedReport.setBlockedDownstreamMillis(mostBlocked.getBlockedOnDownstreamDuration());
-    blockedReport.setBlockedUpstreamMillis(mostBlocked.getBlockedOnUpstreamDuration());
-    blockedReport.setBlockedOnSharedMillis(mostBlocked.getBlockedOnSharedResourceDuration());
-    if (mostBlocked.getBlockedOnDownstreamDuration() > 0) {
+    blockedReport.setBlockedDownstreamMillis(index.threadBlockedOnDownstreamDuration(mostBlocked));
+    blockedReport.setBlockedUpstreamMillis(index.threadBlockedOnUpstreamDuration(mostBlocked));
+    blockedReport.setBlockedOnSharedMillis(
+        index.threadBlockedOnSharedResourceDuration(mostBlocked));
+    if (index.threadBlockedOnDownstreamDuration(mostBlocked) > 0) {
       final Set<String> downstreamPhases = new LinkedHashSet<>();
       for (final String blockedPhaseOperatorName : blockedPhaseOperatorNames) {
         final Collection<String> downstream =
@@ -360,12 +341,12 @@ public class BlockReport extends ProfileJSONReport {
         if (phase.equals(blockedPhaseName)) {
           continue;
         }
-        downstream.add(blockFinder.getDownstreamPhaseBlockStats(phase, mostBlocked, profileJSON));
+        downstream.add(blockFinder.getDownstreamPhaseBlockStats(phase, mostBlocked, index));
       }
       downstream.sort(Comparator.comparing(PhaseBlockStats::getRunTime).reversed());
       blockedReport.setDownstream(downstream);
     }
-    if (mostBlocked.getBlockedOnUpstreamDuration() > 0) {
+    if (index.threadBlockedOnUpstreamDuration(mostBlocked) > 0) {
       final Set<String> upstreamPhases = new LinkedHashSet<>();
       for (final String blockedPhaseOperatorName : blockedPhaseOperatorNames) {
         final Collection<String> upstream =
@@ -379,14 +360,15 @@ public class BlockReport extends ProfileJSONReport {
         if (phase.equals(blockedPhaseName)) {
           continue;
         }
-        upstream.add(blockFinder.getUpstreamPhaseBlockStats(phase, mostBlocked, profileJSON));
+        upstream.add(blockFinder.getUpstreamPhaseBlockStats(phase, mostBlocked, index));
       }
       upstream.sort(Comparator.comparing(PhaseBlockStats::getRunTime).reversed());
       blockedReport.setUpstream(upstream);
     }
 
-    if (mostBlocked.getBlockedOnSharedResourceDuration() > 0) {
-      blockedReport.setBlockedOnSharedMillis(mostBlocked.getBlockedOnSharedResourceDuration());
+    if (index.threadBlockedOnSharedResourceDuration(mostBlocked) > 0) {
+      blockedReport.setBlockedOnSharedMillis(
+          index.threadBlockedOnSharedResourceDuration(mostBlocked));
     }
     return blockedReport;
   }
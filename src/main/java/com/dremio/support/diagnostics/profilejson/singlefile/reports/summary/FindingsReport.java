@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.RowEstimateReport.RowEstimateDetail;
@@ -20,23 +21,19 @@ import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.Sta
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.util.*;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 
 public class FindingsReport extends ProfileJSONReport {
 
   private final double percentageQueryThreshold = 5.0;
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
     HtmlTableBuilder builder = new HtmlTableBuilder();
     List<Collection<HtmlTableDataColumn<String, Number>>> findings = new ArrayList<>();
-    for (String finding : FindingsReport.searchForFindings(profileJson, relations)) {
+    for (String finding : FindingsReport.searchForFindings(index, relations)) {
       findings.add(Collections.singletonList(new HtmlTableDataColumn<>(finding, null, false)));
     }
     return builder.generateTable(
@@ -44,61 +41,50 @@ public class FindingsReport extends ProfileJSONReport {
   }
 
   public static Collection<String> searchForFindings(
-      ProfileJSON profileJson, Collection<PlanRelation> relations) {
+      ProfileIndex index, Collection<PlanRelation> relations) {
+    final ProfileJSON profileJson = index.profile();
     final List<String> findings = new ArrayList<>();
     final FindingsReport report = new FindingsReport();
-    Collection<RowEstimateDetail> estimates =
-        RowEstimateReport.getEstimates(profileJson, relations);
+    Collection<RowEstimateDetail> estimates = RowEstimateReport.getEstimates(index, relations);
     findings.addAll(report.getPhasesWithIncorrectEstimate(profileJson, estimates));
     // findings.addAll(report.getSignificantSingleThreadedOperations(profileJson,
     // relations));
     // findings.addAll(report.getAllJoinsThatAreReversedIncorrectly(profileJson,
     // relations));
     findings.addAll(report.getTimeConsumedFinding(profileJson));
-    findings.addAll(report.getClientBlocking(profileJson));
+    findings.addAll(report.getClientBlocking(index));
     findings.addAll(report.getAllNestedLoopJoins(relations));
     findings.addAll(report.getPartitionPruning(profileJson, estimates, relations));
     return findings;
   }
 
-  private Collection<String> getClientBlocking(final ProfileJSON profileJson) {
+  private Collection<String> getClientBlocking(final ProfileIndex index) {
+    final ProfileJSON profileJson = index.profile();
     if (profileJson.getFragmentProfile() == null) {
       return new ArrayList<>();
     }
     final List<String> result = new ArrayList<>();
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (fragmentProfile == null || fragmentProfile.getMinorFragmentProfile() == null) {
+    for (int o = 0; o < index.operatorCount(); o++) {
+      if (index.phaseId(index.operatorPhase(o)) != 0 || index.operatorId(o) != 0) {
         continue;
       }
-      for (final MinorFragmentProfile minorFragmentProfile :
-          fragmentProfile.getMinorFragmentProfile()) {
-        if (minorFragmentProfile == null || minorFragmentProfile.getOperatorProfile() == null) {
-          continue;
+      final int thread = index.operatorThread(o);
+      final long blockedOnDownstream = index.threadBlockedOnDownstreamDuration(thread);
+      if (blockedOnDownstream > 0) {
+        long duration = profileJson.getEnd() - profileJson.getStart();
+        final double percentOfQuery;
+        if (duration == 0) {
+          percentOfQuery = 0.0;
+        } else {
+          percentOfQuery = blockedOnDownstream * 100.0 / duration;
         }
-        for (final OperatorProfile operatorProfile : minorFragmentProfile.getOperatorProfile()) {
-          if (fragmentProfile.getMajorFragmentId() == 0 && operatorProfile.getOperatorId() == 0) {
-            if (minorFragmentProfile.getBlockedOnDownstreamDuration() > 0) {
-              long duration = profileJson.getEnd() - profileJson.getStart();
-              final double percentOfQuery;
-              if (duration == 0 || minorFragmentProfile.getBlockedOnDownstreamDuration() == 0) {
-                percentOfQuery = 0.0;
-              } else {
-                percentOfQuery =
-                    minorFragmentProfile.getBlockedOnDownstreamDuration() * 100.0 / duration;
-              }
-              if (percentOfQuery > percentageQueryThreshold) {
-                result.add(
-                    String.format(
-                        "Phase 00-%s-00 is blocked by the client for %s which is %.2f%% of query"
-                            + " time",
-                        StringUtils.leftPad(
-                            String.valueOf(minorFragmentProfile.getMinorFragmentId()), 2, "0"),
-                        Human.getHumanDurationFromMillis(
-                            minorFragmentProfile.getBlockedOnDownstreamDuration()),
-                        percentOfQuery));
-              }
-            }
-          }
+        if (percentOfQuery > percentageQueryThreshold) {
+          result.add(
+              String.format(
+                  "Phase 00-%s-00 is blocked by the client for %s which is %.2f%% of query time",
+                  ProfileIndex.twoDigits(index.threadId(thread)),
+                  Human.getHumanDurationFromMillis(blockedOnDownstream),
+                  percentOfQuery));
         }
       }
     }
@@ -14,15 +14,12 @@
 package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
 import com.dremio.support.diagnostics.profilejson.CoreOperatorType;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import com.google.common.collect.Iterables;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,40 +27,31 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.lang3.StringUtils;
 
 public class MemoryUsed extends ProfileJSONReport {
 
+  /** phase operator and type, the labels are only built once per key */
+  record PhaseOperatorKey(String phaseOperatorName, CoreOperatorType operatorType) {
+    String label() {
+      return phaseOperatorName + " " + operatorType;
+    }
+  }
+
   public static Collection<Collection<HtmlTableDataColumn<String, Long>>>
-      generateMemoryByPhaseReport(final ProfileJSON profileJson) {
-    if (profileJson == null || profileJson.getFragmentProfile() == null) {
+      generateMemoryByPhaseReport(final ProfileIndex index) {
+    if (index.profile() == null || index.profile().getFragmentProfile() == null) {
       return new ArrayList<>();
     }
+    final Map<PhaseOperatorKey, Long> totals = new HashMap<>();
+    for (int o = 0; o < index.operatorCount(); o++) {
+      totals.merge(
+          new PhaseOperatorKey(index.phaseOperatorName(o), index.operatorType(o)),
+          index.operatorPeakMemory(o),
+          Long::sum);
+    }
     final Map<String, Long> memoryUsedByPhase = new HashMap<>();
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (fragmentProfile.getMinorFragmentProfile() == null) {
-        continue;
-      }
-      for (final MinorFragmentProfile minorFragmentProfile :
-          fragmentProfile.getMinorFragmentProfile()) {
-        if (minorFragmentProfile.getOperatorProfile() == null) {
-          continue;
-        }
-        for (final OperatorProfile operatorProfile : minorFragmentProfile.getOperatorProfile()) {
-          final String phaseName =
-              String.format(
-                  "%s-%s %s",
-                  StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0"),
-                  StringUtils.leftPad(String.valueOf(operatorProfile.getOperatorId()), 2, "0"),
-                  CoreOperatorType.values()[operatorProfile.getOperatorType()]);
-          if (memoryUsedByPhase.containsKey(phaseName)) {
-            final long total = memoryUsedByPhase.get(phaseName);
-            memoryUsedByPhase.put(phaseName, total + operatorProfile.getPeakLocalMemoryAllocated());
-          } else {
-            memoryUsedByPhase.put(phaseName, operatorProfile.getPeakLocalMemoryAllocated());
-          }
-        }
-      }
+    for (final Map.Entry<PhaseOperatorKey, Long> entry : totals.entrySet()) {
+      memoryUsedByPhase.merge(entry.getKey().label(), entry.getValue(), Long::sum);
     }
     final List<Collection<HtmlTableDataColumn<String, Long>>> rows = new ArrayList<>();
     for (final Map.Entry<String, Long> entry : memoryUsedByPhase.entrySet()) {
@@ -86,9 +74,9 @@ public class MemoryUsed extends ProfileJSONReport {
   }
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
     Collection<Collection<HtmlTableDataColumn<String, Long>>> rows =
-        generateMemoryByPhaseReport(profileJson);
+        generateMemoryByPhaseReport(index);
     if (rows.isEmpty()) {
       return "<h2>Total Peak Memory Allocated by Phase (across nodes)</h2><p>no records found</p>";
     }
@@ -15,16 +15,12 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
-import com.dremio.support.diagnostics.profilejson.CoreOperatorType;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import com.google.common.collect.Iterables;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,50 +28,37 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.lang3.StringUtils;
 
 public class MemoryUsedPerNode extends ProfileJSONReport {
 
   public static Collection<Collection<HtmlTableDataColumn<String, Long>>>
-      generateMemoryByPhaseReport(final ProfileJSON profileJson) {
-    if (profileJson == null || profileJson.getFragmentProfile() == null) {
+      generateMemoryByPhaseReport(final ProfileIndex index) {
+    if (index.profile() == null || index.profile().getFragmentProfile() == null) {
       return new ArrayList<>();
     }
-    final Map<String, Map<String, Long>> memoryUsedByPhasePerNode = new HashMap<>();
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (fragmentProfile.getMinorFragmentProfile() == null) {
+    final Map<String, Map<MemoryUsed.PhaseOperatorKey, Long>> totalsPerNode = new HashMap<>();
+    for (int t = 0; t < index.threadCount(); t++) {
+      final String node = index.threadHost(t);
+      if (node == null || index.threadOperatorStart(t) == index.threadOperatorEnd(t)) {
         continue;
       }
-      for (final MinorFragmentProfile minorFragmentProfile :
-          fragmentProfile.getMinorFragmentProfile()) {
-        if (minorFragmentProfile.getOperatorProfile() == null
-            || minorFragmentProfile.getEndpoint() == null) {
-          continue;
-        }
-
-        final String node = minorFragmentProfile.getEndpoint().getAddress();
-        final Map<String, Long> memoryUsedByPhase;
-        if (memoryUsedByPhasePerNode.containsKey(node)) {
-          memoryUsedByPhase = memoryUsedByPhasePerNode.get(node);
-        } else {
-          memoryUsedByPhase = new HashMap<>();
-        }
-        for (final OperatorProfile operatorProfile : minorFragmentProfile.getOperatorProfile()) {
-          final String phaseName =
-              String.format(
-                  "%s-%s %s",
-                  StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0"),
-                  StringUtils.leftPad(String.valueOf(operatorProfile.getOperatorId()), 2, "0"),
-                  CoreOperatorType.values()[operatorProfile.getOperatorType()]);
-          if (memoryUsedByPhase.containsKey(phaseName)) {
-            final long total = memoryUsedByPhase.get(phaseName);
-            memoryUsedByPhase.put(phaseName, total + operatorProfile.getPeakLocalMemoryAllocated());
-          } else {
-            memoryUsedByPhase.put(phaseName, operatorProfile.getPeakLocalMemoryAllocated());
-          }
-          memoryUsedByPhasePerNode.put(node, memoryUsedByPhase);
-        }
+      final Map<MemoryUsed.PhaseOperatorKey, Long> totals =
+          totalsPerNode.computeIfAbsent(node, k -> new HashMap<>());
+      for (int o = index.threadOperatorStart(t); o < index.threadOperatorEnd(t); o++) {
+        totals.merge(
+            new MemoryUsed.PhaseOperatorKey(index.phaseOperatorName(o), index.operatorType(o)),
+            index.operatorPeakMemory(o),
+            Long::sum);
+      }
+    }
+    final Map<String, Map<String, Long>> memoryUsedByPhasePerNode = new HashMap<>();
+    for (final Map.Entry<String, Map<MemoryUsed.PhaseOperatorKey, Long>> entry :
+        totalsPerNode.entrySet()) {
+      final Map<String, Long> memoryUsedByPhase = new HashMap<>();
+      for (final Map.Entry<MemoryUsed.PhaseOperatorKey, Long> total : entry.getValue().entrySet()) {
+        memoryUsedByPhase.merge(total.getKey().label(), total.getValue(), Long::sum);
       }
+      memoryUsedByPhasePerNode.put(entry.getKey(), memoryUsedByPhase);
     }
     final List<Collection<HtmlTableDataColumn<String, Long>>> rows = new ArrayList<>();
     for (final Map.Entry<String, Map<String, Long>> entry : memoryUsedByPhasePerNode.entrySet()) {
@@ -98,9 +81,9 @@ public class MemoryUsedPerNode extends ProfileJSONReport {
   }
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
     Collection<Collection<HtmlTableDataColumn<String, Long>>> rows =
-        generateMemoryByPhaseReport(profileJson);
+        generateMemoryByPhaseReport(index);
     if (rows.isEmpty()) {
       return "<h2>Total Peak Memory Allocated by Phase By Node</h2><p>no records found</p>";
     }
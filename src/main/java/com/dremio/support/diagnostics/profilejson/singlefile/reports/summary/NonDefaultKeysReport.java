@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
@@ -72,7 +73,8 @@ public class NonDefaultKeysReport extends ProfileJSONReport {
   }
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
+    final ProfileJSON profileJson = index.profile();
     List<Collection<HtmlTableDataColumn<Object, Object>>> rows = new ArrayList<>();
     for (final SupportKey key : NonDefaultKeysReport.getNonDefaultOptions(profileJson)) {
       rows.add(
@@ -15,26 +15,15 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
-import com.dremio.support.diagnostics.profilejson.CoreOperatorType;
+import com.dremio.support.diagnostics.profilejson.AnalysisExecutor;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.InputProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 
 public class OperatorsRecordsScannedReport extends ProfileJSONReport {
 
@@ -109,159 +98,99 @@ public class OperatorsRecordsScannedReport extends ProfileJSONReport {
     }
   }
 
+  /**
+   * builds the operator details on the shared {@link AnalysisExecutor} and keeps the top 10 of each
+   * ranking in a single pass
+   *
+   * @param index index of the profile to analyze
+   * @param relations plan relations used to look up the condition of each operator
+   * @return the top 10 operators by records, process time, records per second and peak memory
+   */
   public static OperatorRecordsScannedReportResult generateRecordReport(
-      ProfileJSON profileJson, Collection<PlanRelation> relations) {
+      ProfileIndex index, Collection<PlanRelation> relations) {
     OperatorRecordsScannedReportResult result = new OperatorRecordsScannedReportResult();
-    if (profileJson == null) {
+    if (index.profile() == null || index.profile().getFragmentProfile() == null) {
       return result;
     }
-    List<FragmentProfile> fragmentProfiles = profileJson.getFragmentProfile();
-    if (fragmentProfiles == null) {
-      return result;
-    }
-    final int processors = Math.max(Runtime.getRuntime().availableProcessors() - 1, 2);
-    final ExecutorService threadPoolExecutor = Executors.newFixedThreadPool(processors);
-    final List<Future<?>> futures = new ArrayList<>();
-    final Lock operatorListLock = new ReentrantLock();
-    final List<OperatorRecordDetail> operators = new ArrayList<>();
-    for (final FragmentProfile fragmentProfile : fragmentProfiles) {
-      final List<MinorFragmentProfile> minorFragmentProfiles =
-          fragmentProfile.getMinorFragmentProfile();
-      if (minorFragmentProfiles == null) {
-        continue;
+    final Map<String, String> conditions = conditionsByPhaseOperator(relations);
+    final int[] withInputs = new int[index.operatorCount()];
+    int count = 0;
+    for (int o = 0; o < index.operatorCount(); o++) {
+      if (index.operatorHasInputs(o)) {
+        withInputs[count++] = o;
       }
-      for (final MinorFragmentProfile minorFragmentProfile : minorFragmentProfiles) {
-        final List<OperatorProfile> operatorProfiles = minorFragmentProfile.getOperatorProfile();
-        if (operatorProfiles == null) {
-          continue;
-        }
-        for (final OperatorProfile operatorProfile : operatorProfiles) {
-          final CoreOperatorType operatorType =
-              CoreOperatorType.values()[operatorProfile.getOperatorType()];
-          final String phaseId =
-              StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0");
-          final String threadId =
-              StringUtils.leftPad(
-                  String.valueOf(minorFragmentProfile.getMinorFragmentId()), 2, "0");
-          final String operatorId =
-              StringUtils.leftPad(String.valueOf(operatorProfile.getOperatorId()), 2, "0");
-          final List<InputProfile> inputProfiles = operatorProfile.getInputProfile();
-          if (inputProfiles == null) {
-            continue;
-          }
-          futures.add(
-              threadPoolExecutor.submit(
-                  () -> {
-                    long records = 0;
-                    long batches = 0;
-                    for (final InputProfile inputProfile : inputProfiles) {
-                      if (inputProfile == null) {
-                        continue;
-                      }
-                      records += inputProfile.getRecords();
-                      batches += inputProfile.getBatches();
-                    }
-                    OperatorRecordDetail detail = new OperatorRecordDetail();
-
-                    detail.setName(
-                        String.format(
-                            "%s-%s-%s %s", phaseId, threadId, operatorId, operatorType.toString()));
-                    detail.setBatches(batches);
-                    detail.setRecords(records);
-                    detail.setRunTimeNanos(operatorProfile.getProcessNanos());
-                    detail.setPeakLocalMemoryAllocated(
-                        operatorProfile.getPeakLocalMemoryAllocated());
-                    for (PlanRelation planRelation : relations) {
-                      String phaseOperatorName = String.format("%s-%s", phaseId, operatorId);
-                      if (planRelation.getName().equals(phaseOperatorName)) {
-                        if (planRelation.getValues().containsKey("condition")) {
-                          detail.setCondition(planRelation.getValues().get("condition").toString());
-                          break;
-                        }
-                      }
-                    }
-                    operatorListLock.lock();
-                    try {
-                      operators.add(detail);
-                    } finally {
-                      operatorListLock.unlock();
-                    }
-                  }));
-        }
-      }
-      for (Future<?> future : futures) {
-        try {
-          future.get();
-        } catch (InterruptedException | ExecutionException e) {
-          throw new RuntimeException(e);
-        }
+    }
+    // each task only writes its own slot so no locking is needed
+    final OperatorRecordDetail[] details = new OperatorRecordDetail[count];
+    AnalysisExecutor.forEach(
+        count,
+        i -> {
+          final int operator = withInputs[i];
+          final OperatorRecordDetail detail = new OperatorRecordDetail();
+          detail.setName(
+              String.format(
+                  "%s-%s-%s %s",
+                  index.phaseName(index.operatorPhase(operator)),
+                  ProfileIndex.twoDigits(index.threadId(index.operatorThread(operator))),
+                  ProfileIndex.twoDigits(index.operatorId(operator)),
+                  index.operatorType(operator)));
+          detail.setBatches(index.operatorBatches(operator));
+          detail.setRecords(index.operatorRecords(operator));
+          detail.setRunTimeNanos(index.operatorProcessNanos(operator));
+          detail.setPeakLocalMemoryAllocated(index.operatorPeakMemory(operator));
+          detail.setCondition(conditions.get(index.phaseOperatorName(operator)));
+          details[i] = detail;
+        });
+    final TopK<OperatorRecordDetail> mostRecords =
+        new TopK<>(10, Comparator.comparingLong(OperatorRecordDetail::getRecords));
+    final TopK<OperatorRecordDetail> slowest =
+        new TopK<>(10, Comparator.comparingLong(OperatorRecordDetail::getRunTimeNanos));
+    final TopK<OperatorRecordDetail> slowestRates =
+        new TopK<>(
+            10, Comparator.comparingDouble(OperatorRecordDetail::getRecordsPerSecond).reversed());
+    final TopK<OperatorRecordDetail> mostPeakMemory =
+        new TopK<>(10, Comparator.comparingLong(OperatorRecordDetail::getPeakLocalMemoryAllocated));
+    for (final OperatorRecordDetail detail : details) {
+      mostRecords.offer(detail);
+      slowest.offer(detail);
+      if (detail.getRecords() > 0) {
+        slowestRates.offer(detail);
       }
-      futures.add(
-          threadPoolExecutor.submit(
-              () -> {
-                final List<OperatorRecordDetail> top10Records =
-                    operators.parallelStream()
-                        .sorted(
-                            (left, right) -> Long.compare(right.getRecords(), left.getRecords()))
-                        .limit(10)
-                        .collect(Collectors.toList());
-                result.setTop10RecordsScanned(top10Records);
-              }));
-      futures.add(
-          threadPoolExecutor.submit(
-              () -> {
-                final List<OperatorRecordDetail> top10Slowest =
-                    operators.parallelStream()
-                        .sorted(
-                            (left, right) ->
-                                Long.compare(right.getRunTimeNanos(), left.getRunTimeNanos()))
-                        .limit(10)
-                        .collect(Collectors.toList());
-                result.setTop10SlowestScanned(top10Slowest);
-              }));
-      futures.add(
-          threadPoolExecutor.submit(
-              () -> {
-                final List<OperatorRecordDetail> top10SlowestRates =
-                    operators.parallelStream()
-                        .filter(x -> x.getRecords() > 0)
-                        .sorted(
-                            Comparator.comparingDouble(OperatorRecordDetail::getRecordsPerSecond))
-                        .limit(10)
-                        .collect(Collectors.toList());
-                result.setTop10SlowestScannedRate(top10SlowestRates);
-              }));
-      futures.add(
-          threadPoolExecutor.submit(
-              () -> {
-                final List<OperatorRecordDetail> top10MostPeakMemory =
-                    operators.parallelStream()
-                        .filter(x -> x.getPeakLocalMemoryAllocated() > 0)
-                        .sorted(
-                            (left, right) ->
-                                Long.compare(
-                                    right.getPeakLocalMemoryAllocated(),
-                                    left.getPeakLocalMemoryAllocated()))
-                        .limit(10)
-                        .collect(Collectors.toList());
-                result.setTop10MostPeakMemory(top10MostPeakMemory);
-              }));
-      for (Future<?> future : futures) {
-        try {
-          future.get();
-        } catch (InterruptedException | ExecutionException e) {
-          throw new RuntimeException(e);
-        }
+      if (detail.getPeakLocalMemoryAllocated() > 0) {
+        mostPeakMemory.offer(detail);
       }
     }
+    result.setTop10RecordsScanned(mostRecords.toSortedList());
+    result.setTop10SlowestScanned(slowest.toSortedList());
+    result.setTop10SlowestScannedRate(slowestRates.toSortedList());
+    result.setTop10MostPeakMemory(mostPeakMemory.toSortedList());
     return result;
   }
 
+  /**
+   * hash index of the plan relation conditions keyed by phase operator name (such as "01-03"),
+   * the first relation with a condition wins when several share a name
+   */
+  private static Map<String, String> conditionsByPhaseOperator(
+      final Collection<PlanRelation> relations) {
+    final Map<String, String> conditions = new HashMap<>();
+    if (relations == null) {
+      return conditions;
+    }
+    for (final PlanRelation relation : relations) {
+      if (relation.getValues() != null && relation.getValues().containsKey("condition")) {
+        conditions.putIfAbsent(
+            relation.getName(), String.valueOf(relation.getValues().get("condition")));
+      }
+    }
+    return conditions;
+  }
+
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
 
     final OperatorRecordsScannedReportResult report =
-        OperatorsRecordsScannedReport.generateRecordReport(profileJson, relations);
+        OperatorsRecordsScannedReport.generateRecordReport(index, relations);
     final HtmlTableBuilder htmlTableBuilder = new HtmlTableBuilder();
 
     final StringBuilder builder = new StringBuilder();
@@ -15,6 +15,7 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
@@ -30,7 +31,8 @@ import java.util.List;
 public class PlanDetailsReport extends ProfileJSONReport {
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
+    final ProfileJSON profileJson = index.profile();
     final Collection<PlanDetail> planDetails =
         PlanDetailsReport.getPlanDetails(profileJson, relations);
     final HtmlTableBuilder builder = new HtmlTableBuilder();
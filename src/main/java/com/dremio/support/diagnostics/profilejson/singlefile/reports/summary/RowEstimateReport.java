@@ -15,16 +15,12 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
-import com.dremio.support.diagnostics.profilejson.CoreOperatorType;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
-import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.InputProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
-import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -35,16 +31,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 
 public class RowEstimateReport extends ProfileJSONReport {
 
   private static final Logger logger = Logger.getLogger(RowEstimateReport.class.getName());
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
-    final Collection<RowEstimateDetail> details =
-        RowEstimateReport.getEstimates(profileJson, relations);
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
+    final ProfileJSON profileJson = index.profile();
+    final Collection<RowEstimateDetail> details = RowEstimateReport.getEstimates(index, relations);
 
     final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows =
         details.stream()
@@ -148,52 +143,31 @@ public class RowEstimateReport extends ProfileJSONReport {
   }
 
   public static Collection<RowEstimateDetail> getEstimates(
-      ProfileJSON profileJson, Collection<PlanRelation> relations) {
-    if (profileJson == null || profileJson.getFragmentProfile() == null) {
+      ProfileIndex index, Collection<PlanRelation> relations) {
+    if (index.profile() == null || index.profile().getFragmentProfile() == null) {
       return Collections.emptyList();
     }
     final Map<String, RowEstimateDetail> phasesByRecords = new HashMap<>();
-    for (final FragmentProfile fragmentProfile : profileJson.getFragmentProfile()) {
-      if (fragmentProfile == null || fragmentProfile.getMinorFragmentProfile() == null) {
+    for (int o = 0; o < index.operatorCount(); o++) {
+      if (!index.operatorHasInputs(o)) {
         continue;
       }
-      for (final MinorFragmentProfile minorFragmentProfile :
-          fragmentProfile.getMinorFragmentProfile()) {
-        if (minorFragmentProfile == null || minorFragmentProfile.getOperatorProfile() == null) {
-          continue;
-        }
-        for (final OperatorProfile operatorProfile : minorFragmentProfile.getOperatorProfile()) {
-          if (operatorProfile == null || operatorProfile.getInputProfile() == null) {
-            continue;
-          }
-          final String phaseName =
-              String.format(
-                  "%s-%s",
-                  StringUtils.leftPad(String.valueOf(fragmentProfile.getMajorFragmentId()), 2, "0"),
-                  StringUtils.leftPad(String.valueOf(operatorProfile.getOperatorId()), 2, "0"));
-          final long operatorRuntime = operatorProfile.getProcessNanos();
-          final String opName =
-              CoreOperatorType.values()[operatorProfile.getOperatorType()].toString();
-          long records = 0;
-          for (final InputProfile inputProfile : operatorProfile.getInputProfile()) {
-            records += inputProfile.getRecords();
-          }
-          if (phasesByRecords.containsKey(phaseName)) {
-            final RowEstimateDetail detail = phasesByRecords.get(phaseName);
-            detail.setActualRows(detail.getActualRows() + records);
-            if (operatorRuntime > detail.getMaxOperatorRuntimeNanos()) {
-              detail.setMaxOperatorRuntimeNanos(operatorRuntime);
-            }
-            phasesByRecords.put(phaseName, detail);
-          } else {
-            final RowEstimateDetail detail = new RowEstimateDetail();
-            detail.setOpName(opName);
-            detail.setPhaseName(phaseName);
-            detail.setActualRows(records);
-            detail.setMaxOperatorRuntimeNanos(operatorRuntime);
-            phasesByRecords.put(phaseName, detail);
-          }
+      final String phaseName = index.phaseOperatorName(o);
+      final long operatorRuntime = index.operatorProcessNanos(o);
+      final long records = index.operatorRecords(o);
+      final RowEstimateDetail detail = phasesByRecords.get(phaseName);
+      if (detail != null) {
+        detail.setActualRows(detail.getActualRows() + records);
+        if (operatorRuntime > detail.getMaxOperatorRuntimeNanos()) {
+          detail.setMaxOperatorRuntimeNanos(operatorRuntime);
         }
+      } else {
+        final RowEstimateDetail newDetail = new RowEstimateDetail();
+        newDetail.setOpName(String.valueOf(index.operatorType(o)));
+        newDetail.setPhaseName(phaseName);
+        newDetail.setActualRows(records);
+        newDetail.setMaxOperatorRuntimeNanos(operatorRuntime);
+        phasesByRecords.put(phaseName, newDetail);
       }
     }
     return relations.stream()
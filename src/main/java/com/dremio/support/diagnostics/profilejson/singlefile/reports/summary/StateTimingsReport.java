@@ -16,6 +16,7 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 
 import com.dremio.support.diagnostics.profilejson.JobState;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
@@ -34,8 +35,9 @@ public class StateTimingsReport extends ProfileJSONReport {
 
   @Override
   protected String createReport(
-      final ProfileJSON profileJson, final Collection<PlanRelation> relations) {
-    final Collection<StateTiming> stateTimings = StateTimingsReport.getStateTimings(profileJson);
+      final ProfileIndex index, final Collection<PlanRelation> relations) {
+    final Collection<StateTiming> stateTimings =
+        StateTimingsReport.getStateTimings(index.profile());
     final HtmlTableBuilder builder = new HtmlTableBuilder();
     Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
     for (final StateTiming entry : stateTimings) {
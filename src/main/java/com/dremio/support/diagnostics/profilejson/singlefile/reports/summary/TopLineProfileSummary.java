@@ -16,6 +16,7 @@ package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
 import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 import static java.util.Arrays.*;
 
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.QueryState;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.ProfileJSONReport;
@@ -36,7 +37,8 @@ import java.util.List;
 public class TopLineProfileSummary extends ProfileJSONReport {
 
   @Override
-  protected String createReport(ProfileJSON profileJson, Collection<PlanRelation> relations) {
+  protected String createReport(ProfileIndex index, Collection<PlanRelation> relations) {
+    final ProfileJSON profileJson = index.profile();
     HtmlTableBuilder builder = new HtmlTableBuilder();
     final List<Collection<HtmlTableDataColumn<Object, Object>>> rows = new ArrayList<>();
     String version = profileJson.getDremioVersion();
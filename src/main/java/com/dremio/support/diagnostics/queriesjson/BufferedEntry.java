@@ -0,0 +1,139 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The raw bytes of an archive entry held in memory, every byte is paid for with one permit of a
+ * shared budget so the archive reader blocks instead of running ahead of the parsing threads. The
+ * blocks are trimmed to what was read so the permits held match the heap held.
+ *
+ * <p>The permits are owned by the caller once {@link #read} returns, they must be released with
+ * {@link #size()} when the entry is no longer needed.
+ */
+class BufferedEntry {
+
+  /** size of each block read from the archive */
+  static final int BLOCK_SIZE = 1024 * 1024;
+
+  private final List<byte[]> blocks;
+  private final int size;
+  private final boolean complete;
+
+  private BufferedEntry(final List<byte[]> blocks, final int size, final boolean complete) {
+    this.blocks = blocks;
+    this.size = size;
+    this.complete = complete;
+  }
+
+  /**
+   * reads the current entry of the archive into memory, stopping early if holding the entry would
+   * take more than the whole budget
+   *
+   * @param is archive stream positioned at the start of an entry
+   * @param budget permits, one per byte, shared by all buffered entries
+   * @param maxBytes total number of permits in the budget
+   * @return the buffered entry, {@link #complete()} is false when the entry was too large
+   * @throws IOException when the archive cannot be read
+   * @throws InterruptedException if interrupted while waiting for the budget
+   */
+  static BufferedEntry read(final InputStream is, final Semaphore budget, final int maxBytes)
+      throws IOException, InterruptedException {
+    final List<byte[]> blocks = new ArrayList<>();
+    int size = 0;
+    while (true) {
+      final int blockSize = Math.min(BLOCK_SIZE, maxBytes - size);
+      if (blockSize <= 0) {
+        // waiting for more permits could deadlock as nobody else may hold any
+        return new BufferedEntry(blocks, size, false);
+      }
+      budget.acquire(blockSize);
+      final byte[] block = new byte[blockSize];
+      final int read = is.readNBytes(block, 0, blockSize);
+      // hand back what this block did not use, and the heap with it, small entries would
+      // otherwise each keep a whole block alive
+      budget.release(blockSize - read);
+      size += read;
+      if (read == blockSize) {
+        blocks.add(block);
+      } else if (read > 0) {
+        blocks.add(Arrays.copyOf(block, read));
+      }
+      if (read < blockSize) {
+        return new BufferedEntry(blocks, size, true);
+      }
+    }
+  }
+
+  /**
+   * @return number of bytes held, this is also the number of permits held and the size of the
+   *     blocks kept
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the whole entry has been buffered
+   */
+  boolean complete() {
+    return complete;
+  }
+
+  /**
+   * @return true if the entry starts with the gzip magic bytes
+   */
+  boolean isGzip() {
+    if (size < 2) {
+      return false;
+    }
+    final byte[] first = blocks.get(0);
+    final int magic = first[0] & 0xff | ((first[1] << 8) & 0xff00);
+    return magic == GZIPInputStream.GZIP_MAGIC;
+  }
+
+  /**
+   * streams the entry
+   *
+   * @param rest the archive stream to continue from for an incomplete entry, it is never closed
+   * @return the buffered bytes followed by the rest of the entry
+   */
+  InputStream stream(final InputStream rest) {
+    final List<InputStream> streams = new ArrayList<>();
+    for (final byte[] block : blocks) {
+      streams.add(new ByteArrayInputStream(block));
+    }
+    if (!complete && rest != null) {
+      streams.add(
+          new FilterInputStream(rest) {
+            @Override
+            public void close() {
+              // the archive stream is owned by the caller, only the entry is finished here
+            }
+          });
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import com.dremio.support.diagnostics.queriesjson.filters.QueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import com.dremio.support.diagnostics.queriesjson.reporters.ReporterShards;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Parses a single large queries.json stream on several threads.
+ *
+ * <p>The calling thread reads (and decompresses) the stream and cuts it into newline aligned byte
+ * chunks, each chunk is then parsed by a worker from the pool. The number of chunks in flight is
+ * bounded so a fast reader cannot run ahead of the workers and fill the heap. Each worker feeds its
+ * own reporter shards which are merged once the whole stream has been parsed.
+ */
+public class ChunkedQueriesJsonParser {
+  private static final Logger LOGGER = Logger.getLogger(ChunkedQueriesJsonParser.class.getName());
+
+  /** default size of each chunk handed to a worker */
+  public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private final int threads;
+  private final int chunkSize;
+  // null when every parse gets a pool of its own
+  private final ExecutorService executor;
+
+  /**
+   * @param threads number of workers parsing chunks, values below 1 are treated as 1
+   */
+  public ChunkedQueriesJsonParser(final int threads) {
+    this(threads, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param threads number of workers parsing chunks, values below 1 are treated as 1
+   * @param chunkSize target size in bytes of each chunk, a chunk grows past this if a single row
+   *     is larger than it
+   */
+  public ChunkedQueriesJsonParser(final int threads, final int chunkSize) {
+    this(threads, chunkSize, null);
+  }
+
+  /**
+   * @param threads number of workers parsing chunks, two chunks per worker are in flight, values
+   *     below 1 are treated as 1
+   * @param chunkSize target size in bytes of each chunk, a chunk grows past this if a single row
+   *     is larger than it
+   * @param executor pool the chunks are parsed on, it is shared with the caller and never shut
+   *     down, null to start a pool of threads workers for every parse
+   */
+  public ChunkedQueriesJsonParser(
+      final int threads, final int chunkSize, final ExecutorService executor) {
+    this.threads = Math.max(1, threads);
+    this.chunkSize = Math.max(1, chunkSize);
+    this.executor = executor;
+  }
+
+  /**
+   * parses the stream, with a single thread this is the same as {@link
+   * QueriesJsonFileParser#parseFile}
+   *
+   * @param fileName original archive entry name used for reporting purposes only
+   * @param is input stream to parse, it is read only from the calling thread
+   * @param reports list of reporters to run against each query, reporters that are not a {@link
+   *     com.dremio.support.diagnostics.queriesjson.reporters.ShardableQueryReporter} will need to
+   *     be thread safe if threads > 1
+   * @param queryFilter filter applied before the reporters see a query
+   * @return a searched file with the file name, number of records parsed and records filtered
+   * @throws IOException when we're unable to read the input stream or a row is invalid
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public SearchedFile parse(
+      final String fileName,
+      final InputStream is,
+      final Collection<QueryReporter> reports,
+      final QueryFilter queryFilter)
+      throws IOException, InterruptedException, ExecutionException {
+    if (threads == 1) {
+      return QueriesJsonFileParser.parseFile(fileName, is, reports, queryFilter);
+    }
+    LOGGER.info("parsing entry %s in chunks with %d threads".formatted(fileName, threads));
+    final Instant startTime = Instant.now();
+    final LongAdder count = new LongAdder();
+    final LongAdder filtered = new LongAdder();
+    // two chunks per worker keeps everyone busy while the reader fills the next buffer
+    final Semaphore inFlight = new Semaphore(threads * 2);
+    final ExecutorService executorService =
+        executor != null ? executor : Executors.newFixedThreadPool(threads);
+    final List<Future<?>> futures = new ArrayList<>();
+    final ReporterShards shards = new ReporterShards(reports);
+    try (is) {
+      byte[] buffer = new byte[chunkSize];
+      int filled = 0;
+      while (true) {
+        final int read = is.read(buffer, filled, buffer.length - filled);
+        if (read > 0) {
+          filled += read;
+          if (filled < buffer.length) {
+            continue;
+          }
+        }
+        final boolean eof = read < 0;
+        // only hand over complete rows, the partial row at the end moves to the next buffer
+        final int cut = eof ? filled : lastNewline(buffer, filled) + 1;
+        if (cut == 0) {
+          if (eof) {
+            break;
+          }
+          // a single row larger than the buffer, grow it and keep reading
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          continue;
+        }
+        final byte[] chunk = buffer;
+        inFlight.acquire();
+        futures.add(
+            executorService.submit(
+                () -> {
+                  try {
+                    parseChunk(chunk, cut, shards.forCurrentThread(), queryFilter, count, filtered);
+                  } finally {
+                    inFlight.release();
+                  }
+                  return null;
+                }));
+        if (eof) {
+          break;
+        }
+        buffer = new byte[Math.max(chunkSize, filled - cut)];
+        System.arraycopy(chunk, cut, buffer, 0, filled - cut);
+        filled = filled - cut;
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      shards.merge();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw ex;
+    } finally {
+      if (executor == null) {
+        executorService.shutdownNow();
+      } else {
+        // only this parse's chunks, the pool carries on with the caller's work
+        for (Future<?> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    final long totalFiltered = filtered.sum();
+    final long totalCount = count.sum();
+    final Duration totalTime = Duration.between(startTime, Instant.now());
+    LOGGER.info(
+        () ->
+            String.format(
+                "%d queries parsed (%d filtered by -s and -e flags) in %s millis from file %s",
+                totalCount, totalFiltered, totalTime.toMillis(), fileName));
+    return new SearchedFile(totalFiltered, totalCount, fileName, "");
+  }
+
+  private static int lastNewline(final byte[] buffer, final int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void parseChunk(
+      final byte[] chunk,
+      final int length,
+      final Collection<QueryReporter> reports,
+      final QueryFilter queryFilter,
+      final LongAdder count,
+      final LongAdder filtered)
+      throws IOException {
+    long parsed = 0;
+    long skipped = 0;
+    try (QueryStreamReader r = new QueryStreamReader(chunk, 0, length, queryFilter)) {
+      Query query;
+      while (null != (query = r.next())) {
+        if (!queryFilter.isValid(query)) {
+          skipped++;
+          continue;
+        }
+        parsed++;
+        for (QueryReporter reporter : reports) {
+          reporter.parseRow(query);
+        }
+      }
+      skipped += r.getRejected();
+    }
+    count.add(parsed);
+    filtered.add(skipped);
+  }
+}
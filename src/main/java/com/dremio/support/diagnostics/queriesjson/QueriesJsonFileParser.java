@@ -17,11 +17,8 @@ import com.dremio.support.diagnostics.queriesjson.filters.QueryFilter;
 import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
@@ -29,10 +26,10 @@ import java.util.logging.Logger;
 
 public class QueriesJsonFileParser {
   private static final Logger LOGGER = Logger.getLogger(QueriesJsonFileParser.class.getName());
-  private static final ObjectMapper mapper = new ObjectMapper();
 
   /**
-   * core logic for the file parse, use if the file is gzipped or if the file is a text file
+   * core logic for the file parse, use if the file is gzipped or if the file is a text file.
+   * Rows are read with a single streaming parser over the raw bytes, see {@link QueryStreamReader}
    * @param fileName original archive entry name used for reporting purposes only
    * @param is input stream to parse
    * @param reports list of reporters to run against each query
@@ -45,17 +42,14 @@ public class QueriesJsonFileParser {
       String fileName, InputStream is, Collection<QueryReporter> reports, QueryFilter queryFilter)
       throws JsonMappingException, JsonProcessingException, IOException {
     LOGGER.info("parsing entry %s".formatted(fileName));
-    try (BufferedReader r = new BufferedReader(new InputStreamReader(is))) {
+    try (QueryStreamReader r = new QueryStreamReader(is, queryFilter)) {
       final Instant startTime = Instant.now();
-      String line;
+      Query query;
       // count is only for reporting how many queries were in each file
       long count = 0;
       long filtered = 0;
-      // we read each line in the file and if the line is null we exit.
-      while (null != (line = r.readLine())) {
-        // standard jackson code to read an object from a string
-        // at some point we should consider the stream api to see if we can get more parsing speed
-        final Query query = mapper.readValue(line, Query.class);
+      // we read each row in the file and if the row is null we have reached the end of the stream
+      while (null != (query = r.next())) {
         if (!queryFilter.isValid(query)) {
           filtered++;
           continue;
@@ -66,7 +60,8 @@ public class QueriesJsonFileParser {
           reporter.parseRow(query);
         }
       }
-      final long totalFiltered = filtered;
+      // rows rejected before binding never come out of the reader
+      final long totalFiltered = filtered + r.getRejected();
       final long totalCount = count;
       final Instant endTime = Instant.now();
       // we log the parse duration for performance changes between versions
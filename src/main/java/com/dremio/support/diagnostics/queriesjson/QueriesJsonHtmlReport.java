@@ -23,10 +23,18 @@ import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.Human;
 import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
+import com.dremio.support.diagnostics.shared.QuantileSketch;
 import com.dremio.support.diagnostics.shared.Report;
+import com.dremio.support.diagnostics.shared.ReportOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -59,6 +67,10 @@ public class QueriesJsonHtmlReport implements Report {
   private final Collection<Query> mostMemoryQueries;
   private final Collection<Query> mostCpuTimeQueries;
   private final Map<Long, Long> maxPool;
+  private final List<QueryShapesReporter.Shape> queryShapes;
+  private final long totalCpuNanos;
+  private final Map<LatencyQuantilesReporter.Phase, Map<Long, QuantileSketch>> latencyBuckets;
+  private final Map<String, Map<LatencyQuantilesReporter.Phase, QuantileSketch>> latencyByQueue;
 
   public QueriesJsonHtmlReport(
       Collection<SearchedFile> filesSearched,
@@ -79,6 +91,8 @@ public class QueriesJsonHtmlReport implements Report {
       final StartFinishReporter startFinishReporter,
       final TotalQueriesReporter totalQueriesReporter,
       final FailedQueriesReporter failedQueriesReporter,
+      final QueryShapesReporter queryShapesReporter,
+      final LatencyQuantilesReporter latencyQuantilesReporter,
       final long problematicQueryLimit) {
     this(
         filesSearched,
@@ -104,6 +118,10 @@ public class QueriesJsonHtmlReport implements Report {
         Instant.ofEpochMilli(startFinishReporter.getStart()),
         Instant.ofEpochMilli(startFinishReporter.getFinish()),
         failedQueriesReporter.getFailedQueries(),
+        queryShapesReporter.getShapes(),
+        queryShapesReporter.getTotalCpuNanos(),
+        latencyQuantilesReporter.getBuckets(),
+        latencyQuantilesReporter.getQueues(),
         problematicQueryLimit);
   }
 
@@ -177,6 +195,10 @@ public class QueriesJsonHtmlReport implements Report {
       final Instant start,
       final Instant end,
       final Collection<Query> failedQueries,
+      final List<QueryShapesReporter.Shape> queryShapes,
+      final long totalCpuNanos,
+      final Map<LatencyQuantilesReporter.Phase, Map<Long, QuantileSketch>> latencyBuckets,
+      final Map<String, Map<LatencyQuantilesReporter.Phase, QuantileSketch>> latencyByQueue,
       final long problematicQueryLimit) {
     this.filesSearched = filesSearched;
     this.startFilter = startFilter;
@@ -201,13 +223,18 @@ public class QueriesJsonHtmlReport implements Report {
     this.schemaOpsCounts = schemaOpsCounts;
     this.queueCounts = queueCounts;
     this.failedQueries = failedQueries;
+    this.queryShapes = queryShapes;
+    this.totalCpuNanos = totalCpuNanos;
+    this.latencyBuckets = latencyBuckets;
+    this.latencyByQueue = latencyByQueue;
     this.problematicQueryLimit = problematicQueryLimit;
   }
 
-  private String getQueriesJSONHtml() {
+  private void writeQueriesJSONHtml(final ReportOutput out) throws IOException {
     long durationMillis = this.end.toEpochMilli() - this.start.toEpochMilli();
     if (durationMillis < this.bucketSize) {
-      return """
+      out.write(
+          """
  <!DOCTYPE html>
 <html lang="en">
 <head>
@@ -229,45 +256,71 @@ public class QueriesJsonHtmlReport implements Report {
  </body>
  </html>
 """
-          .formatted(this.bucketSize, durationMillis);
+              .formatted(this.bucketSize, durationMillis));
+      return;
     }
-    final String totalCountsJs =
-        new ConcurrentQueueWriter(this.bucketSize)
-            .generate(
-                this.start.toEpochMilli(),
-                this.end.toEpochMilli(),
-                this.queueCounts,
-                this.schemaOpsCounts,
-                this.totalQueryCounts);
-    final String maxValuesJs =
-        new MaxTimeWriter(this.bucketSize)
-            .generate(
-                this.start.toEpochMilli(),
-                this.end.toEpochMilli(),
-                maxPending,
-                maxMetadata,
-                maxQueued,
-                maxPlanning,
-                maxPool);
-    final String memoryAllocatedJs =
-        new MemoryAllocatedWriter(this.bucketSize)
-            .generate(this.start.toEpochMilli(), this.end.toEpochMilli(), this.memoryUsage);
-    final String requestCounter =
-        RequestCounterWriter.generate(this.totalQueries, this.requestCounterMap);
-    final String requestQueueCounter =
-        RequestByQueueWriter.generate(this.totalQueries, this.requestsByQueue);
-    final String summaryText = generateSummary();
-    final String slowestMetadataQueries =
-        SlowestMetadataRetrievalWriter.generate(this.totalQueries, this.slowestMetadata);
-    final String slowestPlanningQueries =
-        SlowestPlanningWriter.generate(this.totalQueries, this.slowestPlanning);
-    final String maxMemoryQueries =
-        MaxMemoryQueriesWriter.generateMaxMemoryAllocated(mostMemoryQueries);
-    final String maxCpuTime = MaxCPUTimeWriter.generate(mostCpuTimeQueries);
-    final String failedQueries =
-        FailedQueriesWriter.generateTable(this.failedQueries, this.problematicQueryLimit);
-    final String failedParses = this.getFailedParses();
-    return """
+    // each section is generated only when the output reaches it
+    final ReportOutput.Section totalCountsJs =
+        o ->
+            o.write(
+                new ConcurrentQueueWriter(this.bucketSize)
+                    .generate(
+                        this.start.toEpochMilli(),
+                        this.end.toEpochMilli(),
+                        this.queueCounts,
+                        this.schemaOpsCounts,
+                        this.totalQueryCounts));
+    final ReportOutput.Section maxValuesJs =
+        o ->
+            o.write(
+                new MaxTimeWriter(this.bucketSize)
+                    .generate(
+                        this.start.toEpochMilli(),
+                        this.end.toEpochMilli(),
+                        maxPending,
+                        maxMetadata,
+                        maxQueued,
+                        maxPlanning,
+                        maxPool));
+    final ReportOutput.Section latencyJs =
+        o ->
+            o.write(
+                new LatencyQuantilesWriter(this.bucketSize)
+                    .generate(
+                        this.start.toEpochMilli(),
+                        this.end.toEpochMilli(),
+                        this.latencyBuckets,
+                        this.latencyByQueue));
+    final ReportOutput.Section memoryAllocatedJs =
+        o ->
+            o.write(
+                new MemoryAllocatedWriter(this.bucketSize)
+                    .generate(
+                        this.start.toEpochMilli(), this.end.toEpochMilli(), this.memoryUsage));
+    final ReportOutput.Section requestCounter =
+        o -> o.write(RequestCounterWriter.generate(this.totalQueries, this.requestCounterMap));
+    final ReportOutput.Section requestQueueCounter =
+        o -> o.write(RequestByQueueWriter.generate(this.totalQueries, this.requestsByQueue));
+    final ReportOutput.Section summaryText = o -> o.write(generateSummary());
+    final ReportOutput.Section slowestMetadataQueries =
+        o ->
+            o.write(
+                SlowestMetadataRetrievalWriter.generate(this.totalQueries, this.slowestMetadata));
+    final ReportOutput.Section slowestPlanningQueries =
+        o -> o.write(SlowestPlanningWriter.generate(this.totalQueries, this.slowestPlanning));
+    final ReportOutput.Section maxMemoryQueries =
+        o -> o.write(MaxMemoryQueriesWriter.generateMaxMemoryAllocated(mostMemoryQueries));
+    final ReportOutput.Section maxCpuTime =
+        o -> o.write(MaxCPUTimeWriter.generate(mostCpuTimeQueries));
+    final ReportOutput.Section failedQueries =
+        o ->
+            o.write(
+                FailedQueriesWriter.generateTable(this.failedQueries, this.problematicQueryLimit));
+    final ReportOutput.Section failedParses = o -> o.write(this.getFailedParses());
+    final ReportOutput.Section shapes =
+        o -> o.write(QueryShapesWriter.generate(this.totalCpuNanos, this.queryShapes));
+    out.template(
+        """
  <!DOCTYPE html>
  <html lang="en">
  <head>
@@ -382,6 +435,8 @@ public class QueriesJsonHtmlReport implements Report {
    <a class="nav-link" href="#summary-section">Summary</a>
    <a class="nav-link" href="#outliers-section">Outliers</a>
    <a class="nav-link" href="#usage-section">Usage</a>
+   <a class="nav-link" href="#latency-section">Latency</a>
+   <a class="nav-link" href="#shapes-section">Query Shapes</a>
    <a class="nav-link" href="#failures-section">Failures</a>
     <a class="nav-link" href="#report-section">Report Debugging</a>
    </div>
@@ -410,6 +465,14 @@ public class QueriesJsonHtmlReport implements Report {
  %s
  %s
  </section>
+ <section id="latency-section">
+ <h3>Latency</h3>
+ %s
+ </section>
+ <section id="shapes-section">
+ <h3>Query Shapes</h3>
+ %s
+ </section>
  <section id="failures-section">
  <h3>Failures</h3>
  %s
@@ -457,30 +520,44 @@ public class QueriesJsonHtmlReport implements Report {
     });
   </script>
  </body>
-"""
-        .formatted(
-            jsLibraryTextProvider.getTableCSS(),
-            jsLibraryTextProvider.getPlotlyJsText(),
-            jsLibraryTextProvider.getCSVExportText(),
-            jsLibraryTextProvider.getSortableCSSText(),
-            jsLibraryTextProvider.getSortableText(),
-            jsLibraryTextProvider.getFilterTableText(),
-            summaryText,
-            requestCounter,
-            requestQueueCounter,
-            slowestMetadataQueries,
-            slowestPlanningQueries,
-            maxCpuTime,
-            maxMemoryQueries,
-            totalCountsJs,
-            maxValuesJs,
-            memoryAllocatedJs,
-            failedQueries,
-            failedParses);
+""",
+        jsLibraryTextProvider.getTableCSS(),
+        jsLibraryTextProvider.getLibSection(JsLibraryTextProvider.PLOTLY),
+        jsLibraryTextProvider.getCSVExportText(),
+        jsLibraryTextProvider.getSortableCSSText(),
+        jsLibraryTextProvider.getSortableText(),
+        jsLibraryTextProvider.getFilterTableText(),
+        summaryText,
+        requestCounter,
+        requestQueueCounter,
+        slowestMetadataQueries,
+        slowestPlanningQueries,
+        maxCpuTime,
+        maxMemoryQueries,
+        totalCountsJs,
+        maxValuesJs,
+        memoryAllocatedJs,
+        latencyJs,
+        shapes,
+        failedQueries,
+        failedParses);
   }
 
   @Override
   public String getText() {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      writeTo(baos);
+    } catch (IOException e) {
+      // only the stream can fail and a ByteArrayOutputStream never does
+      throw new UncheckedIOException(e);
+    }
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void writeTo(final OutputStream stream) throws IOException {
+    final ReportOutput out = new ReportOutput(stream);
     if (this.totalQueries == 0) {
       var sb =
           new StringBuilder(
@@ -535,11 +612,12 @@ public class QueriesJsonHtmlReport implements Report {
       }
       sb.append("</tbody></table>");
       sb.append("</main></body></html>");
-      return sb.toString();
+      out.write(sb.toString());
     } else {
       LOGGER.info(() -> this.totalQueries + " queries parsed");
+      this.writeQueriesJSONHtml(out);
     }
-    return this.getQueriesJSONHtml();
+    out.flush();
   }
 
   private String generateSummary() {
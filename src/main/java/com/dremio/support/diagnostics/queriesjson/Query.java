@@ -341,9 +341,19 @@ public class Query {
     this.metadataRetrievalTime = metadataRetrievalTime;
   }
 
-  private final long epochSince2017 = 1500000000000L;
+  private static final long epochSince2017 = 1500000000000L;
 
   public long getNormalizedMetadataRetrieval() {
+    return normalizeMetadataRetrieval(metadataRetrieval, metadataRetrievalTime);
+  }
+
+  /**
+   * @param metadataRetrieval raw metadataRetrieval value
+   * @param metadataRetrievalTime raw metadataRetrievalTime value
+   * @return the metadata retrieval duration whichever version of the profile the values came from
+   */
+  public static long normalizeMetadataRetrieval(
+      final long metadataRetrieval, final long metadataRetrievalTime) {
     if (metadataRetrieval > epochSince2017) {
       return metadataRetrievalTime;
     }
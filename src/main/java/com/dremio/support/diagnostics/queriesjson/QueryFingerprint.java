@@ -0,0 +1,241 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+/**
+ * Reduces a query text to its shape so queries that only differ in their literals are counted
+ * together.
+ *
+ * <p>The scanner walks the text once and feeds the normalized form straight into a 64 bit hash, it
+ * does not allocate so it can run on every row of a queries.json. Normalizing:
+ *
+ * <ul>
+ *   <li>string and numeric literals, including their sign, become ?
+ *   <li>lists of literals such as IN (1, 2, 3) collapse to a single ?
+ *   <li>comments are dropped and whitespace only separates words
+ *   <li>keywords and unquoted identifiers are lower cased, quoted identifiers are kept as is
+ * </ul>
+ */
+public final class QueryFingerprint {
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  // what the previous token was, used to collapse lists of literals
+  private static final int OTHER = 0;
+  private static final int LITERAL = 1;
+  private static final int COMMA_AFTER_LITERAL = 2;
+
+  private QueryFingerprint() {}
+
+  /**
+   * @param text query text, may be null
+   * @return the fingerprint of the normalized text, 0 for null
+   */
+  public static long of(final CharSequence text) {
+    if (text == null) {
+      return 0;
+    }
+    return scan(text, null, 0);
+  }
+
+  /**
+   * @param text query text, may be null
+   * @param maxLength longest text returned
+   * @return the normalized text the fingerprint is computed from, cut at maxLength
+   */
+  public static String normalize(final CharSequence text, final int maxLength) {
+    if (text == null) {
+      return "";
+    }
+    final StringBuilder out = new StringBuilder(Math.min(text.length(), maxLength));
+    scan(text, out, maxLength);
+    return out.toString();
+  }
+
+  private static long scan(final CharSequence text, final StringBuilder out, final int maxLength) {
+    final int n = text.length();
+    long hash = FNV_OFFSET;
+    char last = 0;
+    boolean space = false;
+    int previous = OTHER;
+    int i = 0;
+    while (i < n) {
+      final char c = text.charAt(i);
+      final char next = i + 1 < n ? text.charAt(i + 1) : 0;
+      if (Character.isWhitespace(c)) {
+        space = true;
+        i++;
+        continue;
+      }
+      if (c == '-' && next == '-') {
+        while (i < n && text.charAt(i) != '\n') {
+          i++;
+        }
+        space = true;
+        continue;
+      }
+      if (c == '/' && next == '*') {
+        i += 2;
+        while (i < n && !(text.charAt(i) == '*' && i + 1 < n && text.charAt(i + 1) == '/')) {
+          i++;
+        }
+        i += 2;
+        space = true;
+        continue;
+      }
+      final boolean literal;
+      if (c == '\'') {
+        i = skipQuoted(text, i, '\'');
+        literal = true;
+      } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+        i = skipNumber(text, i);
+        literal = true;
+      } else if (c == '-'
+          && (isDigit(next) || next == '.')
+          && (previous == COMMA_AFTER_LITERAL || !isWord(last))) {
+        // a sign rather than a subtraction, it belongs to the literal
+        i = skipNumber(text, i + 1);
+        literal = true;
+      } else {
+        literal = false;
+      }
+      if (literal) {
+        if (previous == COMMA_AFTER_LITERAL) {
+          // the comma and this literal are folded into the ? already written
+          previous = LITERAL;
+          space = false;
+          continue;
+        }
+        if (space && isWord(last)) {
+          hash = emit(hash, ' ', out, maxLength);
+        }
+        hash = emit(hash, '?', out, maxLength);
+        last = '?';
+        previous = LITERAL;
+        space = false;
+        continue;
+      }
+      if (c == ',' && previous == LITERAL) {
+        // held back until we know whether another literal follows
+        previous = COMMA_AFTER_LITERAL;
+        i++;
+        continue;
+      }
+      if (previous == COMMA_AFTER_LITERAL) {
+        hash = emit(hash, ',', out, maxLength);
+        last = ',';
+      }
+      previous = OTHER;
+      if (space && isWord(last) && isWord(c)) {
+        hash = emit(hash, ' ', out, maxLength);
+      }
+      space = false;
+      if (c == '"' || c == '`' || c == '[') {
+        final int end = skipQuoted(text, i, c == '[' ? ']' : c);
+        for (int j = i; j < end; j++) {
+          hash = emit(hash, text.charAt(j), out, maxLength);
+        }
+        last = 'a';
+        i = end;
+      } else if (isIdentifierStart(c)) {
+        while (i < n && isIdentifierPart(text.charAt(i))) {
+          hash = emit(hash, Character.toLowerCase(text.charAt(i)), out, maxLength);
+          i++;
+        }
+        last = 'a';
+      } else {
+        hash = emit(hash, c, out, maxLength);
+        last = c;
+        i++;
+      }
+    }
+    if (previous == COMMA_AFTER_LITERAL) {
+      hash = emit(hash, ',', out, maxLength);
+    }
+    return mix(hash);
+  }
+
+  private static long emit(
+      final long hash, final char c, final StringBuilder out, final int maxLength) {
+    if (out != null && out.length() < maxLength) {
+      out.append(c);
+    }
+    return (hash ^ c) * FNV_PRIME;
+  }
+
+  // spreads the fnv hash over all bits, the finalizer of murmur3
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * @return index after the closing quote, a doubled closing quote is an escaped quote
+   */
+  private static int skipQuoted(final CharSequence text, final int start, final char close) {
+    final int n = text.length();
+    int i = start + 1;
+    while (i < n) {
+      if (text.charAt(i) == close) {
+        if (i + 1 < n && text.charAt(i + 1) == close) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return n;
+  }
+
+  private static int skipNumber(final CharSequence text, final int start) {
+    final int n = text.length();
+    int i = start;
+    while (i < n) {
+      final char c = text.charAt(i);
+      if (isDigit(c) || c == '.') {
+        i++;
+      } else if ((c == 'e' || c == 'E')
+          && i + 1 < n
+          && (isDigit(text.charAt(i + 1))
+              || text.charAt(i + 1) == '-'
+              || text.charAt(i + 1) == '+')) {
+        i += 2;
+      } else {
+        return i;
+      }
+    }
+    return n;
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierStart(final char c) {
+    return Character.isLetter(c) || c == '_' || c == '$';
+  }
+
+  private static boolean isIdentifierPart(final char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static boolean isWord(final char c) {
+    return isIdentifierPart(c) || c == '?' || c == '"' || c == '`' || c == '[';
+  }
+}
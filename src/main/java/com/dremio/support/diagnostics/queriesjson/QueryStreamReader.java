@@ -0,0 +1,411 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import com.dremio.support.diagnostics.queriesjson.filters.QueryFilter;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryPredicate;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads queries.json rows with a single streaming {@link JsonParser} over the raw bytes.
+ *
+ * <p>Only the fields that {@link Query} exposes are bound, everything else (scannedDatasets,
+ * executionNodes, parentsList and so on) is skipped at the token level so we never allocate strings
+ * or objects for data the reports do not look at.
+ *
+ * <p>Given a {@link QueryPredicate} the reader goes one step further: each line is first checked as
+ * raw bytes through a {@link RawQueryRow} and lines the predicate rejects are skipped without
+ * starting the json parser at all, only the lines it lets through are bound. Rows then have to be
+ * one per line, the way the coordinator writes them and the chunked parser already expects.
+ * Rejected rows are counted by {@link #getRejected()} and are not returned.
+ *
+ * <p>Checking rows one at a time only pays off when the predicate rejects some of them, a row it
+ * lets through costs more than one read by the streaming parser. The input is therefore taken a
+ * slice at a time, and after a slice where the predicate rejected fewer than a quarter of the rows
+ * the next slices are bound in bulk, the predicate is tried again every {@link #BULK_SLICES} + 1
+ * slices.
+ */
+public class QueryStreamReader implements Closeable {
+
+  /** shared factory, JsonFactory is thread safe and caches symbol tables between parsers */
+  private static final JsonFactory factory = new JsonFactory();
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+
+  /** rows are checked or bound this many bytes at a time, rounded to whole rows */
+  static final int SLICE_BYTES = 1024 * 1024;
+
+  /** slices bound in bulk after a slice where the predicate did not reject enough rows */
+  static final int BULK_SLICES = 15;
+
+  /** first buffer size when reading rows for a predicate, it grows to hold the largest row */
+  private static final int BUFFER_SIZE = 2 * SLICE_BYTES;
+
+  private JsonParser parser;
+
+  // the fields below are only used when rows are checked against a predicate
+  private final QueryPredicate predicate;
+  private final RawQueryRow row;
+  private final InputStream in;
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean eof;
+  private int sliceEnd;
+  private boolean bulk;
+  private int bulkSlices;
+  private int sliceRows;
+  private int sliceRejected;
+  private long rejected;
+
+  /**
+   * reads a stream of root level json objects, newlines between rows are optional
+   *
+   * @param is stream containing queries.json rows
+   * @throws IOException when we are unable to open the stream
+   */
+  public QueryStreamReader(final InputStream is) throws IOException {
+    this(is, null);
+  }
+
+  /**
+   * reads a stream of root level json objects, rows a predicate rejects are skipped before they
+   * are bound
+   *
+   * @param is stream containing queries.json rows
+   * @param filter filter the caller applies to every row, when it is a {@link QueryPredicate} it
+   *     is also checked on the raw rows
+   * @throws IOException when we are unable to open the stream
+   */
+  public QueryStreamReader(final InputStream is, final QueryFilter filter) throws IOException {
+    if (filter instanceof QueryPredicate p) {
+      this.predicate = p;
+      this.row = new RawQueryRow();
+      this.in = is;
+      this.buffer = new byte[BUFFER_SIZE];
+    } else {
+      this.parser = factory.createParser(is);
+      this.predicate = null;
+      this.row = null;
+      this.in = null;
+    }
+  }
+
+  /**
+   * reads a slice of a byte array containing queries.json rows
+   *
+   * @param data buffer containing the rows
+   * @param offset first byte of the slice
+   * @param length number of bytes in the slice
+   * @throws IOException when we are unable to open the buffer
+   */
+  public QueryStreamReader(final byte[] data, final int offset, final int length)
+      throws IOException {
+    this(data, offset, length, null);
+  }
+
+  /**
+   * reads a slice of a byte array containing queries.json rows, rows a predicate rejects are
+   * skipped before they are bound
+   *
+   * @param data buffer containing the rows
+   * @param offset first byte of the slice
+   * @param length number of bytes in the slice
+   * @param filter filter the caller applies to every row, when it is a {@link QueryPredicate} it
+   *     is also checked on the raw rows
+   * @throws IOException when we are unable to open the buffer
+   */
+  public QueryStreamReader(
+      final byte[] data, final int offset, final int length, final QueryFilter filter)
+      throws IOException {
+    if (filter instanceof QueryPredicate p) {
+      this.predicate = p;
+      this.row = new RawQueryRow();
+      this.buffer = data;
+      this.position = offset;
+      this.limit = offset + length;
+    } else {
+      this.parser = factory.createParser(data, offset, length);
+      this.predicate = null;
+      this.row = null;
+    }
+    this.in = null;
+  }
+
+  /**
+   * @return number of rows skipped because the predicate rejected them before binding
+   */
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * reads the next row
+   *
+   * @return the next query or null when the end of the stream is reached
+   * @throws IOException when the json is invalid or the stream cannot be read
+   */
+  public Query next() throws IOException {
+    if (predicate == null) {
+      return bind();
+    }
+    while (true) {
+      if (parser != null) {
+        // a bulk slice or a row that was let through, a line with several objects is bound whole
+        final Query q = bind();
+        if (q != null) {
+          return q;
+        }
+        parser.close();
+        parser = null;
+      }
+      if (position >= sliceEnd && !nextSlice()) {
+        return null;
+      }
+      if (bulk) {
+        parser = factory.createParser(buffer, position, sliceEnd - position);
+        position = sliceEnd;
+        continue;
+      }
+      int start = position;
+      final int newline = indexOfNewline(start);
+      final int rowEnd = newline < 0 || newline > sliceEnd ? sliceEnd : newline;
+      position = rowEnd == sliceEnd ? sliceEnd : rowEnd + 1;
+      while (start < rowEnd && RawQueryRow.isWhitespace(buffer[start])) {
+        start++;
+      }
+      if (start == rowEnd) {
+        continue;
+      }
+      sliceRows++;
+      row.reset(buffer, start, rowEnd);
+      // the row is only trusted once the predicate has read what it needs from it
+      if (!predicate.mayMatch(row) && !row.isOpaque()) {
+        rejected++;
+        sliceRejected++;
+        continue;
+      }
+      parser = factory.createParser(buffer, start, rowEnd - start);
+    }
+  }
+
+  /**
+   * picks the next whole rows to read and whether they are checked or bound in bulk
+   *
+   * @return false at the end of the input
+   */
+  private boolean nextSlice() throws IOException {
+    if (!bulk && sliceRows > 0 && sliceRejected * 4 < sliceRows) {
+      bulkSlices = BULK_SLICES;
+    }
+    sliceRows = 0;
+    sliceRejected = 0;
+    if (limit - position < SLICE_BYTES) {
+      fill();
+    }
+    if (!skipWhitespace()) {
+      return false;
+    }
+    int cut = -1;
+    for (int i = Math.min(limit, position + SLICE_BYTES) - 1; i >= position; i--) {
+      if (buffer[i] == '\n') {
+        cut = i;
+        break;
+      }
+    }
+    // a row larger than a slice
+    int scanned = 0;
+    while (cut < 0) {
+      cut = indexOfNewline(position + scanned);
+      if (cut < 0) {
+        scanned = limit - position;
+        if (!fill()) {
+          // the last row has no newline
+          cut = limit - 1;
+        }
+      }
+    }
+    sliceEnd = cut + 1;
+    bulk = bulkSlices > 0;
+    if (bulk) {
+      bulkSlices--;
+    }
+    return true;
+  }
+
+  private int indexOfNewline(final int from) {
+    int i = from;
+    // eight bytes at a time, a byte of the xor is zero where the word holds a newline
+    for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+      final long word = (long) LONGS.get(buffer, i) ^ NEWLINES;
+      final long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+      if (found != 0) {
+        return i + (Long.numberOfTrailingZeros(found) >>> 3);
+      }
+    }
+    for (; i < limit; i++) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean skipWhitespace() throws IOException {
+    while (true) {
+      while (position < limit && RawQueryRow.isWhitespace(buffer[position])) {
+        position++;
+      }
+      if (position < limit) {
+        return true;
+      }
+      if (!fill()) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * moves the unread bytes to the front of the buffer and reads until it is full
+   *
+   * @return false when nothing more could be read
+   */
+  private boolean fill() throws IOException {
+    if (in == null || eof) {
+      return false;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      sliceEnd = Math.max(0, sliceEnd - position);
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    final int wanted = buffer.length - limit;
+    final int read = in.readNBytes(buffer, limit, wanted);
+    limit += read;
+    eof = read < wanted;
+    return read > 0;
+  }
+
+  private Query bind() throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      return null;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException(
+          parser, "expected a json object for a queries.json row but found " + token);
+    }
+    final Query q = new Query();
+    String field;
+    while (null != (field = parser.nextFieldName())) {
+      switch (field) {
+        case "queryId" -> q.setQueryId(readString());
+        case "queryText" -> q.setQueryText(readString());
+        case "start" -> q.setStart(readLong());
+        case "finish" -> q.setFinish(readLong());
+        case "outcome" -> q.setOutcome(readString());
+        case "outcomeReason" -> q.setOutcomeReason(readString());
+        case "username" -> q.setUsername(readString());
+        case "queryType" -> q.setQueryType(readString());
+        case "queryCost" -> q.setQueryCost((float) readDouble());
+        case "queueName" -> q.setQueueName(readString());
+        case "poolWaitTime" -> q.setPoolWaitTime(readLong());
+        case "pendingTime" -> q.setPendingTime(readLong());
+        case "metadataRetrievalTime" -> q.setMetadataRetrievalTime(readLong());
+        case "planningTime" -> q.setPlanningTime(readLong());
+        case "queuedTime" -> q.setQueuedTime(readLong());
+        case "startingTime" -> q.setStartingTime(readLong());
+        case "runningTime" -> q.setRunningTime(readLong());
+        case "engineName" -> q.setEngineName(readString());
+        case "attemptCount" -> q.setAttemptCount(readLong());
+        case "metadataRetrieval" -> q.setMetadataRetrieval(readLong());
+        case "planningStart" -> q.setPlanningStart(readLong());
+        case "queryEnqueued" -> q.setQueryEnqueued(readLong());
+        case "executionCpuTimeNs" -> q.setExecutionCpuTimeNs(readLong());
+        case "memoryAllocated" -> q.setMemoryAllocated(readLong());
+        default -> skipValue();
+      }
+    }
+    return q;
+  }
+
+  private void skipValue() throws IOException {
+    // skipChildren is a no-op for scalars and jumps over nested arrays and objects otherwise
+    parser.nextToken();
+    parser.skipChildren();
+  }
+
+  private String readString() throws IOException {
+    final JsonToken token = parser.nextToken();
+    if (token == JsonToken.VALUE_STRING) {
+      return parser.getText();
+    }
+    if (token.isStructStart()) {
+      parser.skipChildren();
+      return null;
+    }
+    return parser.getValueAsString();
+  }
+
+  private long readLong() throws IOException {
+    final JsonToken token = parser.nextToken();
+    if (token == JsonToken.VALUE_NUMBER_INT) {
+      return parser.getLongValue();
+    }
+    if (token.isStructStart()) {
+      parser.skipChildren();
+      return 0L;
+    }
+    return parser.getValueAsLong();
+  }
+
+  private double readDouble() throws IOException {
+    final JsonToken token = parser.nextToken();
+    if (token.isNumeric()) {
+      return parser.getDoubleValue();
+    }
+    if (token.isStructStart()) {
+      parser.skipChildren();
+      return 0.0;
+    }
+    return parser.getValueAsDouble();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (parser != null) {
+      parser.close();
+    }
+    if (in != null) {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A queries.json row seen as raw bytes, before any {@link Query} is bound.
+ *
+ * <p>The row is only walked as far as the fields a {@link
+ * com.dremio.support.diagnostics.queriesjson.filters.QueryPredicate} asks for, start and finish
+ * come right after the query text so a date range rarely looks at the rest of the row. Values are
+ * decoded on demand, strings into a buffer that is reused for every row, so a rejected row costs
+ * no allocation. An instance is reused row after row and is not thread safe.
+ */
+public final class RawQueryRow {
+
+  /** returned by {@link #getLong} when the value is not a plain integer */
+  public static final long UNKNOWN = Long.MIN_VALUE;
+
+  /** top level fields of a row that predicates can read */
+  public enum Field {
+    QUERY_TEXT("queryText"),
+    START("start"),
+    FINISH("finish"),
+    OUTCOME("outcome"),
+    USERNAME("username"),
+    QUERY_TYPE("queryType"),
+    QUEUE_NAME("queueName"),
+    ENGINE_NAME("engineName");
+
+    private final byte[] name;
+
+    Field(final String name) {
+      this.name = name.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static final Field[] FIELDS = Field.values();
+
+  private final int[] valueStart = new int[FIELDS.length];
+  private byte[] data;
+  private int end;
+  private boolean opaque;
+  // where the walk stopped, it picks up from here when a field not seen yet is asked for
+  private int position;
+  private int depth;
+  private boolean started;
+  private boolean key;
+  private int pending;
+  private boolean complete;
+  private char[] chars = new char[256];
+  private CharBuffer view = CharBuffer.wrap(chars);
+
+  /**
+   * points the row at the bytes of a single json object, nothing is read until a value is asked
+   * for
+   *
+   * @param data buffer holding the row
+   * @param from first byte of the row
+   * @param to end of the row
+   */
+  public void reset(final byte[] data, final int from, final int to) {
+    this.data = data;
+    this.end = to;
+    Arrays.fill(valueStart, -1);
+    opaque = false;
+    position = from;
+    depth = 0;
+    started = false;
+    key = false;
+    pending = -1;
+    complete = false;
+  }
+
+  private int find(final Field field) {
+    final int ordinal = field.ordinal();
+    if (valueStart[ordinal] < 0 && !complete) {
+      walk(ordinal);
+    }
+    return valueStart[ordinal];
+  }
+
+  /** walks the row until the value of the wanted field starts or the row ends */
+  private void walk(final int wanted) {
+    for (int i = position; i < end; i++) {
+      final byte b = data[i];
+      if (depth == 0 && !isWhitespace(b)) {
+        if (started || b != '{') {
+          // not an object, or more than one object in the row
+          stop(true);
+          return;
+        }
+        started = true;
+      }
+      switch (b) {
+        case '"' -> {
+          final int close = stringEnd(data, i + 1, end);
+          if (close < 0) {
+            stop(true);
+            return;
+          }
+          if (depth == 1 && key) {
+            pending = field(data, i + 1, close);
+            key = false;
+          }
+          i = close;
+        }
+        case ':' -> {
+          if (depth == 1 && pending >= 0) {
+            int j = i + 1;
+            while (j < end && isWhitespace(data[j])) {
+              j++;
+            }
+            if (j == end) {
+              stop(true);
+              return;
+            }
+            valueStart[pending] = j;
+            if (pending == wanted) {
+              pending = -1;
+              position = j;
+              return;
+            }
+            pending = -1;
+          }
+        }
+        case ',' -> key = depth == 1;
+        case '{', '[' -> {
+          depth++;
+          key = depth == 1;
+        }
+        case '}', ']' -> depth--;
+        default -> {}
+      }
+    }
+    // an object left open is reported by the json parser once the row is bound
+    stop(depth != 0);
+  }
+
+  private void stop(final boolean invalid) {
+    complete = true;
+    position = end;
+    opaque |= invalid;
+  }
+
+  /**
+   * @return true when the part of the row read so far is not a single plain json object, for
+   *     instance a key that needs decoding, values read from it cannot be trusted and the row has
+   *     to be bound to be filtered
+   */
+  public boolean isOpaque() {
+    return opaque;
+  }
+
+  /**
+   * reads an integer the way {@link QueryStreamReader} does for a plain integer, missing, null
+   * and nested values are 0
+   *
+   * @param field field to read
+   * @return the value, or {@link #UNKNOWN} for strings, decimals and anything else that needs the
+   *     full parser
+   */
+  public long getLong(final Field field) {
+    int p = find(field);
+    if (p < 0) {
+      return 0L;
+    }
+    final byte first = data[p];
+    if (first == 'n' || first == '{' || first == '[') {
+      return 0L;
+    }
+    final boolean negative = first == '-';
+    if (negative) {
+      p++;
+    }
+    long value = 0;
+    int digits = 0;
+    for (; p < end && data[p] >= '0' && data[p] <= '9'; p++) {
+      // 18 digits always fit in a long
+      if (++digits > 18) {
+        return UNKNOWN;
+      }
+      value = value * 10 + (data[p] - '0');
+    }
+    // a number running to the end of the row belongs to a truncated row
+    if (digits == 0 || p == end || data[p] == '.' || data[p] == 'e' || data[p] == 'E') {
+      return UNKNOWN;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * reads a value the way {@link QueryStreamReader} does for strings
+   *
+   * @param field field to read
+   * @return the decoded value, null for missing, null and nested values, numbers and booleans as
+   *     they are written. The sequence is overwritten by the next call.
+   */
+  public CharSequence getString(final Field field) {
+    final int p = find(field);
+    if (p < 0) {
+      return null;
+    }
+    final byte first = data[p];
+    if (first == 'n' || first == '{' || first == '[') {
+      return null;
+    }
+    if (first != '"') {
+      int q = p;
+      while (q < end && !isDelimiter(data[q])) {
+        q++;
+      }
+      ensure(q - p);
+      for (int i = p; i < q; i++) {
+        chars[i - p] = (char) data[i];
+      }
+      return view(q - p);
+    }
+    final int close = stringEnd(data, p + 1, end);
+    if (close < 0) {
+      opaque = true;
+      return null;
+    }
+    return decode(p + 1, close);
+  }
+
+  private CharSequence view(final int length) {
+    view.clear().limit(length);
+    return view;
+  }
+
+  private void ensure(final int length) {
+    if (chars.length < length) {
+      chars = new char[Math.max(length, chars.length * 2)];
+      view = CharBuffer.wrap(chars);
+    }
+  }
+
+  /** decodes utf-8 and json escapes, a utf-8 string never decodes to more chars than bytes */
+  private CharSequence decode(final int from, final int to) {
+    ensure(to - from);
+    int n = 0;
+    for (int i = from; i < to; ) {
+      final int b = data[i] & 0xff;
+      if (b == '\\') {
+        final byte e = data[i + 1];
+        switch (e) {
+          case 'n' -> chars[n++] = '\n';
+          case 't' -> chars[n++] = '\t';
+          case 'r' -> chars[n++] = '\r';
+          case 'b' -> chars[n++] = '\b';
+          case 'f' -> chars[n++] = '\f';
+          case 'u' -> {
+            int unit = 0;
+            for (int h = i + 2; h < i + 6; h++) {
+              unit = (unit << 4) | Character.digit(data[h], 16);
+            }
+            chars[n++] = (char) unit;
+            i += 4;
+          }
+          default -> chars[n++] = (char) e;
+        }
+        i += 2;
+      } else if (b < 0x80) {
+        chars[n++] = (char) b;
+        i++;
+      } else if (b < 0xe0 && i + 1 < to) {
+        chars[n++] = (char) (((b & 0x1f) << 6) | (data[i + 1] & 0x3f));
+        i += 2;
+      } else if (b < 0xf0 && i + 2 < to) {
+        chars[n++] =
+            (char) (((b & 0x0f) << 12) | ((data[i + 1] & 0x3f) << 6) | (data[i + 2] & 0x3f));
+        i += 3;
+      } else if (i + 3 < to) {
+        final int codePoint =
+            ((b & 0x07) << 18)
+                | ((data[i + 1] & 0x3f) << 12)
+                | ((data[i + 2] & 0x3f) << 6)
+                | (data[i + 3] & 0x3f);
+        chars[n++] = Character.highSurrogate(codePoint);
+        chars[n++] = Character.lowSurrogate(codePoint);
+        i += 4;
+      } else {
+        chars[n++] = '\uFFFD';
+        i++;
+      }
+    }
+    return view(n);
+  }
+
+  private int field(final byte[] data, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (data[i] == '\\') {
+        opaque = true;
+        return -1;
+      }
+    }
+    final int length = to - from;
+    for (Field field : FIELDS) {
+      if (field.name.length == length && Arrays.equals(data, from, to, field.name, 0, length)) {
+        return field.ordinal();
+      }
+    }
+    return -1;
+  }
+
+  private static int stringEnd(final byte[] data, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      final byte b = data[i];
+      if (b == '\\') {
+        i++;
+      } else if (b == '"') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static boolean isWhitespace(final byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  private static boolean isDelimiter(final byte b) {
+    return b == ',' || b == '}' || b == ']' || isWhitespace(b);
+  }
+}
@@ -13,24 +13,26 @@
  */
 package com.dremio.support.diagnostics.queriesjson;
 
-import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryPredicate;
 import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import com.dremio.support.diagnostics.queriesjson.reporters.ReporterShards;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
@@ -54,17 +56,64 @@ public class ReadArchive {
   private static final Logger LOGGER = Logger.getLogger(ReadArchive.class.getName());
 
   /**
-   * proivdes the filtering of dates so that we do not see data outside of the range requested
+   * proivdes the filtering of dates so that we do not see data outside of the range requested,
+   * checked on the raw rows before they are bound and on the names of rotated files
    */
-  private final DateRangeQueryFilter dateFilter;
+  private final QueryPredicate dateFilter;
+
+  /**
+   * default heap budget for archive entries waiting to be parsed
+   */
+  public static final int DEFAULT_MAX_BUFFERED_BYTES = 128 * 1024 * 1024;
+
+  /**
+   * upper bound of the raw entry bytes held in memory at any one time
+   */
+  private final int maxBufferedBytes;
+
+  /**
+   * told about every file as soon as it has been searched
+   */
+  private final Consumer<SearchedFile> onSearched;
 
   /**
    * Parses zip and tgz files for queries.json files either unzipped or in a gzipped format
    * (the original format Dremio stores the files in)
    * @param dateFilter limits the queries that show up in the report. The filter is based on start epoch of the timestamp
    */
-  public ReadArchive(final DateRangeQueryFilter dateFilter) {
+  public ReadArchive(final QueryPredicate dateFilter) {
+    this(dateFilter, DEFAULT_MAX_BUFFERED_BYTES);
+  }
+
+  /**
+   * Parses zip and tgz files for queries.json files either unzipped or in a gzipped format
+   * (the original format Dremio stores the files in)
+   * @param dateFilter limits the queries that show up in the report. The filter is based on start epoch of the timestamp
+   * @param maxBufferedBytes heap budget for archive entries waiting to be parsed, entries larger than this are parsed while they are read
+   */
+  public ReadArchive(final QueryPredicate dateFilter, final int maxBufferedBytes) {
+    this(dateFilter, maxBufferedBytes, x -> {});
+  }
+
+  /**
+   * Parses zip and tgz files for queries.json files either unzipped or in a gzipped format
+   * (the original format Dremio stores the files in)
+   * @param dateFilter limits the queries that show up in the report. The filter is based on start epoch of the timestamp
+   * @param maxBufferedBytes heap budget for archive entries waiting to be parsed, entries larger than this are parsed while they are read
+   * @param onSearched told about every file read by {@link #readStream} as soon as it has been searched, it is called from the parsing threads
+   */
+  public ReadArchive(
+      final QueryPredicate dateFilter,
+      final int maxBufferedBytes,
+      final Consumer<SearchedFile> onSearched) {
     this.dateFilter = dateFilter;
+    this.maxBufferedBytes = Math.max(BufferedEntry.BLOCK_SIZE, maxBufferedBytes);
+    this.onSearched = onSearched;
+  }
+
+  private SearchedFile searched(final SearchedFile file) {
+    onSearched.accept(file);
+    return file;
   }
 
   /**
@@ -77,11 +126,35 @@ public class ReadArchive {
    */
   public SearchedFile parseGzip(String fileName, Path source, Collection<QueryReporter> reports)
       throws IOException {
+    try {
+      return parseGzip(fileName, source, reports, 1);
+    } catch (InterruptedException | ExecutionException e) {
+      // a single thread never touches the pool
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * the logic to parse a gzip directly (skip extracting to disk), decompression happens on the
+   * calling thread and the decompressed rows are parsed in chunks by a pool of threads
+   *
+   * @param fileName original archive entry name used for reporting purposes only
+   * @param source the location of the file that we will parse
+   * @param reports list of reporters to run against each query, they will need to be thread safe if
+   *     threads > 1
+   * @param threads number of threads parsing the decompressed chunks
+   * @throws IOException when we're unable to read the gzip file
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public SearchedFile parseGzip(
+      String fileName, Path source, Collection<QueryReporter> reports, int threads)
+      throws IOException, InterruptedException, ExecutionException {
     try (var tmpFileStream = Files.newInputStream(source)) {
       GZIPInputStream gzis;
       try {
         gzis = new GZIPInputStream(tmpFileStream);
-        return QueriesJsonFileParser.parseFile(fileName, gzis, reports, dateFilter);
+        return new ChunkedQueriesJsonParser(threads).parse(fileName, gzis, reports, dateFilter);
       } catch (ZipException ex) {
         // not a valid gzip so no reason to continue
         LOGGER.warning("invalid gzip skipping entry %s".formatted(fileName));
@@ -95,40 +168,48 @@ public class ReadArchive {
   }
 
   /**
+   * parses a single uncompressed queries.json, the file is read on the calling thread and parsed
+   * in chunks by a pool of threads
    *
    * @param fileName original archive entry name used for reporting purposes only
    * @param source the location of the file that we will parse
-   * @param reports list of reporters to run against each query
+   * @param reports list of reporters to run against each query, they will need to be thread safe if
+   *     threads > 1
+   * @param threads number of threads parsing chunks of the file
+   * @return a searched file with the file name, number of records parsed and records filtered
    * @throws IOException when we're unable to read the text file
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
    */
-  private SearchedFile parseJSON(String fileName, Path source, Collection<QueryReporter> reports)
-      throws IOException {
-    try (var tmpFileStream = Files.newInputStream(source)) {
-      return QueriesJsonFileParser.parseFile(fileName, tmpFileStream, reports, dateFilter);
-    }
+  public SearchedFile parseJSON(
+      String fileName, Path source, Collection<QueryReporter> reports, int threads)
+      throws IOException, InterruptedException, ExecutionException {
+    return new ChunkedQueriesJsonParser(threads)
+        .parse(fileName, Files.newInputStream(source), reports, dateFilter);
   }
 
   /**
    * Catch all method that drives the archive parsing logic and iterates through all the entries via the following approach:
    * - it does not extract the archive, but only reads the entries inside
-   * - if it does find an entry that we want to parse, that file is then extracted to a temp file and deleted after parsing is done
+   * - if it does find an entry that we want to parse, the raw entry bytes are buffered in memory and handed to the thread pool
    * - each file that is parsed is done so from a thread pool.
    * - each query that is parsed is visited by a list of reporters and not kept and therefore can be released immediately
+   * - each thread feeds its own shard of the reporters, the shards are merged once all files are parsed
    *
    * this gives us several useful properties
    * - each CPU thread tends to stay busy at all times
-   * - it does not use more disk space than (number of threads * individual queries.json file size)
-   *   so if each file is 10mb and there are 8 threads, then 80mb of disk space will be used
-   * - it does not use more memory that (number of threads * individual query size)
-   *   so if each query is 1mb and there are 8 threads, then 8mb fo ram will be consumed by this method (though reporters may consume more)
+   * - nothing is written to disk
+   * - buffered entries never use more than maxBufferedBytes of heap, the archive reader blocks until
+   *   the workers release memory. An entry that would not fit on its own is streamed straight from
+   *   the archive by the calling thread instead, its chunks are parsed on the same pool
    *
    * @param is archive containing queries.json to reach from
-   * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
+   * @param reporters reporters to run against each query that is parsed, reporters that cannot be sharded will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched in the archive
    * @throws JsonMappingException from jackson if there is an invalid row
    * @throws JsonProcessingException from jackon
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -142,99 +223,223 @@ public class ReadArchive {
           InterruptedException,
           ExecutionException {
 
-    final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, threads));
     final List<Future<?>> futures = new ArrayList<>();
-    final List<SearchedFile> entries = new ArrayList<>();
-    ArchiveEntry entry;
-    while (null != (entry = is.getNextEntry())) {
-      // Check if entry is a directory
-      if (!entry.isDirectory()) {
+    final List<SearchedFile> entries = Collections.synchronizedList(new ArrayList<>());
+    final ReporterShards shards = new ReporterShards(reporters);
+    final Semaphore budget = new Semaphore(maxBufferedBytes);
+    try {
+      ArchiveEntry entry;
+      while (null != (entry = is.getNextEntry())) {
+        // Check if entry is a directory
+        if (entry.isDirectory()) {
+          continue;
+        }
         // only attempt to process files with "queries" in the name
-        if (entry.getName().contains("queries")) {
-          // gzips need to be handled with a different code path
-          final String entryName = entry.getName();
-          final boolean isMaybeGZip = entryName.endsWith("gz");
-          final boolean isBzip2 = entryName.endsWith("bzip2");
-          final boolean isJson = entryName.endsWith("json");
-          // only parse files gzips and json files
-          if (isJson || isMaybeGZip || isBzip2) {
-            final Path tmpFile = Files.createTempFile("oa-", "-ta");
-            // this is probably hacky but I've not yet figured out a way to write a temp file in
-            // java and
-            // get the stream back.
-            Files.copy(is, tmpFile, StandardCopyOption.REPLACE_EXISTING);
-            final boolean isGzip = isValidGzip(tmpFile.toFile());
-            // check to see if the file is too small to have anything meaningful inside
-            final long size = tmpFile.toFile().length();
-            if (size < 8) {
-              // if too small skip it
-              LOGGER.warning(
-                  "found file of only %d bytes, not usable. Skipping entry %s"
-                      .formatted(size, entryName));
-              return entries;
-            }
-            final String fileName = entry.getName();
-            // use the thread pool to run the parsing, this allows faster throughput and uses
-            // more of the machine resources
-            futures.add(
-                executorService.submit(
-                    () -> {
-                      try {
-                        if (isGzip) {
-                          entries.add(parseGzip(fileName, tmpFile, reporters));
-                        } else if (isJson) {
-                          entries.add(parseJSON(fileName, tmpFile, reporters));
-                        } else if (isBzip2) {
-                          entries.add(parseBzip2(fileName, reporters));
-                        } else if (isMaybeGZip) {
-                          entries.add(new SearchedFile(0, 0, fileName, ""));
-                          LOGGER.finer(
-                              () ->
-                                  "skipped file %s as it has a gzip extension but is not a gzip"
-                                      .formatted(entryName));
-                        } else {
-                          entries.add(new SearchedFile(0, 0, fileName, ""));
-                          // since we have guarded above to only parse gzips, bzip2 and json files
-                          // reaching this
-                          // means we have left a critical bug in the code and allowed another
-                          // file type into
-                          // this code block with addressing it.
-                          LOGGER.severe("this is a bug and this code should not be reached");
-                        }
-                      } catch (IOException | InterruptedException | ExecutionException e) {
-                        entries.add(new SearchedFile(0, 0, fileName, e.getMessage()));
-                        LOGGER.log(
-                            Level.SEVERE,
-                            "error parsing file %s: %s".formatted(fileName, e.getMessage()),
-                            e);
-                      } finally {
-                        // cleanup tmp file when we are done processing
-                        tmpFile.toFile().delete();
-                        System.out.print(".");
-                      }
-                    }));
+        final String fileName = entry.getName();
+        if (!fileName.contains("queries")) {
+          continue;
+        }
+        final boolean isMaybeGZip = fileName.endsWith("gz");
+        final boolean isBzip2 = fileName.endsWith("bzip2");
+        final boolean isJson = fileName.endsWith("json");
+        // only parse files gzips and json files
+        if (!isJson && !isMaybeGZip && !isBzip2) {
+          continue;
+        }
+        if (!dateFilter.mayMatchFile(fileName)) {
+          // the name of a rotated file is enough to know it is out of range, the archive skips
+          // over its bytes without them being buffered or decompressed
+          LOGGER.info("skipping entry %s, it is outside of the date range".formatted(fileName));
+          entries.add(searched(new SearchedFile(0, 0, fileName, "")));
+          continue;
+        }
+        final BufferedEntry buffered = BufferedEntry.read(is, budget, maxBufferedBytes);
+        // check to see if the file is too small to have anything meaningful inside
+        if (buffered.complete() && buffered.size() < 8) {
+          LOGGER.warning(
+              "found file of only %d bytes, not usable. Skipping entry %s"
+                  .formatted(buffered.size(), fileName));
+          budget.release(buffered.size());
+          continue;
+        }
+        if (!buffered.complete()) {
+          // too large to hold in memory so stream the rest straight out of the archive, the
+          // calling thread gets its own shard and its chunks queue on the pool alongside the
+          // buffered entries so the thread count stays at threads
+          LOGGER.info(
+              "entry %s is larger than %d bytes, parsing it while reading the archive"
+                  .formatted(fileName, maxBufferedBytes));
+          try {
+            entries.add(
+                searched(
+                    parseEntry(
+                        fileName,
+                        buffered.stream(is),
+                        buffered.isGzip(),
+                        isJson,
+                        isBzip2,
+                        shards.forCurrentThread(),
+                        new ChunkedQueriesJsonParser(
+                            threads,
+                            ChunkedQueriesJsonParser.DEFAULT_CHUNK_SIZE,
+                            executorService))));
+          } catch (IOException | ExecutionException e) {
+            entries.add(searched(new SearchedFile(0, 0, fileName, e.getMessage())));
+            LOGGER.log(
+                Level.SEVERE, "error parsing file %s: %s".formatted(fileName, e.getMessage()), e);
+          } finally {
+            budget.release(buffered.size());
           }
+          continue;
         }
+        // use the thread pool to run the parsing, this allows faster throughput and uses
+        // more of the machine resources
+        futures.add(
+            executorService.submit(
+                () -> {
+                  try {
+                    entries.add(
+                        searched(
+                            parseEntry(
+                                fileName,
+                                buffered.stream(null),
+                                buffered.isGzip(),
+                                isJson,
+                                isBzip2,
+                                shards.forCurrentThread(),
+                                new ChunkedQueriesJsonParser(1))));
+                  } catch (IOException | InterruptedException | ExecutionException e) {
+                    entries.add(searched(new SearchedFile(0, 0, fileName, e.getMessage())));
+                    LOGGER.log(
+                        Level.SEVERE,
+                        "error parsing file %s: %s".formatted(fileName, e.getMessage()),
+                        e);
+                  } finally {
+                    // hand the memory back so the reader can buffer the next entry
+                    budget.release(buffered.size());
+                    System.out.print(".");
+                  }
+                }));
       }
+      // this will allow us to block all the futures we've submitted until they're done
+      // thanks to this we can count on all parsing being done before the method executor shutsdown
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
     }
-    // this will allow us to block all the futures we've submitted until they're done
-    // thanks to this we can count on all parsing being done before the method executor shutsdown
-    for (Future<?> future : futures) {
-      future.get();
-    }
-    // this is probably not necessary but leaving it in case there is other code added later that
-    // needs it.
-    executorService.shutdown();
+    shards.merge();
     return entries;
   }
 
+  /**
+   * parses a single archive entry that has already been identified by name and magic bytes
+   *
+   * @param fileName original archive entry name used for reporting purposes only
+   * @param entryStream raw (possibly compressed) bytes of the entry
+   * @param isGzip entry starts with the gzip magic bytes
+   * @param isJson entry name ends with json
+   * @param isBzip2 entry name ends with bzip2
+   * @param reports reporters to run against each query
+   * @param parser parses the decompressed rows
+   * @return a searched file with the file name, number of records parsed and records filtered
+   * @throws IOException when we're unable to read the entry
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  private SearchedFile parseEntry(
+      final String fileName,
+      final InputStream entryStream,
+      final boolean isGzip,
+      final boolean isJson,
+      final boolean isBzip2,
+      final Collection<QueryReporter> reports,
+      final ChunkedQueriesJsonParser parser)
+      throws IOException, InterruptedException, ExecutionException {
+    if (isGzip) {
+      try {
+        return parser.parse(fileName, new GZIPInputStream(entryStream), reports, dateFilter);
+      } catch (ZipException ex) {
+        // not a valid gzip so no reason to continue
+        LOGGER.warning("invalid gzip skipping entry %s".formatted(fileName));
+        return new SearchedFile(0, 0, fileName, ex.getMessage());
+      }
+    } else if (isJson) {
+      return parser.parse(fileName, entryStream, reports, dateFilter);
+    } else if (isBzip2) {
+      try {
+        return parser.parse(
+            fileName, new BZip2CompressorInputStream(entryStream), reports, dateFilter);
+      } catch (IOException ex) {
+        // not a valid bzip2 so no reason to continue
+        LOGGER.log(Level.WARNING, "invalid bzip2 skipping entry %s".formatted(fileName), ex);
+        return new SearchedFile(0, 0, fileName, ex.getMessage());
+      }
+    }
+    LOGGER.finer(
+        () -> "skipped file %s as it has a gzip extension but is not a gzip".formatted(fileName));
+    return new SearchedFile(0, 0, fileName, "");
+  }
+
+  /**
+   * reads an archive or a single queries.json (plain or compressed) from a stream that cannot be
+   * rewound, such as an upload that is still arriving. The type is picked from the file name.
+   *
+   * @param fileName name of the uploaded file, only the extension is used
+   * @param is stream to read, it is read once from start to end on the calling thread
+   * @param reporters reporters to run against each query that is parsed, reporters that cannot be sharded will need to be thread safe if threads > 1
+   * @param threads number of threads parsing the data
+   * @return files that were searched
+   * @throws IllegalArgumentException when the extension is not supported
+   * @throws IOException if the stream cannot be read
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public Collection<SearchedFile> readStream(
+      String fileName, InputStream is, Collection<QueryReporter> reporters, int threads)
+      throws IOException, InterruptedException, ExecutionException {
+    if (fileName.endsWith(".tgz") || fileName.endsWith(".tar.gz")) {
+      return parse(new TarArchiveInputStream(new GZIPInputStream(is)), reporters, threads);
+    } else if (fileName.endsWith(".tar.xz")) {
+      return parse(new TarArchiveInputStream(new XZCompressorInputStream(is)), reporters, threads);
+    } else if (fileName.endsWith(".tar.bzip2")) {
+      return parse(
+          new TarArchiveInputStream(new BZip2CompressorInputStream(is)), reporters, threads);
+    } else if (fileName.endsWith(".tar")) {
+      return parse(new TarArchiveInputStream(is), reporters, threads);
+    } else if (fileName.endsWith(".zip")) {
+      return parse(new ZipArchiveInputStream(is), reporters, threads);
+    } else if (fileName.endsWith(".gz")) {
+      return List.of(
+          searched(
+              new ChunkedQueriesJsonParser(threads)
+                  .parse(fileName, new GZIPInputStream(is), reporters, dateFilter)));
+    } else if (fileName.endsWith(".bzip2")) {
+      return List.of(
+          searched(
+              new ChunkedQueriesJsonParser(threads)
+                  .parse(fileName, new BZip2CompressorInputStream(is), reporters, dateFilter)));
+    } else if (fileName.endsWith(".json")) {
+      return List.of(
+          searched(
+              new ChunkedQueriesJsonParser(threads).parse(fileName, is, reporters, dateFilter)));
+    }
+    throw new IllegalArgumentException(
+        "unknown extension for file "
+            + fileName
+            + " only supported extensions are .tar, .tar.gz, .tgz,"
+            + " tar.xz, tar.bzip2, .bzip2, .gz, .zip and .json");
+  }
+
   /**
    * logic ot read a tar.gz or tgz file
    * @param targz the gzipped tarball to read
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -256,7 +461,7 @@ public class ReadArchive {
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -278,7 +483,7 @@ public class ReadArchive {
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -298,17 +503,32 @@ public class ReadArchive {
    * logic to read a bzip2 file
    * @param bzip2 the bzip2 file to read
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
-   * @param threads concurrent number of files that will be parsed
    * @returns a searched file with the file name, number of records parsed and records filtered
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
   public SearchedFile parseBzip2(String bzip2, Collection<QueryReporter> reporters)
       throws IOException, InterruptedException, ExecutionException {
+    return parseBzip2(bzip2, reporters, 1);
+  }
+
+  /**
+   * logic to read a bzip2 file, decompression happens on the calling thread and the decompressed
+   * rows are parsed in chunks by a pool of threads
+   * @param bzip2 the bzip2 file to read
+   * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
+   * @param threads number of threads parsing the decompressed chunks
+   * @returns a searched file with the file name, number of records parsed and records filtered
+   * @throws IOException if there is a file we cannot read
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public SearchedFile parseBzip2(String bzip2, Collection<QueryReporter> reporters, int threads)
+      throws IOException, InterruptedException, ExecutionException {
     try (FileInputStream st = new FileInputStream(bzip2)) {
       try (BZip2CompressorInputStream bzi = new BZip2CompressorInputStream(st)) {
-        return QueriesJsonFileParser.parseFile(bzip2, bzi, reporters, dateFilter);
+        return new ChunkedQueriesJsonParser(threads).parse(bzip2, bzi, reporters, dateFilter);
       } catch (Exception ex) {
         // not a valid bzip2 so no reason to continue
         LOGGER.log(Level.WARNING, "invalid bzip2 skipping entry %s".formatted(bzip2), ex);
@@ -323,7 +543,7 @@ public class ReadArchive {
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -337,25 +557,6 @@ public class ReadArchive {
     }
   }
 
-  /**
-   * borrowed from stack overflow
-   * https://stackoverflow.com/questions/30507653/how-to-check-whether-file-is-gzip-or-not-in-java
-   *
-   * Did this to minize the gzip errors we enconter
-   * @param f file to check
-   * @return is the magic byte is present
-   */
-  private boolean isValidGzip(File f) {
-    int magic = 0;
-    try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
-      magic = raf.read() & 0xff | ((raf.read() << 8) & 0xff00);
-    } catch (Throwable e) {
-      LOGGER.log(Level.WARNING, e.getMessage(), e);
-      return false;
-    }
-    return magic == GZIPInputStream.GZIP_MAGIC;
-  }
-
   /**
    * logic to read a zip file
    *
@@ -363,7 +564,7 @@ public class ReadArchive {
    * @param reporters reporters to run against each query that is parsed, they will need to be thread safe if threads > 1
    * @param threads concurrent number of files that will be parsed
    * @return files that were searched
-   * @throws IOException if there is a file we cannot read or we cannot write the temp files
+   * @throws IOException if there is a file we cannot read
    * @throws InterruptedException if there is a threading problem
    * @throws ExecutionException if there is a thread pool issue
    */
@@ -14,8 +14,28 @@
 package com.dremio.support.diagnostics.queriesjson.filters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.RawQueryRow;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-public class DateRangeQueryFilter implements QueryFilter {
+public class DateRangeQueryFilter implements QueryPredicate {
+
+  /**
+   * rotated files are named after the day their rows were written, queries.2024-05-01.json.gz or
+   * queries.2024-05-01.3.json.gz
+   */
+  private static final Pattern ROTATED_FILE =
+      Pattern.compile("queries\\.(\\d{4}-\\d{2}-\\d{2})(\\.\\d+)?\\.json(\\.gz)?$");
+
+  /**
+   * a row is written when its query finishes, in the coordinator's local day. Local midnight is at
+   * most 12 hours after midnight UTC.
+   */
+  private static final long LOCAL_DAY_AFTER = Duration.ofHours(12).toMillis();
 
   private final long epochStart;
   private final long epochEnd;
@@ -27,12 +47,48 @@ public class DateRangeQueryFilter implements QueryFilter {
 
   @Override
   public boolean isValid(Query q) {
-    if (q.getStart() == 0) {
+    return isValid(q.getStart(), q.getFinish());
+  }
+
+  private boolean isValid(final long start, final long finish) {
+    if (start == 0) {
       return false;
     }
-    if (q.getFinish() == 0) {
+    if (finish == 0) {
       return false;
     }
-    return q.getStart() < epochEnd && q.getStart() > epochStart;
+    return start < epochEnd && start > epochStart;
+  }
+
+  @Override
+  public boolean mayMatch(final RawQueryRow row) {
+    final long start = row.getLong(RawQueryRow.Field.START);
+    final long finish = row.getLong(RawQueryRow.Field.FINISH);
+    if (start == RawQueryRow.UNKNOWN || finish == RawQueryRow.UNKNOWN) {
+      return true;
+    }
+    return isValid(start, finish);
+  }
+
+  /**
+   * a rotated file only holds queries that finished on the day in its name, it can be skipped when
+   * that day ended before the range starts since every query in it started even earlier. Files
+   * after the range are always read, a query started in the range can run for any length of time.
+   */
+  @Override
+  public boolean mayMatchFile(final String fileName) {
+    final Matcher matcher = ROTATED_FILE.matcher(fileName);
+    if (!matcher.find()) {
+      return true;
+    }
+    final long day;
+    try {
+      day =
+          LocalDate.parse(matcher.group(1)).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return true;
+    }
+    final long lastFinish = day + Duration.ofDays(1).toMillis() + LOCAL_DAY_AFTER;
+    return lastFinish > epochStart;
   }
 }
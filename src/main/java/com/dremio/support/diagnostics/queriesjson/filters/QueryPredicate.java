@@ -0,0 +1,40 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.filters;
+
+import com.dremio.support.diagnostics.queriesjson.RawQueryRow;
+
+/**
+ * A {@link QueryFilter} that can also be checked before a row is bound. The parsers ask {@link
+ * #mayMatch} first and only bind the rows it lets through, {@link #isValid} still has the last
+ * word on those, so a predicate that cannot decide on the raw row simply answers true.
+ */
+public interface QueryPredicate extends QueryFilter {
+
+  /**
+   * @param row the raw row, its values are only valid during the call
+   * @return false only when {@link #isValid} would be false for the row once bound
+   */
+  boolean mayMatch(RawQueryRow row);
+
+  /**
+   * checked before a file is opened so a file that cannot hold a matching row is not read at all
+   *
+   * @param fileName file or archive entry name
+   * @return false only when no row in the file can be valid
+   */
+  default boolean mayMatchFile(final String fileName) {
+    return true;
+  }
+}
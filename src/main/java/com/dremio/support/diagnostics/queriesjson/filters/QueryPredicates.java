@@ -0,0 +1,270 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.filters;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.RawQueryRow;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the {@link QueryPredicate}s that can be pushed down into the queries.json parsers, either
+ * in code or from the expressions accepted on the command line:
+ *
+ * <ul>
+ *   <li>user=NAME, queue=NAME, outcome=NAME, engine=NAME and type=NAME compare the whole value
+ *       ignoring case
+ *   <li>text~REGEX looks for the regex anywhere in the query text
+ * </ul>
+ */
+public final class QueryPredicates {
+
+  /** what {@link Query} reports for a missing or empty queue or engine */
+  private static final String DEFAULT = "Default";
+
+  private QueryPredicates() {}
+
+  /**
+   * @param username user that ran the query, case is ignored
+   * @return a predicate keeping the queries of that user
+   */
+  public static QueryPredicate username(final String username) {
+    return new FieldEquals(RawQueryRow.Field.USERNAME, username, Query::getUsername, null);
+  }
+
+  /**
+   * @param queueName queue the query ran in, case is ignored, queries without one are in Default
+   * @return a predicate keeping the queries of that queue
+   */
+  public static QueryPredicate queueName(final String queueName) {
+    return new FieldEquals(RawQueryRow.Field.QUEUE_NAME, queueName, Query::getQueueName, DEFAULT);
+  }
+
+  /**
+   * @param outcome outcome such as COMPLETED, FAILED or CANCELED, case is ignored
+   * @return a predicate keeping the queries with that outcome
+   */
+  public static QueryPredicate outcome(final String outcome) {
+    return new FieldEquals(RawQueryRow.Field.OUTCOME, outcome, Query::getOutcome, null);
+  }
+
+  /**
+   * @param engineName engine the query ran on, case is ignored, queries without one are on
+   *     Default
+   * @return a predicate keeping the queries of that engine
+   */
+  public static QueryPredicate engineName(final String engineName) {
+    return new FieldEquals(
+        RawQueryRow.Field.ENGINE_NAME, engineName, Query::getEngineName, DEFAULT);
+  }
+
+  /**
+   * @param queryType query type such as UI_RUN, ODBC or METADATA_REFRESH, case is ignored
+   * @return a predicate keeping the queries of that type
+   */
+  public static QueryPredicate queryType(final String queryType) {
+    return new FieldEquals(RawQueryRow.Field.QUERY_TYPE, queryType, Query::getQueryType, null);
+  }
+
+  /**
+   * @param pattern regex searched for anywhere in the query text
+   * @return a predicate keeping the queries whose text contains a match
+   */
+  public static QueryPredicate queryText(final Pattern pattern) {
+    return new TextMatches(pattern);
+  }
+
+  /**
+   * @param predicates predicates that must all hold
+   * @return a predicate keeping the queries every predicate keeps
+   */
+  public static QueryPredicate and(final List<? extends QueryPredicate> predicates) {
+    if (predicates.size() == 1) {
+      return predicates.get(0);
+    }
+    return new And(List.copyOf(predicates));
+  }
+
+  /**
+   * @param predicates predicates of which one must hold
+   * @return a predicate keeping the queries any predicate keeps
+   */
+  public static QueryPredicate or(final List<? extends QueryPredicate> predicates) {
+    if (predicates.size() == 1) {
+      return predicates.get(0);
+    }
+    return new Or(List.copyOf(predicates));
+  }
+
+  /**
+   * @param expression field=value or text~regex
+   * @return the predicate
+   * @throws IllegalArgumentException when the expression or the field is not known
+   */
+  public static QueryPredicate parse(final String expression) {
+    final int regex = expression.indexOf('~');
+    final int equals = expression.indexOf('=');
+    if (regex > 0 && (equals < 0 || regex < equals)) {
+      final String field = expression.substring(0, regex).trim();
+      if (!"text".equalsIgnoreCase(field)) {
+        throw new IllegalArgumentException(
+            "only text can be matched with ~ but found '%s'".formatted(expression));
+      }
+      return queryText(Pattern.compile(expression.substring(regex + 1)));
+    }
+    if (equals <= 0) {
+      throw new IllegalArgumentException(
+          "expected field=value or text~regex but found '%s'".formatted(expression));
+    }
+    final String value = expression.substring(equals + 1);
+    return switch (expression.substring(0, equals).trim().toLowerCase(Locale.ROOT)) {
+      case "user" -> username(value);
+      case "queue" -> queueName(value);
+      case "outcome" -> outcome(value);
+      case "engine" -> engineName(value);
+      case "type" -> queryType(value);
+      default ->
+          throw new IllegalArgumentException(
+              "unknown field in '%s', expected one of user, queue, outcome, engine, type or text"
+                  .formatted(expression));
+    };
+  }
+
+  static boolean equalsIgnoreCase(final CharSequence actual, final String expected) {
+    if (actual == null || actual.length() != expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      final char a = actual.charAt(i);
+      final char e = expected.charAt(i);
+      if (a != e
+          && Character.toUpperCase(a) != Character.toUpperCase(e)
+          && Character.toLowerCase(a) != Character.toLowerCase(e)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param ifEmpty what the getter returns for a missing or empty value, null when it returns the
+   *     value as is
+   */
+  private record FieldEquals(
+      RawQueryRow.Field field, String value, Function<Query, String> getter, String ifEmpty)
+      implements QueryPredicate {
+    @Override
+    public boolean isValid(final Query q) {
+      return equalsIgnoreCase(getter.apply(q), value);
+    }
+
+    @Override
+    public boolean mayMatch(final RawQueryRow row) {
+      final CharSequence actual = row.getString(field);
+      if (ifEmpty != null && (actual == null || actual.length() == 0)) {
+        return equalsIgnoreCase(ifEmpty, value);
+      }
+      return equalsIgnoreCase(actual, value);
+    }
+  }
+
+  private static final class TextMatches implements QueryPredicate {
+    private final Pattern pattern;
+    // a matcher per parsing thread, resetting one is cheaper than creating one per row
+    private final ThreadLocal<Matcher> matchers;
+
+    private TextMatches(final Pattern pattern) {
+      this.pattern = pattern;
+      this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+    @Override
+    public boolean isValid(final Query q) {
+      return q.getQueryText() != null && pattern.matcher(q.getQueryText()).find();
+    }
+
+    @Override
+    public boolean mayMatch(final RawQueryRow row) {
+      final CharSequence text = row.getString(RawQueryRow.Field.QUERY_TEXT);
+      return text != null && matchers.get().reset(text).find();
+    }
+  }
+
+  private record And(List<QueryPredicate> predicates) implements QueryPredicate {
+    @Override
+    public boolean isValid(final Query q) {
+      for (QueryPredicate predicate : predicates) {
+        if (!predicate.isValid(q)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean mayMatch(final RawQueryRow row) {
+      for (QueryPredicate predicate : predicates) {
+        if (!predicate.mayMatch(row)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean mayMatchFile(final String fileName) {
+      for (QueryPredicate predicate : predicates) {
+        if (!predicate.mayMatchFile(fileName)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private record Or(List<QueryPredicate> predicates) implements QueryPredicate {
+    @Override
+    public boolean isValid(final Query q) {
+      for (QueryPredicate predicate : predicates) {
+        if (predicate.isValid(q)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean mayMatch(final RawQueryRow row) {
+      for (QueryPredicate predicate : predicates) {
+        if (predicate.mayMatch(row)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean mayMatchFile(final String fileName) {
+      for (QueryPredicate predicate : predicates) {
+        if (predicate.mayMatchFile(fileName)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.html;
+
+import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
+import static java.util.Arrays.asList;
+
+import com.dremio.support.diagnostics.queriesjson.reporters.LatencyQuantilesReporter.Phase;
+import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
+import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
+import com.dremio.support.diagnostics.shared.Human;
+import com.dremio.support.diagnostics.shared.QuantileSketch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/** LatencyQuantilesWriter plots the latency percentiles per window and lists them per queue */
+public class LatencyQuantilesWriter {
+  private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+  private static final String[] LABELS = {"p50", "p95", "p99"};
+
+  private final PlotlyWriter plotly = new PlotlyWriter();
+  private final long window;
+
+  /**
+   * @param window window size in milliseconds
+   */
+  public LatencyQuantilesWriter(final long window) {
+    this.window = window;
+  }
+
+  private static Function<Long, String> genFunction(
+      final Map<Long, QuantileSketch> sketches, final double quantile) {
+    return (bucket) -> {
+      final QuantileSketch sketch = sketches.get(bucket);
+      if (sketch == null) {
+        return "0";
+      }
+      return String.format(Locale.US, "%.3f", sketch.quantile(quantile) / 1000.0);
+    };
+  }
+
+  /**
+   * @param startEpochMs start of the first window
+   * @param finishEpochMs end of the last window
+   * @param buckets per phase the sketch of every window
+   * @param queues per queue the sketch of every phase
+   * @return one plot per phase with the percentiles over time followed by a table per queue
+   */
+  public String generate(
+      final long startEpochMs,
+      final long finishEpochMs,
+      final Map<Phase, Map<Long, QuantileSketch>> buckets,
+      final Map<String, Map<Phase, QuantileSketch>> queues) {
+    final StringBuilder builder = new StringBuilder();
+    for (Phase phase : Phase.values()) {
+      final Map<Long, QuantileSketch> sketches = buckets.getOrDefault(phase, Map.of());
+      final String plotId = "latency_" + phase.name().toLowerCase(Locale.ROOT);
+      final String[] traceIds = new String[QUANTILES.length];
+      final String[] traces = new String[QUANTILES.length];
+      for (int i = 0; i < QUANTILES.length; i++) {
+        traceIds[i] = plotId + "_" + LABELS[i];
+        traces[i] =
+            plotly.writeTraceHtml(
+                traceIds[i],
+                "%s seconds %s".formatted(LABELS[i], phase.getTitle()),
+                new Dates.BucketIterator(startEpochMs, finishEpochMs, window),
+                genFunction(sketches, QUANTILES[i]));
+      }
+      builder.append(
+          plotly.writePlotHtml(
+              "Queries.json %s percentiles per %s"
+                  .formatted(phase.getTitle(), Human.getHumanDurationFromMillis(window)),
+              plotId,
+              traceIds,
+              traces));
+    }
+    builder.append(queueTable(queues));
+    return builder.toString();
+  }
+
+  private static String queueTable(final Map<String, Map<Phase, QuantileSketch>> queues) {
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> rows = new ArrayList<>();
+    for (Map.Entry<String, Map<Phase, QuantileSketch>> queue : new TreeMap<>(queues).entrySet()) {
+      for (Phase phase : Phase.values()) {
+        final QuantileSketch sketch = queue.getValue().get(phase);
+        final Collection<HtmlTableDataColumn<String, Number>> row = new ArrayList<>();
+        row.add(col(queue.getKey()));
+        row.add(col(phase.getTitle()));
+        row.add(col(String.format("%,d", sketch.getCount()), sketch.getCount()));
+        for (double quantile : QUANTILES) {
+          final long value = sketch.quantile(quantile);
+          row.add(col(Human.getHumanDurationFromMillis(value), value));
+        }
+        final long max = sketch.quantile(1);
+        row.add(col(Human.getHumanDurationFromMillis(max), max));
+        rows.add(row);
+      }
+    }
+    return new HtmlTableBuilder()
+        .generateTable(
+            "latencyByQueue",
+            "Latency Percentiles By Queue",
+            asList("queue", "phase", "queries", "p50", "p95", "p99", "max"),
+            rows);
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.html;
+
+import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
+import static java.util.Arrays.asList;
+
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryShapesReporter.Metric;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryShapesReporter.Shape;
+import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
+import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
+import com.dremio.support.diagnostics.shared.Human;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.text.StringEscapeUtils;
+
+/** QueryShapesWriter generates the html tables of the query shapes using the most cpu */
+public class QueryShapesWriter {
+
+  /** number of shapes listed */
+  public static final int TOP = 20;
+
+  /**
+   * @param totalCpuNanos execution cpu time of every query
+   * @param shapes shapes ordered from most to least cpu time
+   * @return a table ranking the shapes by cpu time and a table of their phase times
+   */
+  public static String generate(final long totalCpuNanos, final List<Shape> shapes) {
+    final StringBuilder builder = new StringBuilder();
+    if (shapes.isEmpty()) {
+      builder.append("<h2>Query Shapes By CPU Time</h2>");
+      builder.append("<p>No Queries Found</p>");
+      return builder.toString();
+    }
+    final List<Shape> top = shapes.subList(0, Math.min(TOP, shapes.size()));
+    final var htmlBuilder = new HtmlTableBuilder();
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> cpuRows = new ArrayList<>();
+    double cumulative = 0;
+    for (Shape shape : top) {
+      final double share =
+          totalCpuNanos == 0 ? 0 : 100.0 * shape.getTotal(Metric.CPU) / totalCpuNanos;
+      cumulative += share;
+      cpuRows.add(
+          asList(
+              col(fingerprint(shape)),
+              col(count(shape), shape.getCount()),
+              col(String.format("%.2f", share), share),
+              col(String.format("%.2f", cumulative), cumulative),
+              col(
+                  Human.getHumanDurationFromNanos(shape.getTotal(Metric.CPU)),
+                  shape.getTotal(Metric.CPU)),
+              nanos(shape.getAverage(Metric.CPU)),
+              nanos(shape.getQuantile(Metric.CPU, 0.99)),
+              bytes(shape.getAverage(Metric.MEMORY)),
+              bytes(shape.getQuantile(Metric.MEMORY, 0.99)),
+              col(StringEscapeUtils.escapeHtml4(shape.getText()), true)));
+    }
+    builder.append(
+        htmlBuilder.generateTable(
+            "queryShapesCpu",
+            "Query Shapes By CPU Time",
+            asList(
+                "shape",
+                "queries",
+                "cpu %",
+                "cumulative cpu %",
+                "cpu time",
+                "avg cpu",
+                "p99 cpu",
+                "avg memory",
+                "p99 memory",
+                "query"),
+            cpuRows));
+    final Collection<Collection<HtmlTableDataColumn<String, Number>>> phaseRows = new ArrayList<>();
+    for (Shape shape : top) {
+      final List<HtmlTableDataColumn<String, Number>> row = new ArrayList<>();
+      row.add(col(fingerprint(shape)));
+      for (Metric metric :
+          asList(Metric.PENDING, Metric.METADATA, Metric.PLANNING, Metric.QUEUED, Metric.RUNNING)) {
+        row.add(millis(shape.getAverage(metric)));
+        row.add(millis(shape.getQuantile(metric, 0.99)));
+      }
+      phaseRows.add(row);
+    }
+    builder.append(
+        htmlBuilder.generateTable(
+            "queryShapesPhases",
+            "Query Shape Phase Times",
+            asList(
+                "shape",
+                "avg pending",
+                "p99 pending",
+                "avg metadata",
+                "p99 metadata",
+                "avg planning",
+                "p99 planning",
+                "avg queued",
+                "p99 queued",
+                "avg running",
+                "p99 running"),
+            phaseRows));
+    return builder.toString();
+  }
+
+  private static String fingerprint(final Shape shape) {
+    return String.format("%016x", shape.getFingerprint());
+  }
+
+  private static String count(final Shape shape) {
+    if (shape.getError() == 0) {
+      return String.format("%,d", shape.getCount());
+    }
+    return String.format("%,d (error %,d)", shape.getCount(), shape.getError());
+  }
+
+  private static HtmlTableDataColumn<String, Number> nanos(final long value) {
+    return col(Human.getHumanDurationFromNanos(value), value);
+  }
+
+  private static HtmlTableDataColumn<String, Number> millis(final long value) {
+    return col(Human.getHumanDurationFromMillis(value), value);
+  }
+
+  private static HtmlTableDataColumn<String, Number> bytes(final long value) {
+    return col(Human.getHumanBytes1024(value), value);
+  }
+}
@@ -14,43 +14,36 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import com.dremio.support.diagnostics.shared.TimeUtils;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
-public class ConcurrentQueriesReporter implements QueryReporter {
-  private final Map<Long, Long> counts = new HashMap<>();
+public class ConcurrentQueriesReporter
+    implements ShardableQueryReporter<ConcurrentQueriesReporter> {
+  private final LongSumBuckets counts;
 
   public Map<Long, Long> getCounts() {
-    return counts;
+    return counts.toMap();
   }
 
   private final long window;
-  private final Lock lock = new ReentrantLock();
 
   public ConcurrentQueriesReporter(long window) {
     this.window = window;
+    this.counts = new LongSumBuckets(window);
   }
 
   @Override
   public void parseRow(Query q) {
-    long start = TimeUtils.truncateEpoch(q.getStart(), this.window);
-    // we add a second to make sure we count the last bucket. this value when reached will stop the
-    // counting and
-    // therefore the finish will not added to the counts map
-    long finish = TimeUtils.truncateEpoch(q.getFinish(), this.window) + this.window;
-    while (start < finish) {
-      lock.lock();
-      if (counts.containsKey(start)) {
-        long i = counts.get(start);
-        counts.put(start, i++);
-      } else {
-        counts.put(start, 1L);
-      }
-      lock.unlock();
-      start += this.window;
-    }
+    // every bucket from the start through the finish (inclusive) counts the query once
+    counts.addRange(q.getStart(), q.getFinish(), 1L);
+  }
+
+  @Override
+  public ConcurrentQueriesReporter newShard() {
+    return new ConcurrentQueriesReporter(this.window);
+  }
+
+  @Override
+  public void merge(ConcurrentQueriesReporter shard) {
+    counts.merge(shard.counts);
   }
 }
@@ -14,45 +14,42 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import com.dremio.support.diagnostics.shared.TimeUtils;
-import java.util.HashMap;
 import java.util.Map;
 
-public class ConcurrentSchemaOpsReporter implements QueryReporter {
-  private Map<Long, Long> buckets = new HashMap<>();
+public class ConcurrentSchemaOpsReporter
+    implements ShardableQueryReporter<ConcurrentSchemaOpsReporter> {
+  private final LongSumBuckets buckets;
 
-  public synchronized Map<Long, Long> getBuckets() {
-    return buckets;
+  public Map<Long, Long> getBuckets() {
+    return buckets.toMap();
   }
 
   private final long window;
 
   public ConcurrentSchemaOpsReporter(long window) {
     this.window = window;
+    this.buckets = new LongSumBuckets(window);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
+  public void parseRow(Query q) {
     if (q.getQueryText() != null
         && (q.getQueryText().startsWith("DROP")
             || q.getQueryText().startsWith("CREATE")
             || q.getQueryText().startsWith("REFRESH")
             || q.getQueryText().startsWith("ALTER"))) {
-      long start = TimeUtils.truncateEpoch(q.getStart(), this.window);
-      // we add another interval to make sure we count the last bucket. this value
-      // when reached will stop the
-      // counting and
-      // therefore the finish will not added to the counts map
-      long finish = TimeUtils.truncateEpoch(q.getFinish(), this.window) + this.window;
-      while (start < finish) {
-        if (buckets.containsKey(start)) {
-          long i = buckets.get(start);
-          buckets.put(start, i++);
-        } else {
-          buckets.put(start, 1L);
-        }
-        start += this.window;
-      }
+      // every bucket from the start through the finish (inclusive) counts the query once
+      buckets.addRange(q.getStart(), q.getFinish(), 1L);
     }
   }
+
+  @Override
+  public ConcurrentSchemaOpsReporter newShard() {
+    return new ConcurrentSchemaOpsReporter(this.window);
+  }
+
+  @Override
+  public void merge(ConcurrentSchemaOpsReporter shard) {
+    buckets.merge(shard.buckets);
+  }
 }
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Base for the array backed time bucket stores. Bucket number n covers the epoch millis [n *
+ * window, (n + 1) * window). Buckets live in pages of {@link #PAGE_SIZE} consecutive buckets, each
+ * page is a plain array and is only allocated once a bucket in it is written, so neighbouring
+ * buckets are as cheap as a dense array while a corrupt or far off timestamp only costs one more
+ * page instead of an array spanning the whole gap.
+ *
+ * <p>That only holds for a timestamp on its own, a range still touches or outputs every bucket it
+ * spans, so a range with a corrupt start or finish decades away would cost time and memory for
+ * every window in between. Ranges longer than {@link #MAX_RANGE_BUCKETS} are skipped and counted
+ * instead, see {@link #skippedRanges()}.
+ *
+ * @param <P> type of a page
+ */
+public abstract class DenseBuckets<P> {
+  private static final Logger LOGGER = Logger.getLogger(DenseBuckets.class.getName());
+
+  /** longest range that is recorded, 2^20 buckets is a little over 12 days of 1 second windows */
+  public static final long MAX_RANGE_BUCKETS = 1L << 20;
+
+  /** log2 of the number of buckets in a page */
+  protected static final int PAGE_BITS = 12;
+
+  /** buckets per page */
+  protected static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  protected final long window;
+
+  private final Map<Long, P> pages = new HashMap<>();
+
+  // consecutive rows nearly always land in the same page
+  private long lastPageNumber;
+  private P lastPage;
+
+  private long skippedRanges;
+
+  protected DenseBuckets(final long window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive but was %d".formatted(window));
+    }
+    this.window = window;
+  }
+
+  /**
+   * @param epochMillis time to find the bucket of
+   * @return the bucket number containing the time
+   */
+  protected final long bucketOf(final long epochMillis) {
+    return Math.floorDiv(epochMillis, window);
+  }
+
+  /**
+   * @param bucket bucket number
+   * @return the epoch millis the bucket starts at, this matches {@link
+   *     com.dremio.support.diagnostics.shared.TimeUtils#truncateEpoch}
+   */
+  protected final long bucketStart(final long bucket) {
+    return bucket * window;
+  }
+
+  /**
+   * @param bucket bucket number
+   * @return number of the page holding the bucket
+   */
+  protected static long pageOf(final long bucket) {
+    return bucket >> PAGE_BITS;
+  }
+
+  /**
+   * @param bucket bucket number
+   * @return index of the bucket in its page
+   */
+  protected static int slotOf(final long bucket) {
+    return (int) (bucket & PAGE_MASK);
+  }
+
+  /**
+   * @param pageNumber page number
+   * @return bucket number of the first bucket in the page
+   */
+  protected static long firstBucketOf(final long pageNumber) {
+    return pageNumber << PAGE_BITS;
+  }
+
+  /**
+   * @param first first bucket of a range
+   * @param last last bucket of the range, not before first
+   * @return true when the range is short enough to record, longer ones are counted as skipped
+   */
+  protected final boolean acceptRange(final long first, final long last) {
+    final long span = last - first;
+    // a negative span means the subtraction overflowed
+    if (span >= 0 && span < MAX_RANGE_BUCKETS) {
+      return true;
+    }
+    if (skippedRanges++ == 0) {
+      LOGGER.warning(
+          "skipping a range of buckets %d to %d of %d millis, ranges longer than %d buckets are"
+                  .formatted(first, last, window, MAX_RANGE_BUCKETS)
+              + " treated as corrupt timestamps");
+    }
+    return false;
+  }
+
+  /**
+   * @return number of ranges that were too long to record
+   */
+  public final long skippedRanges() {
+    return skippedRanges;
+  }
+
+  /**
+   * @param other instance whose skipped ranges are added to the ones of this instance
+   */
+  protected final void mergeSkippedRanges(final DenseBuckets<?> other) {
+    skippedRanges += other.skippedRanges;
+  }
+
+  /**
+   * @param pageNumber page number
+   * @return the page, allocated if it was not written before
+   */
+  protected final P page(final long pageNumber) {
+    if (lastPage != null && lastPageNumber == pageNumber) {
+      return lastPage;
+    }
+    final P page = pages.computeIfAbsent(pageNumber, x -> newPage());
+    lastPageNumber = pageNumber;
+    lastPage = page;
+    return page;
+  }
+
+  /**
+   * @param pageNumber page number
+   * @return the page or null when nothing was written to it
+   */
+  protected final P existingPage(final long pageNumber) {
+    return pages.get(pageNumber);
+  }
+
+  /**
+   * @return numbers of the allocated pages in ascending order
+   */
+  protected final long[] pageNumbers() {
+    final long[] numbers = new long[pages.size()];
+    int i = 0;
+    for (long number : pages.keySet()) {
+      numbers[i++] = number;
+    }
+    Arrays.sort(numbers);
+    return numbers;
+  }
+
+  /**
+   * @return a new empty page
+   */
+  protected abstract P newPage();
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per window totals of fractional values backed by a difference array, see {@link
+ * LongSumBuckets}. Large fractional values rarely cancel out exactly once every range has closed,
+ * so an exact count of the ranges covering each bucket decides which buckets are output instead of
+ * the rounded running sum. Not thread safe.
+ */
+public class DoubleSumBuckets extends DenseBuckets<double[]> {
+  // written in lock step with the sums so both always hold the same pages
+  private final LongSumBuckets active;
+
+  public DoubleSumBuckets(final long window) {
+    super(window);
+    this.active = new LongSumBuckets(window);
+  }
+
+  /**
+   * adds value to every bucket from the one containing startEpochMillis up to and including the one
+   * containing finishEpochMillis
+   *
+   * @param startEpochMillis start of the range
+   * @param finishEpochMillis end of the range, inclusive
+   * @param value amount to add to each bucket, ranges longer than {@link #MAX_RANGE_BUCKETS} are
+   *     skipped
+   */
+  public void addRange(
+      final long startEpochMillis, final long finishEpochMillis, final double value) {
+    final long first = bucketOf(startEpochMillis);
+    final long last = bucketOf(finishEpochMillis);
+    if (last < first || !acceptRange(first, last)) {
+      return;
+    }
+    page(pageOf(first))[slotOf(first)] += value;
+    page(pageOf(last + 1))[slotOf(last + 1)] -= value;
+    active.addRange(startEpochMillis, finishEpochMillis, 1);
+  }
+
+  /**
+   * folds the totals from another instance with the same window into this one
+   *
+   * @param other totals to add
+   */
+  public void merge(final DoubleSumBuckets other) {
+    mergeSkippedRanges(other);
+    for (long number : other.pageNumbers()) {
+      final double[] from = other.existingPage(number);
+      final double[] to = page(number);
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        to[i] += from[i];
+      }
+    }
+    active.merge(other.active);
+  }
+
+  /**
+   * @return the buckets covered by at least one range keyed by the epoch millis the bucket starts at
+   */
+  public Map<Long, Double> toMap() {
+    final Map<Long, Double> map = new HashMap<>();
+    double running = 0;
+    long count = 0;
+    long next = Long.MIN_VALUE;
+    for (long number : pageNumbers()) {
+      final long first = firstBucketOf(number);
+      if (count != 0) {
+        for (long bucket = next; bucket < first; bucket++) {
+          map.put(bucketStart(bucket), running);
+        }
+      }
+      final double[] diff = existingPage(number);
+      final long[] activeDiff = active.existingPage(number);
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        running += diff[i];
+        count += activeDiff[i];
+        if (count == 0) {
+          // every range has closed, drop what is left of the rounding error
+          running = 0;
+        } else {
+          map.put(bucketStart(first + i), running);
+        }
+      }
+      next = first + PAGE_SIZE;
+    }
+    return map;
+  }
+
+  @Override
+  protected double[] newPage() {
+    return new double[PAGE_SIZE];
+  }
+}
@@ -14,34 +14,39 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.ArrayList;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
 
-public class FailedQueriesReporter implements QueryReporter {
+public class FailedQueriesReporter implements ShardableQueryReporter<FailedQueriesReporter> {
   private final long limit;
-  private List<Query> failedQueries = new ArrayList<>();
+  // we want to get the oldest based on start time LIMIT failed queries, so the earliest start ranks
+  // highest
+  private final TopK<Query> failedQueries;
 
   public FailedQueriesReporter(final long limit) {
     this.limit = limit;
+    this.failedQueries = new TopK<>(limit, Comparator.comparingLong(Query::getStart).reversed());
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
+  public void parseRow(Query q) {
     if ("FAILED".equals(q.getOutcome())) {
-      failedQueries.add(q);
-      // we want to get the oldest based on start time LIMIT failed queries
-      failedQueries =
-          failedQueries.stream()
-              .sorted(Comparator.comparingLong(Query::getStart))
-              .limit(this.limit)
-              .collect(Collectors.toList());
+      failedQueries.offer(q);
     }
   }
 
-  public synchronized Collection<Query> getFailedQueries() {
-    return this.failedQueries;
+  public Collection<Query> getFailedQueries() {
+    return this.failedQueries.toSortedList();
+  }
+
+  @Override
+  public FailedQueriesReporter newShard() {
+    return new FailedQueriesReporter(this.limit);
+  }
+
+  @Override
+  public void merge(FailedQueriesReporter shard) {
+    failedQueries.addAll(shard.failedQueries);
   }
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.shared.QuantileSketch;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Latency percentiles of the phases {@link MaxTimeReporter} tracks the maximum of, per window and
+ * per queue. Every query is counted in the window it started in, the values are kept in {@link
+ * QuantileSketch}es so memory does not grow with the number of queries and shards merge exactly.
+ */
+public class LatencyQuantilesReporter implements ShardableQueryReporter<LatencyQuantilesReporter> {
+  /** relative accuracy of every percentile */
+  public static final double RELATIVE_ACCURACY = 0.02;
+
+  /** the phases measured, all in milliseconds */
+  public enum Phase {
+    PENDING("pending", Query::getPendingTime),
+    METADATA("metadata retrieval", Query::getNormalizedMetadataRetrieval),
+    QUEUED("queued", Query::getQueuedTime),
+    PLANNING("planning", Query::getPlanningTime),
+    POOL("pool waiting", Query::getPoolWaitTime);
+
+    private final String title;
+    private final ToLongFunction<Query> getter;
+
+    Phase(final String title, final ToLongFunction<Query> getter) {
+      this.title = title;
+      this.getter = getter;
+    }
+
+    /**
+     * @return name of the phase in the report
+     */
+    public String getTitle() {
+      return title;
+    }
+  }
+
+  private final long window;
+  private final SketchBuckets[] buckets = new SketchBuckets[Phase.values().length];
+  private final Map<String, QuantileSketch[]> queues = new HashMap<>();
+
+  /**
+   * @param window window size in milliseconds
+   */
+  public LatencyQuantilesReporter(final long window) {
+    this.window = window;
+    for (Phase phase : Phase.values()) {
+      buckets[phase.ordinal()] = new SketchBuckets(window, RELATIVE_ACCURACY);
+    }
+  }
+
+  @Override
+  public void parseRow(final Query q) {
+    final QuantileSketch[] queue = queues.computeIfAbsent(q.getQueueName(), x -> newSketches());
+    for (Phase phase : Phase.values()) {
+      final long value = phase.getter.applyAsLong(q);
+      buckets[phase.ordinal()].add(q.getStart(), value);
+      queue[phase.ordinal()].add(value);
+    }
+  }
+
+  private static QuantileSketch[] newSketches() {
+    final QuantileSketch[] sketches = new QuantileSketch[Phase.values().length];
+    for (int i = 0; i < sketches.length; i++) {
+      sketches[i] = new QuantileSketch(RELATIVE_ACCURACY);
+    }
+    return sketches;
+  }
+
+  @Override
+  public LatencyQuantilesReporter newShard() {
+    return new LatencyQuantilesReporter(window);
+  }
+
+  @Override
+  public void merge(final LatencyQuantilesReporter shard) {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i].merge(shard.buckets[i]);
+    }
+    shard.queues.forEach(
+        (name, sketches) -> {
+          final QuantileSketch[] queue = queues.putIfAbsent(name, sketches);
+          if (queue != null) {
+            for (int i = 0; i < queue.length; i++) {
+              queue[i].merge(sketches[i]);
+            }
+          }
+        });
+  }
+
+  /**
+   * @return per phase the sketches keyed by the epoch millis their window starts at
+   */
+  public Map<Phase, Map<Long, QuantileSketch>> getBuckets() {
+    final Map<Phase, Map<Long, QuantileSketch>> map = new EnumMap<>(Phase.class);
+    for (Phase phase : Phase.values()) {
+      map.put(phase, buckets[phase.ordinal()].toMap());
+    }
+    return map;
+  }
+
+  /**
+   * @return per queue the sketch of every phase
+   */
+  public Map<String, Map<Phase, QuantileSketch>> getQueues() {
+    final Map<String, Map<Phase, QuantileSketch>> map = new HashMap<>();
+    queues.forEach(
+        (name, sketches) -> {
+          final Map<Phase, QuantileSketch> phases = new EnumMap<>(Phase.class);
+          for (Phase phase : Phase.values()) {
+            phases.put(phase, sketches[phase.ordinal()]);
+          }
+          map.put(name, phases);
+        });
+    return Collections.unmodifiableMap(map);
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per window maximums. A max cannot go through a difference array so long ranges are split into
+ * blocks of 64 buckets: whole blocks only update a per block maximum and just the partial blocks at
+ * either end touch individual buckets, which makes an update O(duration / (64 * window) + 128).
+ * Values below 1 are ignored since an empty bucket already reads as 0. Not thread safe.
+ */
+public class LongMaxBuckets extends DenseBuckets<LongMaxBuckets.Page> {
+  private static final int BLOCK_BITS = 6;
+  private static final int BLOCK = 1 << BLOCK_BITS;
+
+  /** maximums of the buckets of one page, blocks never straddle pages */
+  static final class Page {
+    private final long[] values = new long[PAGE_SIZE];
+    private final long[] blockMax = new long[PAGE_SIZE >>> BLOCK_BITS];
+
+    private void max(final int from, final int to, final long value) {
+      final int firstFullBlock = (from + BLOCK - 1) >>> BLOCK_BITS;
+      final int lastFullBlock = ((to + 1) >>> BLOCK_BITS) - 1;
+      if (firstFullBlock > lastFullBlock) {
+        for (int i = from; i <= to; i++) {
+          values[i] = Math.max(values[i], value);
+        }
+        return;
+      }
+      for (int i = from; i < firstFullBlock << BLOCK_BITS; i++) {
+        values[i] = Math.max(values[i], value);
+      }
+      for (int b = firstFullBlock; b <= lastFullBlock; b++) {
+        blockMax[b] = Math.max(blockMax[b], value);
+      }
+      for (int i = (lastFullBlock + 1) << BLOCK_BITS; i <= to; i++) {
+        values[i] = Math.max(values[i], value);
+      }
+    }
+
+    /** pushes the per block maximums down into the individual buckets */
+    private void flush() {
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        values[i] = Math.max(values[i], blockMax[i >>> BLOCK_BITS]);
+      }
+      Arrays.fill(blockMax, 0L);
+    }
+  }
+
+  public LongMaxBuckets(final long window) {
+    super(window);
+  }
+
+  /**
+   * raises every bucket from the one containing startEpochMillis up to and including the one
+   * containing finishEpochMillis to at least value
+   *
+   * @param startEpochMillis start of the range
+   * @param finishEpochMillis end of the range, inclusive
+   * @param value the measurement, ranges longer than {@link #MAX_RANGE_BUCKETS} are skipped
+   */
+  public void maxRange(
+      final long startEpochMillis, final long finishEpochMillis, final long value) {
+    final long first = bucketOf(startEpochMillis);
+    final long last = bucketOf(finishEpochMillis);
+    if (last < first || value <= 0 || !acceptRange(first, last)) {
+      return;
+    }
+    final long lastPage = pageOf(last);
+    for (long number = pageOf(first); number <= lastPage; number++) {
+      final int from = number == pageOf(first) ? slotOf(first) : 0;
+      final int to = number == lastPage ? slotOf(last) : PAGE_SIZE - 1;
+      page(number).max(from, to, value);
+    }
+  }
+
+  /**
+   * folds the maximums from another instance with the same window into this one
+   *
+   * @param other maximums to merge
+   */
+  public void merge(final LongMaxBuckets other) {
+    mergeSkippedRanges(other);
+    for (long number : other.pageNumbers()) {
+      final Page from = other.existingPage(number);
+      final Page to = page(number);
+      // both pages have the same block boundaries so the block maximums merge as they are
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        to.values[i] = Math.max(to.values[i], from.values[i]);
+      }
+      for (int b = 0; b < to.blockMax.length; b++) {
+        to.blockMax[b] = Math.max(to.blockMax[b], from.blockMax[b]);
+      }
+    }
+  }
+
+  /**
+   * @return the non zero buckets keyed by the epoch millis the bucket starts at
+   */
+  public Map<Long, Long> toMap() {
+    final Map<Long, Long> map = new HashMap<>();
+    for (long number : pageNumbers()) {
+      final Page page = existingPage(number);
+      page.flush();
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        if (page.values[i] != 0) {
+          map.put(bucketStart(firstBucketOf(number) + i), page.values[i]);
+        }
+      }
+    }
+    return map;
+  }
+
+  @Override
+  protected Page newPage() {
+    return new Page();
+  }
+}
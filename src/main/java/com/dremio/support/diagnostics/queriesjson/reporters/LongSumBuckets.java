@@ -0,0 +1,98 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per window totals backed by a difference array, adding a value to every bucket a query spans is
+ * O(1) no matter how long the query ran. Not thread safe.
+ */
+public class LongSumBuckets extends DenseBuckets<long[]> {
+
+  public LongSumBuckets(final long window) {
+    super(window);
+  }
+
+  /**
+   * adds value to every bucket from the one containing startEpochMillis up to and including the one
+   * containing finishEpochMillis
+   *
+   * @param startEpochMillis start of the range
+   * @param finishEpochMillis end of the range, inclusive
+   * @param value amount to add to each bucket, ranges longer than {@link #MAX_RANGE_BUCKETS} are
+   *     skipped
+   */
+  public void addRange(
+      final long startEpochMillis, final long finishEpochMillis, final long value) {
+    final long first = bucketOf(startEpochMillis);
+    final long last = bucketOf(finishEpochMillis);
+    if (last < first || !acceptRange(first, last)) {
+      return;
+    }
+    page(pageOf(first))[slotOf(first)] += value;
+    // one past the end to close the range
+    page(pageOf(last + 1))[slotOf(last + 1)] -= value;
+  }
+
+  /**
+   * folds the totals from another instance with the same window into this one
+   *
+   * @param other totals to add
+   */
+  public void merge(final LongSumBuckets other) {
+    mergeSkippedRanges(other);
+    for (long number : other.pageNumbers()) {
+      final long[] from = other.existingPage(number);
+      final long[] to = page(number);
+      // difference arrays are linear so adding them element wise adds the totals
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        to[i] += from[i];
+      }
+    }
+  }
+
+  /**
+   * @return the non zero buckets keyed by the epoch millis the bucket starts at
+   */
+  public Map<Long, Long> toMap() {
+    final Map<Long, Long> map = new HashMap<>();
+    long running = 0;
+    long next = Long.MIN_VALUE;
+    for (long number : pageNumbers()) {
+      final long first = firstBucketOf(number);
+      // buckets between pages are only covered by ranges that started in an earlier page
+      if (running != 0) {
+        for (long bucket = next; bucket < first; bucket++) {
+          map.put(bucketStart(bucket), running);
+        }
+      }
+      final long[] diff = existingPage(number);
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        running += diff[i];
+        if (running != 0) {
+          map.put(bucketStart(first + i), running);
+        }
+      }
+      next = first + PAGE_SIZE;
+    }
+    return map;
+  }
+
+  @Override
+  protected long[] newPage() {
+    return new long[PAGE_SIZE];
+  }
+}
@@ -14,33 +14,38 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.ArrayList;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.Comparator;
 import java.util.List;
 
-public class MaxCPUQueriesReporter implements QueryReporter {
-  private List<Query> queries = new ArrayList<>();
+public class MaxCPUQueriesReporter implements ShardableQueryReporter<MaxCPUQueriesReporter> {
+  private final long limit;
+  private final TopK<Query> queries;
 
-  public synchronized List<Query> getQueries() {
-    return queries;
+  /**
+   * @return the top queries ordered from highest to lowest
+   */
+  public List<Query> getQueries() {
+    return queries.toSortedList();
   }
 
-  private final long limit;
-
   public MaxCPUQueriesReporter(final long limit) {
     this.limit = limit;
+    this.queries = new TopK<>(limit, Comparator.comparingLong(Query::getExecutionCpuTimeNs));
+  }
+
+  @Override
+  public void parseRow(final Query q) {
+    queries.offer(q);
+  }
+
+  @Override
+  public MaxCPUQueriesReporter newShard() {
+    return new MaxCPUQueriesReporter(this.limit);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
-    this.queries.add(q);
-    // need to make sure use an array list to make this writeable again since toList makes it
-    // immutable
-    this.queries =
-        new ArrayList<>(
-            this.queries.stream()
-                .sorted(Comparator.comparingLong(Query::getExecutionCpuTimeNs).reversed())
-                .limit(this.limit)
-                .toList());
+  public void merge(final MaxCPUQueriesReporter shard) {
+    queries.addAll(shard.queries);
   }
 }
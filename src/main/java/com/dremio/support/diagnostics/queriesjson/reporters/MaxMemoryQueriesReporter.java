@@ -14,34 +14,38 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.ArrayList;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.Comparator;
 import java.util.List;
 
-public class MaxMemoryQueriesReporter implements QueryReporter {
-
-  private List<Query> queries = new ArrayList<>();
+public class MaxMemoryQueriesReporter implements ShardableQueryReporter<MaxMemoryQueriesReporter> {
+  private final long limit;
+  private final TopK<Query> queries;
 
+  /**
+   * @return the top queries ordered from highest to lowest
+   */
   public List<Query> getQueries() {
-    return queries;
+    return queries.toSortedList();
   }
 
-  private final long limit;
-
   public MaxMemoryQueriesReporter(final long limit) {
     this.limit = limit;
+    this.queries = new TopK<>(limit, Comparator.comparingLong(Query::getMemoryAllocated));
+  }
+
+  @Override
+  public void parseRow(final Query q) {
+    queries.offer(q);
+  }
+
+  @Override
+  public MaxMemoryQueriesReporter newShard() {
+    return new MaxMemoryQueriesReporter(this.limit);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
-    this.queries.add(q);
-    // need to make sure use an array list to make this writeable again since toList makes it
-    // immutable
-    this.queries =
-        new ArrayList<>(
-            this.queries.stream()
-                .sorted(Comparator.comparingLong(Query::getMemoryAllocated).reversed())
-                .limit(this.limit)
-                .toList());
+  public void merge(final MaxMemoryQueriesReporter shard) {
+    queries.addAll(shard.queries);
   }
 }
@@ -14,71 +14,73 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import com.dremio.support.diagnostics.shared.TimeUtils;
-import java.util.HashMap;
 import java.util.Map;
 
-public class MaxTimeReporter implements QueryReporter {
-  private final Map<Long, Long> pending = new HashMap<>();
+public class MaxTimeReporter implements ShardableQueryReporter<MaxTimeReporter> {
+  private final LongMaxBuckets pending;
 
   public Map<Long, Long> getPending() {
-    return pending;
+    return pending.toMap();
   }
 
-  private final Map<Long, Long> metadata = new HashMap<>();
+  private final LongMaxBuckets metadata;
 
-  public synchronized Map<Long, Long> getMetadata() {
-    return metadata;
+  public Map<Long, Long> getMetadata() {
+    return metadata.toMap();
   }
 
-  private final Map<Long, Long> queued = new HashMap<>();
+  private final LongMaxBuckets queued;
 
-  public synchronized Map<Long, Long> getQueued() {
-    return queued;
+  public Map<Long, Long> getQueued() {
+    return queued.toMap();
   }
 
-  private final Map<Long, Long> planning = new HashMap<>();
+  private final LongMaxBuckets planning;
 
-  public synchronized Map<Long, Long> getPlanning() {
-    return planning;
+  public Map<Long, Long> getPlanning() {
+    return planning.toMap();
   }
 
-  private final Map<Long, Long> maxPool = new HashMap<>();
+  private final LongMaxBuckets maxPool;
 
-  public synchronized Map<Long, Long> getMaxPool() {
-    return maxPool;
+  public Map<Long, Long> getMaxPool() {
+    return maxPool.toMap();
   }
 
   private final long window;
 
   public MaxTimeReporter(final long window) {
     this.window = window;
+    this.pending = new LongMaxBuckets(window);
+    this.metadata = new LongMaxBuckets(window);
+    this.queued = new LongMaxBuckets(window);
+    this.planning = new LongMaxBuckets(window);
+    this.maxPool = new LongMaxBuckets(window);
   }
 
-  private void setMax(long measure, Long start, Map<Long, Long> values) {
-    if (values.containsKey(start)) {
-      long i = values.get(start);
-      values.put(start, Math.max(measure, i));
-    } else {
-      values.put(start, measure);
-    }
+  @Override
+  public void parseRow(Query q) {
+    // every bucket from the start through the finish (inclusive) sees the measurements
+    final long start = q.getStart();
+    final long finish = q.getFinish();
+    pending.maxRange(start, finish, q.getPendingTime());
+    metadata.maxRange(start, finish, q.getNormalizedMetadataRetrieval());
+    queued.maxRange(start, finish, q.getQueuedTime());
+    planning.maxRange(start, finish, q.getPlanningTime());
+    maxPool.maxRange(start, finish, q.getPoolWaitTime());
+  }
+
+  @Override
+  public MaxTimeReporter newShard() {
+    return new MaxTimeReporter(this.window);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
-    long start = TimeUtils.truncateEpoch(q.getStart(), this.window);
-    // we add a second to make sure we count the last bucket. this value when
-    // reached will stop the
-    // counting and
-    // therefore the finish will not added to the maps
-    long finish = TimeUtils.truncateEpoch(q.getFinish(), this.window) + this.window;
-    while (start < finish) {
-      setMax(q.getPendingTime(), start, pending);
-      setMax(q.getNormalizedMetadataRetrieval(), start, metadata);
-      setMax(q.getQueuedTime(), start, queued);
-      setMax(q.getPlanningTime(), start, planning);
-      setMax(q.getPoolWaitTime(), start, maxPool);
-      start += this.window;
-    }
+  public void merge(MaxTimeReporter shard) {
+    pending.merge(shard.pending);
+    metadata.merge(shard.metadata);
+    queued.merge(shard.queued);
+    planning.merge(shard.planning);
+    maxPool.merge(shard.maxPool);
   }
 }
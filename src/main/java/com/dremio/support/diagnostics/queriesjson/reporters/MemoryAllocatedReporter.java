@@ -14,48 +14,46 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.HashMap;
 import java.util.Map;
 
-public class MemoryAllocatedReporter implements QueryReporter {
+public class MemoryAllocatedReporter implements ShardableQueryReporter<MemoryAllocatedReporter> {
 
-  private final Map<Long, Double> memoryCounter = new HashMap<>();
+  private final DoubleSumBuckets memoryCounter;
 
-  public synchronized Map<Long, Double> getMemoryCounter() {
-    return memoryCounter;
+  public Map<Long, Double> getMemoryCounter() {
+    return memoryCounter.toMap();
   }
 
   private final long bucketSize;
 
   public MemoryAllocatedReporter(final long bucketSize) {
     this.bucketSize = bucketSize;
-  }
-
-  private void update(Long bucket, Double value) {
-    if (memoryCounter.containsKey(bucket)) {
-      double prev = memoryCounter.get(bucket);
-      memoryCounter.put(bucket, value + prev);
-    } else {
-      memoryCounter.put(bucket, value);
-    }
+    this.memoryCounter = new DoubleSumBuckets(bucketSize);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
-    Long startBucket = q.getStart() - (q.getStart() % this.bucketSize);
-    final Long finishBucket = q.getFinish() - (q.getFinish() % this.bucketSize);
+  public void parseRow(Query q) {
+    final long startBucket = q.getStart() - (q.getStart() % this.bucketSize);
+    final long finishBucket = q.getFinish() - (q.getFinish() % this.bucketSize);
     if (startBucket < finishBucket) {
       // here we have more than one bucket so we are going to split the memory allocation across all
-      // buckets
-      Double perBucketAllocation =
-          Double.valueOf(q.getMemoryAllocated()) / Double.valueOf(finishBucket - startBucket);
-      while (startBucket < finishBucket) {
-        update(startBucket, perBucketAllocation);
-        startBucket += bucketSize;
-      }
+      // buckets up to but not including the finish bucket
+      final double perBucketAllocation =
+          (double) q.getMemoryAllocated() / (double) (finishBucket - startBucket);
+      memoryCounter.addRange(startBucket, finishBucket - 1, perBucketAllocation);
     } else {
       // ok so we have just the start bucket so we can just fill it up usual
-      update(startBucket, Double.valueOf(q.getMemoryAllocated()));
+      memoryCounter.addRange(startBucket, startBucket, (double) q.getMemoryAllocated());
     }
   }
+
+  @Override
+  public MemoryAllocatedReporter newShard() {
+    return new MemoryAllocatedReporter(this.bucketSize);
+  }
+
+  @Override
+  public void merge(MemoryAllocatedReporter shard) {
+    memoryCounter.merge(shard.memoryCounter);
+  }
 }
@@ -15,6 +15,12 @@ package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
 
+/**
+ * visited once for every query that passes the filters. Implementations that can be split per
+ * thread should implement {@link ShardableQueryReporter}, the parsers then give every worker its
+ * own shard via {@link ReporterShards} and no locking is needed. Any other implementation is shared
+ * between the worker threads and must be thread safe.
+ */
 public interface QueryReporter {
   void parseRow(Query q);
 }
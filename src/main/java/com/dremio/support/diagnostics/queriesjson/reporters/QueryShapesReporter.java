@@ -0,0 +1,376 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.QueryFingerprint;
+import com.dremio.support.diagnostics.shared.QuantileSketch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Groups queries by the {@link QueryFingerprint} of their text and aggregates cpu, memory and phase
+ * times per shape.
+ *
+ * <p>Shapes are tracked with the space saving heavy hitters algorithm: at most capacity shapes are
+ * kept and once full a new shape replaces the one with the lowest count, inheriting that count as
+ * its error. Every shape seen more often than queries / capacity is guaranteed to be kept, and
+ * memory stays the same however many distinct queries there are. Shards are merged the mergeable
+ * summaries way: a shape missing from a full side may have been evicted there, so it is credited
+ * that side's lowest count as count and error, then the capacity highest counts are kept. The
+ * guarantees above hold for the merged result.
+ */
+public class QueryShapesReporter implements ShardableQueryReporter<QueryShapesReporter> {
+  /** shapes kept by {@link #QueryShapesReporter()} */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** relative accuracy of the percentiles of a shape */
+  static final double SKETCH_ACCURACY = 0.02;
+
+  /** longest normalized text kept per shape */
+  static final int TEXT_LENGTH = 1000;
+
+  /** values aggregated per shape */
+  public enum Metric {
+    CPU(Query::getExecutionCpuTimeNs),
+    MEMORY(Query::getMemoryAllocated),
+    PENDING(Query::getPendingTime),
+    METADATA(Query::getNormalizedMetadataRetrieval),
+    PLANNING(Query::getPlanningTime),
+    QUEUED(Query::getQueuedTime),
+    RUNNING(Query::getRunningTime);
+
+    private final ToLongFunction<Query> getter;
+
+    Metric(final ToLongFunction<Query> getter) {
+      this.getter = getter;
+    }
+  }
+
+  /** a query shape and its aggregates */
+  public static final class Shape {
+    private final long fingerprint;
+    private final String text;
+    private final long[] totals = new long[Metric.values().length];
+    private final QuantileSketch[] sketches = new QuantileSketch[Metric.values().length];
+    private long count;
+    private long error;
+    private int heapIndex;
+
+    private Shape(final long fingerprint, final String text, final long inherited) {
+      this.fingerprint = fingerprint;
+      this.text = text;
+      this.count = inherited;
+      this.error = inherited;
+      for (int i = 0; i < sketches.length; i++) {
+        sketches[i] = new QuantileSketch(SKETCH_ACCURACY);
+      }
+    }
+
+    private void add(final Query q) {
+      count++;
+      for (Metric metric : Metric.values()) {
+        final long value = metric.getter.applyAsLong(q);
+        totals[metric.ordinal()] += value;
+        sketches[metric.ordinal()].add(value);
+      }
+    }
+
+    private void merge(final Shape other) {
+      count += other.count;
+      error += other.error;
+      for (int i = 0; i < totals.length; i++) {
+        totals[i] += other.totals[i];
+        sketches[i].merge(other.sketches[i]);
+      }
+    }
+
+    /**
+     * @return fingerprint of the shape
+     */
+    public long getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * @return normalized text of the first query seen with this shape, cut at 1000 characters
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * @return number of queries with this shape, an upper bound off by at most {@link #getError()}
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return how much of the count was inherited from evicted shapes
+     */
+    public long getError() {
+      return error;
+    }
+
+    /**
+     * @return number of queries the totals and percentiles are computed from
+     */
+    public long getAggregated() {
+      return sketches[0].getCount();
+    }
+
+    /**
+     * @param metric the metric
+     * @return sum over the aggregated queries
+     */
+    public long getTotal(final Metric metric) {
+      return totals[metric.ordinal()];
+    }
+
+    /**
+     * @param metric the metric
+     * @return average over the aggregated queries
+     */
+    public long getAverage(final Metric metric) {
+      final long aggregated = getAggregated();
+      return aggregated == 0 ? 0 : totals[metric.ordinal()] / aggregated;
+    }
+
+    /**
+     * @param metric the metric
+     * @param quantile between 0 and 1
+     * @return approximate quantile over the aggregated queries, within 2%
+     */
+    public long getQuantile(final Metric metric, final double quantile) {
+      return sketches[metric.ordinal()].quantile(quantile);
+    }
+  }
+
+  private final int capacity;
+  // min heap on count, the root is the shape evicted next
+  private final Shape[] heap;
+  private int size;
+  // open addressing from fingerprint to shape, a null value is an empty slot
+  private final long[] keys;
+  private final Shape[] values;
+  private final int mask;
+  private long queries;
+  private long totalCpuNanos;
+
+  /** reporter keeping {@link #DEFAULT_CAPACITY} shapes */
+  public QueryShapesReporter() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity number of shapes kept, values below 1 are treated as 1
+   */
+  public QueryShapesReporter(final int capacity) {
+    this.capacity = Math.max(1, capacity);
+    this.heap = new Shape[this.capacity];
+    final int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+    this.keys = new long[tableSize];
+    this.values = new Shape[tableSize];
+    this.mask = tableSize - 1;
+  }
+
+  @Override
+  public void parseRow(final Query q) {
+    queries++;
+    totalCpuNanos += q.getExecutionCpuTimeNs();
+    final long fingerprint = QueryFingerprint.of(q.getQueryText());
+    Shape shape = get(fingerprint);
+    if (shape == null) {
+      final String text = QueryFingerprint.normalize(q.getQueryText(), TEXT_LENGTH);
+      if (size < capacity) {
+        shape = new Shape(fingerprint, text, 0);
+        insert(shape);
+      } else {
+        shape = new Shape(fingerprint, text, heap[0].count);
+        replaceMin(shape);
+      }
+    }
+    shape.add(q);
+    siftDown(shape.heapIndex);
+  }
+
+  @Override
+  public QueryShapesReporter newShard() {
+    return new QueryShapesReporter(capacity);
+  }
+
+  @Override
+  public void merge(final QueryShapesReporter shard) {
+    queries += shard.queries;
+    totalCpuNanos += shard.totalCpuNanos;
+    // a shape absent from a full summary may have been counted up to its lowest count there
+    final long missingHere = size == capacity ? heap[0].count : 0;
+    final long missingThere = shard.size == shard.capacity ? shard.heap[0].count : 0;
+    final List<Shape> shapes = new ArrayList<>(size + shard.size);
+    for (int i = 0; i < size; i++) {
+      final Shape shape = heap[i];
+      final Shape other = shard.get(shape.fingerprint);
+      if (other != null) {
+        shape.merge(other);
+      } else {
+        shape.count += missingThere;
+        shape.error += missingThere;
+      }
+      shapes.add(shape);
+    }
+    for (int i = 0; i < shard.size; i++) {
+      final Shape other = shard.heap[i];
+      if (get(other.fingerprint) == null) {
+        other.count += missingHere;
+        other.error += missingHere;
+        shapes.add(other);
+      }
+    }
+    shapes.sort(Comparator.comparingLong((Shape x) -> x.count).reversed());
+    Arrays.fill(values, null);
+    Arrays.fill(heap, null);
+    size = 0;
+    for (int i = 0; i < Math.min(capacity, shapes.size()); i++) {
+      insert(shapes.get(i));
+    }
+  }
+
+  /**
+   * @return number of queries seen
+   */
+  public long getQueries() {
+    return queries;
+  }
+
+  /**
+   * @return execution cpu time of every query seen, including shapes that were not kept
+   */
+  public long getTotalCpuNanos() {
+    return totalCpuNanos;
+  }
+
+  /**
+   * @return kept shapes ordered from most to least total cpu time
+   */
+  public List<Shape> getShapes() {
+    final List<Shape> shapes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      shapes.add(heap[i]);
+    }
+    shapes.sort(Comparator.comparingLong((Shape x) -> x.getTotal(Metric.CPU)).reversed());
+    return shapes;
+  }
+
+  private void insert(final Shape shape) {
+    put(shape);
+    heap[size] = shape;
+    shape.heapIndex = size;
+    size++;
+    siftUp(shape.heapIndex);
+  }
+
+  private void replaceMin(final Shape shape) {
+    remove(heap[0].fingerprint);
+    put(shape);
+    heap[0] = shape;
+    shape.heapIndex = 0;
+    siftDown(0);
+  }
+
+  private void siftUp(int index) {
+    final Shape shape = heap[index];
+    while (index > 0) {
+      final int parent = (index - 1) >>> 1;
+      if (heap[parent].count <= shape.count) {
+        break;
+      }
+      place(heap[parent], index);
+      index = parent;
+    }
+    place(shape, index);
+  }
+
+  private void siftDown(int index) {
+    final Shape shape = heap[index];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+        child++;
+      }
+      if (shape.count <= heap[child].count) {
+        break;
+      }
+      place(heap[child], index);
+      index = child;
+    }
+    place(shape, index);
+  }
+
+  private void place(final Shape shape, final int index) {
+    heap[index] = shape;
+    shape.heapIndex = index;
+  }
+
+  private Shape get(final long fingerprint) {
+    int slot = (int) fingerprint & mask;
+    while (values[slot] != null) {
+      if (keys[slot] == fingerprint) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private void put(final Shape shape) {
+    int slot = (int) shape.fingerprint & mask;
+    while (values[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = shape.fingerprint;
+    values[slot] = shape;
+  }
+
+  private void remove(final long fingerprint) {
+    int slot = (int) fingerprint & mask;
+    while (keys[slot] != fingerprint || values[slot] == null) {
+      slot = (slot + 1) & mask;
+    }
+    values[slot] = null;
+    // shift back the entries that probed past the freed slot
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      if (values[next] == null) {
+        return;
+      }
+      final int home = (int) keys[next] & mask;
+      final boolean between =
+          slot <= next ? slot < home && home <= next : slot < home || home <= next;
+      if (!between) {
+        keys[slot] = keys[next];
+        values[slot] = values[next];
+        values[next] = null;
+        slot = next;
+      }
+    }
+  }
+}
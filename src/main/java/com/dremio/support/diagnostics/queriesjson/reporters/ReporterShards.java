@@ -0,0 +1,81 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands each worker thread its own set of reporters so the hot path never takes a lock.
+ *
+ * <p>Reporters implementing {@link ShardableQueryReporter} are replaced with a per thread shard,
+ * any other reporter is shared between the threads as is and so still has to be thread safe. Once
+ * all workers are done {@link #merge()} folds the shards back into the original reporters.
+ */
+public class ReporterShards {
+  private final Collection<QueryReporter> reporters;
+  private final Map<Thread, List<QueryReporter>> shards = new ConcurrentHashMap<>();
+
+  /**
+   * @param reporters the reporters that will hold the final results after {@link #merge()}
+   */
+  public ReporterShards(final Collection<QueryReporter> reporters) {
+    this.reporters = reporters;
+  }
+
+  /**
+   * @return the reporters the current thread should feed, always the same instances for a given
+   *     thread
+   */
+  public Collection<QueryReporter> forCurrentThread() {
+    return shards.computeIfAbsent(Thread.currentThread(), t -> newShards());
+  }
+
+  private List<QueryReporter> newShards() {
+    final List<QueryReporter> threadReporters = new ArrayList<>(reporters.size());
+    for (QueryReporter reporter : reporters) {
+      if (reporter instanceof ShardableQueryReporter<?> shardable) {
+        threadReporters.add(shardable.newShard());
+      } else {
+        threadReporters.add(reporter);
+      }
+    }
+    return threadReporters;
+  }
+
+  /**
+   * folds every shard into the original reporters, call this once after all workers have finished
+   */
+  public void merge() {
+    for (List<QueryReporter> threadReporters : shards.values()) {
+      int i = 0;
+      for (QueryReporter reporter : reporters) {
+        final QueryReporter shard = threadReporters.get(i++);
+        if (shard != reporter) {
+          mergeInto((ShardableQueryReporter<?>) reporter, shard);
+        }
+      }
+    }
+    shards.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends ShardableQueryReporter<T>> void mergeInto(
+      final ShardableQueryReporter<T> reporter, final QueryReporter shard) {
+    reporter.merge((T) shard);
+  }
+}
@@ -17,7 +17,7 @@ import com.dremio.support.diagnostics.queriesjson.Query;
 import java.util.HashMap;
 import java.util.Map;
 
-public class RequestCounterReporter implements QueryReporter {
+public class RequestCounterReporter implements ShardableQueryReporter<RequestCounterReporter> {
 
   private final Map<String, Long> requestCounterMap = new HashMap<>();
 
@@ -26,18 +26,23 @@ public class RequestCounterReporter implements QueryReporter {
    *
    * @return map of request counts
    */
-  public synchronized Map<String, Long> getRequestCounterMap() {
+  public Map<String, Long> getRequestCounterMap() {
     return requestCounterMap;
   }
 
   @Override
-  public synchronized void parseRow(final Query q) {
-    final String outcome = q.getOutcome();
-    if (requestCounterMap.containsKey(outcome)) {
-      final Long total = requestCounterMap.get(outcome);
-      requestCounterMap.put(outcome, total + 1L);
-    } else {
-      requestCounterMap.put(outcome, 1L);
-    }
+  public void parseRow(final Query q) {
+    requestCounterMap.merge(q.getOutcome(), 1L, Long::sum);
+  }
+
+  @Override
+  public RequestCounterReporter newShard() {
+    return new RequestCounterReporter();
+  }
+
+  @Override
+  public void merge(final RequestCounterReporter shard) {
+    shard.requestCounterMap.forEach(
+        (outcome, count) -> requestCounterMap.merge(outcome, count, Long::sum));
   }
 }
@@ -18,22 +18,27 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-public class RequestsByQueueReporter implements QueryReporter {
+public class RequestsByQueueReporter implements ShardableQueryReporter<RequestsByQueueReporter> {
   private final Map<String, Long> requestsByQueue = new HashMap<>();
 
   /** defensive copy of requestsByQueue */
-  public synchronized Map<String, Long> getRequestsByQueue() {
+  public Map<String, Long> getRequestsByQueue() {
     return Collections.unmodifiableMap(requestsByQueue);
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
-    final String queueName = q.getQueueName();
-    if (requestsByQueue.containsKey(queueName)) {
-      Long count = requestsByQueue.get(queueName);
-      requestsByQueue.put(queueName, count + 1L);
-    } else {
-      requestsByQueue.put(queueName, 1L);
-    }
+  public void parseRow(Query q) {
+    requestsByQueue.merge(q.getQueueName(), 1L, Long::sum);
+  }
+
+  @Override
+  public RequestsByQueueReporter newShard() {
+    return new RequestsByQueueReporter();
+  }
+
+  @Override
+  public void merge(RequestsByQueueReporter shard) {
+    shard.requestsByQueue.forEach(
+        (queueName, count) -> requestsByQueue.merge(queueName, count, Long::sum));
   }
 }
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+/**
+ * A reporter that can be split into independent shards, one per worker thread, and merged back
+ * together once parsing is done. Neither the reporter nor its shards need any synchronization since
+ * each shard only ever sees a single thread, see {@link ReporterShards}.
+ *
+ * @param <T> the concrete reporter type
+ */
+public interface ShardableQueryReporter<T extends ShardableQueryReporter<T>> extends QueryReporter {
+
+  /**
+   * @return an empty reporter configured like this one
+   */
+  T newShard();
+
+  /**
+   * folds the rows seen by the shard into this reporter
+   *
+   * @param shard a reporter previously created with {@link #newShard()}
+   */
+  void merge(T shard);
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import com.dremio.support.diagnostics.shared.QuantileSketch;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per window {@link QuantileSketch}es. A sketch is only allocated for a window once a value lands
+ * in it, so sparse time ranges stay cheap. Not thread safe.
+ */
+public class SketchBuckets extends DenseBuckets<QuantileSketch[]> {
+  private final double relativeAccuracy;
+
+  /**
+   * @param window window size in milliseconds
+   * @param relativeAccuracy relative accuracy of every sketch
+   */
+  public SketchBuckets(final long window, final double relativeAccuracy) {
+    super(window);
+    this.relativeAccuracy = relativeAccuracy;
+  }
+
+  /**
+   * @param epochMillis time that picks the bucket
+   * @param value the measurement
+   */
+  public void add(final long epochMillis, final long value) {
+    final long bucket = bucketOf(epochMillis);
+    final QuantileSketch[] page = page(pageOf(bucket));
+    final int slot = slotOf(bucket);
+    if (page[slot] == null) {
+      page[slot] = new QuantileSketch(relativeAccuracy);
+    }
+    page[slot].add(value);
+  }
+
+  /**
+   * folds the sketches from another instance with the same window into this one
+   *
+   * @param other sketches to merge, its sketches may be reused
+   */
+  public void merge(final SketchBuckets other) {
+    for (long number : other.pageNumbers()) {
+      final QuantileSketch[] from = other.existingPage(number);
+      final QuantileSketch[] to = page(number);
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        if (from[i] == null) {
+          continue;
+        }
+        if (to[i] == null) {
+          to[i] = from[i];
+        } else {
+          to[i].merge(from[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the sketches keyed by the epoch millis the bucket starts at
+   */
+  public Map<Long, QuantileSketch> toMap() {
+    final Map<Long, QuantileSketch> map = new HashMap<>();
+    for (long number : pageNumbers()) {
+      final QuantileSketch[] page = existingPage(number);
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        if (page[i] != null) {
+          map.put(bucketStart(firstBucketOf(number) + i), page[i]);
+        }
+      }
+    }
+    return map;
+  }
+
+  @Override
+  protected QuantileSketch[] newPage() {
+    return new QuantileSketch[PAGE_SIZE];
+  }
+}
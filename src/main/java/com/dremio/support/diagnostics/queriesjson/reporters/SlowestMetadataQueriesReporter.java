@@ -14,30 +14,40 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.ArrayList;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.Comparator;
 import java.util.List;
 
-public class SlowestMetadataQueriesReporter implements QueryReporter {
+public class SlowestMetadataQueriesReporter
+    implements ShardableQueryReporter<SlowestMetadataQueriesReporter> {
   private final long limit;
-  private List<Query> queries = new ArrayList<>();
+  private final TopK<Query> queries;
 
-  public synchronized List<Query> getQueries() {
-    return queries;
+  /**
+   * @return the top queries ordered from highest to lowest
+   */
+  public List<Query> getQueries() {
+    return queries.toSortedList();
   }
 
   public SlowestMetadataQueriesReporter(final long limit) {
     this.limit = limit;
+    this.queries =
+        new TopK<>(limit, Comparator.comparingLong(Query::getNormalizedMetadataRetrieval));
   }
 
   @Override
-  public synchronized void parseRow(final Query q) {
-    queries.add(q);
-    queries =
-        new ArrayList<>(
-            queries.stream()
-                .sorted(Comparator.comparingLong(Query::getNormalizedMetadataRetrieval).reversed())
-                .limit(limit)
-                .toList());
+  public void parseRow(final Query q) {
+    queries.offer(q);
+  }
+
+  @Override
+  public SlowestMetadataQueriesReporter newShard() {
+    return new SlowestMetadataQueriesReporter(this.limit);
+  }
+
+  @Override
+  public void merge(final SlowestMetadataQueriesReporter shard) {
+    queries.addAll(shard.queries);
   }
 }
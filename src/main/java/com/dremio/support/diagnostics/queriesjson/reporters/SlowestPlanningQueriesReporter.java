@@ -14,30 +14,39 @@
 package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
-import java.util.ArrayList;
+import com.dremio.support.diagnostics.shared.TopK;
 import java.util.Comparator;
 import java.util.List;
 
-public class SlowestPlanningQueriesReporter implements QueryReporter {
+public class SlowestPlanningQueriesReporter
+    implements ShardableQueryReporter<SlowestPlanningQueriesReporter> {
   private final long limit;
-  private List<Query> queries = new ArrayList<>();
+  private final TopK<Query> queries;
 
-  public synchronized List<Query> getQueries() {
-    return queries;
+  /**
+   * @return the top queries ordered from highest to lowest
+   */
+  public List<Query> getQueries() {
+    return queries.toSortedList();
   }
 
   public SlowestPlanningQueriesReporter(final long limit) {
     this.limit = limit;
+    this.queries = new TopK<>(limit, Comparator.comparingLong(Query::getPlanningTime));
   }
 
   @Override
-  public synchronized void parseRow(final Query q) {
-    queries.add(q);
-    queries =
-        new ArrayList<>(
-            queries.stream()
-                .sorted(Comparator.comparingLong(Query::getPlanningTime).reversed())
-                .limit(limit)
-                .toList());
+  public void parseRow(final Query q) {
+    queries.offer(q);
+  }
+
+  @Override
+  public SlowestPlanningQueriesReporter newShard() {
+    return new SlowestPlanningQueriesReporter(this.limit);
+  }
+
+  @Override
+  public void merge(final SlowestPlanningQueriesReporter shard) {
+    queries.addAll(shard.queries);
   }
 }
@@ -15,21 +15,32 @@ package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
 
-public class StartFinishReporter implements QueryReporter {
+public class StartFinishReporter implements ShardableQueryReporter<StartFinishReporter> {
   private long start = Long.MAX_VALUE;
   private long finish = 0;
 
   @Override
-  public synchronized void parseRow(Query q) {
+  public void parseRow(Query q) {
     this.start = Math.min(this.start, q.getStart());
     this.finish = Math.max(this.finish, q.getFinish());
   }
 
-  public synchronized long getStart() {
+  public long getStart() {
     return start;
   }
 
-  public synchronized long getFinish() {
+  public long getFinish() {
     return finish;
   }
+
+  @Override
+  public StartFinishReporter newShard() {
+    return new StartFinishReporter();
+  }
+
+  @Override
+  public void merge(StartFinishReporter shard) {
+    this.start = Math.min(this.start, shard.start);
+    this.finish = Math.max(this.finish, shard.finish);
+  }
 }
@@ -15,15 +15,25 @@ package com.dremio.support.diagnostics.queriesjson.reporters;
 
 import com.dremio.support.diagnostics.queriesjson.Query;
 
-public class TotalQueriesReporter implements QueryReporter {
+public class TotalQueriesReporter implements ShardableQueryReporter<TotalQueriesReporter> {
   private long count = 0;
 
-  public synchronized long getCount() {
+  public long getCount() {
     return count;
   }
 
   @Override
-  public synchronized void parseRow(Query q) {
+  public void parseRow(Query q) {
     count++;
   }
+
+  @Override
+  public TotalQueriesReporter newShard() {
+    return new TotalQueriesReporter();
+  }
+
+  @Override
+  public void merge(TotalQueriesReporter shard) {
+    count += shard.count;
+  }
 }
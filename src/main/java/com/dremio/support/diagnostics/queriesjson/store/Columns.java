@@ -0,0 +1,110 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/** The columns of a query store segment, each one is a file named after the column. */
+final class Columns {
+
+  private Columns() {}
+
+  /** fixed width columns, 8 big endian bytes per row */
+  @SuppressWarnings("deprecation")
+  enum LongColumn {
+    START(Query::getStart),
+    FINISH(Query::getFinish),
+    POOL_WAIT_TIME(Query::getPoolWaitTime),
+    PENDING_TIME(Query::getPendingTime),
+    METADATA_RETRIEVAL_TIME(Query::getMetadataRetrievalTime),
+    PLANNING_TIME(Query::getPlanningTime),
+    QUEUED_TIME(Query::getQueuedTime),
+    STARTING_TIME(Query::getStartingTime),
+    RUNNING_TIME(Query::getRunningTime),
+    ATTEMPT_COUNT(Query::getAttemptCount),
+    METADATA_RETRIEVAL(Query::getMetadataRetrieval),
+    PLANNING_START(Query::getPlanningStart),
+    QUERY_ENQUEUED(Query::getQueryEnqueued),
+    EXECUTION_CPU_TIME_NS(Query::getExecutionCpuTimeNs),
+    MEMORY_ALLOCATED(Query::getMemoryAllocated),
+    /** float bits of the query cost, kept as a long so every fixed width column is alike */
+    QUERY_COST(q -> Float.floatToRawIntBits(q.getQueryCost()));
+
+    final ToLongFunction<Query> getter;
+
+    LongColumn(final ToLongFunction<Query> getter) {
+      this.getter = getter;
+    }
+
+    String fileName() {
+      return name().toLowerCase(Locale.ROOT) + ".long";
+    }
+  }
+
+  /**
+   * low cardinality strings, every row holds a 4 byte id into the dictionary of the segment, -1
+   * for null
+   */
+  enum DictionaryColumn {
+    USERNAME(Query::getUsername),
+    QUEUE_NAME(Query::getQueueName),
+    ENGINE_NAME(Query::getEngineName),
+    OUTCOME(Query::getOutcome),
+    QUERY_TYPE(Query::getQueryType);
+
+    final Function<Query, String> getter;
+
+    DictionaryColumn(final Function<Query, String> getter) {
+      this.getter = getter;
+    }
+
+    String idsFileName() {
+      return name().toLowerCase(Locale.ROOT) + ".ids";
+    }
+
+    String dictionaryFileName() {
+      return name().toLowerCase(Locale.ROOT) + ".dict";
+    }
+  }
+
+  /**
+   * free text, every row holds an 8 byte offset and a 4 byte length into the utf-8 bytes of the
+   * column, the length is -1 for null
+   */
+  enum TextColumn {
+    QUERY_ID(Query::getQueryId),
+    QUERY_TEXT(Query::getQueryText),
+    OUTCOME_REASON(Query::getOutcomeReason);
+
+    /** bytes per row of the index file */
+    static final int INDEX_WIDTH = Long.BYTES + Integer.BYTES;
+
+    final Function<Query, String> getter;
+
+    TextColumn(final Function<Query, String> getter) {
+      this.getter = getter;
+    }
+
+    String indexFileName() {
+      return name().toLowerCase(Locale.ROOT) + ".idx";
+    }
+
+    String bytesFileName() {
+      return name().toLowerCase(Locale.ROOT) + ".txt";
+    }
+  }
+}
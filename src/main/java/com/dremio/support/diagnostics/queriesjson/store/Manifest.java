@@ -0,0 +1,49 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import java.util.List;
+
+/**
+ * Written last by {@link QueryStoreWriter#finish}, a directory without one is not a complete
+ * store. Appending replaces the manifest in one atomic move, rows written since the last manifest
+ * are not part of the store.
+ *
+ * @param version layout version of the column files
+ * @param rows total number of rows over all segments
+ * @param segments every segment of the store
+ * @param filesSearched files read when the store was created or appended to
+ * @param tail how far {@link QueriesJsonTail} has read the log directory, null when the store was
+ *     not created by it
+ */
+record Manifest(
+    int version,
+    long rows,
+    List<Segment> segments,
+    List<SearchedFile> filesSearched,
+    QueriesJsonTail.State tail) {
+
+  /** current layout version */
+  static final int VERSION = 1;
+
+  /** file name of the manifest in the store directory */
+  static final String FILE_NAME = "manifest.json";
+
+  /**
+   * @param name segment directory
+   * @param rows number of rows in the segment
+   */
+  record Segment(String name, int rows) {}
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.ChunkedQueriesJsonParser;
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps a query store up to date with a live coordinator log directory.
+ *
+ * <p>Every call to {@link #update()} only parses what was not seen by the previous one: the bytes
+ * appended to the live queries.json since then and rotated queries*.json.gz files that are new.
+ * Files are recognized by a hash of their first bytes rather than by name, so when queries.json is
+ * rotated and compressed the rows already read from it are skipped in the archive as well. How far
+ * each file was read is kept in the store manifest, which is only replaced once the new rows are
+ * written, so a run that fails leaves the store as it was and the next run starts from the same
+ * place.
+ */
+public class QueriesJsonTail {
+  private static final Logger LOGGER = Logger.getLogger(QueriesJsonTail.class.getName());
+
+  /** bytes at the start of a file that identify it */
+  static final int HEAD_BYTES = 4096;
+
+  /**
+   * how far the log directory has been read
+   *
+   * @param tails how far every file in the directory was read, compressed files are kept as well
+   *     so a rotated copy still waiting to be compressed is not read a second time
+   * @param done compressed files read to the end
+   */
+  public record State(List<Tail> tails, List<Done> done) {}
+
+  /**
+   * @param name file the offset was last read from, only kept for logging
+   * @param headLength number of bytes hashed, shorter than {@link #HEAD_BYTES} for small files
+   * @param headHash sha-256 of the first headLength bytes
+   * @param offset bytes read, always the end of a complete row
+   */
+  public record Tail(String name, int headLength, String headHash, long offset) {}
+
+  /**
+   * @param name path of the compressed file relative to the log directory
+   * @param size size of the compressed file
+   * @param lastModified modification time of the compressed file in epoch millis
+   */
+  public record Done(String name, long size, long lastModified) {}
+
+  private final Path logDir;
+  private final Path storeDir;
+  private final int threads;
+
+  /**
+   * @param logDir coordinator log directory, searched recursively for queries*.json and
+   *     queries*.json.gz
+   * @param storeDir store directory, created on the first update
+   * @param threads number of threads parsing each file
+   */
+  public QueriesJsonTail(final Path logDir, final Path storeDir, final int threads) {
+    this.logDir = logDir;
+    this.storeDir = storeDir;
+    this.threads = threads;
+  }
+
+  /**
+   * @param name file name
+   * @return true for the live queries.json and its rotated files
+   */
+  static boolean isQueriesJson(final String name) {
+    return name.startsWith("queries") && (name.endsWith(".json") || name.endsWith(".json.gz"));
+  }
+
+  /**
+   * parses every row written to the log directory since the last update into the store
+   *
+   * @return the store with the new rows
+   * @throws IOException when a file cannot be read or the store cannot be written
+   * @throws InterruptedException if the thread is interrupted while parsing
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public QueryStore update() throws IOException, InterruptedException, ExecutionException {
+    final QueryStoreWriter writer = QueryStoreWriter.append(storeDir);
+    final State previous = writer.previousTail();
+    final List<Tail> previousTails = previous == null ? List.of() : previous.tails();
+    final List<Done> previousDone = previous == null ? List.of() : previous.done();
+    final List<Path> compressed = new ArrayList<>();
+    final List<Path> plain = new ArrayList<>();
+    try (Stream<Path> walk = Files.walk(logDir)) {
+      walk.filter(Files::isRegularFile)
+          .filter(x -> isQueriesJson(x.getFileName().toString()))
+          .sorted()
+          .forEach(x -> (x.toString().endsWith(".gz") ? compressed : plain).add(x));
+    }
+    final List<SearchedFile> searched = new ArrayList<>();
+    final List<Done> done = new ArrayList<>();
+    final List<Tail> tails = new ArrayList<>();
+    // compressed files first, a queries.json rotated since the last run finishes in its archive
+    for (Path file : compressed) {
+      final Done current =
+          new Done(
+              logDir.relativize(file).toString(),
+              Files.size(file),
+              Files.getLastModifiedTime(file).toMillis());
+      done.add(current);
+      if (previousDone.contains(current)) {
+        previousTails.stream()
+            .filter(x -> x.name().equals(current.name()))
+            .findFirst()
+            .ifPresent(tails::add);
+        continue;
+      }
+      try (CountingInputStream is =
+          new CountingInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+        final byte[] head = is.readNBytes(HEAD_BYTES);
+        final Tail tail = match(previousTails, head);
+        final InputStream rest = new SequenceInputStream(new ByteArrayInputStream(head), is);
+        if (tail != null) {
+          LOGGER.info(
+              "skipping %d bytes of %s already read from %s"
+                  .formatted(tail.offset(), file, tail.name()));
+          ByteStreams.skipFully(rest, tail.offset());
+        }
+        searched.add(parse(current.name(), rest, writer));
+        tails.add(new Tail(current.name(), head.length, hash(head, head.length), is.getCount()));
+      }
+    }
+    // a rotated file can still be on disk next to its archive, it matches the archive's tail
+    final List<Tail> known = new ArrayList<>(previousTails);
+    known.addAll(tails);
+    for (Path file : plain) {
+      final String name = logDir.relativize(file).toString();
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        final long size = channel.size();
+        final byte[] head = new byte[(int) Math.min(HEAD_BYTES, size)];
+        channel.read(ByteBuffer.wrap(head), 0);
+        final Tail tail = match(known, head);
+        long offset = tail == null ? 0 : tail.offset();
+        if (offset > size) {
+          LOGGER.warning(
+              "%s is shorter than when it was last read, reading it again".formatted(file));
+          offset = 0;
+        }
+        // only complete rows, the row being written is read by the next update
+        final long end = lastNewline(channel, offset, size) + 1;
+        if (end > offset) {
+          channel.position(offset);
+          searched.add(
+              parse(
+                  name, ByteStreams.limit(Channels.newInputStream(channel), end - offset), writer));
+          offset = end;
+        }
+        if (offset > 0) {
+          final int headLength = (int) Math.min(HEAD_BYTES, offset);
+          tails.add(new Tail(name, headLength, hash(head, headLength), offset));
+        }
+      }
+    }
+    return writer.finish(searched, new State(tails, done));
+  }
+
+  private SearchedFile parse(final String name, final InputStream is, final QueryStoreWriter writer)
+      throws IOException, InterruptedException, ExecutionException {
+    final SearchedFile file =
+        new ChunkedQueriesJsonParser(threads)
+            .parse(name, is, List.<QueryReporter>of(writer), QueryStoreWriter.KEEP_ALL);
+    // the state must not move past rows that were not stored
+    if (!"".equals(file.errorText())) {
+      throw new IOException("unable to parse %s: %s".formatted(name, file.errorText()));
+    }
+    return file;
+  }
+
+  /**
+   * @return the tail of the file starting with these bytes, the one with the longest head and then
+   *     the furthest offset when several match, or null
+   */
+  private static Tail match(final List<Tail> tails, final byte[] head) {
+    Tail best = null;
+    for (Tail tail : tails) {
+      if (tail.headLength() == 0 || tail.headLength() > head.length) {
+        continue;
+      }
+      if (best != null
+          && (best.headLength() > tail.headLength()
+              || (best.headLength() == tail.headLength() && best.offset() >= tail.offset()))) {
+        continue;
+      }
+      if (tail.headHash().equals(hash(head, tail.headLength()))) {
+        best = tail;
+      }
+    }
+    return best;
+  }
+
+  static String hash(final byte[] bytes, final int length) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(bytes, 0, length);
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      // every jvm has to provide sha-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return position of the last newline between from and to, or from - 1 if there is none
+   */
+  private static long lastNewline(final FileChannel channel, final long from, final long to)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    long end = to;
+    while (end > from) {
+      final long start = Math.max(from, end - buffer.capacity());
+      buffer.clear().limit((int) (end - start));
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          break;
+        }
+      }
+      for (int i = buffer.position() - 1; i >= 0; i--) {
+        if (buffer.get(i) == '\n') {
+          return start + i;
+        }
+      }
+      end = start;
+    }
+    return from - 1;
+  }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import com.dremio.support.diagnostics.queriesjson.filters.QueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import com.dremio.support.diagnostics.queriesjson.reporters.ReporterShards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Queries parsed once from a queries.json archive and kept on disk column by column, see {@link
+ * QueryStoreWriter}. Scanning a store replays the rows through the same reporters the parsers feed,
+ * so a report with another window, limit or date range can be produced without reading the
+ * archive again.
+ */
+public class QueryStore {
+  private static final Logger LOGGER = Logger.getLogger(QueryStore.class.getName());
+
+  /** rows handed to a worker at a time */
+  static final int SCAN_ROWS = 1024 * 1024;
+
+  private final Path dir;
+  private final Manifest manifest;
+  private final List<Segment> segments;
+
+  private QueryStore(final Path dir, final Manifest manifest, final List<Segment> segments) {
+    this.dir = dir;
+    this.manifest = manifest;
+    this.segments = segments;
+  }
+
+  /**
+   * @param dir a directory
+   * @return true if the directory holds a finished store
+   */
+  public static boolean isStore(final Path dir) {
+    return Files.isRegularFile(dir.resolve(Manifest.FILE_NAME));
+  }
+
+  /**
+   * maps every segment of the store
+   *
+   * @param dir store directory
+   * @return the store
+   * @throws IOException when the manifest or a column cannot be read
+   */
+  public static QueryStore open(final Path dir) throws IOException {
+    final Manifest manifest = readManifest(dir);
+    final List<Segment> segments = new ArrayList<>(manifest.segments().size());
+    for (Manifest.Segment segment : manifest.segments()) {
+      segments.add(new Segment(dir.resolve(segment.name()), segment.rows()));
+    }
+    return new QueryStore(dir, manifest, segments);
+  }
+
+  static Manifest readManifest(final Path dir) throws IOException {
+    final Manifest manifest =
+        new ObjectMapper().readValue(dir.resolve(Manifest.FILE_NAME).toFile(), Manifest.class);
+    if (manifest.version() != Manifest.VERSION) {
+      throw new IOException(
+          "query store %s has version %d, only version %d can be read"
+              .formatted(dir, manifest.version(), Manifest.VERSION));
+    }
+    return manifest;
+  }
+
+  /**
+   * @return number of queries in the store
+   */
+  public long rows() {
+    return manifest.rows();
+  }
+
+  /**
+   * @return the files the store was created from
+   */
+  public List<SearchedFile> filesSearched() {
+    return manifest.filesSearched();
+  }
+
+  /**
+   * runs the reporters over every query of the store that passes the filter
+   *
+   * @param queryFilter filter applied before the reporters see a query, it should only read the
+   *     columns it needs
+   * @param reports reporters to run, reporters that are not a {@link
+   *     com.dremio.support.diagnostics.queriesjson.reporters.ShardableQueryReporter} will need to
+   *     be thread safe if threads > 1
+   * @param threads number of workers, values below 1 are treated as 1
+   * @return the store with the number of queries parsed and filtered by this scan, followed by
+   *     every file that failed when the store was created
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if a reporter fails
+   */
+  public List<SearchedFile> scan(
+      final QueryFilter queryFilter, final Collection<QueryReporter> reports, final int threads)
+      throws InterruptedException, ExecutionException {
+    final Instant startTime = Instant.now();
+    final LongAdder count = new LongAdder();
+    final LongAdder filtered = new LongAdder();
+    final ReporterShards shards = new ReporterShards(reports);
+    final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (Segment segment : segments) {
+        for (int from = 0; from < segment.rows(); from += SCAN_ROWS) {
+          final int start = from;
+          final int end = (int) Math.min(segment.rows(), (long) from + SCAN_ROWS);
+          futures.add(
+              executorService.submit(
+                  () -> {
+                    scanRows(
+                        segment,
+                        start,
+                        end,
+                        shards.forCurrentThread(),
+                        queryFilter,
+                        count,
+                        filtered);
+                    return null;
+                  }));
+        }
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      shards.merge();
+    } finally {
+      executorService.shutdownNow();
+    }
+    final Duration totalTime = Duration.between(startTime, Instant.now());
+    LOGGER.info(
+        () ->
+            String.format(
+                "%d queries scanned (%d filtered by -s and -e flags) in %s millis from store %s",
+                count.sum(), filtered.sum(), totalTime.toMillis(), dir));
+    final List<SearchedFile> searched = new ArrayList<>();
+    searched.add(new SearchedFile(filtered.sum(), count.sum(), dir.toString(), ""));
+    for (SearchedFile file : manifest.filesSearched()) {
+      if (!"".equals(file.errorText())) {
+        searched.add(file);
+      }
+    }
+    return searched;
+  }
+
+  private static void scanRows(
+      final Segment segment,
+      final int start,
+      final int end,
+      final Collection<QueryReporter> reports,
+      final QueryFilter queryFilter,
+      final LongAdder count,
+      final LongAdder filtered) {
+    long parsed = 0;
+    long skipped = 0;
+    for (int row = start; row < end; row++) {
+      final Query query = new StoredQuery(segment, row);
+      if (!queryFilter.isValid(query)) {
+        skipped++;
+        continue;
+      }
+      parsed++;
+      for (QueryReporter reporter : reports) {
+        reporter.parseRow(query);
+      }
+    }
+    count.add(parsed);
+    filtered.add(skipped);
+  }
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.ShardableQueryReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Writes every query it is shown to a {@link QueryStore}. Run it as the only reporter of a {@link
+ * com.dremio.support.diagnostics.queriesjson.ReadArchive} with a filter wide enough to keep every
+ * query, the date range is applied later when the store is scanned.
+ *
+ * <p>Each shard appends to a segment of its own so the parsers never wait on each other. When a
+ * shard is merged its segment goes back to a pool and is picked up by the next shard, which keeps
+ * the number of segments close to the number of threads rather than the number of files read.
+ *
+ * <p>A writer from {@link #append(Path)} adds new segments to an existing store, the rows only
+ * become visible once {@link #finish} has replaced the manifest. Appends that only add a few rows,
+ * such as the updates of {@link QueriesJsonTail}, leave small segments behind, once there are more
+ * than {@link #MAX_SMALL_SEGMENTS} of them they are copied into one and the copies are deleted
+ * after the new manifest is in place, so the number of segments follows the number of rows rather
+ * than the number of appends.
+ */
+public class QueryStoreWriter implements ShardableQueryReporter<QueryStoreWriter> {
+  private static final Logger LOGGER = Logger.getLogger(QueryStoreWriter.class.getName());
+
+  /** filter keeping every query with a start and finish, use it to feed a writer */
+  public static final DateRangeQueryFilter KEEP_ALL =
+      new DateRangeQueryFilter(Long.MIN_VALUE, Long.MAX_VALUE);
+
+  /** segments with fewer rows than this are merged with each other when there are too many */
+  static final int SMALL_SEGMENT_ROWS = 1024 * 1024;
+
+  /** small segments a store keeps before they are merged */
+  static final int MAX_SMALL_SEGMENTS = 8;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+
+  private final Shared shared;
+  private SegmentWriter segment;
+
+  /** state every shard of a writer shares */
+  private static final class Shared {
+    private final Path dir;
+    private final Manifest previous;
+    private final AtomicInteger nextSegment;
+    private final Deque<SegmentWriter> idle = new ArrayDeque<>();
+    private final List<Manifest.Segment> closed = new ArrayList<>();
+
+    private Shared(final Path dir, final Manifest previous, final int nextSegment) {
+      this.dir = dir;
+      this.previous = previous;
+      this.nextSegment = new AtomicInteger(nextSegment);
+    }
+  }
+
+  /**
+   * @param dir directory for the store, it is created if missing and has to be empty otherwise
+   * @throws IOException when the directory cannot be created or is not empty
+   */
+  public QueryStoreWriter(final Path dir) throws IOException {
+    Files.createDirectories(dir);
+    try (Stream<Path> files = Files.list(dir)) {
+      if (files.findAny().isPresent()) {
+        throw new IOException(
+            "unable to create a query store in %s, it is not empty".formatted(dir));
+      }
+    }
+    this.shared = new Shared(dir, null, 0);
+  }
+
+  private QueryStoreWriter(final Shared shared) {
+    this.shared = shared;
+  }
+
+  /**
+   * opens a store to add rows to, segments left behind by a run that never finished are deleted
+   *
+   * @param dir store directory, a missing or empty directory starts a new store
+   * @return a writer whose rows are added to the existing ones
+   * @throws IOException when the store cannot be read or the directory is not a store
+   */
+  public static QueryStoreWriter append(final Path dir) throws IOException {
+    if (!QueryStore.isStore(dir)) {
+      return new QueryStoreWriter(dir);
+    }
+    final Manifest previous = QueryStore.readManifest(dir);
+    final Set<String> committed = new HashSet<>();
+    for (Manifest.Segment segment : previous.segments()) {
+      committed.add(segment.name());
+    }
+    int next = 0;
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        final String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX)) {
+          continue;
+        }
+        if (!committed.contains(name)) {
+          LOGGER.warning("removing unfinished segment %s".formatted(file));
+          deleteRecursively(file);
+          continue;
+        }
+        next = Math.max(next, Integer.parseInt(name.substring(SEGMENT_PREFIX.length())) + 1);
+      }
+    }
+    return new QueryStoreWriter(new Shared(dir, previous, next));
+  }
+
+  private static void deleteRecursively(final Path dir) throws IOException {
+    try (Stream<Path> walk = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * @return how far the log directory had been read when the store was last finished, null for a
+   *     new store or one not written by {@link QueriesJsonTail}
+   */
+  QueriesJsonTail.State previousTail() {
+    return shared.previous == null ? null : shared.previous.tail();
+  }
+
+  @Override
+  public void parseRow(final Query q) {
+    try {
+      if (segment == null || segment.isFull()) {
+        nextSegment();
+      }
+      segment.append(q);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void nextSegment() throws IOException {
+    if (segment != null) {
+      close(segment);
+    }
+    segment = null;
+    synchronized (shared) {
+      while (segment == null && !shared.idle.isEmpty()) {
+        final SegmentWriter candidate = shared.idle.pop();
+        if (candidate.isFull()) {
+          close(candidate);
+        } else {
+          segment = candidate;
+        }
+      }
+    }
+    if (segment == null) {
+      segment =
+          new SegmentWriter(
+              SEGMENT_PREFIX + "%05d".formatted(shared.nextSegment.getAndIncrement()), shared.dir);
+    }
+  }
+
+  private void close(final SegmentWriter writer) throws IOException {
+    writer.close();
+    synchronized (shared) {
+      shared.closed.add(new Manifest.Segment(writer.name(), writer.rows()));
+    }
+  }
+
+  private void release() {
+    if (segment != null) {
+      synchronized (shared) {
+        shared.idle.push(segment);
+      }
+      segment = null;
+    }
+  }
+
+  @Override
+  public QueryStoreWriter newShard() {
+    return new QueryStoreWriter(shared);
+  }
+
+  @Override
+  public void merge(final QueryStoreWriter shard) {
+    shard.release();
+  }
+
+  /**
+   * closes every segment and writes the manifest, call it once all parsing is done
+   *
+   * @param filesSearched files the rows were read from, kept in the manifest for the report
+   * @return the finished store
+   * @throws IOException when a segment or the manifest cannot be written
+   */
+  public QueryStore finish(final Collection<SearchedFile> filesSearched) throws IOException {
+    return finish(filesSearched, previousTail());
+  }
+
+  /**
+   * @param filesSearched files the rows were read from
+   * @param tail state of the log directory to keep with the rows
+   * @return the finished store
+   * @throws IOException when a segment or the manifest cannot be written
+   */
+  QueryStore finish(final Collection<SearchedFile> filesSearched, final QueriesJsonTail.State tail)
+      throws IOException {
+    release();
+    final List<Manifest.Segment> segments = new ArrayList<>();
+    final Map<String, SearchedFile> files = new LinkedHashMap<>();
+    if (shared.previous != null) {
+      segments.addAll(shared.previous.segments());
+      for (SearchedFile file : shared.previous.filesSearched()) {
+        files.merge(file.name(), file, QueryStoreWriter::sum);
+      }
+    }
+    synchronized (shared) {
+      while (!shared.idle.isEmpty()) {
+        close(shared.idle.pop());
+      }
+      segments.addAll(shared.closed);
+    }
+    final List<String> merged = mergeSmallSegments(segments);
+    segments.sort(Comparator.comparing(Manifest.Segment::name));
+    for (SearchedFile file : filesSearched) {
+      files.merge(file.name(), file, QueryStoreWriter::sum);
+    }
+    final long rows = segments.stream().mapToLong(Manifest.Segment::rows).sum();
+    final Path temp = shared.dir.resolve(Manifest.FILE_NAME + ".tmp");
+    new ObjectMapper()
+        .writeValue(
+            temp.toFile(),
+            new Manifest(Manifest.VERSION, rows, segments, List.copyOf(files.values()), tail));
+    Files.move(
+        temp,
+        shared.dir.resolve(Manifest.FILE_NAME),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    for (String name : merged) {
+      try {
+        deleteRecursively(shared.dir.resolve(name));
+      } catch (IOException e) {
+        // it is no longer in the manifest, the next append removes it
+        LOGGER.warning("unable to remove merged segment %s: %s".formatted(name, e));
+      }
+    }
+    return QueryStore.open(shared.dir);
+  }
+
+  /**
+   * copies the small segments into as few new segments as they fit in once there are more than
+   * {@link #MAX_SMALL_SEGMENTS}, the list is updated in place
+   *
+   * @param segments every segment of the store
+   * @return names of the segments that were copied, they can be deleted once the manifest no longer
+   *     lists them
+   */
+  private List<String> mergeSmallSegments(final List<Manifest.Segment> segments)
+      throws IOException {
+    final List<Manifest.Segment> small =
+        segments.stream().filter(x -> x.rows() < SMALL_SEGMENT_ROWS).toList();
+    if (small.size() <= MAX_SMALL_SEGMENTS) {
+      return List.of();
+    }
+    final List<String> merged = new ArrayList<>();
+    SegmentWriter writer = null;
+    try {
+      for (Manifest.Segment source : small) {
+        final Segment segment = new Segment(shared.dir.resolve(source.name()), source.rows());
+        for (int row = 0; row < segment.rows(); row++) {
+          if (writer == null || writer.isFull()) {
+            if (writer != null) {
+              writer.close();
+              segments.add(new Manifest.Segment(writer.name(), writer.rows()));
+            }
+            writer =
+                new SegmentWriter(
+                    SEGMENT_PREFIX + "%05d".formatted(shared.nextSegment.getAndIncrement()),
+                    shared.dir);
+          }
+          writer.append(new StoredQuery(segment, row));
+        }
+        merged.add(source.name());
+      }
+      if (writer != null) {
+        writer.close();
+        segments.add(new Manifest.Segment(writer.name(), writer.rows()));
+      }
+    } catch (IOException e) {
+      // the unfinished copy is not in the manifest, the next append removes it
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+      }
+      throw e;
+    }
+    segments.removeAll(small);
+    LOGGER.info("merged %d small segments".formatted(merged.size()));
+    return merged;
+  }
+
+  private static SearchedFile sum(final SearchedFile a, final SearchedFile b) {
+    return new SearchedFile(
+        a.filtered() + b.filtered(),
+        a.parsed() + b.parsed(),
+        a.name(),
+        "".equals(b.errorText()) ? a.errorText() : b.errorText());
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.store.Columns.DictionaryColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.LongColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.TextColumn;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory mapped segment of a {@link QueryStore}. Only the small dictionaries are read onto the
+ * heap, every other column is paged in by the operating system as rows are read, so a scan that
+ * only looks at start and finish never touches the query text. Reads are absolute and the segment
+ * can be read from any number of threads.
+ */
+final class Segment {
+  private final int rows;
+  private final LongBuffer[] longs = new LongBuffer[LongColumn.values().length];
+  private final IntBuffer[] ids = new IntBuffer[DictionaryColumn.values().length];
+  private final String[][] dictionaries = new String[DictionaryColumn.values().length][];
+  private final ByteBuffer[] indexes = new ByteBuffer[TextColumn.values().length];
+  private final ByteBuffer[] texts = new ByteBuffer[TextColumn.values().length];
+
+  /**
+   * @param dir segment directory
+   * @param rows number of rows the manifest lists for the segment
+   * @throws IOException when a column is missing or shorter than the manifest says
+   */
+  Segment(final Path dir, final int rows) throws IOException {
+    this.rows = rows;
+    for (LongColumn c : LongColumn.values()) {
+      longs[c.ordinal()] = map(dir.resolve(c.fileName()), (long) rows * Long.BYTES).asLongBuffer();
+    }
+    for (DictionaryColumn c : DictionaryColumn.values()) {
+      ids[c.ordinal()] =
+          map(dir.resolve(c.idsFileName()), (long) rows * Integer.BYTES).asIntBuffer();
+      dictionaries[c.ordinal()] = readDictionary(dir.resolve(c.dictionaryFileName()));
+    }
+    for (TextColumn c : TextColumn.values()) {
+      indexes[c.ordinal()] =
+          map(dir.resolve(c.indexFileName()), (long) rows * TextColumn.INDEX_WIDTH);
+      texts[c.ordinal()] = map(dir.resolve(c.bytesFileName()), -1);
+    }
+  }
+
+  private static ByteBuffer map(final Path file, final long expectedSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (expectedSize >= 0 && size != expectedSize) {
+        throw new IOException(
+            "column %s has %d bytes, expected %d".formatted(file, size, expectedSize));
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  private static String[] readDictionary(final Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      final String[] values = new String[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        values[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      return values;
+    }
+  }
+
+  /**
+   * @return number of rows
+   */
+  int rows() {
+    return rows;
+  }
+
+  long getLong(final LongColumn column, final int row) {
+    return longs[column.ordinal()].get(row);
+  }
+
+  String getString(final DictionaryColumn column, final int row) {
+    final int id = ids[column.ordinal()].get(row);
+    return id < 0 ? null : dictionaries[column.ordinal()][id];
+  }
+
+  String getText(final TextColumn column, final int row) {
+    final ByteBuffer index = indexes[column.ordinal()];
+    final int position = row * TextColumn.INDEX_WIDTH;
+    final int length = index.getInt(position + Long.BYTES);
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    texts[column.ordinal()].get((int) index.getLong(position), bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.DictionaryColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.LongColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.TextColumn;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends rows to the column files of one segment. A segment is only ever written by one thread at
+ * a time and is complete once {@link #close()} has written its dictionaries.
+ */
+final class SegmentWriter implements Closeable {
+  /** rows per segment, keeps every fixed width column well under the 2GB a mapping can cover */
+  static final int MAX_ROWS = 64 * 1024 * 1024;
+
+  /** bytes of a single text column after which the segment is full */
+  static final long MAX_TEXT_BYTES = 1024L * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String name;
+  private final Path dir;
+  private final DataOutputStream[] longs = new DataOutputStream[LongColumn.values().length];
+  private final DataOutputStream[] ids = new DataOutputStream[DictionaryColumn.values().length];
+  private final DataOutputStream[] indexes = new DataOutputStream[TextColumn.values().length];
+  private final DataOutputStream[] texts = new DataOutputStream[TextColumn.values().length];
+  private final long[] textBytes = new long[TextColumn.values().length];
+  private final Map<String, Integer>[] dictionaries;
+  private int rows;
+
+  /**
+   * @param name segment name, also the name of its directory
+   * @param storeDir directory of the store the segment belongs to
+   * @throws IOException when the column files cannot be created
+   */
+  @SuppressWarnings("unchecked")
+  SegmentWriter(final String name, final Path storeDir) throws IOException {
+    this.name = name;
+    this.dir = Files.createDirectory(storeDir.resolve(name));
+    this.dictionaries = new Map[DictionaryColumn.values().length];
+    try {
+      for (LongColumn c : LongColumn.values()) {
+        longs[c.ordinal()] = open(c.fileName());
+      }
+      for (DictionaryColumn c : DictionaryColumn.values()) {
+        ids[c.ordinal()] = open(c.idsFileName());
+        dictionaries[c.ordinal()] = new HashMap<>();
+      }
+      for (TextColumn c : TextColumn.values()) {
+        indexes[c.ordinal()] = open(c.indexFileName());
+        texts[c.ordinal()] = open(c.bytesFileName());
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      throw e;
+    }
+  }
+
+  private DataOutputStream open(final String fileName) throws IOException {
+    return new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(dir.resolve(fileName)), BUFFER_SIZE));
+  }
+
+  /**
+   * @return true when the next row should go to a new segment
+   */
+  boolean isFull() {
+    if (rows >= MAX_ROWS) {
+      return true;
+    }
+    for (long bytes : textBytes) {
+      if (bytes >= MAX_TEXT_BYTES) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param q row to append
+   * @throws IOException when a column file cannot be written
+   */
+  void append(final Query q) throws IOException {
+    for (LongColumn c : LongColumn.values()) {
+      longs[c.ordinal()].writeLong(c.getter.applyAsLong(q));
+    }
+    for (DictionaryColumn c : DictionaryColumn.values()) {
+      final String value = c.getter.apply(q);
+      final Map<String, Integer> dictionary = dictionaries[c.ordinal()];
+      ids[c.ordinal()].writeInt(
+          value == null ? -1 : dictionary.computeIfAbsent(value, x -> dictionary.size()));
+    }
+    for (TextColumn c : TextColumn.values()) {
+      final String value = c.getter.apply(q);
+      final DataOutputStream index = indexes[c.ordinal()];
+      index.writeLong(textBytes[c.ordinal()]);
+      if (value == null) {
+        index.writeInt(-1);
+        continue;
+      }
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      index.writeInt(bytes.length);
+      texts[c.ordinal()].write(bytes);
+      textBytes[c.ordinal()] += bytes.length;
+    }
+    rows++;
+  }
+
+  /**
+   * @return rows appended so far
+   */
+  int rows() {
+    return rows;
+  }
+
+  /**
+   * @return segment name
+   */
+  String name() {
+    return name;
+  }
+
+  /**
+   * writes the dictionaries and closes every column file
+   *
+   * @throws IOException when a file cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      for (DictionaryColumn c : DictionaryColumn.values()) {
+        final String[] values = new String[dictionaries[c.ordinal()].size()];
+        dictionaries[c.ordinal()].forEach((value, id) -> values[id] = value);
+        try (DataOutputStream out = open(c.dictionaryFileName())) {
+          out.writeInt(values.length);
+          for (String value : values) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+          }
+        }
+      }
+      for (DataOutputStream[] streams : new DataOutputStream[][] {longs, ids, indexes, texts}) {
+        for (DataOutputStream out : streams) {
+          out.close();
+        }
+      }
+    } finally {
+      closeQuietly();
+    }
+  }
+
+  private void closeQuietly() {
+    for (DataOutputStream[] streams : new DataOutputStream[][] {longs, ids, indexes, texts}) {
+      for (DataOutputStream out : streams) {
+        if (out == null) {
+          continue;
+        }
+        try {
+          out.close();
+        } catch (IOException e) {
+          // already failing, the first error is the one reported
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.DictionaryColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.LongColumn;
+import com.dremio.support.diagnostics.queriesjson.store.Columns.TextColumn;
+
+/**
+ * A row of a {@link Segment} seen through the {@link Query} getters. Nothing is copied up front,
+ * each getter reads its own column so reporters only pay for the columns they look at. The
+ * setters have no effect on what the getters return.
+ */
+final class StoredQuery extends Query {
+  private final Segment segment;
+  private final int row;
+
+  StoredQuery(final Segment segment, final int row) {
+    this.segment = segment;
+    this.row = row;
+  }
+
+  @Override
+  public String getOutcome() {
+    return segment.getString(DictionaryColumn.OUTCOME, row);
+  }
+
+  @Override
+  public String getOutcomeReason() {
+    return segment.getText(TextColumn.OUTCOME_REASON, row);
+  }
+
+  @Override
+  public String getQueryText() {
+    return segment.getText(TextColumn.QUERY_TEXT, row);
+  }
+
+  @Override
+  public long getStart() {
+    return segment.getLong(LongColumn.START, row);
+  }
+
+  @Override
+  public long getFinish() {
+    return segment.getLong(LongColumn.FINISH, row);
+  }
+
+  @Override
+  public String getQueryType() {
+    return segment.getString(DictionaryColumn.QUERY_TYPE, row);
+  }
+
+  @Override
+  public float getQueryCost() {
+    return Float.intBitsToFloat((int) segment.getLong(LongColumn.QUERY_COST, row));
+  }
+
+  @Override
+  public String getQueueName() {
+    return segment.getString(DictionaryColumn.QUEUE_NAME, row);
+  }
+
+  @Override
+  public long getPoolWaitTime() {
+    return segment.getLong(LongColumn.POOL_WAIT_TIME, row);
+  }
+
+  @Override
+  public long getPendingTime() {
+    return segment.getLong(LongColumn.PENDING_TIME, row);
+  }
+
+  @Override
+  public long getPlanningTime() {
+    return segment.getLong(LongColumn.PLANNING_TIME, row);
+  }
+
+  @Override
+  public long getQueuedTime() {
+    return segment.getLong(LongColumn.QUEUED_TIME, row);
+  }
+
+  @Override
+  public long getStartingTime() {
+    return segment.getLong(LongColumn.STARTING_TIME, row);
+  }
+
+  @Override
+  public long getRunningTime() {
+    return segment.getLong(LongColumn.RUNNING_TIME, row);
+  }
+
+  @Override
+  public String getEngineName() {
+    return segment.getString(DictionaryColumn.ENGINE_NAME, row);
+  }
+
+  @Override
+  public long getAttemptCount() {
+    return segment.getLong(LongColumn.ATTEMPT_COUNT, row);
+  }
+
+  @Override
+  @Deprecated
+  public long getMetadataRetrieval() {
+    return segment.getLong(LongColumn.METADATA_RETRIEVAL, row);
+  }
+
+  @Override
+  public long getPlanningStart() {
+    return segment.getLong(LongColumn.PLANNING_START, row);
+  }
+
+  @Override
+  public long getQueryEnqueued() {
+    return segment.getLong(LongColumn.QUERY_ENQUEUED, row);
+  }
+
+  @Override
+  public long getMemoryAllocated() {
+    return segment.getLong(LongColumn.MEMORY_ALLOCATED, row);
+  }
+
+  @Override
+  public String getUsername() {
+    return segment.getString(DictionaryColumn.USERNAME, row);
+  }
+
+  @Override
+  public String getQueryId() {
+    return segment.getText(TextColumn.QUERY_ID, row);
+  }
+
+  @Override
+  public long getExecutionCpuTimeNs() {
+    return segment.getLong(LongColumn.EXECUTION_CPU_TIME_NS, row);
+  }
+
+  @Override
+  @Deprecated
+  public long getMetadataRetrievalTime() {
+    return segment.getLong(LongColumn.METADATA_RETRIEVAL_TIME, row);
+  }
+
+  @Override
+  public long getNormalizedMetadataRetrieval() {
+    return normalizeMetadataRetrieval(
+        segment.getLong(LongColumn.METADATA_RETRIEVAL, row),
+        segment.getLong(LongColumn.METADATA_RETRIEVAL_TIME, row));
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return o instanceof StoredQuery other && other.segment == segment && other.row == row;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * System.identityHashCode(segment) + row;
+  }
+}
@@ -16,6 +16,7 @@ package com.dremio.support.diagnostics.repro;
 import static com.dremio.support.diagnostics.shared.zip.ArchiveDetection.isArchive;
 
 import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
+import com.dremio.support.diagnostics.profilejson.ProfileSection;
 import com.dremio.support.diagnostics.repro.apiout.*;
 import com.dremio.support.diagnostics.repro.consoleout.ConsoleOutput;
 import com.dremio.support.diagnostics.repro.fileout.DirectoryOutput;
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -116,6 +118,18 @@ public class ArgSetup {
    * @return either a zip reader or a text file reader depending on what type of file it is
    */
   public static ProfileProvider getProfileProvider(final PathAndStream pathAndStream) {
+    return getProfileProvider(pathAndStream, ProfileSection.ALL);
+  }
+
+  /**
+   * Decides to use zip or text parsers and only reads the sections of the profile the caller needs
+   *
+   * @param pathAndStream path and stream of the json profile
+   * @param sections sections of the profile to read, the others are skipped while parsing
+   * @return either a zip reader or a text file reader depending on what type of file it is
+   */
+  public static ProfileProvider getProfileProvider(
+      final PathAndStream pathAndStream, final Set<ProfileSection> sections) {
     if (pathAndStream == null
         || pathAndStream.filePath() == null
         || pathAndStream.stream() == null) {
@@ -123,9 +137,10 @@ public class ArgSetup {
     }
     String fileName = pathAndStream.filePath().getFileName().toString();
     if (isArchive(fileName)) {
-      return new ZipProfileProvider(new ProfileJSONParser(), new UnzipperImpl(), pathAndStream);
+      return new ZipProfileProvider(
+          new ProfileJSONParser(sections), new UnzipperImpl(), pathAndStream);
     }
-    return new JsonTextProfileProvider(pathAndStream);
+    return new JsonTextProfileProvider(pathAndStream, sections);
   }
 
   /**
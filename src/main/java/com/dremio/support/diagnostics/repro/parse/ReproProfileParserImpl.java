@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.repro.parse;
 
+import com.dremio.support.diagnostics.profilejson.ProfileSection;
 import com.dremio.support.diagnostics.repro.*;
 import com.dremio.support.diagnostics.shared.dto.profilejson.DatasetProfile;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
@@ -25,6 +26,10 @@ import java.util.logging.Logger;
  * profile.json
  */
 public class ReproProfileParserImpl implements ReproProfileParser {
+
+  /** the only part of the profile the reproduction reads */
+  public static final Set<ProfileSection> PROFILE_SECTIONS = Set.of(ProfileSection.DATASETS);
+
   private static final Logger logger = Logger.getLogger(ReproProfileParserImpl.class.getName());
   private final PathMaker pathMaker = new PathMaker();
   private final VdsSorter vdsSorter;
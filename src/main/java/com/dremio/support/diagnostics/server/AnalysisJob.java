@@ -0,0 +1,191 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An upload being analyzed in the background by the {@link AnalysisJobQueue}, it tracks where the
+ * analysis is and, once it is done, where the report is.
+ */
+public class AnalysisJob {
+
+  /** lifecycle of a job */
+  public enum State {
+    /** waiting for a free worker */
+    QUEUED,
+    /** being analyzed */
+    RUNNING,
+    /** the report is ready */
+    DONE,
+    /** the analysis failed, see the error */
+    FAILED
+  }
+
+  /**
+   * a snapshot of the progress of a job
+   *
+   * @param id job id
+   * @param kind what is being analyzed
+   * @param state where the job is
+   * @param uploadBytes size of the upload
+   * @param bytesRead how much of the upload has been read
+   * @param percent bytesRead as a percentage of uploadBytes
+   * @param filesSearched files in the upload that have been searched
+   * @param queriesAnalyzed queries seen by the reporters
+   * @param queriesPerSecond queriesAnalyzed over the time the job has been running
+   * @param elapsedMillis time since the job started running, 0 while it is queued
+   * @param error why the job failed, null unless it failed
+   */
+  public record Status(
+      String id,
+      String kind,
+      State state,
+      long uploadBytes,
+      long bytesRead,
+      int percent,
+      long filesSearched,
+      long queriesAnalyzed,
+      long queriesPerSecond,
+      long elapsedMillis,
+      String error) {}
+
+  private final String id;
+  private final String kind;
+  private final long uploadBytes;
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final LongAdder filesSearched = new LongAdder();
+  private final LongAdder queriesAnalyzed = new LongAdder();
+  private volatile State state = State.QUEUED;
+  private volatile long startedNanos;
+  private volatile long finishedNanos;
+  private volatile String error;
+  private volatile Path report;
+  private volatile byte[] cachedReport;
+
+  AnalysisJob(final String id, final String kind, final long uploadBytes) {
+    this.id = id;
+    this.kind = kind;
+    this.uploadBytes = uploadBytes;
+  }
+
+  /**
+   * @return random id of the job, it is the only way to reach the report
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return where the job is
+   */
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * @return the report file, null until the job is done or when the report came from the cache
+   */
+  public Path getReport() {
+    return report;
+  }
+
+  /**
+   * @return the report when it was answered from the {@link ReportCache}, otherwise null
+   */
+  public byte[] getCachedReport() {
+    return cachedReport;
+  }
+
+  /**
+   * @return how far the analysis is
+   */
+  public Status status() {
+    final State current = state;
+    final long started = startedNanos;
+    final long elapsedNanos;
+    if (started == 0) {
+      elapsedNanos = 0;
+    } else if (current == State.DONE || current == State.FAILED) {
+      elapsedNanos = finishedNanos - started;
+    } else {
+      elapsedNanos = System.nanoTime() - started;
+    }
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    final long queries = queriesAnalyzed.sum();
+    final long read = bytesRead.get();
+    return new Status(
+        id,
+        kind,
+        current,
+        uploadBytes,
+        read,
+        uploadBytes == 0 ? 0 : (int) (read * 100 / uploadBytes),
+        filesSearched.sum(),
+        queries,
+        elapsedMillis == 0 ? 0 : queries * 1000 / elapsedMillis,
+        elapsedMillis,
+        error);
+  }
+
+  void read(final long bytes) {
+    bytesRead.addAndGet(bytes);
+  }
+
+  void searched(final SearchedFile file) {
+    filesSearched.increment();
+  }
+
+  void analyzed() {
+    queriesAnalyzed.increment();
+  }
+
+  void running() {
+    startedNanos = System.nanoTime();
+    state = State.RUNNING;
+  }
+
+  void done(final Path report) {
+    this.report = report;
+    finish(State.DONE);
+  }
+
+  void cached(final byte[] cachedReport) {
+    this.cachedReport = cachedReport;
+    bytesRead.set(uploadBytes);
+    startedNanos = System.nanoTime();
+    finish(State.DONE);
+  }
+
+  void failed(final String error) {
+    this.error = error;
+    finish(State.FAILED);
+  }
+
+  /**
+   * @return when the job finished, per {@link System#nanoTime()}, 0 while it has not
+   */
+  long finishedNanos() {
+    return finishedNanos;
+  }
+
+  private void finish(final State finalState) {
+    finishedNanos = System.nanoTime();
+    state = finalState;
+  }
+}
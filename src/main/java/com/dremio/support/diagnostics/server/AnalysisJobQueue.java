@@ -0,0 +1,385 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.queriesjson.ReadArchive;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs long analyses in the background so the request that uploads the data returns as soon as
+ * the upload has arrived, instead of holding a Jetty thread and the browser connection until the
+ * report is rendered.
+ *
+ * <p>Uploads are spooled to the job directory and analyzed by a fixed number of workers, every
+ * worker gets its own heap budget for buffered archive entries so the number of workers bounds the
+ * heap used by jobs. Admission control rejects a job instead of letting it wait without bound: when
+ * every worker is busy and the queue is full, or when the spooled uploads would go over their disk
+ * budget. Finished jobs, and their reports, are dropped once they are older than the keep time.
+ */
+public class AnalysisJobQueue {
+  private static final Logger LOGGER = Logger.getLogger(AnalysisJobQueue.class.getName());
+
+  /** kind of the queries.json jobs, the report is the same as the one served by /queriesjson */
+  public static final String QUERIES_JSON = "queriesjson";
+
+  /** jobs waiting for a worker before new ones are rejected */
+  public static final int DEFAULT_MAX_QUEUED = 8;
+
+  /** how long finished jobs and their reports are kept */
+  public static final Duration DEFAULT_KEEP = Duration.ofMinutes(30);
+
+  /** heap a running job may use for buffered archive entries */
+  static final int JOB_BUFFERED_BYTES = ReadArchive.DEFAULT_MAX_BUFFERED_BYTES;
+
+  /** refused a job, the status is the http status to answer with */
+  public static class RejectedException extends Exception {
+    private final int status;
+
+    RejectedException(final int status, final String message) {
+      super(message);
+      this.status = status;
+    }
+
+    /**
+     * @return 413 when the upload can never fit, 503 when the queue is busy
+     */
+    public int getStatus() {
+      return status;
+    }
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final int threadsPerJob;
+  private final Path dir;
+  private final long maxSpoolBytes;
+  private final long keepNanos;
+  private final ReportCache cache;
+  private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+  private long spooledBytes;
+
+  /**
+   * @param maxRunning jobs analyzed at the same time
+   * @param maxQueued jobs waiting for a worker before new ones are rejected
+   * @param dir where uploads and reports are written
+   * @param maxSpoolBytes total size of the uploads waiting in the job directory
+   * @param keep how long finished jobs and their reports are kept
+   * @param cache reports shared with the synchronous endpoints, null to always analyze
+   * @throws IOException when the job directory cannot be created
+   */
+  public AnalysisJobQueue(
+      final int maxRunning,
+      final int maxQueued,
+      final Path dir,
+      final long maxSpoolBytes,
+      final Duration keep,
+      final ReportCache cache)
+      throws IOException {
+    final AtomicInteger threadId = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            maxRunning,
+            maxRunning,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, maxQueued)),
+            r -> {
+              final Thread thread = new Thread(r, "analysis-job-" + threadId.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.threadsPerJob =
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2 / Math.max(1, maxRunning));
+    this.dir = Files.createDirectories(dir);
+    this.maxSpoolBytes = maxSpoolBytes;
+    this.keepNanos = keep.toNanos();
+    this.cache = cache;
+  }
+
+  /**
+   * @return as many workers as half the heap can hold and half the cores can keep busy, at least 1
+   */
+  public static int defaultMaxRunning() {
+    final long perJob = 2L * JOB_BUFFERED_BYTES;
+    final long byHeap = Runtime.getRuntime().maxMemory() / 2 / perJob;
+    final int byCores = Runtime.getRuntime().availableProcessors() / 2;
+    return (int) Math.max(1, Math.min(byHeap, byCores));
+  }
+
+  /**
+   * @param id job id
+   * @return the job, empty when it is unknown or has expired
+   */
+  public Optional<AnalysisJob> get(final String id) {
+    expire();
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  /**
+   * spools a queries.json upload and queues its analysis
+   *
+   * @param body multipart request body, the form fields are read the same way as /queriesjson
+   * @param contentType content type of the request, it carries the boundary
+   * @param contentLength length of the body, -1 when unknown
+   * @return the queued job, or a finished one when the report was already cached
+   * @throws RejectedException when the queue is full or the upload does not fit
+   * @throws IOException when the upload cannot be read or spooled
+   */
+  public AnalysisJob submitQueriesJson(
+      final InputStream body, final String contentType, final long contentLength)
+      throws RejectedException, IOException {
+    expire();
+    if (contentLength > maxSpoolBytes) {
+      throw new RejectedException(
+          413,
+          "upload of %d bytes is larger than %d bytes".formatted(contentLength, maxSpoolBytes));
+    }
+    if (executor.getActiveCount() >= executor.getMaximumPoolSize()
+        && executor.getQueue().remainingCapacity() == 0) {
+      throw busy();
+    }
+    final String id = UUID.randomUUID().toString();
+    final Path upload = dir.resolve(id + ".upload");
+    final MultipartStreamReader multipart = new MultipartStreamReader(body, contentType);
+    final ReportCacheFilter.Key key = new ReportCacheFilter.Key("/" + QUERIES_JSON);
+    final Map<String, List<String>> fields = new HashMap<>();
+    String fileName = null;
+    long uploadBytes = 0;
+    try {
+      MultipartStreamReader.Part part;
+      while (null != (part = multipart.next())) {
+        if (!part.isFile()) {
+          final String value = part.value();
+          fields.computeIfAbsent(part.name(), k -> new ArrayList<>()).add(value);
+          key.part(
+              part.name(),
+              null,
+              Hashing.sha256().hashString(value, StandardCharsets.UTF_8).asBytes());
+          continue;
+        }
+        if (fileName != null) {
+          throw new IllegalArgumentException("expected one file but had more than one");
+        }
+        fileName = part.fileName();
+        final HashingInputStream hashed = new HashingInputStream(Hashing.sha256(), part.content());
+        uploadBytes = spool(hashed, upload);
+        key.part(part.name(), fileName, hashed.hash().asBytes());
+      }
+      if (fileName == null) {
+        throw new IllegalArgumentException("expected one file but had 0");
+      }
+    } catch (RejectedException | IOException | RuntimeException e) {
+      release(upload, uploadBytes);
+      throw e;
+    }
+    final AnalysisJob job = new AnalysisJob(id, QUERIES_JSON, uploadBytes);
+    final String cacheKey = key.finish();
+    if (cache != null) {
+      final Optional<ReportCache.Report> cached = cache.get(cacheKey);
+      if (cached.isPresent() && cached.get().contentEncoding() == null) {
+        release(upload, uploadBytes);
+        job.cached(cached.get().body());
+        jobs.put(id, job);
+        return job;
+      }
+    }
+    final String uploadName = fileName;
+    final long spooled = uploadBytes;
+    jobs.put(id, job);
+    try {
+      executor.execute(() -> runQueriesJson(job, upload, uploadName, spooled, fields, cacheKey));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(id);
+      release(upload, uploadBytes);
+      throw busy();
+    }
+    return job;
+  }
+
+  private void runQueriesJson(
+      final AnalysisJob job,
+      final Path upload,
+      final String fileName,
+      final long uploadBytes,
+      final Map<String, List<String>> fields,
+      final String cacheKey) {
+    job.running();
+    final Path report = dir.resolve(job.getId() + ".html");
+    try {
+      final QueriesJsonAnalysis analysis = new QueriesJsonAnalysis(fields);
+      try (InputStream in = new ProgressInputStream(Files.newInputStream(upload), job)) {
+        analysis.read(
+            fileName,
+            in,
+            threadsPerJob,
+            JOB_BUFFERED_BYTES,
+            job::searched,
+            List.of(q -> job.analyzed()));
+      }
+      // the upload is no longer needed, hand the disk budget back before rendering
+      release(upload, uploadBytes);
+      try (OutputStream out = Files.newOutputStream(report)) {
+        analysis.writeTo(out);
+      }
+      if (cache != null && Files.size(report) <= cache.maxEntryBytes()) {
+        cache.put(
+            cacheKey,
+            new ReportCache.Report("text/html; charset=utf-8", null, Files.readAllBytes(report)));
+      }
+      job.done(report);
+    } catch (Exception e) {
+      LOGGER.log(Level.SEVERE, "analysis job %s failed".formatted(job.getId()), e);
+      delete(report);
+      job.failed(String.valueOf(e.getMessage()));
+    } finally {
+      release(upload, uploadBytes);
+    }
+  }
+
+  /**
+   * copies the upload to disk, reserving disk budget as it goes, the reserved bytes are given back
+   * when the copy fails for any reason
+   */
+  private long spool(final InputStream in, final Path upload)
+      throws IOException, RejectedException {
+    final byte[] buffer = new byte[1024 * 1024];
+    long total = 0;
+    boolean spooled = false;
+    try (OutputStream out = Files.newOutputStream(upload)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        reserve(read);
+        total += read;
+        out.write(buffer, 0, read);
+      }
+      spooled = true;
+    } finally {
+      if (!spooled) {
+        release(null, total);
+      }
+    }
+    return total;
+  }
+
+  private synchronized void reserve(final long bytes) throws RejectedException {
+    if (spooledBytes + bytes > maxSpoolBytes) {
+      throw busy();
+    }
+    spooledBytes += bytes;
+  }
+
+  /** deletes a spooled upload and gives its bytes back, safe to call more than once */
+  private void release(final Path upload, final long bytes) {
+    if (upload != null && !delete(upload)) {
+      // already released
+      return;
+    }
+    synchronized (this) {
+      spooledBytes -= bytes;
+    }
+  }
+
+  /**
+   * @return total size of the uploads currently spooled
+   */
+  synchronized long spooledBytes() {
+    return spooledBytes;
+  }
+
+  private static RejectedException busy() {
+    return new RejectedException(503, "too many analyses are running, try again in a minute");
+  }
+
+  private void expire() {
+    final long now = System.nanoTime();
+    jobs.values()
+        .removeIf(
+            job -> {
+              final AnalysisJob.State state = job.getState();
+              final boolean expired =
+                  (state == AnalysisJob.State.DONE || state == AnalysisJob.State.FAILED)
+                      && now - job.finishedNanos() > keepNanos;
+              if (expired && job.getReport() != null) {
+                delete(job.getReport());
+              }
+              return expired;
+            });
+  }
+
+  private static boolean delete(final Path file) {
+    try {
+      return Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "unable to delete %s".formatted(file), e);
+      return false;
+    }
+  }
+
+  /** counts the bytes of the upload read by the analysis */
+  private static class ProgressInputStream extends FilterInputStream {
+    private final AnalysisJob job;
+
+    ProgressInputStream(final InputStream in, final AnalysisJob job) {
+      super(in);
+      this.job = job;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = super.read();
+      if (b != -1) {
+        job.read(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      final int read = super.read(b, off, len);
+      if (read > 0) {
+        job.read(read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+      final long skipped = super.skip(n);
+      job.read(skipped);
+      return skipped;
+    }
+  }
+}
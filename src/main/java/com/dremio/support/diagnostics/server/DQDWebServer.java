@@ -13,12 +13,16 @@
  */
 package com.dremio.support.diagnostics.server;
 
+import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
 import com.dremio.support.diagnostics.shared.UsageLogger;
 import com.dremio.support.diagnostics.simple.ProfileJSONSimplified;
 import io.javalin.Javalin;
 import io.javalin.http.Handler;
+import jakarta.servlet.DispatcherType;
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.logging.Logger;
+import org.eclipse.jetty.servlet.FilterHolder;
 
 /**
  * Starts a Javalin web service that has provides several endpoints that
@@ -26,11 +30,19 @@ import java.util.logging.Logger;
  * is also a web ui that allows end users to generate reports from the URL, no
  * data is stored on
  * disk and all data is parsed in ram and generated in ram, this is to minimize
- * the security issues.
+ * the security issues. Rendered reports are cached in ram when the server is started with a cache
+ * size, see {@link ReportCache}, they are only written to disk when a spill directory is
+ * configured.
+ * Uploads to /jobs are the exception, they are analyzed after the request returns so they are
+ * spooled to the jobs directory until the analysis is done, see {@link AnalysisJobQueue}.
  */
 public class DQDWebServer {
 
   private static final Logger LOGGER = Logger.getLogger(DQDWebServer.class.getName());
+
+  /** largest body javalin reads into memory for a handler */
+  private static final long MAX_REQUEST_SIZE = 10 * 1000000; // 10mb
+
   private final Handler getIndex;
   private final Handler postProfile;
   private final Handler postProfiles;
@@ -40,6 +52,12 @@ public class DQDWebServer {
   private final Handler getAbout;
   private final Handler postIOStat;
   private final Handler postTop;
+  private final ReportCache reportCache;
+  private final long maxCachedUploadBytes;
+  private final long maxBufferedUploadBytes;
+  private final Handler postJob;
+  private final Handler getJob;
+  private final Handler getJobReport;
 
   /**
    * Starts a web server
@@ -48,6 +66,26 @@ public class DQDWebServer {
    * @throws IOException occurs when we are unable to read the index.html file
    */
   public DQDWebServer(final UsageLogger usageLogger) throws IOException {
+    this(usageLogger, null, 0, 0, null);
+  }
+
+  /**
+   * Starts a web server that answers repeated uploads from a cache
+   *
+   * @param usageLogger
+   * @param reportCache          rendered reports of recent uploads, null to render every upload
+   * @param maxCachedUploadBytes largest upload that is looked up in the cache
+   * @param maxBufferedUploadBytes total size of the uploads buffered for the cache at once
+   * @param jobQueue             runs the analyses submitted to /jobs, null to disable /jobs
+   * @throws IOException occurs when we are unable to read the index.html file
+   */
+  public DQDWebServer(
+      final UsageLogger usageLogger,
+      final ReportCache reportCache,
+      final long maxCachedUploadBytes,
+      final long maxBufferedUploadBytes,
+      final AnalysisJobQueue jobQueue)
+      throws IOException {
     this(
         new GetIndex(),
         new PostProfile(usageLogger),
@@ -57,7 +95,13 @@ public class DQDWebServer {
         new ProfileJSONSimplified.ProfileHTTPEndpoint(usageLogger),
         new GetAbout(),
         new PostIOStat(),
-        new PostTop());
+        new PostTop(),
+        reportCache,
+        maxCachedUploadBytes,
+        maxBufferedUploadBytes,
+        jobQueue == null ? null : new PostJob(jobQueue, usageLogger),
+        jobQueue == null ? null : new GetJob(jobQueue),
+        jobQueue == null ? null : new GetJobReport(jobQueue));
   }
 
   /**
@@ -84,6 +128,40 @@ public class DQDWebServer {
       final Handler getAbout,
       final Handler postIOStats,
       final Handler postTop) {
+    this(
+        getIndex,
+        postProfile,
+        postProfiles,
+        postReproduction,
+        postQueriesJson,
+        postSimpleProfile,
+        getAbout,
+        postIOStats,
+        postTop,
+        null,
+        0,
+        0,
+        null,
+        null,
+        null);
+  }
+
+  private DQDWebServer(
+      final Handler getIndex,
+      final Handler postProfile,
+      final Handler postProfiles,
+      final Handler postReproduction,
+      final Handler postQueriesJson,
+      final Handler postSimpleProfile,
+      final Handler getAbout,
+      final Handler postIOStats,
+      final Handler postTop,
+      final ReportCache reportCache,
+      final long maxCachedUploadBytes,
+      final long maxBufferedUploadBytes,
+      final Handler postJob,
+      final Handler getJob,
+      final Handler getJobReport) {
     this.getIndex = getIndex;
     this.postProfile = postProfile;
     this.postProfiles = postProfiles;
@@ -93,6 +171,12 @@ public class DQDWebServer {
     this.getAbout = getAbout;
     this.postIOStat = postIOStats;
     this.postTop = postTop;
+    this.reportCache = reportCache;
+    this.maxCachedUploadBytes = maxCachedUploadBytes;
+    this.maxBufferedUploadBytes = maxBufferedUploadBytes;
+    this.postJob = postJob;
+    this.getJob = getJob;
+    this.getJobReport = getJobReport;
   }
 
   /**
@@ -105,7 +189,23 @@ public class DQDWebServer {
     var app =
         Javalin.create(
                 config -> {
-                  config.http.maxRequestSize = 10 * 1000000; // 10mb
+                  // only applies to handlers that buffer the body, /queriesjson and /profile
+                  // stream the upload and are not limited by it
+                  config.http.maxRequestSize = MAX_REQUEST_SIZE;
+                  if (reportCache != null) {
+                    // a servlet filter so the upload can be hashed before the handler reads it
+                    config.jetty.modifyServletContextHandler(
+                        handler ->
+                            handler.addFilter(
+                                new FilterHolder(
+                                    new ReportCacheFilter(
+                                        reportCache,
+                                        maxCachedUploadBytes,
+                                        MAX_REQUEST_SIZE,
+                                        maxBufferedUploadBytes)),
+                                "/*",
+                                EnumSet.of(DispatcherType.REQUEST)));
+                  }
                 })
             .start(port);
     app.get("/", this.getIndex);
@@ -117,6 +217,17 @@ public class DQDWebServer {
     app.post("/reproduction", this.postReproduction);
     app.post("/simple-profile", this.postSimpleProfile);
     app.get("/about.json", this.getAbout);
+    if (reportCache != null) {
+      app.get("/cache-stats.json", new GetCacheStats(reportCache));
+    }
+    if (postJob != null) {
+      app.post("/jobs/queriesjson", this.postJob);
+      app.get("/jobs/{id}", this.getJob);
+      app.get("/jobs/{id}/report", this.getJobReport);
+    }
+    if (JsLibraryTextProvider.getExternalAssetsUrl() != null) {
+      app.get(GetAsset.PATH + "{name}", new GetAsset());
+    }
     Runtime.getRuntime().addShutdownHook(new Thread(app::stop));
     try {
       Thread.currentThread().join();
@@ -133,9 +244,57 @@ public class DQDWebServer {
    * @throws Exception can throw thread exceptions and various exceptions that are spawned by javalin
    */
   public static void start(final Integer port) throws Exception {
+    start(port, false);
+  }
+
+  /**
+   * preferred method of launching the service
+   *
+   * @param port                port that the web service runs on
+   * @param externalAssets      when true the reports reference the javascript libraries served
+   *                            under /assets/ instead of inlining them in every page
+   *
+   * @throws Exception can throw thread exceptions and various exceptions that are spawned by javalin
+   */
+  public static void start(final Integer port, final boolean externalAssets) throws Exception {
+    start(port, externalAssets, null, 0, 0, null);
+  }
+
+  /**
+   * preferred method of launching the service
+   *
+   * @param port                 port that the web service runs on
+   * @param externalAssets       when true the reports reference the javascript libraries served
+   *                             under /assets/ instead of inlining them in every page
+   * @param reportCache          rendered reports of recent uploads, null to render every upload
+   * @param maxCachedUploadBytes largest upload that is looked up in the cache, larger ones are
+   *                             parsed while they are uploaded and never cached
+   * @param maxBufferedUploadBytes total size of the uploads buffered for the cache at once, uploads
+   *                             that do not fit are parsed while they are uploaded
+   * @param jobQueue             runs the analyses submitted to /jobs, null to disable /jobs
+   *
+   * @throws Exception can throw thread exceptions and various exceptions that are spawned by javalin
+   */
+  public static void start(
+      final Integer port,
+      final boolean externalAssets,
+      final ReportCache reportCache,
+      final long maxCachedUploadBytes,
+      final long maxBufferedUploadBytes,
+      final AnalysisJobQueue jobQueue)
+      throws Exception {
+    if (externalAssets) {
+      LOGGER.info("serving javascript libraries from " + GetAsset.PATH);
+      JsLibraryTextProvider.setExternalAssetsUrl(GetAsset.PATH);
+    }
     final UsageLogger usageLogger;
     LOGGER.warning("logging usage to local logs");
     usageLogger = new LocalUsageLogger();
-    new DQDWebServer(usageLogger).launch(port);
+    if (reportCache != null) {
+      LOGGER.info("caching rendered reports, statistics are served at /cache-stats.json");
+    }
+    new DQDWebServer(
+            usageLogger, reportCache, maxCachedUploadBytes, maxBufferedUploadBytes, jobQueue)
+        .launch(port);
   }
 }
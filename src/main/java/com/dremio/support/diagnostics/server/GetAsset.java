@@ -0,0 +1,44 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * serves the embedded javascript libraries so reports can reference them by url instead of
+ * inlining megabytes of javascript into every page. The library names carry their version so the
+ * browser can cache them for a long time.
+ */
+public class GetAsset implements Handler {
+
+  /** url prefix the handler is mounted on */
+  public static final String PATH = "/assets/";
+
+  @Override
+  public void handle(@NotNull Context ctx) throws Exception {
+    final String name = ctx.pathParam("name");
+    // only serve the known libraries, never an arbitrary classpath resource
+    if (!JsLibraryTextProvider.LIBRARIES.contains(name)) {
+      ctx.status(HttpStatus.NOT_FOUND);
+      return;
+    }
+    ctx.header("Cache-Control", "public, max-age=604800");
+    ctx.contentType("text/javascript; charset=utf-8");
+    ctx.result(JsLibraryTextProvider.getLibBytes(name));
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+import java.util.Optional;
+import org.jetbrains.annotations.NotNull;
+
+/** returns the progress of an analysis job as json */
+public class GetJob implements Handler {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final AnalysisJobQueue queue;
+
+  public GetJob(final AnalysisJobQueue queue) {
+    this.queue = queue;
+  }
+
+  @Override
+  public void handle(@NotNull Context ctx) throws Exception {
+    final Optional<AnalysisJob> job = queue.get(ctx.pathParam("id"));
+    if (job.isEmpty()) {
+      ctx.status(HttpStatus.NOT_FOUND);
+      return;
+    }
+    ctx.contentType("application/json");
+    ctx.result(MAPPER.writeValueAsString(job.get().status()));
+  }
+}
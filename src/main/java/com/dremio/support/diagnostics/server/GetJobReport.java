@@ -0,0 +1,101 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.shared.Human;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Optional;
+import org.apache.commons.text.StringEscapeUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * streams the report of an analysis job once it is ready, until then it answers with a page that
+ * shows the progress and reloads itself
+ */
+public class GetJobReport implements Handler {
+
+  private final AnalysisJobQueue queue;
+
+  public GetJobReport(final AnalysisJobQueue queue) {
+    this.queue = queue;
+  }
+
+  @Override
+  public void handle(@NotNull Context ctx) throws Exception {
+    final Optional<AnalysisJob> found = queue.get(ctx.pathParam("id"));
+    if (found.isEmpty()) {
+      ctx.status(HttpStatus.NOT_FOUND);
+      ctx.html("<html><body>unknown or expired job</body></html>");
+      return;
+    }
+    final AnalysisJob job = found.get();
+    final AnalysisJob.Status status = job.status();
+    switch (status.state()) {
+      case DONE -> {
+        ctx.contentType("text/html; charset=utf-8");
+        if (job.getCachedReport() != null) {
+          ctx.outputStream().write(job.getCachedReport());
+          return;
+        }
+        try (InputStream in = Files.newInputStream(job.getReport())) {
+          in.transferTo(ctx.outputStream());
+        }
+      }
+      case FAILED -> {
+        ctx.status(HttpStatus.INTERNAL_SERVER_ERROR);
+        ctx.html("<html><body>" + StringEscapeUtils.escapeHtml4(status.error()) + "</body></html>");
+      }
+      default -> {
+        ctx.status(HttpStatus.ACCEPTED);
+        ctx.header("Retry-After", "2");
+        ctx.html(progressPage(status));
+      }
+    }
+  }
+
+  private static String progressPage(final AnalysisJob.Status status) {
+    return """
+           <!DOCTYPE html>
+           <html lang="en">
+             <head>
+               <meta charset="UTF-8">
+               <meta http-equiv="refresh" content="2">
+               <title>Analyzing</title>
+             </head>
+             <body>
+               <h3>%s</h3>
+               <progress max="100" value="%d"></progress> %d%%
+               <p>%s of %s read, %d files searched</p>
+               <p>%,d queries analyzed, %,d per second, running for %s</p>
+             </body>
+           </html>
+           """
+        .formatted(
+            status.state() == AnalysisJob.State.QUEUED
+                ? "waiting for a free worker"
+                : "analyzing upload",
+            status.percent(),
+            status.percent(),
+            Human.getHumanBytes1024(status.bytesRead()),
+            Human.getHumanBytes1024(status.uploadBytes()),
+            status.filesSearched(),
+            status.queriesAnalyzed(),
+            status.queriesPerSecond(),
+            Human.getHumanDurationFromMillis(status.elapsedMillis()));
+  }
+}
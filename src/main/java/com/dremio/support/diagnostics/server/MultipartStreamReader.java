@@ -0,0 +1,286 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a multipart/form-data request body one part at a time straight from the network.
+ *
+ * <p>Unlike {@link io.javalin.http.Context#uploadedFiles()} nothing is spooled to memory or disk,
+ * each part is exposed as a stream that ends at the next boundary so a file can be parsed while the
+ * rest of it is still being uploaded. Browsers send the parts in form order, so form fields placed
+ * before the file input are available before the file is read.
+ */
+public class MultipartStreamReader {
+
+  /** upper bound for a single header line and for form field values */
+  private static final int MAX_FIELD_SIZE = 64 * 1024;
+
+  /**
+   * a single part of the body
+   *
+   * @param name form field name from the content disposition
+   * @param fileName file name from the content disposition, null for plain form fields
+   * @param content body of the part, it is only valid until {@link #next()} is called again
+   */
+  public record Part(String name, String fileName, InputStream content) {
+    /**
+     * @return true if the part is an uploaded file
+     */
+    public boolean isFile() {
+      return fileName != null;
+    }
+
+    /**
+     * reads a form field value
+     *
+     * @return the utf-8 value of the part
+     * @throws IOException when the body cannot be read or the value is unreasonably large
+     */
+    public String value() throws IOException {
+      final byte[] bytes = content.readNBytes(MAX_FIELD_SIZE + 1);
+      if (bytes.length > MAX_FIELD_SIZE) {
+        throw new IOException(
+            "form field %s is larger than %d bytes".formatted(name, MAX_FIELD_SIZE));
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private final InputStream in;
+  private final byte[] delimiter;
+  private final byte[] buffer = new byte[MAX_FIELD_SIZE * 2];
+  private int pos;
+  private int limit;
+
+  /** bytes read from the body so far */
+  private long consumed;
+
+  /** no delimiter starts before this index, so buffered bytes are only searched once */
+  private int scanned;
+
+  private boolean eof;
+  private boolean started;
+  private boolean finished;
+  private PartStream current;
+
+  /**
+   * @param body raw request body
+   * @param contentType content type header of the request, it carries the boundary
+   * @throws IllegalArgumentException when the content type is not multipart with a boundary
+   */
+  public MultipartStreamReader(final InputStream body, final String contentType) {
+    final String boundary = boundary(contentType);
+    if (boundary == null) {
+      throw new IllegalArgumentException(
+          "expected a multipart/form-data request but had content type %s".formatted(contentType));
+    }
+    this.in = body;
+    this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    // the first boundary has no leading line break, pretend it does so every boundary looks alike
+    buffer[0] = '\r';
+    buffer[1] = '\n';
+    limit = 2;
+  }
+
+  /**
+   * moves to the next part, anything left unread in the current part is skipped
+   *
+   * @return the next part or null when the closing boundary has been read
+   * @throws IOException when the body cannot be read or is not valid multipart
+   */
+  public Part next() throws IOException {
+    if (finished) {
+      return null;
+    }
+    if (!started) {
+      // skip the preamble
+      new PartStream().skipToEnd();
+      started = true;
+    } else if (current != null) {
+      current.skipToEnd();
+    }
+    current = null;
+    ensure(2);
+    if (limit - pos >= 2 && buffer[pos] == '-' && buffer[pos + 1] == '-') {
+      finished = true;
+      return null;
+    }
+    // rest of the boundary line, usually empty
+    readLine();
+    String name = null;
+    String fileName = null;
+    String line;
+    while (!(line = readLine()).isEmpty()) {
+      final int colon = line.indexOf(':');
+      if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("content-disposition")) {
+        name = parameter(line, "name");
+        fileName = parameter(line, "filename");
+      }
+    }
+    current = new PartStream();
+    return new Part(name, fileName, current);
+  }
+
+  /**
+   * @return offset in the body of the next byte that has not been handed out, right after {@link
+   *     #next()} this is where the content of the part starts
+   */
+  long position() {
+    return consumed - (limit - pos);
+  }
+
+  private static String boundary(final String contentType) {
+    if (contentType == null || !contentType.toLowerCase().startsWith("multipart/")) {
+      return null;
+    }
+    final String boundary = parameter(contentType, "boundary");
+    return boundary == null || boundary.isEmpty() ? null : boundary;
+  }
+
+  /** finds a parameter in a header value such as form-data; name="a"; filename="b" */
+  private static String parameter(final String header, final String key) {
+    for (String token : header.split(";")) {
+      final int eq = token.indexOf('=');
+      if (eq < 0 || !token.substring(0, eq).trim().equalsIgnoreCase(key)) {
+        continue;
+      }
+      final String value = token.substring(eq + 1).trim();
+      if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+        return value.substring(1, value.length() - 1);
+      }
+      return value;
+    }
+    return null;
+  }
+
+  /** makes sure at least n bytes are buffered unless the body ends first */
+  private void ensure(final int n) throws IOException {
+    if (limit - pos >= n || eof) {
+      return;
+    }
+    if (pos > 0) {
+      System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+      limit -= pos;
+      scanned = Math.max(0, scanned - pos);
+      pos = 0;
+    }
+    while (limit < n) {
+      final int read = in.read(buffer, limit, buffer.length - limit);
+      if (read < 0) {
+        eof = true;
+        return;
+      }
+      limit += read;
+      consumed += read;
+    }
+  }
+
+  private String readLine() throws IOException {
+    final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true) {
+      ensure(2);
+      if (limit - pos < 2) {
+        throw new EOFException("multipart body ended inside the part headers");
+      }
+      if (buffer[pos] == '\r' && buffer[pos + 1] == '\n') {
+        pos += 2;
+        return line.toString(StandardCharsets.UTF_8);
+      }
+      line.write(buffer[pos++]);
+      if (line.size() > MAX_FIELD_SIZE) {
+        throw new IOException(
+            "multipart header line is larger than %d bytes".formatted(MAX_FIELD_SIZE));
+      }
+    }
+  }
+
+  /**
+   * position of the delimiter in the buffered bytes or -1, only the bytes not searched by an earlier
+   * call are searched, plus the delimiter length - 1 before them that a delimiter may start in
+   */
+  private int indexOfDelimiter() {
+    final int last = limit - delimiter.length;
+    outer:
+    for (int i = Math.max(pos, scanned); i <= last; i++) {
+      for (int j = 0; j < delimiter.length; j++) {
+        if (buffer[i + j] != delimiter[j]) {
+          continue outer;
+        }
+      }
+      scanned = i;
+      return i;
+    }
+    scanned = Math.max(scanned, last + 1);
+    return -1;
+  }
+
+  /** body of a part, it ends right before the next delimiter */
+  private class PartStream extends InputStream {
+    private boolean done;
+
+    @Override
+    public int read() throws IOException {
+      final byte[] one = new byte[1];
+      final int read = read(one, 0, 1);
+      return read < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      while (true) {
+        final int delimiterAt = indexOfDelimiter();
+        final int available;
+        if (delimiterAt == pos) {
+          pos += delimiter.length;
+          done = true;
+          return -1;
+        } else if (delimiterAt > pos) {
+          available = delimiterAt - pos;
+        } else {
+          // keep enough bytes back to recognise a delimiter that straddles the next read
+          available = limit - pos - (delimiter.length - 1);
+        }
+        if (available > 0) {
+          final int n = Math.min(len, available);
+          System.arraycopy(buffer, pos, b, off, n);
+          pos += n;
+          return n;
+        }
+        if (eof) {
+          throw new EOFException("multipart body ended before the closing boundary");
+        }
+        ensure(limit - pos + 1);
+      }
+    }
+
+    void skipToEnd() throws IOException {
+      final byte[] skip = new byte[8192];
+      while (read(skip, 0, skip.length) >= 0) {
+        // discard
+      }
+    }
+  }
+}
@@ -41,6 +41,7 @@ public class PostIOStat implements Handler {
         return;
       } catch (Exception ex) {
         logger.log(Level.SEVERE, "error reading uploaded file", ex);
+        ReportCacheFilter.doNotCache(ctx);
         ctx.html("<html><body>" + ex.getMessage() + "</body>");
         return;
       }
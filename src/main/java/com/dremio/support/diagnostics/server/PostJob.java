@@ -0,0 +1,80 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.shared.UsageEntry;
+import com.dremio.support.diagnostics.shared.UsageLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * queues a queries.json analysis and answers as soon as the upload has arrived. Browsers are
+ * redirected to the report url, which shows the progress until the report is ready, other clients
+ * get the job id and urls as json with a 202.
+ */
+public class PostJob implements Handler {
+  private static final Logger logger = Logger.getLogger(PostJob.class.getName());
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final AnalysisJobQueue queue;
+  private final UsageLogger usageLogger;
+
+  public PostJob(final AnalysisJobQueue queue, final UsageLogger usageLogger) {
+    this.queue = queue;
+    this.usageLogger = usageLogger;
+  }
+
+  @Override
+  public void handle(@NotNull Context ctx) throws Exception {
+    var start = Instant.now();
+    try (InputStream body = ctx.req().getInputStream()) {
+      final AnalysisJob job =
+          queue.submitQueriesJson(
+              body, ctx.req().getContentType(), ctx.req().getContentLengthLong());
+      final String statusUrl = "/jobs/" + job.getId();
+      final String reportUrl = statusUrl + "/report";
+      final String accept = ctx.header("Accept");
+      if (accept != null && accept.contains("text/html")) {
+        ctx.redirect(reportUrl, HttpStatus.SEE_OTHER);
+        return;
+      }
+      ctx.status(HttpStatus.ACCEPTED);
+      ctx.contentType("application/json");
+      ctx.result(
+          MAPPER.writeValueAsString(
+              Map.of("id", job.getId(), "status", statusUrl, "report", reportUrl)));
+    } catch (AnalysisJobQueue.RejectedException ex) {
+      logger.warning("rejected analysis job: " + ex.getMessage());
+      ctx.status(ex.getStatus());
+      ctx.header("Retry-After", "60");
+      ctx.html("<html><body>" + ex.getMessage() + "</body>");
+    } catch (Exception ex) {
+      logger.log(Level.SEVERE, "unable to queue analysis job", ex);
+      ctx.status(HttpStatus.BAD_REQUEST);
+      ctx.html("<html><body>" + ex.getMessage() + "</body>");
+    } finally {
+      var end = Instant.now();
+      usageLogger.LogUsage(
+          new UsageEntry(
+              start.getEpochSecond(), end.getEpochSecond(), "queries-json-job", ctx.ip()));
+    }
+  }
+}
@@ -41,28 +41,35 @@ public class PostProfile implements Handler {
   @Override
   public void handle(@NotNull Context ctx) throws Exception {
     var start = Instant.now();
-    var uploadedFiles = ctx.uploadedFiles();
-    if (uploadedFiles.size() != 1) {
-      throw new IllegalArgumentException(
-          "must upload  only one file but had %d".formatted(uploadedFiles.size()));
-    }
-    var file = uploadedFiles.get(0);
-
-    try (InputStream is = file.content()) {
+    StreamedResponse output = null;
+    // read the body as it arrives instead of ctx.uploadedFiles() so the profile is parsed while it
+    // is uploaded and nothing is spooled to disk
+    try (InputStream body = ctx.req().getInputStream()) {
+      final MultipartStreamReader multipart =
+          new MultipartStreamReader(body, ctx.req().getContentType());
+      MultipartStreamReader.Part file;
+      do {
+        file = multipart.next();
+      } while (file != null && !file.isFile());
+      if (file == null) {
+        throw new IllegalArgumentException("must upload only one file but had 0");
+      }
+      final InputStream is = file.content();
       ProfileProvider profileProvider =
-          ArgSetup.getProfileProvider(new PathAndStream(Paths.get(file.filename()), is));
+          ArgSetup.getProfileProvider(new PathAndStream(Paths.get(file.fileName()), is));
       ProfileJSON p = profileProvider.getProfile();
 
       // now we just always enable this
       final boolean showPlanDetails = true;
       final boolean showConvertToRel = true;
-      final String text =
-          new SingleProfileJsonHtmlReport(showPlanDetails, showConvertToRel, p).getText();
-      ctx.html(text);
+      // stream the html into the response rather than building it in memory first
+      ctx.contentType("text/html; charset=utf-8");
+      output = new StreamedResponse(ctx);
+      new SingleProfileJsonHtmlReport(showPlanDetails, showConvertToRel, p).writeTo(output);
       return;
     } catch (Exception e) {
       logger.log(Level.SEVERE, "error reading uploaded file", e);
-      ctx.html("<html><body>" + e.getMessage() + "</body>");
+      StreamedResponse.fail(ctx, output, e);
     } finally {
       logger.info("profile analysis report generated");
       var end = Instant.now();
@@ -13,6 +13,7 @@
  */
 package com.dremio.support.diagnostics.server;
 
+import com.dremio.support.diagnostics.profilejson.AnalysisExecutor;
 import com.dremio.support.diagnostics.profilejson.Difference;
 import com.dremio.support.diagnostics.profilejson.HtmlProfileComparisonReport;
 import com.dremio.support.diagnostics.profilejson.ProfileDifferenceReport;
@@ -43,6 +44,7 @@ public class PostProfiles implements Handler {
   @Override
   public void handle(@NotNull Context ctx) throws Exception {
     var start = Instant.now();
+    StreamedResponse output = null;
     try {
       final var files = ctx.uploadedFiles();
       if (files.isEmpty()) {
@@ -69,9 +71,11 @@ public class PostProfiles implements Handler {
           ArgSetup.getProfileProvider(
               new PathAndStream(Paths.get(profile2.filename()), profile2.content()));
       ProfileDifferenceReport differ = new ProfileDifferenceReport();
-      // retrieve this ahead of time, you can only parse them once
-      ProfileJSON profile1Parsed = profile1Provider.getProfile();
-      ProfileJSON profile2Parsed = profile2Provider.getProfile();
+      // retrieve this ahead of time, you can only parse them once, both are parsed at the same time
+      AnalysisExecutor.Both<ProfileJSON, ProfileJSON> parsed =
+          AnalysisExecutor.invokeBoth(profile1Provider::getProfile, profile2Provider::getProfile);
+      ProfileJSON profile1Parsed = parsed.first();
+      ProfileJSON profile2Parsed = parsed.second();
       // now generate a list of diffs between the two profiles
       List<Difference> diffs =
           differ.getDifferences(
@@ -89,11 +93,12 @@ public class PostProfiles implements Handler {
               profile1Parsed,
               profile2Parsed,
               diffs);
-      String report = htmlProfileComparisonReport.getText();
-      ctx.html(report);
+      ctx.contentType("text/html; charset=utf-8");
+      output = new StreamedResponse(ctx);
+      htmlProfileComparisonReport.writeTo(output);
     } catch (Exception ex) {
       logger.log(Level.SEVERE, "report unable to read profile.json", ex);
-      ctx.html("<html><body>" + ex.getMessage() + "</body>");
+      StreamedResponse.fail(ctx, output, ex);
     } finally {
       logger.info("profile comparison report generated");
       var end = Instant.now();
@@ -13,32 +13,27 @@
  */
 package com.dremio.support.diagnostics.server;
 
-import com.dremio.support.diagnostics.queriesjson.QueriesJsonFileParser;
-import com.dremio.support.diagnostics.queriesjson.QueriesJsonHtmlReport;
 import com.dremio.support.diagnostics.queriesjson.ReadArchive;
-import com.dremio.support.diagnostics.queriesjson.SearchedFile;
-import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
-import com.dremio.support.diagnostics.queriesjson.reporters.*;
-import com.dremio.support.diagnostics.shared.StreamWriterReporter;
 import com.dremio.support.diagnostics.shared.UsageEntry;
 import com.dremio.support.diagnostics.shared.UsageLogger;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
+import io.javalin.http.HttpStatus;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.security.InvalidParameterException;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * renders the queries.json report while the upload arrives. The upload is read in the order it is
+ * sent so the form fields (window, limit, start_date, end_date and so on) have to come before the
+ * file, a field sent after the file is rejected with a 400 rather than ignored. /jobs/queriesjson
+ * spools the upload first and takes the fields in any order.
+ */
 public class PostQueriesJson implements Handler {
   private static final Logger logger = Logger.getLogger(PostQueriesJson.class.getName());
   private final UsageLogger usageLogger;
@@ -50,170 +45,54 @@ public class PostQueriesJson implements Handler {
   @Override
   public void handle(@NotNull Context ctx) throws Exception {
     var functionStart = Instant.now();
-    var files = ctx.uploadedFiles();
-    if (files.size() != 1) {
-      throw new InvalidParameterException("expected one file but had %d".formatted(files.size()));
-    }
-    var file = files.get(0);
-    var fields = ctx.formParamMap();
-    try (InputStream is = file.content()) {
-
-      try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-        final StreamWriterReporter reporter = new StreamWriterReporter(baos);
-        var windowStr = "86400000";
-        final List<String> windowArray = fields.getOrDefault("window", Arrays.asList("86400000"));
-        if (windowArray.size() == 1) {
-          windowStr = windowArray.get(0);
-        }
-        int windowRaw;
-        try {
-          windowRaw = Integer.parseInt(windowStr);
-        } catch (NumberFormatException ex) {
-          windowRaw = 86400000;
-          logger.warning("unable to parse number %s due to error %s".formatted(windowStr, ex));
+    StreamedResponse output = null;
+    // read the body as it arrives instead of ctx.uploadedFiles() so parsing overlaps with the
+    // upload and nothing is spooled to disk, the form fields are sent before the file
+    try (InputStream body = ctx.req().getInputStream()) {
+      final MultipartStreamReader multipart =
+          new MultipartStreamReader(body, ctx.req().getContentType());
+      final Map<String, List<String>> fields = new HashMap<>();
+      MultipartStreamReader.Part file = null;
+      MultipartStreamReader.Part part;
+      while (null != (part = multipart.next())) {
+        if (part.isFile()) {
+          file = part;
+          break;
         }
-        final int window = windowRaw;
-        final ZoneId z = ZoneId.of("UTC");
-
-        final int thisYear = ZonedDateTime.now(z).getYear();
-        String startDate = "%d-01-01".formatted(thisYear - 1);
-        final List<String> startDateParams =
-            fields.getOrDefault("start_date", List.of("%d-01-01".formatted(thisYear - 1)));
-        if (startDateParams.size() == 1) {
-          startDate = startDateParams.get(0);
-        }
-        String startTime = "00:00";
-        final List<String> startTimeParams = fields.getOrDefault("start_time", List.of("00:00"));
-        if (startTimeParams.size() == 1) {
-          startTime = startTimeParams.get(0);
-        }
-
-        String endDate = "%d-01-01".formatted(thisYear + 2);
-        final List<String> endDateParams =
-            fields.getOrDefault("end_date", List.of("%d-01-01".formatted(thisYear + 2)));
-        if (endDateParams.size() == 1) {
-          endDate = endDateParams.get(0);
-        }
-
-        String endTime = "00:00";
-        final List<String> endTimeParams = fields.getOrDefault("end_time", List.of("00:00"));
-        if (endTimeParams.size() == 1) {
-          endTime = endTimeParams.get(0);
-        }
-
-        Instant start = Instant.parse(String.format("%sT%s:00.000Z", startDate, startTime));
-        Instant end = Instant.parse(String.format("%sT%s:00.000Z", endDate, endTime));
-
-        final List<String> limitParams = fields.getOrDefault("limit", List.of("5"));
-        final int limit;
-        if (limitParams.size() == 1) {
-          var limitRaw = limitParams.get(0);
-          limit = Integer.parseInt(limitRaw);
-        } else {
-          limit = 5;
-        }
-        var reporters = new ArrayList<QueryReporter>();
-        final ConcurrentQueriesReporter concurrentQueriesReporter =
-            new ConcurrentQueriesReporter(window);
-        reporters.add(concurrentQueriesReporter);
-        final ConcurrentQueueReporter concurrentQueueReporter = new ConcurrentQueueReporter(window);
-        reporters.add(concurrentQueueReporter);
-        final ConcurrentSchemaOpsReporter concurrentSchemaOpsReporter =
-            new ConcurrentSchemaOpsReporter(window);
-        reporters.add(concurrentSchemaOpsReporter);
-        final MaxMemoryQueriesReporter maxMemoryQueriesReporter =
-            new MaxMemoryQueriesReporter(limit);
-        reporters.add(maxMemoryQueriesReporter);
-        final MaxCPUQueriesReporter maxCPUQueriesReporter = new MaxCPUQueriesReporter(limit);
-        reporters.add(maxCPUQueriesReporter);
-        final MaxTimeReporter maxTimeReporter = new MaxTimeReporter(window);
-        reporters.add(maxTimeReporter);
-        final MemoryAllocatedReporter memoryAllocatedReporter = new MemoryAllocatedReporter(window);
-        reporters.add(memoryAllocatedReporter);
-        final RequestCounterReporter requestCounterReporter = new RequestCounterReporter();
-        reporters.add(requestCounterReporter);
-        final RequestsByQueueReporter requestsByQueueReporter = new RequestsByQueueReporter();
-        reporters.add(requestsByQueueReporter);
-        final SlowestMetadataQueriesReporter slowestMetadataQueriesReporter =
-            new SlowestMetadataQueriesReporter(limit);
-        reporters.add(slowestMetadataQueriesReporter);
-        final SlowestPlanningQueriesReporter slowestPlanningQueriesReporter =
-            new SlowestPlanningQueriesReporter(limit);
-        reporters.add(slowestPlanningQueriesReporter);
-        final StartFinishReporter startFinishReporter = new StartFinishReporter();
-        reporters.add(startFinishReporter);
-        final TotalQueriesReporter totalQueriesReporter = new TotalQueriesReporter();
-        reporters.add(totalQueriesReporter);
-        final FailedQueriesReporter failedQueriesReporter = new FailedQueriesReporter(limit);
-        reporters.add(failedQueriesReporter);
-        var filter = new DateRangeQueryFilter(start.toEpochMilli(), end.toEpochMilli());
-        var archive = new ReadArchive(filter);
-        var cpus = Runtime.getRuntime().availableProcessors() / 2;
-        var tmpFile = Files.createTempFile("dqd", "tmp");
-        try (FileOutputStream os = new FileOutputStream(tmpFile.toFile())) {
-          var buff = new byte[65536];
-          IOUtils.copyLarge(is, os, buff);
-        }
-        List<SearchedFile> filesSearched = new ArrayList<SearchedFile>();
-        if (file.filename().endsWith(".tgz") || file.filename().endsWith(".tar.gz")) {
-          filesSearched = archive.readTarGz(tmpFile.toString(), reporters, cpus).stream().toList();
-        } else if (file.filename().endsWith(".tar.xz")) {
-          filesSearched = archive.readTarXz(tmpFile.toString(), reporters, cpus).stream().toList();
-        } else if (file.filename().endsWith(".tar.bzip2")) {
-          filesSearched =
-              archive.readTarBzip2(tmpFile.toString(), reporters, cpus).stream().toList();
-        } else if (file.filename().endsWith(".tar")) {
-          filesSearched = archive.readTar(tmpFile.toString(), reporters, cpus).stream().toList();
-        } else if (file.filename().endsWith(".zip")) {
-          filesSearched = archive.readZip(tmpFile.toString(), reporters, cpus).stream().toList();
-        } else if (file.filename().endsWith(".gz")) {
-          filesSearched.add(archive.parseGzip(tmpFile.toString(), tmpFile, reporters));
-        } else if (file.filename().endsWith(".bzip2")) {
-          filesSearched.add(archive.parseBzip2(tmpFile.toString(), reporters));
-        } else if (file.filename().endsWith(".json")) {
-          try (final InputStream newInputStream = Files.newInputStream(tmpFile)) {
-            filesSearched.add(
-                QueriesJsonFileParser.parseFile(
-                    tmpFile.toString(),
-                    newInputStream,
-                    reporters,
-                    new DateRangeQueryFilter(start.toEpochMilli(), end.toEpochMilli())));
-          }
-        } else {
-          throw new RuntimeException(
-              "unknown extension for file "
-                  + file.filename()
-                  + " only supported extensions are .tar, .tar.gz, .tgz,"
-                  + " tar.xz, tar.bzip2, .bzip2, .gz, .zip and .json");
-        }
-        new com.dremio.support.diagnostics.queriesjson.Exec()
-            .run(
-                new QueriesJsonHtmlReport(
-                    filesSearched,
-                    start,
-                    end,
-                    window,
-                    concurrentQueriesReporter,
-                    concurrentQueueReporter,
-                    concurrentSchemaOpsReporter,
-                    maxMemoryQueriesReporter,
-                    maxCPUQueriesReporter,
-                    maxTimeReporter,
-                    memoryAllocatedReporter,
-                    requestCounterReporter,
-                    requestsByQueueReporter,
-                    slowestMetadataQueriesReporter,
-                    slowestPlanningQueriesReporter,
-                    startFinishReporter,
-                    totalQueriesReporter,
-                    failedQueriesReporter,
-                    limit),
-                reporter);
-        ctx.html(baos.toString(StandardCharsets.UTF_8));
+        fields.computeIfAbsent(part.name(), k -> new ArrayList<>()).add(part.value());
+      }
+      if (file == null) {
+        throw new InvalidParameterException("expected one file but had 0");
+      }
+      final QueriesJsonAnalysis analysis = new QueriesJsonAnalysis(fields);
+      var cpus = Runtime.getRuntime().availableProcessors() / 2;
+      analysis.read(
+          file.fileName(),
+          file.content(),
+          cpus,
+          ReadArchive.DEFAULT_MAX_BUFFERED_BYTES,
+          x -> {},
+          List.of());
+      part = multipart.next();
+      if (part != null && part.isFile()) {
+        throw new InvalidParameterException("expected one file but had more than one");
       }
+      if (part != null) {
+        // the report was already read with the fields sent before the file
+        throw new BadRequestResponse(
+            "form field %s was sent after the file, form fields have to be sent before the file"
+                .formatted(part.name()));
+      }
+      // stream the html into the response rather than building it in memory first
+      ctx.contentType("text/html; charset=utf-8");
+      output = new StreamedResponse(ctx);
+      analysis.writeTo(output);
     } catch (Exception ex) {
       logger.log(Level.SEVERE, "unexpected error", ex);
-      ctx.html("<html><body>" + ex.getMessage() + "</body>");
+      if (ex instanceof BadRequestResponse) {
+        ctx.status(HttpStatus.BAD_REQUEST);
+      }
+      StreamedResponse.fail(ctx, output, ex);
     } finally {
       logger.info("queries.json report generated");
       var end = Instant.now();
@@ -83,7 +83,9 @@ public class PostReproduction implements Handler {
           try (ZipOutputStream zos = new ZipOutputStream(baos)) {
             ReproProfileParserImpl profileParser = ArgSetup.getReproProfile(records, columnDef);
             ProfileProvider profileProvider =
-                ArgSetup.getProfileProvider(new PathAndStream(Paths.get(file.filename()), is));
+                ArgSetup.getProfileProvider(
+                    new PathAndStream(Paths.get(file.filename()), is),
+                    ReproProfileParserImpl.PROFILE_SECTIONS);
             final SqlOutput[] sqlOutput =
                 ArgSetup.getSqlOutput(
                     null, null, null, zos, null, null, timeout, nasSourceBaseDir, false);
@@ -16,7 +16,6 @@ package com.dremio.support.diagnostics.server;
 import com.dremio.support.diagnostics.top.TopExec;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -33,14 +32,16 @@ public class PostTop implements Handler {
           "must upload  only one file but had %d".formatted(uploadedFiles.size()));
     }
     var file = uploadedFiles.get(0);
+    StreamedResponse output = null;
     try (InputStream is = file.content()) {
-      try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-        TopExec.exec(is, baos);
-        ctx.html(baos.toString("UTF-8"));
+      try {
+        ctx.contentType("text/html; charset=utf-8");
+        output = new StreamedResponse(ctx);
+        TopExec.exec(is, output);
         return;
       } catch (Exception ex) {
         logger.log(Level.SEVERE, "error reading uploaded file", ex);
-        ctx.html("<html><body>" + ex.getMessage() + "</body>");
+        StreamedResponse.fail(ctx, output, ex);
         return;
       }
     }
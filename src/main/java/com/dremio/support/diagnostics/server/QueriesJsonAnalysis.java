@@ -0,0 +1,209 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.dremio.support.diagnostics.queriesjson.Exec;
+import com.dremio.support.diagnostics.queriesjson.QueriesJsonHtmlReport;
+import com.dremio.support.diagnostics.queriesjson.ReadArchive;
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.*;
+import com.dremio.support.diagnostics.shared.StreamWriterReporter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The queries.json report of the web server, the form values are read once and the upload is then
+ * visited by every reporter before the html is written. Shared by the synchronous {@link
+ * PostQueriesJson} handler and the queries.json jobs of the {@link AnalysisJobQueue}.
+ */
+public class QueriesJsonAnalysis {
+  private static final Logger logger = Logger.getLogger(QueriesJsonAnalysis.class.getName());
+
+  private final Instant start;
+  private final Instant end;
+  private final int window;
+  private final int limit;
+  private final ConcurrentQueriesReporter concurrentQueriesReporter;
+  private final ConcurrentQueueReporter concurrentQueueReporter;
+  private final ConcurrentSchemaOpsReporter concurrentSchemaOpsReporter;
+  private final MaxMemoryQueriesReporter maxMemoryQueriesReporter;
+  private final MaxCPUQueriesReporter maxCPUQueriesReporter;
+  private final MaxTimeReporter maxTimeReporter;
+  private final MemoryAllocatedReporter memoryAllocatedReporter;
+  private final RequestCounterReporter requestCounterReporter;
+  private final RequestsByQueueReporter requestsByQueueReporter;
+  private final SlowestMetadataQueriesReporter slowestMetadataQueriesReporter;
+  private final SlowestPlanningQueriesReporter slowestPlanningQueriesReporter;
+  private final StartFinishReporter startFinishReporter;
+  private final TotalQueriesReporter totalQueriesReporter;
+  private final FailedQueriesReporter failedQueriesReporter;
+  private final QueryShapesReporter queryShapesReporter;
+  private final LatencyQuantilesReporter latencyQuantilesReporter;
+  private final List<QueryReporter> reporters = new ArrayList<>();
+  private List<SearchedFile> filesSearched = List.of();
+
+  /**
+   * @param fields form fields of the upload, window, limit, start_date, start_time, end_date and
+   *     end_time are read and every missing one gets its default
+   */
+  public QueriesJsonAnalysis(final Map<String, List<String>> fields) {
+    var windowStr = "86400000";
+    final List<String> windowArray = fields.getOrDefault("window", Arrays.asList("86400000"));
+    if (windowArray.size() == 1) {
+      windowStr = windowArray.get(0);
+    }
+    int windowRaw;
+    try {
+      windowRaw = Integer.parseInt(windowStr);
+    } catch (NumberFormatException ex) {
+      windowRaw = 86400000;
+      logger.warning("unable to parse number %s due to error %s".formatted(windowStr, ex));
+    }
+    this.window = windowRaw;
+    final ZoneId z = ZoneId.of("UTC");
+
+    final int thisYear = ZonedDateTime.now(z).getYear();
+    String startDate = "%d-01-01".formatted(thisYear - 1);
+    final List<String> startDateParams =
+        fields.getOrDefault("start_date", List.of("%d-01-01".formatted(thisYear - 1)));
+    if (startDateParams.size() == 1) {
+      startDate = startDateParams.get(0);
+    }
+    String startTime = "00:00";
+    final List<String> startTimeParams = fields.getOrDefault("start_time", List.of("00:00"));
+    if (startTimeParams.size() == 1) {
+      startTime = startTimeParams.get(0);
+    }
+
+    String endDate = "%d-01-01".formatted(thisYear + 2);
+    final List<String> endDateParams =
+        fields.getOrDefault("end_date", List.of("%d-01-01".formatted(thisYear + 2)));
+    if (endDateParams.size() == 1) {
+      endDate = endDateParams.get(0);
+    }
+
+    String endTime = "00:00";
+    final List<String> endTimeParams = fields.getOrDefault("end_time", List.of("00:00"));
+    if (endTimeParams.size() == 1) {
+      endTime = endTimeParams.get(0);
+    }
+
+    this.start = Instant.parse(String.format("%sT%s:00.000Z", startDate, startTime));
+    this.end = Instant.parse(String.format("%sT%s:00.000Z", endDate, endTime));
+
+    final List<String> limitParams = fields.getOrDefault("limit", List.of("5"));
+    if (limitParams.size() == 1) {
+      var limitRaw = limitParams.get(0);
+      this.limit = Integer.parseInt(limitRaw);
+    } else {
+      this.limit = 5;
+    }
+    concurrentQueriesReporter = add(new ConcurrentQueriesReporter(window));
+    concurrentQueueReporter = add(new ConcurrentQueueReporter(window));
+    concurrentSchemaOpsReporter = add(new ConcurrentSchemaOpsReporter(window));
+    maxMemoryQueriesReporter = add(new MaxMemoryQueriesReporter(limit));
+    maxCPUQueriesReporter = add(new MaxCPUQueriesReporter(limit));
+    maxTimeReporter = add(new MaxTimeReporter(window));
+    memoryAllocatedReporter = add(new MemoryAllocatedReporter(window));
+    requestCounterReporter = add(new RequestCounterReporter());
+    requestsByQueueReporter = add(new RequestsByQueueReporter());
+    slowestMetadataQueriesReporter = add(new SlowestMetadataQueriesReporter(limit));
+    slowestPlanningQueriesReporter = add(new SlowestPlanningQueriesReporter(limit));
+    startFinishReporter = add(new StartFinishReporter());
+    totalQueriesReporter = add(new TotalQueriesReporter());
+    failedQueriesReporter = add(new FailedQueriesReporter(limit));
+    queryShapesReporter = add(new QueryShapesReporter());
+    latencyQuantilesReporter = add(new LatencyQuantilesReporter(window));
+  }
+
+  private <T extends QueryReporter> T add(final T reporter) {
+    reporters.add(reporter);
+    return reporter;
+  }
+
+  /**
+   * runs every reporter over the upload
+   *
+   * @param fileName name of the uploaded file, only the extension is used
+   * @param is upload, read once from start to end on the calling thread
+   * @param threads number of threads parsing the data
+   * @param maxBufferedBytes heap budget for archive entries waiting to be parsed
+   * @param onSearched told about every file as soon as it has been searched
+   * @param extra reporters run alongside the report's own, they must be thread safe
+   * @throws IOException if the upload cannot be read
+   * @throws InterruptedException if there is a threading problem
+   * @throws ExecutionException if there is a thread pool issue
+   */
+  public void read(
+      final String fileName,
+      final InputStream is,
+      final int threads,
+      final int maxBufferedBytes,
+      final Consumer<SearchedFile> onSearched,
+      final Collection<QueryReporter> extra)
+      throws IOException, InterruptedException, ExecutionException {
+    final List<QueryReporter> all = new ArrayList<>(reporters);
+    all.addAll(extra);
+    final var filter = new DateRangeQueryFilter(start.toEpochMilli(), end.toEpochMilli());
+    final var archive = new ReadArchive(filter, maxBufferedBytes, onSearched);
+    filesSearched = archive.readStream(fileName, is, all, threads).stream().toList();
+  }
+
+  /**
+   * writes the html report of everything read so far
+   *
+   * @param out stream the html is written to, it is not closed
+   * @throws IOException when the stream cannot be written to
+   */
+  public void writeTo(final OutputStream out) throws IOException {
+    new Exec()
+        .run(
+            new QueriesJsonHtmlReport(
+                filesSearched,
+                start,
+                end,
+                window,
+                concurrentQueriesReporter,
+                concurrentQueueReporter,
+                concurrentSchemaOpsReporter,
+                maxMemoryQueriesReporter,
+                maxCPUQueriesReporter,
+                maxTimeReporter,
+                memoryAllocatedReporter,
+                requestCounterReporter,
+                requestsByQueueReporter,
+                slowestMetadataQueriesReporter,
+                slowestPlanningQueriesReporter,
+                startFinishReporter,
+                totalQueriesReporter,
+                failedQueriesReporter,
+                queryShapesReporter,
+                latencyQuantilesReporter,
+                limit),
+            new StreamWriterReporter(out));
+  }
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rendered reports of recent uploads, keyed by a hash of the upload, see {@link ReportCacheFilter}.
+ *
+ * <p>Reports are kept in memory in a least recently used cache bounded by their total size and
+ * dropped once they are older than the time to live. When a spill directory is configured the
+ * reports pushed out of memory by newer ones are written there instead of being dropped, that
+ * directory is bounded separately and is emptied of spilled reports when the cache is created.
+ */
+public class ReportCache {
+  private static final Logger LOGGER = Logger.getLogger(ReportCache.class.getName());
+
+  private static final String SPILL_SUFFIX = ".report";
+
+  /**
+   * a rendered report
+   *
+   * @param contentType content type of the response
+   * @param contentEncoding content encoding of the body, null when it is not compressed
+   * @param body response body
+   */
+  public record Report(String contentType, String contentEncoding, byte[] body) {}
+
+  /**
+   * @param hits lookups answered from memory or from the spill directory
+   * @param diskHits lookups answered from the spill directory
+   * @param misses lookups that had to render the report
+   * @param bypassed uploads too large, without a content length or over the buffer budget, never
+   *     looked up
+   * @param evictions reports pushed out of memory by size or age
+   * @param entries reports in memory
+   * @param bytes size of the reports in memory
+   * @param spilledEntries reports in the spill directory
+   * @param spilledBytes size of the reports in the spill directory
+   */
+  public record Stats(
+      long hits,
+      long diskHits,
+      long misses,
+      long bypassed,
+      long evictions,
+      long entries,
+      long bytes,
+      long spilledEntries,
+      long spilledBytes) {}
+
+  private record Entry(Report report, long writtenNanos) {}
+
+  private final Cache<String, Entry> memory;
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final Ticker ticker;
+  private final Path spillDir;
+  private final long maxSpillBytes;
+  // spilled reports and their size, oldest first
+  private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<>();
+  private long spilledBytes;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder diskHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder bypassed = new LongAdder();
+
+  /**
+   * @param maxBytes total size of the reports kept in memory
+   * @param ttl how long a report is served after it was rendered
+   * @param spillDir directory reports evicted from memory are written to, null to drop them
+   * @param maxSpillBytes total size of the reports kept in the spill directory
+   * @param ticker time source
+   * @throws IOException when the spill directory cannot be created or cleaned
+   */
+  public ReportCache(
+      final long maxBytes,
+      final Duration ttl,
+      final Path spillDir,
+      final long maxSpillBytes,
+      final Ticker ticker)
+      throws IOException {
+    this.maxBytes = maxBytes;
+    this.ttlNanos = ttl.toNanos();
+    this.ticker = ticker;
+    this.spillDir = spillDir;
+    this.maxSpillBytes = maxSpillBytes;
+    if (spillDir != null) {
+      Files.createDirectories(spillDir);
+      // entries are only tracked for the life of the process, leftovers can never be served
+      try (var files = Files.list(spillDir)) {
+        for (final Path file : files.filter(x -> x.toString().endsWith(SPILL_SUFFIX)).toList()) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    this.memory =
+        CacheBuilder.newBuilder()
+            // a single segment so one large report can use the whole budget
+            .concurrencyLevel(1)
+            .maximumWeight(maxBytes)
+            .<String, Entry>weigher((k, v) -> v.report().body().length)
+            .expireAfterWrite(ttl)
+            .ticker(ticker)
+            .removalListener(this::onRemoval)
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * @return the largest report worth keeping, larger ones would flush most of the cache
+   */
+  public long maxEntryBytes() {
+    return maxBytes / 4;
+  }
+
+  /**
+   * @param key hash of the upload
+   * @return the report rendered for the same upload, if it is still cached
+   */
+  public Optional<Report> get(final String key) {
+    Entry entry = memory.getIfPresent(key);
+    if (entry != null && expired(entry)) {
+      memory.invalidate(key);
+      entry = null;
+    }
+    if (entry != null) {
+      hits.increment();
+      return Optional.of(entry.report());
+    }
+    final Entry unspilled = unspill(key);
+    if (unspilled != null && !expired(unspilled)) {
+      diskHits.increment();
+      hits.increment();
+      memory.put(key, unspilled);
+      return Optional.of(unspilled.report());
+    }
+    misses.increment();
+    return Optional.empty();
+  }
+
+  /**
+   * keeps a rendered report, reports larger than {@link #maxEntryBytes()} are ignored
+   *
+   * @param key hash of the upload
+   * @param report rendered report
+   */
+  public void put(final String key, final Report report) {
+    if (report.body().length > maxEntryBytes()) {
+      return;
+    }
+    memory.put(key, new Entry(report, ticker.read()));
+  }
+
+  /** counts an upload that was not looked up */
+  public void bypass() {
+    bypassed.increment();
+  }
+
+  /**
+   * @return hit, miss, eviction and size counts since the cache was created
+   */
+  public Stats stats() {
+    long bytes = 0;
+    for (final Entry entry : memory.asMap().values()) {
+      bytes += entry.report().body().length;
+    }
+    final long spilledEntries;
+    final long spilledSize;
+    synchronized (spilled) {
+      spilledEntries = spilled.size();
+      spilledSize = spilledBytes;
+    }
+    return new Stats(
+        hits.sum(),
+        diskHits.sum(),
+        misses.sum(),
+        bypassed.sum(),
+        memory.stats().evictionCount(),
+        memory.size(),
+        bytes,
+        spilledEntries,
+        spilledSize);
+  }
+
+  private boolean expired(final Entry entry) {
+    return ticker.read() - entry.writtenNanos() >= ttlNanos;
+  }
+
+  private void onRemoval(final RemovalNotification<String, Entry> notification) {
+    if (spillDir == null || notification.getCause() != RemovalCause.SIZE) {
+      return;
+    }
+    final Entry entry = notification.getValue();
+    if (entry == null || expired(entry)) {
+      return;
+    }
+    spill(notification.getKey(), entry);
+  }
+
+  private void spill(final String key, final Entry entry) {
+    final Path file = spillDir.resolve(key + SPILL_SUFFIX);
+    synchronized (spilled) {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+        out.writeLong(entry.writtenNanos());
+        writeNullable(out, entry.report().contentType());
+        writeNullable(out, entry.report().contentEncoding());
+        out.writeInt(entry.report().body().length);
+        out.write(entry.report().body());
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "unable to spill report to %s".formatted(file), e);
+        return;
+      }
+      final Long previous = spilled.put(key, (long) entry.report().body().length);
+      if (previous != null) {
+        spilledBytes -= previous;
+      }
+      spilledBytes += entry.report().body().length;
+      final Iterator<Map.Entry<String, Long>> oldest = spilled.entrySet().iterator();
+      while (spilledBytes > maxSpillBytes && oldest.hasNext()) {
+        final Map.Entry<String, Long> next = oldest.next();
+        oldest.remove();
+        spilledBytes -= next.getValue();
+        delete(spillDir.resolve(next.getKey() + SPILL_SUFFIX));
+      }
+    }
+  }
+
+  /** reads a spilled report back and removes it from the spill directory */
+  private Entry unspill(final String key) {
+    if (spillDir == null) {
+      return null;
+    }
+    final Path file = spillDir.resolve(key + SPILL_SUFFIX);
+    synchronized (spilled) {
+      final Long size = spilled.remove(key);
+      if (size == null) {
+        return null;
+      }
+      spilledBytes -= size;
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        final long writtenNanos = in.readLong();
+        final String contentType = readNullable(in);
+        final String contentEncoding = readNullable(in);
+        final byte[] body = in.readNBytes(in.readInt());
+        return new Entry(new Report(contentType, contentEncoding, body), writtenNanos);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "unable to read spilled report %s".formatted(file), e);
+        return null;
+      } finally {
+        delete(file);
+      }
+    }
+  }
+
+  private static void writeNullable(final DataOutputStream out, final String value)
+      throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void delete(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "unable to delete spilled report %s".formatted(file), e);
+    }
+  }
+}
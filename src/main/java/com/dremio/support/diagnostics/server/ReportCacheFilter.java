@@ -0,0 +1,500 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.javalin.http.Context;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.Part;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Answers repeated uploads from the {@link ReportCache} instead of parsing and rendering them again.
+ *
+ * <p>Uploads to the cached paths that declare a content length no larger than the configured limit
+ * are read into memory once and hashed part by part, so the random multipart boundary the browser
+ * picks does not change the key but every form field and the file name and content do. The parts
+ * handed to the handlers are views of that one copy. On a miss the handler runs against the
+ * buffered body and its response is copied into the cache as it is written. Larger uploads skip the
+ * cache and are still parsed while they are uploaded, the cache is off unless a size is configured
+ * because buffering delays parsing until the upload is complete.
+ *
+ * <p>Endpoints that do not stream their upload keep the request size limit they have without the
+ * cache, and the uploads buffered at the same time share one budget, uploads that would go over it
+ * skip the cache as well.
+ */
+public class ReportCacheFilter implements Filter {
+
+  /** the upload endpoints whose reports only depend on the upload */
+  public static final Set<String> CACHED_PATHS =
+      Set.of("/profile", "/profiles", "/queriesjson", "/simple-profile", "/iostat", "/ttop");
+
+  /** the cached paths whose handlers parse the upload while it arrives */
+  static final Set<String> STREAMED_PATHS = Set.of("/profile", "/queriesjson");
+
+  /** buffered uploads are held in a single array and addressed with int offsets */
+  public static final long MAX_UPLOAD_BYTES = Integer.MAX_VALUE - 8;
+
+  private static final String SKIP_ATTRIBUTE = ReportCacheFilter.class.getName() + ".skip";
+
+  private final ReportCache cache;
+  private final long maxUploadBytes;
+  private final long maxRequestBytes;
+  private final long maxBufferedBytes;
+  // size of the uploads currently buffered, guarded by this
+  private long bufferedBytes;
+
+  /**
+   * @param cache where rendered reports are kept
+   * @param maxUploadBytes largest upload that is buffered and looked up, at most {@link
+   *     #MAX_UPLOAD_BYTES}
+   * @param maxRequestBytes largest upload buffered for the paths not in {@link #STREAMED_PATHS}
+   * @param maxBufferedBytes total size of the uploads buffered at the same time
+   */
+  public ReportCacheFilter(
+      final ReportCache cache,
+      final long maxUploadBytes,
+      final long maxRequestBytes,
+      final long maxBufferedBytes) {
+    if (maxUploadBytes > MAX_UPLOAD_BYTES) {
+      throw new IllegalArgumentException(
+          "largest cached upload must be at most %d bytes but was %d"
+              .formatted(MAX_UPLOAD_BYTES, maxUploadBytes));
+    }
+    this.cache = cache;
+    this.maxUploadBytes = maxUploadBytes;
+    this.maxRequestBytes = maxRequestBytes;
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * keeps the response of the current request out of the cache, handlers call this when they
+   * render an error page so a failure is not served again
+   *
+   * @param ctx current request
+   */
+  public static void doNotCache(final Context ctx) {
+    ctx.req().setAttribute(SKIP_ATTRIBUTE, Boolean.TRUE);
+  }
+
+  /**
+   * a buffered multipart part, also handed to handlers that read {@link
+   * io.javalin.http.Context#uploadedFiles()}
+   *
+   * @param name form field name
+   * @param fileName uploaded file name, null for plain form fields
+   * @param body the whole request body, it is shared by every part
+   * @param offset where the part starts in the body
+   * @param length length of the part
+   */
+  record BufferedPart(String name, String fileName, byte[] body, int offset, int length)
+      implements Part {
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(body, offset, length);
+    }
+
+    @Override
+    public String getContentType() {
+      return fileName == null ? null : "application/octet-stream";
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getSubmittedFileName() {
+      return fileName;
+    }
+
+    @Override
+    public long getSize() {
+      return length;
+    }
+
+    @Override
+    public void write(final String fileName) throws IOException {
+      try (OutputStream out = Files.newOutputStream(Paths.get(fileName))) {
+        out.write(body, offset, length);
+      }
+    }
+
+    @Override
+    public void delete() {}
+
+    @Override
+    public String getHeader(final String name) {
+      return null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(final String name) {
+      return List.of();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+      return List.of();
+    }
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request, final ServletResponse response, final FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest req)
+        || !(response instanceof HttpServletResponse res)
+        || !"POST".equals(req.getMethod())
+        || !CACHED_PATHS.contains(req.getRequestURI())) {
+      chain.doFilter(request, response);
+      return;
+    }
+    final long length = req.getContentLengthLong();
+    final long limit =
+        STREAMED_PATHS.contains(req.getRequestURI())
+            ? maxUploadBytes
+            : Math.min(maxUploadBytes, maxRequestBytes);
+    if (length < 0 || length > limit || !reserve(length)) {
+      cache.bypass();
+      chain.doFilter(request, response);
+      return;
+    }
+    try {
+      filterBuffered(req, res, chain, length);
+    } finally {
+      release(length);
+    }
+  }
+
+  private void filterBuffered(
+      final HttpServletRequest req,
+      final HttpServletResponse res,
+      final FilterChain chain,
+      final long length)
+      throws IOException, ServletException {
+    final byte[] body = req.getInputStream().readNBytes((int) length);
+    final List<BufferedPart> parts;
+    try {
+      parts = parts(body, req.getContentType());
+    } catch (IllegalArgumentException | IOException e) {
+      // not something the handlers can read either, let them report it
+      cache.bypass();
+      chain.doFilter(new BufferedRequest(req, body, null), res);
+      return;
+    }
+    final String key = key(req.getRequestURI(), parts);
+    final Optional<ReportCache.Report> cached = cache.get(key);
+    if (cached.isPresent() && accepts(req, cached.get().contentEncoding())) {
+      final ReportCache.Report report = cached.get();
+      if (report.contentType() != null) {
+        res.setContentType(report.contentType());
+      }
+      if (report.contentEncoding() != null) {
+        res.setHeader("Content-Encoding", report.contentEncoding());
+      }
+      res.setContentLength(report.body().length);
+      res.getOutputStream().write(report.body());
+      return;
+    }
+    final CapturingResponse captured = new CapturingResponse(res, cache.maxEntryBytes());
+    chain.doFilter(new BufferedRequest(req, body, parts), captured);
+    if (captured.getStatus() == HttpServletResponse.SC_OK
+        && req.getAttribute(SKIP_ATTRIBUTE) == null
+        && !req.isAsyncStarted()
+        && captured.body() != null) {
+      cache.put(
+          key,
+          new ReportCache.Report(
+              captured.getContentType(), captured.getHeader("Content-Encoding"), captured.body()));
+    }
+  }
+
+  /**
+   * @param bytes size of an upload about to be buffered
+   * @return true when it fits in the budget and was counted against it
+   */
+  private synchronized boolean reserve(final long bytes) {
+    if (bufferedBytes + bytes > maxBufferedBytes) {
+      return false;
+    }
+    bufferedBytes += bytes;
+    return true;
+  }
+
+  /**
+   * @param bytes size of a buffered upload that is no longer referenced
+   */
+  private synchronized void release(final long bytes) {
+    bufferedBytes -= bytes;
+  }
+
+  /**
+   * splits a multipart body into its parts without copying them
+   *
+   * @param body raw request body
+   * @param contentType content type of the request, it carries the boundary
+   * @return the parts in the order they were sent
+   * @throws IOException when the body is not valid multipart
+   */
+  static List<BufferedPart> parts(final byte[] body, final String contentType) throws IOException {
+    final MultipartStreamReader reader =
+        new MultipartStreamReader(new ByteArrayInputStream(body), contentType);
+    final List<BufferedPart> parts = new ArrayList<>();
+    MultipartStreamReader.Part part;
+    while (null != (part = reader.next())) {
+      final int offset = (int) reader.position();
+      final long length = part.content().transferTo(OutputStream.nullOutputStream());
+      parts.add(new BufferedPart(part.name(), part.fileName(), body, offset, (int) length));
+    }
+    return parts;
+  }
+
+  /**
+   * @param path request path
+   * @param parts parts of the upload
+   * @return sha-256 of the path and of the name, file name and content hash of every part
+   */
+  static String key(final String path, final List<BufferedPart> parts) {
+    final Key key = new Key(path);
+    for (final BufferedPart part : parts) {
+      key.part(
+          part.name(),
+          part.fileName(),
+          Hashing.sha256().hashBytes(part.body(), part.offset(), part.length()).asBytes());
+    }
+    return key.finish();
+  }
+
+  /**
+   * builds the same key as {@link #key(String, List)} one part at a time, so an upload can be
+   * hashed while it is streamed somewhere else
+   */
+  static final class Key {
+    private final Hasher hasher = Hashing.sha256().newHasher();
+
+    /**
+     * @param path request path the report is rendered for
+     */
+    Key(final String path) {
+      putString(path);
+    }
+
+    /**
+     * @param name form field name
+     * @param fileName uploaded file name, null for plain form fields
+     * @param contentHash sha-256 of the body of the part
+     */
+    void part(final String name, final String fileName, final byte[] contentHash) {
+      putString(name);
+      putString(fileName);
+      hasher.putBytes(contentHash);
+    }
+
+    /**
+     * @return the key, the builder cannot be used afterwards
+     */
+    String finish() {
+      return hasher.hash().toString();
+    }
+
+    private void putString(final String value) {
+      if (value == null) {
+        hasher.putInt(-1);
+        return;
+      }
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      hasher.putInt(bytes.length);
+      hasher.putBytes(bytes);
+    }
+  }
+
+  private static boolean accepts(final HttpServletRequest req, final String contentEncoding) {
+    if (contentEncoding == null) {
+      return true;
+    }
+    final String accepted = req.getHeader("Accept-Encoding");
+    return accepted != null && accepted.contains(contentEncoding);
+  }
+
+  /** request whose body and parts are served from memory */
+  private static class BufferedRequest extends HttpServletRequestWrapper {
+    private final byte[] body;
+    private final List<BufferedPart> parts;
+
+    BufferedRequest(
+        final HttpServletRequest request, final byte[] body, final List<BufferedPart> parts) {
+      super(request);
+      this.body = body;
+      this.parts = parts;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      final ByteArrayInputStream in = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public boolean isFinished() {
+          return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+          throw new UnsupportedOperationException("the body is already buffered");
+        }
+
+        @Override
+        public int read() {
+          return in.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+          return in.read(b, off, len);
+        }
+      };
+    }
+
+    @Override
+    public Collection<Part> getParts() throws ServletException {
+      if (parts == null) {
+        throw new ServletException("request body is not valid multipart");
+      }
+      return Collections.unmodifiableList(parts);
+    }
+
+    @Override
+    public Part getPart(final String name) throws ServletException {
+      for (final Part part : getParts()) {
+        if (part.getName().equals(name)) {
+          return part;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** response that keeps a copy of what is written, up to a limit */
+  private static class CapturingResponse extends HttpServletResponseWrapper {
+    private final long limit;
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    private ServletOutputStream stream;
+
+    CapturingResponse(final HttpServletResponse response, final long limit) {
+      super(response);
+      this.limit = limit;
+    }
+
+    /**
+     * @return what was written, null when it was over the limit or bypassed the output stream
+     */
+    byte[] body() {
+      return copy == null ? null : copy.toByteArray();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      // text written through the writer is not copied, so the response cannot be cached
+      copy = null;
+      return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (stream != null) {
+        return stream;
+      }
+      final ServletOutputStream out = super.getOutputStream();
+      stream =
+          new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+              return out.isReady();
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+              out.setWriteListener(writeListener);
+            }
+
+            @Override
+            public void write(final int b) throws IOException {
+              out.write(b);
+              copy(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+              out.write(b, off, len);
+              copy(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+              out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+              out.close();
+            }
+          };
+      return stream;
+    }
+
+    private void copy(final byte[] b, final int off, final int len) {
+      if (copy == null) {
+        return;
+      }
+      if (copy.size() + (long) len > limit) {
+        copy = null;
+        return;
+      }
+      copy.write(b, off, len);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import io.javalin.http.Context;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * The response body of a report that is streamed as it is rendered. It remembers whether anything
+ * was written, a report that fails before that is answered with an error page but one that fails
+ * part way through cannot be, the client already has the start of it and the status. The
+ * connection is aborted instead so the client sees a failed response rather than a truncated
+ * report with an error page appended to it.
+ */
+final class StreamedResponse extends FilterOutputStream {
+  private static final Logger LOGGER = Logger.getLogger(StreamedResponse.class.getName());
+
+  private boolean written;
+
+  /**
+   * @param ctx request whose response the report is written to
+   */
+  StreamedResponse(final Context ctx) {
+    super(ctx.outputStream());
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    written = true;
+    out.write(b);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    written = true;
+    out.write(b, off, len);
+  }
+
+  /**
+   * answers a report that failed, the response is kept out of the {@link ReportCache} either way
+   *
+   * @param ctx current request
+   * @param output where the report was being written, null when it had not started
+   * @param error why the report failed
+   */
+  static void fail(final Context ctx, final StreamedResponse output, final Exception error) {
+    ReportCacheFilter.doNotCache(ctx);
+    if ((output == null || !output.written) && !ctx.res().isCommitted()) {
+      ctx.html("<html><body>" + error.getMessage() + "</body>");
+      return;
+    }
+    LOGGER.warning("report failed after it was partly sent, aborting the response");
+    final Request request = Request.getBaseRequest(ctx.req());
+    if (request != null) {
+      request.getHttpChannel().abort(error);
+      return;
+    }
+    // not served by jetty, ending the body early is all that is left
+    try {
+      output.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "unable to close the response", e);
+    }
+  }
+}
@@ -18,27 +18,118 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * The intent of this class is to provide embeded javascript in an html page so
  * that it is easy to
  * save just the html and have a fully interactive functioning offline report
+ *
+ * <p>The large libraries are read from the classpath once per process and kept both as text and
+ * as utf-8 bytes. When external assets are enabled (server mode) reports reference the libraries
+ * by url instead of inlining them, see {@link #setExternalAssetsUrl(String)}.
  */
 public class JsLibraryTextProvider {
 
-  private String getLib(String libraryNameAndVersion) {
-    try (InputStream plotlyJsInput =
-        this.getClass()
-            .getResourceAsStream(String.format("/com/dremio/support/%s", libraryNameAndVersion))) {
-      return new BufferedReader(new InputStreamReader(plotlyJsInput, StandardCharsets.UTF_8))
-          .lines()
-          .collect(Collectors.joining("\n"));
+  /** plotly graphing library resource name */
+  public static final String PLOTLY = "plotly-2.18.0.min.js";
+
+  /** mermaid diagramming library resource name */
+  public static final String MERMAID = "mermaid-9.3.0.min.js";
+
+  /** html2canvas library resource name */
+  public static final String HTML2CANVAS = "html2canvas.js";
+
+  /** the libraries that can be served as external assets */
+  public static final List<String> LIBRARIES = List.of(PLOTLY, MERMAID, HTML2CANVAS);
+
+  private record Library(String text, byte[] utf8) {}
+
+  /** process wide cache, the resources never change while we are running */
+  private static final Map<String, Library> cache = new ConcurrentHashMap<>();
+
+  /** base url the libraries are served from, null means they are inlined */
+  private static volatile String externalAssetsUrl;
+
+  /**
+   * switches every report in this process to reference the large libraries by url instead of
+   * inlining them. Only useful when something serves {@link #getLibBytes(String)} at that url.
+   *
+   * @param baseUrl url prefix the library file name is appended to, null to inline again
+   */
+  public static void setExternalAssetsUrl(final String baseUrl) {
+    externalAssetsUrl = baseUrl;
+  }
+
+  /**
+   * @return the url prefix the libraries are referenced by, or null if they are inlined
+   */
+  public static String getExternalAssetsUrl() {
+    return externalAssetsUrl;
+  }
+
+  private static Library load(final String libraryNameAndVersion) {
+    try (InputStream jsInput =
+        JsLibraryTextProvider.class.getResourceAsStream(
+            String.format("/com/dremio/support/%s", libraryNameAndVersion))) {
+      if (jsInput == null) {
+        throw new IOException("missing resource " + libraryNameAndVersion);
+      }
+      final String text =
+          new BufferedReader(new InputStreamReader(jsInput, StandardCharsets.UTF_8))
+              .lines()
+              .collect(Collectors.joining("\n"));
+      return new Library(text, text.getBytes(StandardCharsets.UTF_8));
     } catch (IOException e) {
-      throw new UnableToReadJsException("plotly", e);
+      throw new UnableToReadJsException(libraryNameAndVersion, e);
     }
   }
 
+  private static Library lib(final String libraryNameAndVersion) {
+    return cache.computeIfAbsent(libraryNameAndVersion, JsLibraryTextProvider::load);
+  }
+
+  /**
+   * the body of a script element for the library. With external assets enabled this closes the
+   * (still empty) inline script element and opens one that points at the url, so every report
+   * that wraps the text in script tags works unchanged in both modes.
+   */
+  private String getLib(final String libraryNameAndVersion) {
+    final String baseUrl = externalAssetsUrl;
+    if (baseUrl != null) {
+      return "</script><script src=\"%s%s\">".formatted(baseUrl, libraryNameAndVersion);
+    }
+    return lib(libraryNameAndVersion).text();
+  }
+
+  /**
+   * same as the text getters but the cached bytes are written straight to the output
+   *
+   * @param libraryNameAndVersion one of {@link #LIBRARIES}
+   * @return section suitable for use inside a script element
+   */
+  public ReportOutput.Section getLibSection(final String libraryNameAndVersion) {
+    return out -> {
+      if (externalAssetsUrl != null) {
+        out.write(getLib(libraryNameAndVersion));
+      } else {
+        out.write(lib(libraryNameAndVersion).utf8());
+      }
+    };
+  }
+
+  /**
+   * @param libraryNameAndVersion one of {@link #LIBRARIES}
+   * @return the cached utf-8 bytes of the library, always the library itself even with external
+   *     assets enabled
+   */
+  public static byte[] getLibBytes(final String libraryNameAndVersion) {
+    return lib(libraryNameAndVersion).utf8();
+  }
+
   /**
    * returns plotly graphing library https://plotly.com/javascript/
    *
@@ -46,7 +137,7 @@ public class JsLibraryTextProvider {
    *         script tag
    */
   public String getPlotlyJsText() {
-    return getLib("plotly-2.18.0.min.js");
+    return getLib(PLOTLY);
   }
 
   /**
@@ -58,11 +149,11 @@ public class JsLibraryTextProvider {
    *         script tag
    */
   public String getMermaidJsText() {
-    return getLib("mermaid-9.3.0.min.js");
+    return getLib(MERMAID);
   }
 
   public String getHtml2CanvasText() {
-    return getLib("html2canvas.js");
+    return getLib(HTML2CANVAS);
   }
 
   /**
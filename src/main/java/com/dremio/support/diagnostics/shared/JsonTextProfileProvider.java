@@ -14,22 +14,34 @@
 package com.dremio.support.diagnostics.shared;
 
 import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
+import com.dremio.support.diagnostics.profilejson.ProfileSection;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.security.InvalidParameterException;
+import java.util.Set;
 
 /** simple case parser, just reads a json text file and converts it into a ProfileJSON */
 public class JsonTextProfileProvider implements ProfileProvider {
 
   private final InputStream file;
   private final Path filePath;
+  private final Set<ProfileSection> sections;
 
   /**
    * @param pathAndStream stream of the json file and it's path
    */
   public JsonTextProfileProvider(final PathAndStream pathAndStream) {
+    this(pathAndStream, ProfileSection.ALL);
+  }
+
+  /**
+   * @param pathAndStream stream of the json file and it's path
+   * @param sections sections of the profile to read, the others are skipped
+   */
+  public JsonTextProfileProvider(
+      final PathAndStream pathAndStream, final Set<ProfileSection> sections) {
     if (pathAndStream == null
         || pathAndStream.filePath() == null
         || pathAndStream.stream() == null) {
@@ -37,6 +49,7 @@ public class JsonTextProfileProvider implements ProfileProvider {
     }
     this.file = pathAndStream.stream();
     this.filePath = pathAndStream.filePath();
+    this.sections = sections;
   }
 
   /**
@@ -44,7 +57,7 @@ public class JsonTextProfileProvider implements ProfileProvider {
    */
   @Override
   public final ProfileJSON getProfile() throws IOException {
-    ProfileJSONParser parser = new ProfileJSONParser();
+    ProfileJSONParser parser = new ProfileJSONParser(this.sections);
     return parser.parseFile(this.file);
   }
 
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+/**
+ * Approximate quantiles of non negative longs with a bounded relative error, in the style of
+ * DDSketch.
+ *
+ * <p>Values are counted in logarithmic buckets so a quantile is always within the relative accuracy
+ * of the true value, whatever the distribution. Only the buckets between the smallest and largest
+ * value seen are allocated, which for a relative accuracy of 1% is at most a couple of thousand
+ * counters even across the whole long range. Sketches with the same accuracy merge exactly, so
+ * shards can be summed up once parsing is done. Not thread safe.
+ */
+public class QuantileSketch {
+  /** relative accuracy of {@link #QuantileSketch()} */
+  public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+  private static final long[] EMPTY = new long[0];
+
+  private final double relativeAccuracy;
+  private final double gamma;
+  private final double logGamma;
+  private long[] counts = EMPTY;
+  // bucket index of counts[0]
+  private int offset;
+  private long zeroCount;
+  private long count;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  /** sketch with a relative accuracy of 1% */
+  public QuantileSketch() {
+    this(DEFAULT_RELATIVE_ACCURACY);
+  }
+
+  /**
+   * @param relativeAccuracy maximum relative error of a quantile, between 0 and 1 exclusive
+   */
+  public QuantileSketch(final double relativeAccuracy) {
+    if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+      throw new IllegalArgumentException(
+          "relative accuracy must be between 0 and 1 but was " + relativeAccuracy);
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+  }
+
+  /**
+   * @param value value to count, zero and negative values are counted as zero
+   */
+  public void add(final long value) {
+    count++;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+    if (value <= 0) {
+      zeroCount++;
+      return;
+    }
+    final int index = (int) Math.ceil(Math.log(value) / logGamma);
+    ensureCapacity(index, index);
+    counts[index - offset]++;
+  }
+
+  private void ensureCapacity(final int low, final int high) {
+    if (counts.length == 0) {
+      counts = new long[high - low + 1];
+      offset = low;
+      return;
+    }
+    final int currentHigh = offset + counts.length - 1;
+    if (low >= offset && high <= currentHigh) {
+      return;
+    }
+    final int newLow = Math.min(low, offset);
+    final int newHigh = Math.max(high, currentHigh);
+    // grow with some slack so a slowly widening range does not copy on every value
+    final int slack = Math.max(8, (newHigh - newLow + 1) / 4);
+    final int grownLow = low < offset ? newLow - slack : newLow;
+    final int grownHigh = high > currentHigh ? newHigh + slack : newHigh;
+    final long[] grown = new long[grownHigh - grownLow + 1];
+    System.arraycopy(counts, 0, grown, offset - grownLow, counts.length);
+    counts = grown;
+    offset = grownLow;
+  }
+
+  /**
+   * adds every value counted by another sketch
+   *
+   * @param other sketch with the same relative accuracy
+   */
+  public void merge(final QuantileSketch other) {
+    if (other.relativeAccuracy != relativeAccuracy) {
+      throw new IllegalArgumentException(
+          "unable to merge a sketch with relative accuracy %s into one with %s"
+              .formatted(other.relativeAccuracy, relativeAccuracy));
+    }
+    if (other.count == 0) {
+      return;
+    }
+    count += other.count;
+    zeroCount += other.zeroCount;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    int low = -1;
+    int high = -1;
+    for (int i = 0; i < other.counts.length; i++) {
+      if (other.counts[i] != 0) {
+        if (low < 0) {
+          low = i;
+        }
+        high = i;
+      }
+    }
+    if (low < 0) {
+      return;
+    }
+    ensureCapacity(other.offset + low, other.offset + high);
+    for (int i = low; i <= high; i++) {
+      counts[other.offset + i - offset] += other.counts[i];
+    }
+  }
+
+  /**
+   * @param quantile between 0 and 1, 0.99 is the 99th percentile
+   * @return the approximate value at the quantile, 0 when nothing was added
+   */
+  public long quantile(final double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+    if (quantile <= 0) {
+      return min;
+    }
+    if (quantile >= 1) {
+      return max;
+    }
+    final long rank = (long) (quantile * (count - 1));
+    long seen = zeroCount;
+    if (seen > rank) {
+      return Math.max(0, min);
+    }
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen > rank) {
+        final double value = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+        return Math.max(min, Math.min(max, Math.round(value)));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * @return number of values added
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return smallest value added, Long.MAX_VALUE when nothing was added
+   */
+  public long getMin() {
+    return min;
+  }
+
+  /**
+   * @return largest value added, Long.MIN_VALUE when nothing was added
+   */
+  public long getMax() {
+    return max;
+  }
+}
@@ -14,9 +14,23 @@
 package com.dremio.support.diagnostics.shared;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 public interface Report {
   String getText() throws IOException;
 
+  /**
+   * writes the report as utf-8 to the stream, reports that can produce their output in pieces
+   * override this so the full text is never held in memory
+   *
+   * @param out stream to write to, it is flushed but not closed
+   * @throws IOException when the report cannot be generated or the stream cannot be written to
+   */
+  default void writeTo(final OutputStream out) throws IOException {
+    out.write(getText().getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
   String getTitle();
 }
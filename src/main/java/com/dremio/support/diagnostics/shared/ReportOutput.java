@@ -0,0 +1,133 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a report to an output stream piece by piece so the whole html never has to exist as one
+ * string. Text is utf-8 encoded through a buffered writer, already encoded bytes (such as the
+ * embedded javascript libraries) go straight to the stream.
+ */
+public class ReportOutput implements Flushable {
+
+  /** a piece of a report that is only generated when it is its turn to be written */
+  @FunctionalInterface
+  public interface Section {
+    void writeTo(ReportOutput out) throws IOException;
+  }
+
+  private final OutputStream out;
+  private final Writer writer;
+
+  /**
+   * @param out stream to write to, it is flushed but never closed
+   */
+  public ReportOutput(final OutputStream out) {
+    this.out = out;
+    this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param text text to encode as utf-8
+   * @return this for chaining
+   * @throws IOException when the stream cannot be written to
+   */
+  public ReportOutput write(final String text) throws IOException {
+    writer.write(text);
+    return this;
+  }
+
+  /**
+   * @param utf8 bytes that are already utf-8 encoded
+   * @return this for chaining
+   * @throws IOException when the stream cannot be written to
+   */
+  public ReportOutput write(final byte[] utf8) throws IOException {
+    // keep ordering with any text still sitting in the writer buffer
+    writer.flush();
+    out.write(utf8);
+    return this;
+  }
+
+  /**
+   * streams a template written for {@link String#formatted}, only %s and %% are supported. Each
+   * %s is replaced by the matching argument which can be a {@link String}, utf-8 encoded bytes or a
+   * {@link Section} that is generated at that point.
+   *
+   * @param template template text
+   * @param args one argument per %s
+   * @return this for chaining
+   * @throws IOException when the stream cannot be written to
+   * @throws IllegalArgumentException when the template and arguments do not match
+   */
+  public ReportOutput template(final String template, final Object... args) throws IOException {
+    int arg = 0;
+    int from = 0;
+    final StringBuilder literal = new StringBuilder();
+    while (true) {
+      final int percent = template.indexOf('%', from);
+      if (percent < 0 || percent == template.length() - 1) {
+        if (percent >= 0) {
+          throw new IllegalArgumentException("template ends with a lone %");
+        }
+        literal.append(template, from, template.length());
+        write(literal.toString());
+        break;
+      }
+      literal.append(template, from, percent);
+      final char spec = template.charAt(percent + 1);
+      if (spec == '%') {
+        literal.append('%');
+      } else if (spec == 's') {
+        if (arg >= args.length) {
+          throw new IllegalArgumentException(
+              "template has more %s than the " + args.length + " arguments");
+        }
+        write(literal.toString());
+        literal.setLength(0);
+        writeArg(args[arg++]);
+      } else {
+        throw new IllegalArgumentException("unsupported format specifier %" + spec);
+      }
+      from = percent + 2;
+    }
+    if (arg != args.length) {
+      throw new IllegalArgumentException(
+          "template has %d %%s but %d arguments were passed".formatted(arg, args.length));
+    }
+    return this;
+  }
+
+  private void writeArg(final Object arg) throws IOException {
+    if (arg instanceof byte[] bytes) {
+      write(bytes);
+    } else if (arg instanceof Section section) {
+      section.writeTo(this);
+    } else {
+      write(String.valueOf(arg));
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+    out.flush();
+  }
+}
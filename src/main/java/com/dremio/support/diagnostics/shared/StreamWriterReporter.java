@@ -15,7 +15,6 @@ package com.dremio.support.diagnostics.shared;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
 public class StreamWriterReporter implements Reporter {
   private final OutputStream fileToWrite;
@@ -27,7 +26,7 @@ public class StreamWriterReporter implements Reporter {
   @Override
   public void output(Report report) {
     try {
-      fileToWrite.write(report.getText().getBytes(StandardCharsets.UTF_8));
+      report.writeTo(fileToWrite);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k highest ranked items seen so far.
+ *
+ * <p>Backed by a min heap of at most k items so each offer is O(log k), and an item that does not
+ * beat the current lowest ranked item is rejected with a single comparison and no allocation. Ties
+ * with the lowest ranked item keep the item that was offered first. Not thread safe.
+ *
+ * @param <T> type of the ranked items
+ */
+public class TopK<T> {
+  private final int k;
+  private final Comparator<? super T> ranking;
+  private final PriorityQueue<T> heap;
+
+  /**
+   * @param k number of items to keep, values above Integer.MAX_VALUE are capped
+   * @param ranking orders items from lowest to highest rank, the highest ranked items are kept
+   */
+  public TopK(final long k, final Comparator<? super T> ranking) {
+    this.k = (int) Math.max(0, Math.min(k, Integer.MAX_VALUE));
+    this.ranking = ranking;
+    // the heap grows on demand so a large limit does not cost anything up front
+    this.heap = new PriorityQueue<>(Math.max(1, Math.min(this.k, 64)), ranking);
+  }
+
+  /**
+   * @param item candidate item
+   * @return true if the item is now part of the top k
+   */
+  public boolean offer(final T item) {
+    if (heap.size() < k) {
+      heap.add(item);
+      return true;
+    }
+    if (k == 0 || ranking.compare(item, heap.peek()) <= 0) {
+      return false;
+    }
+    heap.poll();
+    heap.add(item);
+    return true;
+  }
+
+  /**
+   * offers every item kept by another instance, used to merge shards
+   *
+   * @param other the instance to merge into this one
+   */
+  public void addAll(final TopK<? extends T> other) {
+    for (T item : other.heap) {
+      offer(item);
+    }
+  }
+
+  /**
+   * @return number of items kept, never more than k
+   */
+  public int size() {
+    return heap.size();
+  }
+
+  /**
+   * @return a new list of the kept items ordered from highest to lowest rank
+   */
+  public List<T> toSortedList() {
+    final List<T> sorted = new ArrayList<>(heap);
+    sorted.sort(ranking.reversed());
+    return sorted;
+  }
+}
@@ -15,12 +15,23 @@ package com.dremio.support.diagnostics.shared;
 
 import com.dremio.support.diagnostics.profilejson.Parser;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.dremio.support.diagnostics.shared.zip.ArchiveDetection;
 import com.dremio.support.diagnostics.shared.zip.Extraction;
 import com.dremio.support.diagnostics.shared.zip.Unzipper;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
 import java.security.InvalidParameterException;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.input.CloseShieldInputStream;
 
 public class ZipProfileProvider implements ProfileProvider {
 
@@ -28,6 +39,12 @@ public class ZipProfileProvider implements ProfileProvider {
   private final Unzipper unzipper;
   private final PathAndStream file;
 
+  /** the profile json entries found while walking an archive */
+  private static final class Matches {
+    private ProfileJSON profile;
+    private int count;
+  }
+
   /**
    * @param parser the parser strategy used to process files
    * @param unzipper The logical to unzip files and iterate through entries
@@ -46,12 +63,115 @@ public class ZipProfileProvider implements ProfileProvider {
   }
 
   /**
-   * will open the zip parse the file and then delete the newly extracted file
+   * zips are read in place, only the profile json entry is inflated and it goes straight into the
+   * parser. When the stream is a file the central directory is used to find the entry without
+   * reading the rest of the archive, otherwise the entries are streamed until the profile is found.
+   * Gzipped entries are gunzipped and nested archives are walked as they stream past, like the
+   * {@link Unzipper} does when it extracts them. Other archive types are extracted with the {@link
+   * Unzipper} and the extracted file is parsed and then deleted.
    *
    * @return the parsed profile json
    */
   @Override
   public ProfileJSON getProfile() throws IOException {
+    if (this.file.filePath().toString().endsWith(".zip")) {
+      if (this.file.stream() instanceof FileInputStream fileStream) {
+        return readZipFile(fileStream.getChannel());
+      }
+      return readZipStream(this.file.stream());
+    }
+    return readExtraction();
+  }
+
+  private static boolean isProfileJsonEntry(final String entryName) {
+    return entryName.startsWith("profile") && entryName.contains(".json");
+  }
+
+  /**
+   * @param entryName name of an archive entry
+   * @return true when the entry is a profile json, an archive that may hold one, or either gzipped
+   */
+  private static boolean isWanted(final String entryName) {
+    final String name =
+        ArchiveDetection.isCompressed(entryName)
+            ? entryName.substring(0, entryName.length() - ".gz".length())
+            : entryName;
+    return isProfileJsonEntry(name) || ArchiveDetection.isArchive(name);
+  }
+
+  private static ProfileJSON single(final Matches matches) {
+    if (matches.count != 1) {
+      throw new RuntimeException(
+          "expected one profile json but had %d items. Can't proceed".formatted(matches.count));
+    }
+    return matches.profile;
+  }
+
+  private ProfileJSON readZipFile(final SeekableByteChannel channel) throws IOException {
+    final Matches matches = new Matches();
+    try (ZipFile zip = ZipFile.builder().setSeekableByteChannel(channel).get()) {
+      final Enumeration<ZipArchiveEntry> entries = zip.getEntries();
+      while (entries.hasMoreElements()) {
+        final ZipArchiveEntry entry = entries.nextElement();
+        if (!entry.isDirectory() && isWanted(entry.getName())) {
+          try (InputStream is = zip.getInputStream(entry)) {
+            readEntry(entry.getName(), is, matches);
+          }
+        }
+      }
+    }
+    return single(matches);
+  }
+
+  private ProfileJSON readZipStream(final InputStream stream) throws IOException {
+    final Matches matches = new Matches();
+    try (ZipArchiveInputStream zip = new ZipArchiveInputStream(stream)) {
+      readEntries(zip, matches);
+    }
+    return single(matches);
+  }
+
+  private void readEntries(final ArchiveInputStream<?> archive, final Matches matches)
+      throws IOException {
+    ArchiveEntry entry;
+    while ((entry = archive.getNextEntry()) != null) {
+      if (entry.isDirectory() || !isWanted(entry.getName()) || !archive.canReadEntryData(entry)) {
+        continue;
+      }
+      readEntry(entry.getName(), archive, matches);
+    }
+  }
+
+  /**
+   * parses a profile json entry or walks a nested archive, gunzipping either first when needed
+   *
+   * @param entryName name of the entry
+   * @param in content of the entry, it is left open so the enclosing archive can move on
+   * @param matches the profile json entries found so far
+   */
+  private void readEntry(final String entryName, final InputStream in, final Matches matches)
+      throws IOException {
+    // the parser and the archive readers close what they read
+    final InputStream shielded = CloseShieldInputStream.wrap(in);
+    if (ArchiveDetection.isCompressed(entryName)) {
+      readEntry(
+          entryName.substring(0, entryName.length() - ".gz".length()),
+          new GZIPInputStream(shielded),
+          matches);
+    } else if (ArchiveDetection.isArchive(entryName)) {
+      try (ArchiveInputStream<?> nested =
+          ArchiveDetection.getArchive(new PathAndStream(Path.of(entryName), shielded))) {
+        readEntries(nested, matches);
+      }
+    } else if (isProfileJsonEntry(entryName)) {
+      matches.count++;
+      if (matches.profile == null) {
+        matches.profile = this.parser.parseFile(shielded);
+      }
+    }
+  }
+
+  private ProfileJSON readExtraction() throws IOException {
     try (Extraction extraction = this.unzipper.unzipProfileJSON(this.file)) {
       if (extraction == null || extraction.getPathAndStreams() == null) {
         throw new RuntimeException(
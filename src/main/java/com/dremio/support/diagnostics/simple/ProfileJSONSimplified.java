@@ -17,11 +17,13 @@ import static com.dremio.support.diagnostics.shared.HtmlTableDataColumn.col;
 import static com.dremio.support.diagnostics.shared.Human.*;
 
 import com.dremio.support.diagnostics.profilejson.CoreOperatorType;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
+import com.dremio.support.diagnostics.profilejson.ProfileSection;
 import com.dremio.support.diagnostics.profilejson.QueryState;
 import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
-import com.dremio.support.diagnostics.profilejson.plan.PlanRelationshipParser;
 import com.dremio.support.diagnostics.profilejson.singlefile.reports.summary.FindingsReport;
 import com.dremio.support.diagnostics.repro.ArgSetup;
+import com.dremio.support.diagnostics.server.ReportCacheFilter;
 import com.dremio.support.diagnostics.shared.*;
 import com.dremio.support.diagnostics.shared.dto.profilejson.*;
 import io.javalin.http.Context;
@@ -38,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -108,6 +111,10 @@ public class ProfileJSONSimplified {
 
   public static class Summarize {
 
+    /** the summary reads the plan and the fragments, metrics, datasets and options are skipped */
+    public static final Set<ProfileSection> PROFILE_SECTIONS =
+        Set.of(ProfileSection.PLAN, ProfileSection.FRAGMENTS);
+
     public Summary singleProfile(ProfileJSON parsedProfileJSON) {
       String dremioVersion = "unknown";
       String user = "unknown user";
@@ -120,10 +127,9 @@ public class ProfileJSONSimplified {
         return new Summary(
             dremioVersion, start, end, totalPhases, 0, user, queryPhase, new ArrayList<>(), rows);
       }
-      final Collection<PlanRelation> planRelations =
-          new PlanRelationshipParser().getPlanRelations(parsedProfileJSON);
-
-      var findings = FindingsReport.searchForFindings(parsedProfileJSON, planRelations);
+      final ProfileIndex index = ProfileIndex.of(parsedProfileJSON);
+      final Collection<PlanRelation> planRelations = index.planRelations();
+      var findings = FindingsReport.searchForFindings(index, planRelations);
       if (parsedProfileJSON.getFragmentProfile() != null) {
         start = parsedProfileJSON.getStart();
         end = parsedProfileJSON.getEnd();
@@ -137,66 +143,30 @@ public class ProfileJSONSimplified {
             && !parsedProfileJSON.getDremioVersion().isEmpty()) {
           dremioVersion = parsedProfileJSON.getDremioVersion();
         }
-        for (final FragmentProfile fragmentProfile : parsedProfileJSON.getFragmentProfile()) {
-          if (fragmentProfile != null) {
-            final int phaseId = fragmentProfile.getMajorFragmentId();
-            totalPhases++;
-            for (final MinorFragmentProfile minorFragmentProfile :
-                fragmentProfile.getMinorFragmentProfile()) {
-              if (minorFragmentProfile != null
-                  && minorFragmentProfile.getOperatorProfile() != null) {
-                final long threadId = minorFragmentProfile.getMinorFragmentId();
-                String hostName = "";
-                if (minorFragmentProfile.getEndpoint() != null
-                    && minorFragmentProfile.getEndpoint().getAddress() != null) {
-                  hostName = minorFragmentProfile.getEndpoint().getAddress();
-                }
-                for (final OperatorProfile operatorProfile :
-                    minorFragmentProfile.getOperatorProfile()) {
-                  long batches = 0;
-                  long records = 0;
-                  long size = 0;
-                  if (operatorProfile.getInputProfile() != null) {
-                    for (final InputProfile inputProfile : operatorProfile.getInputProfile()) {
-                      batches += inputProfile.getBatches();
-                      records += inputProfile.getRecords();
-                      size += inputProfile.getSize();
-                    }
-                  }
-                  final int operatorTypeId = operatorProfile.getOperatorType();
-                  final long operatorId = operatorProfile.getOperatorId();
-                  final long processNanos = operatorProfile.getProcessNanos();
-                  final long setupNanos = operatorProfile.getSetupNanos();
-                  final long waitNanos = operatorProfile.getWaitNanos();
-                  final long totalDurationNanos = processNanos + setupNanos + waitNanos;
-                  final long peakLocalMemoryAllocated =
-                      operatorProfile.getPeakLocalMemoryAllocated();
-                  final CoreOperatorType[] coreOperatorTypes = CoreOperatorType.values();
-                  CoreOperatorType operatorType = null;
-                  if ((long) operatorTypeId < coreOperatorTypes.length) {
-                    operatorType = coreOperatorTypes[operatorTypeId];
-                  }
-                  final OperatorRow row =
-                      new OperatorRow(
-                          hostName,
-                          batches,
-                          records,
-                          size,
-                          operatorId,
-                          phaseId,
-                          threadId,
-                          processNanos,
-                          setupNanos,
-                          waitNanos,
-                          totalDurationNanos,
-                          peakLocalMemoryAllocated,
-                          operatorType,
-                          hostName);
-                  rows.add(row);
-                }
-              }
-            }
-          }
+        totalPhases = index.phaseCount();
+        for (int o = 0; o < index.operatorCount(); o++) {
+          final int thread = index.operatorThread(o);
+          final String hostName = index.threadHost(thread) == null ? "" : index.threadHost(thread);
+          final long processNanos = index.operatorProcessNanos(o);
+          final long setupNanos = index.operatorSetupNanos(o);
+          final long waitNanos = index.operatorWaitNanos(o);
+          final OperatorRow row =
+              new OperatorRow(
+                  hostName,
+                  index.operatorBatches(o),
+                  index.operatorRecords(o),
+                  index.operatorSizeBytes(o),
+                  index.operatorId(o),
+                  index.phaseId(index.threadPhase(thread)),
+                  index.threadId(thread),
+                  processNanos,
+                  setupNanos,
+                  waitNanos,
+                  processNanos + setupNanos + waitNanos,
+                  index.operatorPeakMemory(o),
+                  index.operatorType(o),
+                  hostName);
+          rows.add(row);
         }
       }
       return new Summary(
@@ -237,7 +207,8 @@ public class ProfileJSONSimplified {
       try (InputStream is = ctx.uploadedFiles().get(0).content()) {
         ProfileProvider profileProvider =
             ArgSetup.getProfileProvider(
-                new PathAndStream(Paths.get(ctx.uploadedFiles().get(0).filename()), is));
+                new PathAndStream(Paths.get(ctx.uploadedFiles().get(0).filename()), is),
+                Summarize.PROFILE_SECTIONS);
         ProfileJSON p = profileProvider.getProfile();
         final Summary summary = new Summarize().singleProfile(p);
         final int unlimitedRows = -1;
@@ -245,6 +216,7 @@ public class ProfileJSONSimplified {
         ctx.html(text);
       } catch (Exception e) {
         logger.log(Level.SEVERE, "error reading uploaded file", e);
+        ReportCacheFilter.doNotCache(ctx);
         ctx.html("<html><body>" + e.getMessage() + "</body>");
       } finally {
         logger.info("profile analysis report generated");
@@ -460,7 +432,8 @@ public class ProfileJSONSimplified {
       if (args.comparePath() == null) {
         try (final InputStream stream = Files.newInputStream(args.path().toPath())) {
           var profile =
-              ArgSetup.getProfileProvider(new PathAndStream(args.path().toPath(), stream));
+              ArgSetup.getProfileProvider(
+                  new PathAndStream(args.path().toPath(), stream), Summarize.PROFILE_SECTIONS);
           final Summarize summarize = new Summarize();
           try {
             final Summary summary = summarize.singleProfile(profile.getProfile());
@@ -477,10 +450,12 @@ public class ProfileJSONSimplified {
           try (final InputStream compareStream =
               Files.newInputStream(args.comparePath().toPath())) {
             var profile =
-                ArgSetup.getProfileProvider(new PathAndStream(args.path().toPath(), stream));
+                ArgSetup.getProfileProvider(
+                    new PathAndStream(args.path().toPath(), stream), Summarize.PROFILE_SECTIONS);
             var compareProfile =
                 ArgSetup.getProfileProvider(
-                    new PathAndStream(args.comparePath().toPath(), compareStream));
+                    new PathAndStream(args.comparePath().toPath(), compareStream),
+                    Summarize.PROFILE_SECTIONS);
             final Summarize summarize = new Summarize();
             try {
               SummaryCompare compare =
@@ -18,6 +18,7 @@ import com.dremio.support.diagnostics.shared.DQDVersion;
 import com.dremio.support.diagnostics.shared.HtmlTableBuilder;
 import com.dremio.support.diagnostics.shared.HtmlTableDataColumn;
 import com.dremio.support.diagnostics.shared.JsLibraryTextProvider;
+import com.dremio.support.diagnostics.shared.ReportOutput;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -214,11 +215,11 @@ public class TopExec {
             }
           }
           final JsLibraryTextProvider jsLibraryTextProvider = new JsLibraryTextProvider();
-          // now generate the report
-          final String html =
-              String.format(
-                  Locale.US,
-                  """
+          // now generate the report, streaming it so the page and the embedded plotly library
+          // are never copied into one string
+          final ReportOutput out = new ReportOutput(bufferedOutputStream);
+          out.template(
+              """
            <!DOCTYPE html>
  <html lang="en">
  <head>
@@ -369,11 +370,20 @@ public class TopExec {
  </body>
 </html>
 """,
-                  jsLibraryTextProvider.getTableCSS(),
-                  jsLibraryTextProvider.getPlotlyJsText(),
-                  threadGraph(
-                      times, cpuStats, memStats, swapStats, threadStats, parseErrors, maps));
-          writer.write(html.getBytes("UTF-8"));
+              jsLibraryTextProvider.getTableCSS(),
+              jsLibraryTextProvider.getLibSection(JsLibraryTextProvider.PLOTLY),
+              (ReportOutput.Section)
+                  o ->
+                      o.write(
+                          threadGraph(
+                              times,
+                              cpuStats,
+                              memStats,
+                              swapStats,
+                              threadStats,
+                              parseErrors,
+                              maps)));
+          out.flush();
         }
       }
     }
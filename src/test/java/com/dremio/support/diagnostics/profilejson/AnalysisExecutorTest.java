@@ -0,0 +1,76 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+class AnalysisExecutorTest {
+
+  @Test
+  void testEveryPositionRunsOnce() {
+    final AtomicIntegerArray seen = new AtomicIntegerArray(10_000);
+    AnalysisExecutor.forEach(seen.length(), 7, seen::incrementAndGet);
+    for (int i = 0; i < seen.length(); i++) {
+      assertEquals(1, seen.get(i));
+    }
+  }
+
+  @Test
+  void testExceptionsReachTheCaller() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            AnalysisExecutor.forEach(
+                1000,
+                1,
+                i -> {
+                  if (i == 500) {
+                    throw new IllegalStateException("bad operator");
+                  }
+                }));
+  }
+
+  @Test
+  void testInvokeBothReturnsBothResults() throws IOException {
+    final AnalysisExecutor.Both<String, Integer> both =
+        AnalysisExecutor.invokeBoth(() -> "profile1", () -> 2);
+    assertEquals("profile1", both.first());
+    assertEquals(2, both.second());
+  }
+
+  @Test
+  void testInvokeBothRethrowsIOExceptions() {
+    assertThrows(
+        IOException.class,
+        () ->
+            AnalysisExecutor.invokeBoth(
+                () -> "profile1",
+                () -> {
+                  throw new IOException("bad profile2");
+                }));
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            AnalysisExecutor.invokeBoth(
+                () -> {
+                  throw new IllegalStateException("bad profile1");
+                },
+                () -> 2));
+  }
+}
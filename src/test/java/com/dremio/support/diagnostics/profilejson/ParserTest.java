@@ -18,6 +18,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.dremio.support.diagnostics.FileTestHelpers;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.io.IOException;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -104,4 +105,33 @@ class ParserTest {
                 + " TMIN): rowcount = 5288.0, cumulative cost = {5288.0 rows, 132200.0 cpu,"
                 + " 132200.0 io, 132200.0 network, 0.0 memory}, id = 1444\n");
   }
+
+  @Test
+  void testOnlyRequestedSectionsAreRead() throws IOException {
+    final ProfileJSON datasetsOnly =
+        new ProfileJSONParser(Set.of(ProfileSection.DATASETS))
+            .parseFile(FileTestHelpers.getTestProfile1().stream());
+    assertThat(datasetsOnly.getQuery()).isEqualTo(json.getQuery());
+    assertThat(datasetsOnly.getDatasetProfile()).hasSameSizeAs(json.getDatasetProfile());
+    assertThat(datasetsOnly.getPlan()).isNull();
+    assertThat(datasetsOnly.getJsonPlan()).isNull();
+    assertThat(datasetsOnly.getFragmentProfile()).isNull();
+    assertThat(datasetsOnly.getOperatorTypeMetricsMap()).isNull();
+  }
+
+  @Test
+  void testOperatorMetricsAreSkipped() throws IOException {
+    final ProfileJSON noMetrics =
+        new ProfileJSONParser(Set.of(ProfileSection.PLAN, ProfileSection.FRAGMENTS))
+            .parseFile(FileTestHelpers.getTestProfile1().stream());
+    assertThat(noMetrics.getPlan()).isEqualTo(json.getPlan());
+    assertThat(noMetrics.getOperatorTypeMetricsMap()).isNull();
+    final ProfileIndex expected = ProfileIndex.of(json);
+    final ProfileIndex actual = ProfileIndex.of(noMetrics);
+    assertThat(actual.operatorCount()).isEqualTo(expected.operatorCount());
+    assertThat(actual.totalRecords()).isEqualTo(expected.totalRecords());
+    for (int o = 0; o < actual.operatorCount(); o++) {
+      assertThat(actual.operatorProfile(o).getMetric()).isNull();
+    }
+  }
 }
@@ -19,6 +19,7 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -170,4 +171,33 @@ class ProfileDifferenceReportTest {
     System.out.println(differences);
     assertThat(differences.size()).isEqualTo(0);
   }
+
+  @Test
+  void testLongTextsOnlyShowChangedLines() {
+    final List<String> oldLines = new ArrayList<>();
+    final List<String> newLines = new ArrayList<>();
+    for (int i = 0; i < ProfileDifferenceReport.LONG_TEXT_LINES; i++) {
+      oldLines.add("line " + i);
+      newLines.add(i == 700 ? "changed <700>" : "line " + i);
+    }
+    newLines.add("added");
+    final StringBuilder advice = new StringBuilder();
+    ProfileDifferenceReport.appendLineIdDiff(oldLines, newLines, advice);
+    assertThat(advice.toString()).isEqualTo("<<<line 700\n>>>changed &lt;700&gt;\n\n>>>added\n\n");
+  }
+
+  @Test
+  void testDifferencesAreStableAcrossRuns() throws IOException {
+    final ProfileDifferenceReport report = new ProfileDifferenceReport();
+    final ProfileJSONParser parser = new ProfileJSONParser();
+    final ProfileJSON parsed1 = parser.parseFile(getTestProfile1().stream());
+    final ProfileJSON parsed2 = parser.parseFile(getTestProfile2().stream());
+    final String path1 = getTestProfile1().filePath().toString();
+    final String path2 = getTestProfile2().filePath().toString();
+    final List<Difference> first = report.getDifferences(path1, path2, true, parsed1, parsed2);
+    for (int i = 0; i < 5; i++) {
+      assertThat(report.getDifferences(path1, path2, true, parsed1, parsed2)).isEqualTo(first);
+    }
+    assertThat(first.get(9).getName()).isEqualTo("found 9/9 plan keys differ");
+  }
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.dremio.support.diagnostics.shared.PathAndStream;
+import com.dremio.support.diagnostics.shared.ZipProfileProvider;
+import com.dremio.support.diagnostics.shared.dto.profilejson.FragmentProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.InputProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.MinorFragmentProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.OperatorProfile;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.dremio.support.diagnostics.shared.zip.UnzipperImpl;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ProfileIndexTest {
+
+  private static ProfileJSON profile;
+
+  @BeforeAll
+  static void initAll() throws IOException {
+    URL resource = ClassLoader.getSystemClassLoader().getResource("testprofile.zip");
+    if (resource == null) {
+      throw new RuntimeException("test setup not correct as testprofile.zip is not present");
+    }
+    File zipFile = new File(resource.getFile());
+    try (FileInputStream fs = new FileInputStream(zipFile)) {
+      PathAndStream stream = new PathAndStream(zipFile.toPath(), fs);
+      profile =
+          new ZipProfileProvider(new ProfileJSONParser(), new UnzipperImpl(), stream).getProfile();
+    }
+  }
+
+  @Test
+  void testMatchesAWalkOfTheProfile() {
+    int phases = 0;
+    int threads = 0;
+    int operators = 0;
+    long records = 0;
+    long batches = 0;
+    for (FragmentProfile fragment : profile.getFragmentProfile()) {
+      phases++;
+      for (MinorFragmentProfile minor : fragment.getMinorFragmentProfile()) {
+        threads++;
+        for (OperatorProfile operator : minor.getOperatorProfile()) {
+          operators++;
+          if (operator.getInputProfile() != null) {
+            for (InputProfile input : operator.getInputProfile()) {
+              records += input.getRecords();
+              batches += input.getBatches();
+            }
+          }
+        }
+      }
+    }
+    final ProfileIndex index = ProfileIndex.of(profile);
+    assertSame(profile, index.profile());
+    assertEquals(phases, index.phaseCount());
+    assertEquals(threads, index.threadCount());
+    assertEquals(operators, index.operatorCount());
+    assertEquals(records, index.totalRecords());
+    assertEquals(batches, index.totalBatches());
+  }
+
+  @Test
+  void testNamesAndRanges() {
+    final ProfileIndex index = ProfileIndex.of(profile);
+    final FragmentProfile first = profile.getFragmentProfile().get(0);
+    final String name = ProfileIndex.twoDigits(first.getMajorFragmentId());
+    assertEquals(name, index.phaseName(0));
+    assertEquals(0, index.phaseIndex(name));
+    assertEquals(-1, index.phaseIndex("not a phase"));
+    assertEquals(first.getMinorFragmentProfile().size(), index.phaseThreadEnd(0));
+    final OperatorProfile operator =
+        first.getMinorFragmentProfile().get(0).getOperatorProfile().get(0);
+    assertSame(operator, index.operatorProfile(0));
+    assertEquals(
+        name + "-" + ProfileIndex.twoDigits(operator.getOperatorId()), index.phaseOperatorName(0));
+  }
+
+  @Test
+  void testNullProfileIsEmpty() {
+    final ProfileIndex index = ProfileIndex.of(null);
+    assertEquals(0, index.phaseCount());
+    assertEquals(0, index.threadCount());
+    assertEquals(0, index.operatorCount());
+    assertEquals(0L, index.totalRecords());
+  }
+}
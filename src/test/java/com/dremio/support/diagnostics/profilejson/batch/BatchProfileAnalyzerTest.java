@@ -0,0 +1,115 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchProfileAnalyzerTest {
+
+  private static Path zippedProfile;
+  private static byte[] profileJson;
+
+  @BeforeAll
+  static void initAll() throws IOException, URISyntaxException {
+    URL resource = ClassLoader.getSystemClassLoader().getResource("testprofile.zip");
+    if (resource == null) {
+      throw new RuntimeException("test setup not correct as testprofile.zip is not present");
+    }
+    zippedProfile = Path.of(resource.toURI());
+    try (ZipFile zip = new ZipFile(zippedProfile.toFile());
+        InputStream is = zip.getInputStream(zip.getEntry("profile_attempt_0.json"))) {
+      profileJson = is.readAllBytes();
+    }
+  }
+
+  @Test
+  void testAnalyzesEveryProfileInADirectory(@TempDir Path dir) throws Exception {
+    Files.copy(zippedProfile, dir.resolve("first.zip"));
+    Files.createDirectories(dir.resolve("nested"));
+    Files.copy(zippedProfile, dir.resolve("nested").resolve("second.zip"));
+    Files.write(dir.resolve("profile_attempt_0.json"), profileJson);
+    Files.writeString(dir.resolve("profile_broken.json"), "{ not json");
+    Files.writeString(dir.resolve("notes.txt"), "ignored");
+
+    final BatchProfileReport report = new BatchProfileReport();
+    new BatchProfileAnalyzer().analyze(dir, report);
+
+    assertEquals(3, report.getAnalyzed());
+    assertEquals(1, report.getFailed());
+    assertEquals(1, report.getFailures().size());
+    assertEquals(
+        dir.resolve("profile_broken.json").toString(), report.getFailures().get(0).source());
+    assertEquals(3, report.getSlowest().size());
+    assertFalse(report.getMostRecords().isEmpty());
+  }
+
+  @Test
+  void testAnalyzesEveryProfileInAZip(@TempDir Path dir) throws Exception {
+    final Path archive = dir.resolve("bundle.zip");
+    try (OutputStream os = Files.newOutputStream(archive);
+        ZipOutputStream zip = new ZipOutputStream(os)) {
+      zip.putNextEntry(new ZipEntry("node1/profile_attempt_0.json"));
+      zip.write(profileJson);
+      zip.putNextEntry(new ZipEntry("node2/profile.zip"));
+      zip.write(Files.readAllBytes(zippedProfile));
+      zip.putNextEntry(new ZipEntry("node2/header.json"));
+      zip.write("{}".getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry("node3/profile_broken.json"));
+      zip.write("[]".getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+    }
+
+    // a single permit forces the reader to wait on every profile
+    final BatchProfileReport report = new BatchProfileReport(1);
+    new BatchProfileAnalyzer(1).analyze(archive, report);
+
+    assertEquals(2, report.getAnalyzed());
+    assertEquals(1, report.getFailed());
+    assertEquals("node3/profile_broken.json", report.getFailures().get(0).source());
+    // rankings never hold more than the requested top
+    assertEquals(1, report.getSlowest().size());
+    assertEquals(1, report.getMostRecords().size());
+  }
+
+  @Test
+  void testWritesTheReport(@TempDir Path dir) throws Exception {
+    Files.copy(zippedProfile, dir.resolve("profile.zip"));
+    final BatchProfileReport report = new BatchProfileReport();
+    new BatchProfileAnalyzer().analyze(dir, report);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    report.writeTo(out);
+    final String html = out.toString(StandardCharsets.UTF_8);
+    assertTrue(html.contains("1 profiles analyzed, 0 failed"), html);
+    assertTrue(html.contains("profile.zip"));
+  }
+}
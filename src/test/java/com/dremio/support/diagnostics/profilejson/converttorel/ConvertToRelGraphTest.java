@@ -16,6 +16,8 @@ package com.dremio.support.diagnostics.profilejson.converttorel;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import com.dremio.support.diagnostics.shared.dto.profilejson.PlanPhases;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -151,4 +153,66 @@ class ConvertToRelGraphParserTest {
           "should have no children");
     }
   }
+
+  @Test
+  void testChildrenMatchAScanOfEachRegion() {
+    Random random = new Random(7);
+    for (int run = 0; run < 200; run++) {
+      final List<ConvertToRelNode> nodes = new ArrayList<>();
+      nodes.add(new ConvertToRelNode(0, "n0", new HashMap<>(), 0));
+      for (int i = 1; i < 60; i++) {
+        // mostly well formed indents with the odd jump or single space
+        int depth = Math.max(0, nodes.get(i - 1).getIndentDepth() + random.nextInt(7) - 3);
+        nodes.add(new ConvertToRelNode(i, "n" + i, new HashMap<>(), depth));
+      }
+      ConvertToRel tree = new ConvertToRelGraph(nodes).getConvertToRelTree();
+      assertEquals(expected(nodes, 0), render(tree));
+    }
+  }
+
+  @Test
+  void testParsesThePlanPhase() {
+    PlanPhases phase = new PlanPhases();
+    phase.setPhaseName("Convert To Rel");
+    phase.setPlan(
+        "LogicalJoin(condition=[=($0, $1)], joinType=[inner])\n"
+            + "  ScanCrel(table=[a], splits=[2])\n"
+            + "\n"
+            + "  ScanCrel(table=[b], splits=[3])\n");
+    ProfileJSON profile = new ProfileJSON();
+    profile.setPlanPhases(List.of(phase));
+    List<ConvertToRelNode> nodes =
+        new ConvertToRelGraphParser().parseConvertToRel(profile).getNodes();
+    assertEquals(3, nodes.size());
+    assertEquals("LogicalJoin", nodes.get(0).getNodeType());
+    assertEquals("=($0, $1)", nodes.get(0).getProperties().get("condition"));
+    assertEquals("inner", nodes.get(0).getProperties().get("joinType"));
+    assertEquals(2, nodes.get(2).getIndentDepth());
+    assertEquals(2, nodes.get(2).getId());
+    assertEquals("3", nodes.get(2).getProperties().get("splits"));
+  }
+
+  /** children of a node are the nodes two spaces deeper before the indent returns to its level */
+  private static String expected(List<ConvertToRelNode> nodes, int position) {
+    StringBuilder builder = new StringBuilder(nodes.get(position).getNodeType()).append('(');
+    int depth = nodes.get(position).getIndentDepth();
+    for (int i = position + 1; i < nodes.size(); i++) {
+      int change = nodes.get(i).getIndentDepth() - depth;
+      if (change <= 0) {
+        break;
+      }
+      if (change == 2) {
+        builder.append(expected(nodes, i));
+      }
+    }
+    return builder.append(')').toString();
+  }
+
+  private static String render(ConvertToRel rel) {
+    StringBuilder builder = new StringBuilder(rel.getTypeName()).append('(');
+    for (ConvertToRel child : rel.getChildren()) {
+      builder.append(render(child));
+    }
+    return builder.append(')').toString();
+  }
 }
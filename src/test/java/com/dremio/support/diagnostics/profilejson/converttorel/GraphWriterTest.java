@@ -114,4 +114,29 @@ class GraphWriterTest {
                 Strings.countSubstring(mermaidText, "-->"),
                 "expecting 6 links but there were more or less"));
   }
+
+  @Test
+  void testLargeGraphIsCollapsed() {
+    List<ConvertToRel> children = new ArrayList<>();
+    for (int i = 0; i < 99; i++) {
+      children.add(new ConvertToRel("Leaf", new ArrayList<>(), new HashMap<>()));
+    }
+    ConvertToRel rel = new ConvertToRel("Root", children, new HashMap<>());
+    String mermaidText = new GraphWriter(10).writeMermaid(rel);
+    assertEquals(10, Strings.countSubstring(mermaidText, "-->"), "9 leaves and 1 collapsed node");
+    assertTrue(mermaidText.contains("0-Root-->9-Leaf;"), mermaidText);
+    assertTrue(mermaidText.contains("0-Root-->10-Collapsed\\nnodes:90;"), mermaidText);
+  }
+
+  @Test
+  void testSmallGraphIsNotCollapsed() {
+    List<ConvertToRel> children = new ArrayList<>();
+    for (int i = 0; i < 9; i++) {
+      children.add(new ConvertToRel("Leaf", new ArrayList<>(), new HashMap<>()));
+    }
+    ConvertToRel rel = new ConvertToRel("Root", children, new HashMap<>());
+    String mermaidText = new GraphWriter(10).writeMermaid(rel);
+    assertEquals(9, Strings.countSubstring(mermaidText, "-->"));
+    assertTrue(!mermaidText.contains("Collapsed"));
+  }
 }
@@ -14,13 +14,20 @@
 package com.dremio.support.diagnostics.profilejson.plan;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.dremio.support.diagnostics.FileTestHelpers;
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
 import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 public class PlanRelationshipParserTest {
@@ -107,4 +114,121 @@ public class PlanRelationshipParserTest {
     assertEquals(132200.2, cumulativeCost.getNetwork(), 0.01);
     assertEquals(139603.2, cumulativeCost.getMemory(), 0.01);
   }
+
+  @Test
+  void testWiresUpstreamAndDownstream() {
+    PlanRelationshipParser parser = new PlanRelationshipParser();
+    ProfileJSON profile = new ProfileJSON();
+    profile.setJsonPlan(
+        "{\"\\\"00-00\\\"\": {\"\\\"op\\\"\": \"Screen\", \"\\\"inputs\\\"\": [\"00-01\"],"
+            + " \"\\\"values\\\"\": {\"\\\"table\\\"\": \"\\\"a\\\".b\", \"\\\"n\\\"\": 2},"
+            + " \"\\\"cumulativeCost\\\"\": \"{3.0 rows, 1.5 cpu, 0.0 io, 0.0 network, 0.0"
+            + " memory}\"}, \"00-01\": {\"op\": \"Join\", \"inputs\": [\"00-02\", \"00-02\","
+            + " \"00-03\"], \"rowCount\": 3, \"cumulativeCost\": \"{tiny}\"}, \"00-02\": {\"op\":"
+            + " \"Scan\", \"inputs\": [], \"cumulativeCost\": \"{tiny}\"}, \"00-03\": {\"op\":"
+            + " \"Scan\", \"inputs\": [], \"cumulativeCost\": \"{tiny}\"}}");
+    List<PlanRelation> relations = parser.getPlanRelations(profile);
+    assertEquals(4, relations.size());
+    PlanRelation screen = relations.get(0);
+    PlanRelation join = relations.get(1);
+    PlanRelation left = relations.get(2);
+    PlanRelation right = relations.get(3);
+    assertEquals("00-00", screen.getName());
+    assertEquals(Map.of("table", "a.b", "n", 2), screen.getValues());
+    assertEquals(3.0, screen.getCumulativeCost().getRows());
+    assertEquals(List.of(join), screen.getUpstream());
+    assertTrue(screen.getDownstream().isEmpty());
+    // every listed input is upstream, a repeated input is downstream of its parent only once
+    assertEquals(List.of(left, left, right), join.getUpstream());
+    assertEquals(List.of(screen), join.getDownstream());
+    assertEquals(List.of(join), left.getDownstream());
+    assertEquals(List.of(join), right.getDownstream());
+  }
+
+  @Test
+  void testParserCanBeReusedAcrossProfiles() throws IOException {
+    PlanRelationshipParser parser = new PlanRelationshipParser();
+    ProfileJSON profile;
+    try (InputStream stream = FileTestHelpers.getTestProfile1().stream()) {
+      profile = new ProfileJSONParser().parseFile(stream);
+    }
+    List<PlanRelation> first = parser.getPlanRelations(profile);
+    List<PlanRelation> second = parser.getPlanRelations(profile);
+    assertEquals(first.size(), second.size());
+    for (int i = 0; i < first.size(); i++) {
+      assertEquals(first.get(i).getUpstream().size(), second.get(i).getUpstream().size());
+      assertEquals(first.get(i).getDownstream().size(), second.get(i).getDownstream().size());
+    }
+  }
+
+  @Test
+  void testCumulativeCostMatchesParseDouble() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      String[] raw = new String[5];
+      for (int j = 0; j < raw.length; j++) {
+        raw[j] = randomNumber(random);
+      }
+      CumulativeCost cost =
+          PlanRelationshipParser.getCumulativeCost(
+              String.format(
+                  "{%s rows, %s cpu, %s io, %s network, %s memory}",
+                  raw[0], raw[1], raw[2], raw[3], raw[4]));
+      assertEquals(Double.parseDouble(raw[0]), cost.getRows(), raw[0]);
+      assertEquals(Double.parseDouble(raw[1]), cost.getCpu(), raw[1]);
+      assertEquals(Double.parseDouble(raw[2]), cost.getIo(), raw[2]);
+      assertEquals(Double.parseDouble(raw[3]), cost.getNetwork(), raw[3]);
+      assertEquals(Double.parseDouble(raw[4]), cost.getMemory(), raw[4]);
+    }
+  }
+
+  @Test
+  void testCumulativeCostRejectsMalformedText() {
+    assertThrows(
+        RuntimeException.class,
+        () -> PlanRelationshipParser.getCumulativeCost("{1.0 rows, 2.0 cpu}"));
+    assertThrows(
+        RuntimeException.class,
+        () ->
+            PlanRelationshipParser.getCumulativeCost(
+                "{1.0 rows, x cpu, 0.0 io, 0.0 network, 0.0 memory}"));
+    assertThrows(RuntimeException.class, () -> PlanRelationshipParser.getCumulativeCost(null));
+  }
+
+  @Test
+  void testCumulativeCostExponentAndInfinity() {
+    CumulativeCost cost =
+        PlanRelationshipParser.getCumulativeCost(
+            "{1.0E20 rows, Infinity cpu, -2.5 io, 0.1 network, 12345678901234567890.5 memory}");
+    assertEquals(1.0e20, cost.getRows());
+    assertEquals(Double.POSITIVE_INFINITY, cost.getCpu());
+    assertEquals(-2.5, cost.getIo());
+    assertEquals(0.1, cost.getNetwork());
+    assertEquals(12345678901234567890.5, cost.getMemory());
+  }
+
+  @Test
+  void testIndexSharesTheRelations() throws IOException {
+    ProfileJSON profile;
+    try (InputStream stream = FileTestHelpers.getTestProfile1().stream()) {
+      profile = new ProfileJSONParser().parseFile(stream);
+    }
+    ProfileIndex index = ProfileIndex.of(profile);
+    assertSame(index.planRelations(), index.planRelations());
+    assertEquals(9, index.planRelations().size());
+    assertTrue(ProfileIndex.of(null).planRelations().isEmpty());
+  }
+
+  private static String randomNumber(Random random) {
+    switch (random.nextInt(4)) {
+      case 0:
+        return String.valueOf(random.nextInt(1_000_000)) + ".0";
+      case 1:
+        return String.valueOf(random.nextDouble() * 1_000_000);
+      case 2:
+        return String.valueOf(random.nextLong() >>> 12) + "." + random.nextInt(1000);
+      default:
+        return String.format(Locale.ROOT, "%.3f", random.nextDouble() * 100_000);
+    }
+  }
 }
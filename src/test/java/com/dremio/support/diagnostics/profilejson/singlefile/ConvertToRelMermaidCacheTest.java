@@ -0,0 +1,72 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.singlefile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.shared.dto.profilejson.PlanPhases;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ConvertToRelMermaidCacheTest {
+
+  private static final String plan =
+      "LogicalSort(fetch=[10])\n"
+          + "  LogicalFilter(condition=[>($0, 1)])\n"
+          + "    ScanCrel(table=[t], columns=[`a`, `b`], splits=[4])\n";
+
+  private static ProfileJSON profile(final String phaseName, final String text) {
+    final PlanPhases phase = new PlanPhases();
+    phase.setPhaseName(phaseName);
+    phase.setPlan(text);
+    final ProfileJSON profile = new ProfileJSON();
+    profile.setPlanPhases(List.of(phase));
+    return profile;
+  }
+
+  @Test
+  void testSamePlanIsOnlyRenderedOnce() {
+    final ConvertToRelMermaidCache cache = new ConvertToRelMermaidCache(4, 100);
+    final Optional<String> first = cache.getMermaid(profile("Convert To Rel", plan));
+    final Optional<String> second = cache.getMermaid(profile("Convert To Rel", plan));
+    assertTrue(first.isPresent());
+    assertTrue(first.get().contains("0-LogicalSort\\nfetch:10-->1-LogicalFilter"), first.get());
+    assertEquals(first, second);
+    assertEquals(1, cache.stats().missCount());
+    assertEquals(1, cache.stats().hitCount());
+  }
+
+  @Test
+  void testDifferentPlansAreNotShared() {
+    final ConvertToRelMermaidCache cache = new ConvertToRelMermaidCache(4, 100);
+    final Optional<String> first = cache.getMermaid(profile("Convert To Rel", plan));
+    final Optional<String> second =
+        cache.getMermaid(profile("Convert To Rel", plan.replace("fetch=[10]", "fetch=[20]")));
+    assertTrue(second.isPresent());
+    assertTrue(second.get().contains("fetch:20"));
+    assertEquals(2, cache.stats().missCount());
+    assertTrue(!first.equals(second));
+  }
+
+  @Test
+  void testNoConvertToRel() {
+    final ConvertToRelMermaidCache cache = new ConvertToRelMermaidCache(4, 100);
+    assertTrue(cache.getMermaid(profile("Logical Planning", plan)).isEmpty());
+    assertTrue(cache.getMermaid(new ProfileJSON()).isEmpty());
+    assertTrue(cache.getMermaid(profile("Convert To Rel", "")).isEmpty());
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.profilejson.singlefile.reports.summary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.profilejson.ProfileIndex;
+import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
+import com.dremio.support.diagnostics.profilejson.plan.PlanRelation;
+import com.dremio.support.diagnostics.profilejson.plan.PlanRelationshipParser;
+import com.dremio.support.diagnostics.shared.PathAndStream;
+import com.dremio.support.diagnostics.shared.ZipProfileProvider;
+import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import com.dremio.support.diagnostics.shared.zip.UnzipperImpl;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class OperatorsRecordsScannedReportTest {
+
+  private static ProfileJSON profile;
+
+  @BeforeAll
+  static void initAll() throws IOException {
+    URL resource = ClassLoader.getSystemClassLoader().getResource("testprofile.zip");
+    if (resource == null) {
+      throw new RuntimeException("test setup not correct as testprofile.zip is not present");
+    }
+    File zipFile = new File(resource.getFile());
+    try (FileInputStream fs = new FileInputStream(zipFile)) {
+      PathAndStream stream = new PathAndStream(zipFile.toPath(), fs);
+      profile =
+          new ZipProfileProvider(new ProfileJSONParser(), new UnzipperImpl(), stream).getProfile();
+    }
+  }
+
+  @Test
+  void testTopTenMatchesAFullSort() {
+    final ProfileIndex index = ProfileIndex.of(profile);
+    final Collection<PlanRelation> relations =
+        new PlanRelationshipParser().getPlanRelations(profile);
+    final OperatorsRecordsScannedReport.OperatorRecordsScannedReportResult result =
+        OperatorsRecordsScannedReport.generateRecordReport(index, relations);
+    final List<Long> records = new ArrayList<>();
+    final List<Long> peaks = new ArrayList<>();
+    for (int o = 0; o < index.operatorCount(); o++) {
+      if (index.operatorHasInputs(o)) {
+        records.add(index.operatorRecords(o));
+        if (index.operatorPeakMemory(o) > 0) {
+          peaks.add(index.operatorPeakMemory(o));
+        }
+      }
+    }
+    records.sort(Comparator.reverseOrder());
+    peaks.sort(Comparator.reverseOrder());
+    assertEquals(
+        records.subList(0, Math.min(10, records.size())),
+        result.getTop10RecordsScanned().stream().map(OperatorRecordDetail::getRecords).toList());
+    assertEquals(
+        peaks.subList(0, Math.min(10, peaks.size())),
+        result.getTop10MostPeakMemory().stream()
+            .map(OperatorRecordDetail::getPeakLocalMemoryAllocated)
+            .toList());
+    final List<OperatorRecordDetail> rates = result.getTop10SlowestScannedRate();
+    for (int i = 1; i < rates.size(); i++) {
+      assertTrue(rates.get(i - 1).getRecordsPerSecond() <= rates.get(i).getRecordsPerSecond());
+    }
+  }
+
+  @Test
+  void testNullProfileIsEmpty() {
+    assertTrue(
+        OperatorsRecordsScannedReport.generateRecordReport(ProfileIndex.of(null), List.of())
+            .isEmpty());
+  }
+}
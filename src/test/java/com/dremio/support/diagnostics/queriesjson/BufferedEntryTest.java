@@ -0,0 +1,71 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+import org.junit.jupiter.api.Test;
+
+class BufferedEntryTest {
+
+  private static byte[] data(final int size) {
+    final byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+
+  @Test
+  void testEntryWithinBudget() throws Exception {
+    final byte[] data = data(1000);
+    final Semaphore budget = new Semaphore(4096);
+    final BufferedEntry entry = BufferedEntry.read(new ByteArrayInputStream(data), budget, 4096);
+    assertTrue(entry.complete());
+    assertEquals(1000, entry.size());
+    assertEquals(4096 - 1000, budget.availablePermits());
+    try (InputStream is = entry.stream(null)) {
+      assertArrayEquals(data, is.readAllBytes());
+    }
+  }
+
+  @Test
+  void testEntryLargerThanBudgetContinuesFromArchive() throws Exception {
+    final byte[] data = data(1000);
+    final Semaphore budget = new Semaphore(100);
+    final ByteArrayInputStream archive = new ByteArrayInputStream(data);
+    final BufferedEntry entry = BufferedEntry.read(archive, budget, 100);
+    assertFalse(entry.complete());
+    assertEquals(100, entry.size());
+    assertEquals(0, budget.availablePermits());
+    try (InputStream is = entry.stream(archive)) {
+      assertArrayEquals(data, is.readAllBytes());
+    }
+  }
+
+  @Test
+  void testGzipMagic() throws Exception {
+    final byte[] gzip = new byte[] {(byte) 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0};
+    assertTrue(
+        BufferedEntry.read(new ByteArrayInputStream(gzip), new Semaphore(100), 100).isGzip());
+    assertFalse(
+        BufferedEntry.read(new ByteArrayInputStream(data(8)), new Semaphore(100), 100).isGzip());
+  }
+}
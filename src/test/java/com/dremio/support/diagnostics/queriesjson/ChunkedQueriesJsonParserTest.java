@@ -0,0 +1,61 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+class ChunkedQueriesJsonParserTest {
+
+  private SearchedFile parse(final int threads, final int chunkSize, final Set<String> ids)
+      throws Exception {
+    final QueryReporter reporter = q -> ids.add(q.getQueryId() + q.getStart());
+    try (InputStream is = ChunkedQueriesJsonParserTest.class.getResourceAsStream("/queries.json")) {
+      return new ChunkedQueriesJsonParser(threads, chunkSize)
+          .parse(
+              "queries.json",
+              is,
+              List.of(reporter),
+              new DateRangeQueryFilter(0, Instant.now().toEpochMilli()));
+    }
+  }
+
+  @Test
+  void testChunksSmallerThanARowMatchSingleThread() throws Exception {
+    final Set<String> expected = ConcurrentHashMap.newKeySet();
+    final SearchedFile single = parse(1, ChunkedQueriesJsonParser.DEFAULT_CHUNK_SIZE, expected);
+    final Set<String> actual = ConcurrentHashMap.newKeySet();
+    final SearchedFile chunked = parse(4, 100, actual);
+    assertEquals(11, single.parsed());
+    assertEquals(single.parsed(), chunked.parsed());
+    assertEquals(single.filtered(), chunked.filtered());
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testSeveralRowsPerChunk() throws Exception {
+    final Set<String> actual = ConcurrentHashMap.newKeySet();
+    final SearchedFile chunked = parse(3, 4096, actual);
+    assertEquals(11, chunked.parsed());
+    assertEquals(0, chunked.filtered());
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class QueryFingerprintTest {
+
+  @Test
+  void testLiteralsAndWhitespaceAreNormalized() {
+    final String a = "SELECT *  FROM t1 WHERE id = 42 AND name = 'bob' -- first\n LIMIT 10";
+    final String b = "select * from t1\n\twhere id=7 and name='it''s' /* other */ limit 500";
+    assertEquals(
+        "select*from t1 where id=? and name=? limit ?", QueryFingerprint.normalize(a, 1000));
+    assertEquals(QueryFingerprint.normalize(a, 1000), QueryFingerprint.normalize(b, 1000));
+    assertEquals(QueryFingerprint.of(a), QueryFingerprint.of(b));
+  }
+
+  @Test
+  void testInListsCollapse() {
+    final String one = "select a from t where b in (1)";
+    final String many = "select a from t where b in ( 1, 2.5, -3e10 , 4 )";
+    final String strings = "select a from t where b in ('x', 'y')";
+    assertEquals("select a from t where b in(?)", QueryFingerprint.normalize(one, 1000));
+    assertEquals(QueryFingerprint.of(one), QueryFingerprint.of(many));
+    assertEquals(QueryFingerprint.of(one), QueryFingerprint.of(strings));
+    // a minus between two operands is a subtraction and is kept
+    assertEquals("select a-? from t", QueryFingerprint.normalize("select a - 1 from t", 1000));
+  }
+
+  @Test
+  void testIdentifiersAreKept() {
+    assertNotEquals(
+        QueryFingerprint.of("select a from t1"), QueryFingerprint.of("select a from t2"));
+    assertNotEquals(
+        QueryFingerprint.of("select \"A\" from t"), QueryFingerprint.of("select \"a\" from t"));
+    assertEquals(
+        "select \"My Col\" from s.\"t 1\"",
+        QueryFingerprint.normalize("SELECT \"My Col\" FROM S.\"t 1\"", 1000));
+  }
+
+  @Test
+  void testNullAndTruncation() {
+    assertEquals(0, QueryFingerprint.of(null));
+    assertEquals("", QueryFingerprint.normalize(null, 10));
+    assertEquals("select a,", QueryFingerprint.normalize("select a, b, c from t", 9));
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QueryStreamReaderTest {
+
+  @Test
+  void testMatchesObjectMapperBinding() throws Exception {
+    final Path file = Path.of(QueryStreamReaderTest.class.getResource("/queries.json").toURI());
+    final ObjectMapper mapper = new ObjectMapper();
+    final List<Query> expected = new ArrayList<>();
+    for (String line : Files.readAllLines(file)) {
+      expected.add(mapper.readValue(line, Query.class));
+    }
+    final List<Query> actual = new ArrayList<>();
+    try (var r = new QueryStreamReader(Files.newInputStream(file))) {
+      Query q;
+      while (null != (q = r.next())) {
+        actual.add(q);
+      }
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testSkipsNestedValuesAndBlankLines() throws IOException {
+    final String rows =
+        """
+{"queryId":"a","scannedDatasets":[{"name":"x","nested":{"queueName":"wrong"}}],"queueName":"q1","start":1,"finish":2}
+
+{"executionNodes":[[1,2],[3]],"queryId":"b","memoryAllocated":"10","queryCost":1.5}
+""";
+    final byte[] data = rows.getBytes(StandardCharsets.UTF_8);
+    try (var r = new QueryStreamReader(new ByteArrayInputStream(data))) {
+      final Query first = r.next();
+      assertEquals("a", first.getQueryId());
+      assertEquals("q1", first.getQueueName());
+      assertEquals(1L, first.getStart());
+      assertEquals(2L, first.getFinish());
+      final Query second = r.next();
+      assertEquals("b", second.getQueryId());
+      assertEquals(10L, second.getMemoryAllocated());
+      assertEquals(1.5f, second.getQueryCost());
+      assertNull(r.next());
+    }
+  }
+
+  @Test
+  void testPredicateRejectsRowsBeforeBinding() throws Exception {
+    final Path file = Path.of(QueryStreamReaderTest.class.getResource("/queries.json").toURI());
+    final DateRangeQueryFilter filter = new DateRangeQueryFilter(1663942981202L, 1663943055544L);
+    final List<Query> expected = new ArrayList<>();
+    try (var r = new QueryStreamReader(Files.newInputStream(file))) {
+      Query q;
+      while (null != (q = r.next())) {
+        if (filter.isValid(q)) {
+          expected.add(q);
+        }
+      }
+    }
+    final byte[] data = Files.readAllBytes(file);
+    // a stream handing out a few bytes at a time makes the reader refill and grow its buffer
+    final InputStream trickle =
+        new FilterInputStream(new ByteArrayInputStream(data)) {
+          @Override
+          public int read(final byte[] b, final int off, final int len) throws IOException {
+            return super.read(b, off, Math.min(len, 7));
+          }
+        };
+    for (QueryStreamReader reader :
+        List.of(
+            new QueryStreamReader(trickle, filter),
+            new QueryStreamReader(data, 0, data.length, filter))) {
+      final List<Query> actual = new ArrayList<>();
+      try (reader) {
+        Query q;
+        while (null != (q = reader.next())) {
+          actual.add(q);
+        }
+      }
+      assertEquals(expected, actual);
+      assertEquals(11 - expected.size(), reader.getRejected());
+    }
+  }
+
+  @Test
+  void testPredicateReportsTruncatedRows() {
+    final byte[] data =
+        "{\"queryId\":\"a\",\"start\":5,\"finish\":6}\n{\"queryId\":\"b\",\"sta"
+            .getBytes(StandardCharsets.UTF_8);
+    final DateRangeQueryFilter filter = new DateRangeQueryFilter(0, 10);
+    assertThrows(
+        IOException.class,
+        () -> {
+          try (var r = new QueryStreamReader(new ByteArrayInputStream(data), filter)) {
+            assertEquals("a", r.next().getQueryId());
+            r.next();
+          }
+        });
+  }
+
+  @Test
+  void testPredicateAcrossSlicesChecksAndBindsInBulk() throws Exception {
+    final Path file = Path.of(QueryStreamReaderTest.class.getResource("/queries.json").toURI());
+    final String template = Files.readAllLines(file).get(0);
+    // enough rows for several slices, rows are in start order like a real file
+    final StringBuilder rows = new StringBuilder();
+    final int total = 12_000;
+    for (int i = 1; i <= total; i++) {
+      rows.append(template.replaceFirst("\"start\":\\d+", "\"start\":" + i)).append('\n');
+    }
+    final byte[] data = rows.toString().getBytes(StandardCharsets.UTF_8);
+    assertTrue(data.length > 5 * QueryStreamReader.SLICE_BYTES);
+    // rejects the first and last quarter and keeps everything in between
+    final DateRangeQueryFilter filter = new DateRangeQueryFilter(total / 4, total * 3 / 4);
+    try (var r = new QueryStreamReader(new ByteArrayInputStream(data), filter)) {
+      long kept = 0;
+      long returned = 0;
+      long previous = 0;
+      Query q;
+      while (null != (q = r.next())) {
+        assertTrue(q.getStart() > previous, "rows come back in order");
+        previous = q.getStart();
+        returned++;
+        if (filter.isValid(q)) {
+          kept++;
+        }
+      }
+      assertEquals(total / 2 - 1, kept);
+      assertEquals(total, returned + r.getRejected());
+      // the rows before the range were rejected without binding, the ones after it follow a
+      // stretch of kept rows that switched the reader to bulk binding, isValid drops them instead
+      assertEquals(total / 4, r.getRejected());
+    }
+  }
+}
@@ -18,10 +18,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
 import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class ReadArchiveTest {
 
@@ -49,4 +62,93 @@ public class ReadArchiveTest {
     readArchive.readTarGz(file.getFile(), reporters, 2);
     assertEquals(11, counter.getCount());
   }
+
+  @Test
+  public void testReadZipWithGzipAndPlainEntries()
+      throws IOException, InterruptedException, ExecutionException {
+    ReadArchive readArchive =
+        new ReadArchive(new DateRangeQueryFilter(0, Instant.now().toEpochMilli()));
+    var gzipped = new LongAdder();
+    var plain = new LongAdder();
+    var gzipFiles =
+        readArchive.readZip(
+            ReadArchiveTest.class.getResource("/big-queries.json.zip").getFile(),
+            List.of(q -> gzipped.increment()),
+            4);
+    var plainFiles =
+        readArchive.readZip(
+            ReadArchiveTest.class.getResource("/big-queries-unzipped.json.zip").getFile(),
+            List.of(q -> plain.increment()),
+            4);
+    assertEquals(3, gzipFiles.size());
+    assertEquals(4, plainFiles.size());
+    assertEquals(3 * 11, gzipped.sum());
+    assertEquals(4 * 11, plain.sum());
+  }
+
+  @Test
+  public void testSkipsRotatedFilesOutsideTheRange(@TempDir Path dir)
+      throws IOException, InterruptedException, ExecutionException {
+    final byte[] rows =
+        Files.readAllBytes(Path.of(ReadArchiveTest.class.getResource("/queries.json").getFile()));
+    final Path zip = dir.resolve("logs.zip");
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+      // the rows start on 2022-09-23, an entry named after an earlier day cannot hold them
+      for (String name :
+          List.of(
+              "log/archive/queries.2022-09-01.0.json.gz",
+              "log/archive/queries.2022-09-23.0.json.gz",
+              "log/archive/queries.2022-10-30.0.json.gz")) {
+        out.putNextEntry(new ZipEntry(name));
+        final GZIPOutputStream gz = new GZIPOutputStream(out);
+        gz.write(rows);
+        gz.finish();
+        out.closeEntry();
+      }
+    }
+    final long start =
+        LocalDate.parse("2022-09-23").atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    final ReadArchive readArchive =
+        new ReadArchive(new DateRangeQueryFilter(start, start + Duration.ofDays(1).toMillis()));
+    final LongAdder count = new LongAdder();
+    final List<SearchedFile> files =
+        new ArrayList<>(readArchive.readZip(zip.toString(), List.of(q -> count.increment()), 2));
+    files.sort(Comparator.comparing(SearchedFile::name));
+    assertEquals(22, count.sum());
+    assertEquals(3, files.size());
+    assertEquals(0, files.get(0).parsed() + files.get(0).filtered());
+    assertEquals(11, files.get(1).parsed());
+    // a later entry can hold long queries started in range so it is read
+    assertEquals(11, files.get(2).parsed());
+  }
+
+  @Test
+  public void testEntryLargerThanTheBudgetSharesThePool(@TempDir Path dir)
+      throws IOException, InterruptedException, ExecutionException {
+    final byte[] rows =
+        Files.readAllBytes(Path.of(ReadArchiveTest.class.getResource("/queries.json").getFile()));
+    final Path zip = dir.resolve("logs.zip");
+    int repeats = 0;
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+      for (int i = 0; i < 3; i++) {
+        out.putNextEntry(new ZipEntry("queries.%d.json".formatted(i)));
+        out.write(rows);
+        out.closeEntry();
+      }
+      // larger than the smallest budget so it is parsed while the archive is read
+      out.putNextEntry(new ZipEntry("queries.json"));
+      while ((long) repeats * rows.length <= 2 * BufferedEntry.BLOCK_SIZE) {
+        out.write(rows);
+        repeats++;
+      }
+      out.closeEntry();
+    }
+    final ReadArchive readArchive =
+        new ReadArchive(new DateRangeQueryFilter(0, Instant.now().toEpochMilli()), 0);
+    final LongAdder count = new LongAdder();
+    final Collection<SearchedFile> files =
+        readArchive.readZip(zip.toString(), List.of(q -> count.increment()), 4);
+    assertEquals(4, files.size());
+    assertEquals((3 + repeats) * 11L, count.sum());
+  }
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.QueryStreamReader;
+import com.dremio.support.diagnostics.queriesjson.RawQueryRow;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class QueryPredicatesTest {
+
+  private static Query bind(final byte[] row) throws IOException {
+    try (QueryStreamReader r = new QueryStreamReader(row, 0, row.length)) {
+      return r.next();
+    }
+  }
+
+  private static boolean mayMatch(final QueryPredicate predicate, final byte[] row) {
+    final RawQueryRow raw = new RawQueryRow();
+    raw.reset(row, 0, row.length);
+    return predicate.mayMatch(raw);
+  }
+
+  private static long epochMillis(final String day) {
+    return LocalDate.parse(day).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+  }
+
+  @Test
+  void testRawRowsAgreeWithBoundRows() throws Exception {
+    final Path file = Path.of(QueryPredicatesTest.class.getResource("/queries.json").toURI());
+    final List<QueryPredicate> predicates =
+        List.of(
+            QueryPredicates.parse("user=DREMIO"),
+            QueryPredicates.parse("outcome=completed"),
+            QueryPredicates.parse("type=flight"),
+            QueryPredicates.parse("queue=missing"),
+            QueryPredicates.parse("engine=default"),
+            QueryPredicates.parse("queue="),
+            QueryPredicates.parse("text~(?i)from\\s+pglocal"),
+            new DateRangeQueryFilter(1663942981202L, 1663943055544L),
+            QueryPredicates.or(
+                List.of(QueryPredicates.outcome("failed"), QueryPredicates.username("nobody"))));
+    int matched = 0;
+    for (String line : Files.readAllLines(file)) {
+      final byte[] row = line.getBytes(StandardCharsets.UTF_8);
+      final Query query = bind(row);
+      for (QueryPredicate predicate : predicates) {
+        assertEquals(predicate.isValid(query), mayMatch(predicate, row), predicate + " " + line);
+        if (predicate.isValid(query)) {
+          matched++;
+        }
+      }
+    }
+    // every predicate above is exact on these rows, make sure they do not all reject everything
+    assertTrue(matched > 0);
+  }
+
+  @Test
+  void testDecodesEscapesAndUnicode() throws Exception {
+    final byte[] row =
+        """
+        {"queryText" : "select \\"caf\\u00e9\\"\\nfrom \\u2603 where x = 'ünï😀'", \
+        "username":"Ren\\u00e9e", "start": 10, "finish" : 20.5, "queueName": null, \
+        "nested":{"username":"wrong","start":1}}\
+        """
+            .getBytes(StandardCharsets.UTF_8);
+    final Query query = bind(row);
+    final QueryPredicate user = QueryPredicates.username("renée");
+    assertTrue(user.isValid(query));
+    assertTrue(mayMatch(user, row));
+    final QueryPredicate text =
+        QueryPredicates.queryText(Pattern.compile("\"café\"\nfrom ☃ where x = 'ünï😀'$"));
+    assertTrue(text.isValid(query));
+    assertTrue(mayMatch(text, row));
+    assertFalse(mayMatch(QueryPredicates.queueName("null"), row));
+    final RawQueryRow raw = new RawQueryRow();
+    raw.reset(row, 0, row.length);
+    assertEquals(10L, raw.getLong(RawQueryRow.Field.START));
+    // a decimal is left to the full parser
+    assertEquals(RawQueryRow.UNKNOWN, raw.getLong(RawQueryRow.Field.FINISH));
+    assertEquals(0L, raw.getLong(RawQueryRow.Field.ENGINE_NAME));
+  }
+
+  @Test
+  void testRowsThatAreNotOnePlainObjectAreOpaque() {
+    final RawQueryRow raw = new RawQueryRow();
+    for (String row :
+        List.of(
+            "{\"queryText\":\"a } \\\" {\",\"list\":[{}],\"start\":1",
+            "{\"st\\u0061rt\":1,\"finish\":2}",
+            "{\"queryId\":\"a\"} {\"start\":1}",
+            "[1]",
+            "{\"username\":\"trunc")) {
+      final byte[] data = row.getBytes(StandardCharsets.UTF_8);
+      raw.reset(data, 0, data.length);
+      raw.getLong(RawQueryRow.Field.FINISH);
+      raw.getString(RawQueryRow.Field.USERNAME);
+      assertTrue(raw.isOpaque(), row);
+    }
+    final byte[] data =
+        "{\"queryText\":\"a } \\\" {\",\"list\":[{}],\"start\":1,\"finish\":22}"
+            .getBytes(StandardCharsets.UTF_8);
+    raw.reset(data, 0, data.length);
+    assertEquals(22L, raw.getLong(RawQueryRow.Field.FINISH));
+    assertEquals(1L, raw.getLong(RawQueryRow.Field.START));
+    assertEquals(null, raw.getString(RawQueryRow.Field.USERNAME));
+    assertFalse(raw.isOpaque());
+  }
+
+  @Test
+  void testRejectsUnknownExpressions() {
+    assertThrows(IllegalArgumentException.class, () -> QueryPredicates.parse("user"));
+    assertThrows(IllegalArgumentException.class, () -> QueryPredicates.parse("cost=1"));
+    assertThrows(IllegalArgumentException.class, () -> QueryPredicates.parse("user~a.*"));
+  }
+
+  @Test
+  void testRotatedFilesOutsideTheRange() {
+    final DateRangeQueryFilter filter =
+        new DateRangeQueryFilter(epochMillis("2024-05-10"), epochMillis("2024-05-11"));
+    assertFalse(filter.mayMatchFile("archive/queries.2024-05-01.0.json.gz"));
+    assertFalse(filter.mayMatchFile("queries.2024-05-08.json.gz"));
+    // queries finishing on the 9th in a timezone behind utc started on the 10th
+    assertTrue(filter.mayMatchFile("queries.2024-05-09.json.gz"));
+    assertTrue(filter.mayMatchFile("queries.2024-05-10.3.json.gz"));
+    // queries started in range can finish any time later
+    assertTrue(filter.mayMatchFile("queries.2024-05-16.json.gz"));
+    assertTrue(filter.mayMatchFile("queries.2025-05-19.json.gz"));
+    assertTrue(filter.mayMatchFile("queries.json"));
+    assertTrue(filter.mayMatchFile("queries.2024-13-45.json.gz"));
+  }
+}
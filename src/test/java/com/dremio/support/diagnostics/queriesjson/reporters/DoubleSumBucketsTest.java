@@ -0,0 +1,78 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class DoubleSumBucketsTest {
+
+  @Test
+  void testRanges() {
+    final DoubleSumBuckets buckets = new DoubleSumBuckets(1000);
+    buckets.addRange(50_000, 51_999, 1.5);
+    buckets.addRange(51_000, 51_000, 0.25);
+    assertEquals(Map.of(50_000L, 1.5, 51_000L, 1.75), buckets.toMap());
+  }
+
+  @Test
+  void testMerge() {
+    final DoubleSumBuckets first = new DoubleSumBuckets(10);
+    first.addRange(100, 119, 0.5);
+    final DoubleSumBuckets second = new DoubleSumBuckets(10);
+    second.addRange(110, 129, 0.25);
+    first.merge(second);
+    assertEquals(Map.of(100L, 0.5, 110L, 0.75, 120L, 0.25), first.toMap());
+  }
+
+  @Test
+  void testRoundingErrorDoesNotFillTheGapBetweenBusyPeriods() {
+    final DoubleSumBuckets buckets = new DoubleSumBuckets(1);
+    // large values split across buckets do not cancel out exactly
+    for (int i = 0; i < 1_000; i++) {
+      final double value = 987_654_321_987.0 / (i % 7 + 3);
+      buckets.addRange(i, i + 10 + i % 13, value);
+    }
+    // several pages later
+    final long later = 10 * 4096;
+    buckets.addRange(later, later + 1, 1_000_000_000.0 / 3);
+    final Map<Long, Double> map = buckets.toMap();
+    for (long bucket : map.keySet()) {
+      assertTrue(bucket < 1_100 || bucket >= later, "bucket " + bucket + " is in the idle gap");
+    }
+    assertEquals(1_000_000_000.0 / 3, map.get(later), 1e-3);
+    assertEquals(1_000_000_000.0 / 3, map.get(later + 1), 1e-3);
+    // buckets 0 through 1020 plus the two later ones
+    assertEquals(1_021 + 2, map.size());
+  }
+
+  @Test
+  void testFinishDecadesOutIsSkipped() {
+    final long start = 1_663_942_981_202L;
+    final long decades = 40L * 365 * 24 * 60 * 60 * 1000;
+    final DoubleSumBuckets buckets = new DoubleSumBuckets(1000);
+    buckets.addRange(start, start + 2_000, 1.5);
+    // a corrupt finish, one bucket per second would be over a billion buckets
+    buckets.addRange(start, start + decades, 1.5);
+    final DoubleSumBuckets shard = new DoubleSumBuckets(1000);
+    shard.addRange(start, start + decades, 1.5);
+    buckets.merge(shard);
+    assertEquals(2, buckets.skippedRanges());
+    assertEquals(1, buckets.pageNumbers().length);
+    assertEquals(3, buckets.toMap().size());
+  }
+}
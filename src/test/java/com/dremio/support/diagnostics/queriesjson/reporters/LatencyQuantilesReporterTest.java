@@ -0,0 +1,86 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.reporters.LatencyQuantilesReporter.Phase;
+import com.dremio.support.diagnostics.shared.QuantileSketch;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class LatencyQuantilesReporterTest {
+
+  private static Query query(final long start, final String queue, final long queued) {
+    final Query q = new Query();
+    q.setStart(start);
+    q.setFinish(start + 10_000);
+    q.setQueueName(queue);
+    q.setQueuedTime(queued);
+    q.setPlanningTime(queued / 10);
+    return q;
+  }
+
+  @Test
+  void testOneOutlierDoesNotMoveTheMedian() {
+    final LatencyQuantilesReporter reporter = new LatencyQuantilesReporter(1000);
+    for (int i = 0; i < 99; i++) {
+      reporter.parseRow(query(1_000 + i, "small", 100));
+    }
+    reporter.parseRow(query(1_500, "small", 1_000_000));
+    reporter.parseRow(query(5_000, "large", 7_000));
+
+    final Map<Long, QuantileSketch> queued = reporter.getBuckets().get(Phase.QUEUED);
+    assertEquals(Set.of(1_000L, 5_000L), queued.keySet());
+    // percentiles are within 2% of the real value
+    assertEquals(100, queued.get(1_000L).quantile(0.5), 2);
+    assertEquals(100, queued.get(1_000L).quantile(0.95), 2);
+    assertEquals(1_000_000, queued.get(1_000L).quantile(1));
+    assertEquals(7_000, queued.get(5_000L).quantile(0.99));
+
+    final Map<String, Map<Phase, QuantileSketch>> queues = reporter.getQueues();
+    assertEquals(100, queues.get("small").get(Phase.QUEUED).getCount());
+    assertEquals(10, queues.get("small").get(Phase.PLANNING).quantile(0.5), 0.2);
+    assertEquals(700, queues.get("large").get(Phase.PLANNING).quantile(0.5));
+  }
+
+  @Test
+  void testShardsMergeToTheSameSketches() {
+    final LatencyQuantilesReporter whole = new LatencyQuantilesReporter(1000);
+    final LatencyQuantilesReporter merged = new LatencyQuantilesReporter(1000);
+    final LatencyQuantilesReporter first = merged.newShard();
+    final LatencyQuantilesReporter second = merged.newShard();
+    for (int i = 0; i < 10_000; i++) {
+      final Query q = query(i * 7L, i % 3 == 0 ? "a" : "b", (i * 31L) % 5_000);
+      whole.parseRow(q);
+      (i % 2 == 0 ? first : second).parseRow(q);
+    }
+    merged.merge(first);
+    merged.merge(second);
+    final Map<Long, QuantileSketch> expected = whole.getBuckets().get(Phase.QUEUED);
+    final Map<Long, QuantileSketch> actual = merged.getBuckets().get(Phase.QUEUED);
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Long bucket : expected.keySet()) {
+      assertEquals(expected.get(bucket).quantile(0.99), actual.get(bucket).quantile(0.99));
+      assertEquals(expected.get(bucket).getCount(), actual.get(bucket).getCount());
+    }
+    for (String queue : Set.of("a", "b")) {
+      assertEquals(
+          whole.getQueues().get(queue).get(Phase.QUEUED).quantile(0.95),
+          merged.getQueues().get(queue).get(Phase.QUEUED).quantile(0.95));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LongMaxBucketsTest {
+
+  @Test
+  void testMatchesBucketByBucketMax() {
+    final long window = 10;
+    final LongMaxBuckets buckets = new LongMaxBuckets(window);
+    final LongMaxBuckets shard = new LongMaxBuckets(window);
+    final Map<Long, Long> expected = new HashMap<>();
+    final Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      final long start = 100_000 + random.nextInt(20_000);
+      // some ranges are short, some cover many 64 bucket blocks
+      final long finish = start + random.nextInt(i % 2 == 0 ? 50 : 5_000);
+      final long value = 1 + random.nextInt(1_000);
+      (i % 3 == 0 ? shard : buckets).maxRange(start, finish, value);
+      for (long b = start - start % window; b <= finish; b += window) {
+        expected.merge(b, value, Math::max);
+      }
+    }
+    buckets.merge(shard);
+    assertEquals(expected, buckets.toMap());
+  }
+
+  @Test
+  void testFarApartTimestamps() {
+    final LongMaxBuckets buckets = new LongMaxBuckets(1);
+    buckets.maxRange(-5, -5, 3);
+    buckets.maxRange(1_663_942_981_202L, 1_663_942_981_202L, 7);
+    assertEquals(Map.of(-5L, 3L, 1_663_942_981_202L, 7L), buckets.toMap());
+  }
+
+  @Test
+  void testFinishDecadesOutIsSkipped() {
+    final long start = 1_663_942_981_202L;
+    final long decades = 40L * 365 * 24 * 60 * 60 * 1000;
+    final LongMaxBuckets buckets = new LongMaxBuckets(1000);
+    buckets.maxRange(start, start + 2_000, 1);
+    // a corrupt finish, one bucket per second would be over a billion buckets
+    buckets.maxRange(start, start + decades, 1);
+    final LongMaxBuckets shard = new LongMaxBuckets(1000);
+    shard.maxRange(start, start + decades, 1);
+    buckets.merge(shard);
+    assertEquals(2, buckets.skippedRanges());
+    assertEquals(1, buckets.pageNumbers().length);
+    assertEquals(3, buckets.toMap().size());
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class LongSumBucketsTest {
+
+  @Test
+  void testRangesGrowInBothDirections() {
+    final LongSumBuckets buckets = new LongSumBuckets(1000);
+    buckets.addRange(50_000, 52_500, 1);
+    // before the first range so the arrays have to grow down
+    buckets.addRange(10_000, 10_999, 2);
+    // far after so the arrays have to grow up
+    buckets.addRange(90_000, 91_000, 3);
+    buckets.addRange(51_000, 51_000, 4);
+    assertEquals(
+        Map.of(
+            10_000L, 2L,
+            50_000L, 1L,
+            51_000L, 5L,
+            52_000L, 1L,
+            90_000L, 3L,
+            91_000L, 3L),
+        buckets.toMap());
+  }
+
+  @Test
+  void testMerge() {
+    final LongSumBuckets first = new LongSumBuckets(10);
+    first.addRange(100, 129, 1);
+    final LongSumBuckets second = new LongSumBuckets(10);
+    second.addRange(120, 149, 1);
+    second.addRange(0, 5, 7);
+    first.merge(second);
+    assertEquals(Map.of(0L, 7L, 100L, 1L, 110L, 1L, 120L, 2L, 130L, 1L, 140L, 1L), first.toMap());
+  }
+
+  @Test
+  void testFarApartTimestampsOnlyCostTheirPages() {
+    final LongSumBuckets buckets = new LongSumBuckets(1);
+    // a corrupt start of 0 next to a real one, far more buckets apart than an array can hold
+    buckets.addRange(0, 0, 1);
+    buckets.addRange(1_663_942_981_202L, 1_663_942_981_203L, 2);
+    assertEquals(Map.of(0L, 1L, 1_663_942_981_202L, 2L, 1_663_942_981_203L, 2L), buckets.toMap());
+    assertEquals(2, buckets.pageNumbers().length);
+  }
+
+  @Test
+  void testRangesSpanningUnwrittenPages() {
+    final LongSumBuckets buckets = new LongSumBuckets(1);
+    buckets.addRange(10, 10_000, 1);
+    final Map<Long, Long> map = buckets.toMap();
+    assertEquals(9_991, map.size());
+    assertEquals(1L, map.get(5_000L));
+    assertEquals(1L, map.get(10_000L));
+  }
+
+  @Test
+  void testFinishDecadesOutIsSkipped() {
+    final long start = 1_663_942_981_202L;
+    final long decades = 40L * 365 * 24 * 60 * 60 * 1000;
+    final LongSumBuckets buckets = new LongSumBuckets(1000);
+    buckets.addRange(start, start + 2_000, 1);
+    // a corrupt finish, one bucket per second would be over a billion buckets
+    buckets.addRange(start, start + decades, 1);
+    final LongSumBuckets shard = new LongSumBuckets(1000);
+    shard.addRange(start, start + decades, 1);
+    buckets.merge(shard);
+    assertEquals(2, buckets.skippedRanges());
+    assertEquals(1, buckets.pageNumbers().length);
+    assertEquals(3, buckets.toMap().size());
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryShapesReporter.Metric;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryShapesReporter.Shape;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class QueryShapesReporterTest {
+
+  private static Query query(final String text, final long cpu) {
+    final Query q = new Query();
+    q.setQueryText(text);
+    q.setExecutionCpuTimeNs(cpu);
+    q.setMemoryAllocated(cpu * 10);
+    q.setPlanningTime(cpu / 1000);
+    return q;
+  }
+
+  @Test
+  void testAggregatesPerShapeOrderedByCpu() {
+    final QueryShapesReporter reporter = new QueryShapesReporter();
+    for (int i = 1; i <= 100; i++) {
+      reporter.parseRow(query("select * from big where id = " + i, 1_000_000));
+      reporter.parseRow(query("select * from small where id in (" + i + ", 2)", 1_000));
+    }
+    reporter.parseRow(query("select * from small where id in (9)", 1_000_000));
+    final List<Shape> shapes = reporter.getShapes();
+    assertEquals(2, shapes.size());
+    assertEquals(201, reporter.getQueries());
+    assertEquals(100 * 1_000_000L + 100 * 1_000L + 1_000_000L, reporter.getTotalCpuNanos());
+
+    final Shape big = shapes.get(0);
+    assertEquals("select*from big where id=?", big.getText());
+    assertEquals(100, big.getCount());
+    assertEquals(0, big.getError());
+    assertEquals(100 * 1_000_000L, big.getTotal(Metric.CPU));
+    assertEquals(1_000_000L, big.getAverage(Metric.CPU));
+    assertEquals(10_000_000L, big.getQuantile(Metric.MEMORY, 0.99));
+
+    final Shape small = shapes.get(1);
+    assertEquals(101, small.getCount());
+    assertEquals(1_000L, small.getQuantile(Metric.CPU, 0.5));
+    assertEquals(1_000_000L, small.getQuantile(Metric.CPU, 1));
+  }
+
+  @Test
+  void testHeavyHittersSurviveManyDistinctShapes() {
+    final QueryShapesReporter reporter = new QueryShapesReporter(16);
+    for (int i = 0; i < 10_000; i++) {
+      // every query on a different table, none of them repeats
+      reporter.parseRow(query("select * from t" + i, 1));
+      if (i % 10 == 0) {
+        reporter.parseRow(query("select count(*) from hot where day = " + i, 5));
+      }
+    }
+    final List<Shape> shapes = reporter.getShapes();
+    assertEquals(16, shapes.size());
+    final Shape hot = shapes.get(0);
+    assertEquals("select count(*)from hot where day=?", hot.getText());
+    assertTrue(hot.getCount() - hot.getError() <= 1_000 && hot.getCount() >= 1_000);
+  }
+
+  @Test
+  void testShardsMerge() {
+    final QueryShapesReporter reporter = new QueryShapesReporter(4);
+    final QueryShapesReporter first = reporter.newShard();
+    final QueryShapesReporter second = reporter.newShard();
+    for (int i = 0; i < 50; i++) {
+      first.parseRow(query("select a from x where b = " + i, 10));
+      second.parseRow(query("select a from x where b = " + i, 20));
+      second.parseRow(query("select a from y", 1));
+    }
+    reporter.merge(first);
+    reporter.merge(second);
+    final List<Shape> shapes = reporter.getShapes();
+    assertEquals(2, shapes.size());
+    assertEquals(100, shapes.get(0).getCount());
+    assertEquals(1_500, shapes.get(0).getTotal(Metric.CPU));
+    assertEquals(20, shapes.get(0).getQuantile(Metric.CPU, 1));
+    assertEquals(50, shapes.get(1).getCount());
+    assertEquals(150, reporter.getQueries());
+  }
+
+  @Test
+  void testMergedShardsKeepTheCountBounds() {
+    // shard a evicts z for x, shard b only sees z, z is seen 6 times in total
+    final QueryShapesReporter reporter = new QueryShapesReporter(1);
+    final QueryShapesReporter a = reporter.newShard();
+    final QueryShapesReporter b = reporter.newShard();
+    a.parseRow(query("select z", 1));
+    a.parseRow(query("select z", 1));
+    a.parseRow(query("select x", 1));
+    for (int i = 0; i < 4; i++) {
+      b.parseRow(query("select z", 1));
+    }
+    reporter.merge(a);
+    reporter.merge(b);
+    final Shape kept = reporter.getShapes().get(0);
+    final long actual = kept.getText().equals("select z") ? 6 : 1;
+    assertTrue(kept.getCount() >= actual, "count is not an upper bound");
+    assertTrue(kept.getCount() - kept.getError() <= actual, "error does not cover the count");
+
+    // many shards of a skewed stream, every shape above queries / capacity has to survive
+    final int capacity = 8;
+    final QueryShapesReporter merged = new QueryShapesReporter(capacity);
+    final Map<String, Integer> counts = new HashMap<>();
+    final Random random = new Random(3);
+    for (int shard = 0; shard < 16; shard++) {
+      final QueryShapesReporter part = merged.newShard();
+      for (int i = 0; i < 1_000; i++) {
+        final String table = random.nextInt(4) == 0 ? "hot" + random.nextInt(3) : "t" + i % 97;
+        part.parseRow(query("select * from " + table, 1));
+        counts.merge("select*from " + table, 1, Integer::sum);
+      }
+      merged.merge(part);
+    }
+    final Map<String, Shape> shapes = new HashMap<>();
+    for (Shape shape : merged.getShapes()) {
+      shapes.put(shape.getText(), shape);
+      final int count = counts.get(shape.getText());
+      assertTrue(shape.getCount() >= count, shape.getText());
+      assertTrue(shape.getCount() - shape.getError() <= count, shape.getText());
+    }
+    counts.forEach(
+        (text, count) -> {
+          if (count > merged.getQueries() / capacity) {
+            assertTrue(shapes.containsKey(text), text + " was dropped");
+          }
+        });
+  }
+}
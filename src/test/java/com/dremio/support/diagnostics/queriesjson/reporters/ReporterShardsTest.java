@@ -0,0 +1,83 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.reporters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ReporterShardsTest {
+
+  private static Query query(final long start, final long finish, final String queue) {
+    final Query q = new Query();
+    q.setStart(start);
+    q.setFinish(finish);
+    q.setQueueName(queue);
+    q.setMemoryAllocated(start);
+    return q;
+  }
+
+  @Test
+  void testShardsAreMergedIntoTheOriginalReporters() throws Exception {
+    final TotalQueriesReporter total = new TotalQueriesReporter();
+    final ConcurrentQueriesReporter concurrent = new ConcurrentQueriesReporter(1000);
+    final RequestsByQueueReporter byQueue = new RequestsByQueueReporter();
+    final StartFinishReporter startFinish = new StartFinishReporter();
+    final MaxMemoryQueriesReporter maxMemory = new MaxMemoryQueriesReporter(2);
+    final AtomicLong shared = new AtomicLong();
+    final QueryReporter notShardable = q -> shared.incrementAndGet();
+    final ReporterShards shards =
+        new ReporterShards(
+            List.of(total, concurrent, byQueue, startFinish, maxMemory, notShardable));
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> futures =
+          IntStream.range(0, 100)
+              .<Future<?>>mapToObj(
+                  i ->
+                      executor.submit(
+                          () -> {
+                            for (QueryReporter r : shards.forCurrentThread()) {
+                              r.parseRow(query(1000 + i, 2500, i % 2 == 0 ? "even" : "odd"));
+                            }
+                          }))
+              .toList();
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    shards.merge();
+    assertEquals(100, total.getCount());
+    assertEquals(100, shared.get());
+    // every query spans the 1000 and 2000 buckets
+    assertEquals(100L, concurrent.getCounts().get(1000L));
+    assertEquals(100L, concurrent.getCounts().get(2000L));
+    assertEquals(50L, byQueue.getRequestsByQueue().get("even"));
+    assertEquals(50L, byQueue.getRequestsByQueue().get("odd"));
+    assertEquals(1000L, startFinish.getStart());
+    assertEquals(2500L, startFinish.getFinish());
+    assertEquals(2, maxMemory.getQueries().size());
+    assertEquals(1099L, maxMemory.getQueries().get(0).getMemoryAllocated());
+    assertEquals(1098L, maxMemory.getQueries().get(1).getMemoryAllocated());
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class QueriesJsonTailTest {
+
+  @TempDir Path logDir;
+  @TempDir Path storeDir;
+
+  private List<String> rows;
+
+  @BeforeEach
+  void readRows() throws IOException {
+    rows =
+        Files.readAllLines(
+            Path.of(QueriesJsonTailTest.class.getResource("/queries.json").getFile()));
+  }
+
+  private String lines(final int from, final int to) {
+    return String.join("\n", rows.subList(from, to)) + "\n";
+  }
+
+  private static void append(final Path file, final String text) throws IOException {
+    Files.writeString(
+        file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private static void gzip(final Path from, final Path to) throws IOException {
+    Files.createDirectories(to.getParent());
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(to))) {
+      Files.copy(from, out);
+    }
+  }
+
+  /** asserts every row in the store is distinct and returns how many there are */
+  private static int distinct(final QueryStore store)
+      throws IOException, InterruptedException, ExecutionException {
+    final List<String> ids = new ArrayList<>();
+    final QueryReporter collect =
+        new QueryReporter() {
+          @Override
+          public synchronized void parseRow(final Query q) {
+            ids.add(q.getQueryId());
+          }
+        };
+    store.scan(QueryStoreWriter.KEEP_ALL, List.of(collect), 1);
+    final Set<String> unique = new HashSet<>(ids);
+    assertEquals(unique.size(), ids.size(), "rows were stored more than once");
+    return ids.size();
+  }
+
+  @Test
+  void parsesOnlyAppendedRowsAndRotatedFiles() throws Exception {
+    final QueriesJsonTail tail = new QueriesJsonTail(logDir, storeDir, 1);
+    final Path live = logDir.resolve("queries.json");
+    // the fifth row is still being written
+    append(live, lines(0, 4) + rows.get(4).substring(0, 100));
+    assertEquals(4, distinct(tail.update()));
+    assertEquals(4, distinct(tail.update()));
+
+    append(live, rows.get(4).substring(100) + "\n" + lines(5, 8));
+    assertEquals(8, distinct(tail.update()));
+
+    // rotation compresses the live file, including rows not read yet, and starts a new one
+    append(live, lines(8, 10));
+    gzip(live, logDir.resolve("archive").resolve("queries.2022-09-23.0.json.gz"));
+    Files.writeString(live, lines(10, 11));
+    final QueryStore store = tail.update();
+    assertEquals(11, distinct(store));
+    assertEquals(11, store.rows());
+    assertEquals(11, distinct(tail.update()));
+  }
+
+  @Test
+  void rotatedFileNextToItsArchiveIsReadOnce() throws Exception {
+    final QueriesJsonTail tail = new QueriesJsonTail(logDir, storeDir, 2);
+    final Path rotated = logDir.resolve("queries.2022-09-23.0.json");
+    Files.writeString(rotated, lines(0, 11));
+    gzip(rotated, logDir.resolve("queries.2022-09-23.0.json.gz"));
+    assertEquals(11, distinct(tail.update()));
+    Files.delete(rotated);
+    assertEquals(11, distinct(tail.update()));
+  }
+
+  @Test
+  void unfinishedSegmentsAreDiscarded() throws Exception {
+    Files.writeString(logDir.resolve("queries.json"), lines(0, 6));
+    final QueriesJsonTail tail = new QueriesJsonTail(logDir, storeDir, 1);
+    final QueryStore store = tail.update();
+    final List<Query> stored = new ArrayList<>();
+    store.scan(QueryStoreWriter.KEEP_ALL, List.of(stored::add), 1);
+    // rows written by a run that died before replacing the manifest
+    final QueryStoreWriter writer = QueryStoreWriter.append(storeDir);
+    writer.parseRow(stored.get(0));
+    assertEquals(2, segments());
+    assertEquals(6, distinct(tail.update()));
+    assertEquals(1, segments());
+  }
+
+  @Test
+  void segmentsStayBoundedOverManyUpdates() throws Exception {
+    final QueriesJsonTail tail = new QueriesJsonTail(logDir, storeDir, 2);
+    final Path live = logDir.resolve("queries.json");
+    Files.writeString(live, "");
+    final int updates = QueryStoreWriter.MAX_SMALL_SEGMENTS * 4;
+    for (int i = 0; i < updates; i++) {
+      append(live, lines(i % rows.size(), i % rows.size() + 1));
+      final QueryStore store = tail.update();
+      assertEquals(i + 1, store.rows());
+      assertTrue(segments() <= QueryStoreWriter.MAX_SMALL_SEGMENTS + 1, "too many segments");
+    }
+    final List<Query> stored = new ArrayList<>();
+    QueryStore.open(storeDir).scan(QueryStoreWriter.KEEP_ALL, List.of(stored::add), 1);
+    assertEquals(updates, stored.size());
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < updates; i++) {
+      expected.add(rows.get(i % rows.size()));
+    }
+    // every row survives the merges
+    assertEquals(
+        expected.stream().map(x -> x.substring(12, 48)).sorted().toList(),
+        stored.stream().map(Query::getQueryId).sorted().toList());
+  }
+
+  private long segments() throws IOException {
+    try (Stream<Path> files = Files.list(storeDir)) {
+      return files.filter(x -> x.getFileName().toString().startsWith("segment-")).count();
+    }
+  }
+}
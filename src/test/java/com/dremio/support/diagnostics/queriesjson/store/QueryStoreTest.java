@@ -0,0 +1,138 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.queriesjson.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dremio.support.diagnostics.queriesjson.Query;
+import com.dremio.support.diagnostics.queriesjson.ReadArchive;
+import com.dremio.support.diagnostics.queriesjson.SearchedFile;
+import com.dremio.support.diagnostics.queriesjson.filters.DateRangeQueryFilter;
+import com.dremio.support.diagnostics.queriesjson.reporters.QueryReporter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class QueryStoreTest {
+
+  private static final String ARCHIVE =
+      QueryStoreTest.class.getResource("/big-queries.json.zip").getFile();
+
+  private static final DateRangeQueryFilter EVERYTHING =
+      new DateRangeQueryFilter(Long.MIN_VALUE, Long.MAX_VALUE);
+
+  @SuppressWarnings("deprecation")
+  private static List<Object> columns(final Query q) {
+    return List.of(
+        String.valueOf(q.getQueryId()),
+        String.valueOf(q.getQueryText()),
+        q.getStart(),
+        q.getFinish(),
+        String.valueOf(q.getOutcome()),
+        String.valueOf(q.getOutcomeReason()),
+        String.valueOf(q.getUsername()),
+        String.valueOf(q.getQueryType()),
+        q.getQueryCost(),
+        q.getQueueName(),
+        q.getPoolWaitTime(),
+        q.getPendingTime(),
+        q.getMetadataRetrievalTime(),
+        q.getPlanningTime(),
+        q.getQueuedTime(),
+        q.getStartingTime(),
+        q.getRunningTime(),
+        q.getEngineName(),
+        q.getAttemptCount(),
+        q.getMetadataRetrieval(),
+        q.getNormalizedMetadataRetrieval(),
+        q.getPlanningStart(),
+        q.getQueryEnqueued(),
+        q.getExecutionCpuTimeNs(),
+        q.getMemoryAllocated());
+  }
+
+  private static List<List<Object>> sorted(final Collection<Query> queries) {
+    final List<List<Object>> rows = new ArrayList<>();
+    for (Query q : queries) {
+      rows.add(columns(q));
+    }
+    rows.sort(Comparator.comparing(Object::toString));
+    return rows;
+  }
+
+  private static QueryStore ingest(final Path dir)
+      throws IOException, InterruptedException, ExecutionException {
+    final QueryStoreWriter writer = new QueryStoreWriter(dir);
+    final Collection<SearchedFile> files =
+        new ReadArchive(EVERYTHING).readZip(ARCHIVE, List.of(writer), 4);
+    return writer.finish(files);
+  }
+
+  @Test
+  public void testStoredRowsMatchParsedRows(@TempDir final Path dir)
+      throws IOException, InterruptedException, ExecutionException {
+    final List<Query> parsed = Collections.synchronizedList(new ArrayList<>());
+    new ReadArchive(EVERYTHING).readZip(ARCHIVE, List.of(parsed::add), 4);
+
+    final QueryStore store = ingest(dir.resolve("store"));
+    assertTrue(QueryStore.isStore(dir.resolve("store")));
+    assertEquals(3 * 11, store.rows());
+    assertEquals(3, store.filesSearched().size());
+
+    final List<Query> stored = Collections.synchronizedList(new ArrayList<>());
+    store.scan(EVERYTHING, List.of(stored::add), 3);
+    assertEquals(sorted(parsed), sorted(stored));
+
+    // reopening reads the same rows back from disk
+    final List<Query> reopened = Collections.synchronizedList(new ArrayList<>());
+    QueryStore.open(dir.resolve("store")).scan(EVERYTHING, List.of(reopened::add), 1);
+    assertEquals(sorted(parsed), sorted(reopened));
+  }
+
+  @Test
+  public void testScanAppliesTheFilter(@TempDir final Path dir)
+      throws IOException, InterruptedException, ExecutionException {
+    final DateRangeQueryFilter filter = new DateRangeQueryFilter(1663943060000L, Long.MAX_VALUE);
+    final LongAdder direct = new LongAdder();
+    new ReadArchive(filter).readZip(ARCHIVE, List.of(q -> direct.increment()), 4);
+
+    final LongAdder scanned = new LongAdder();
+    final List<SearchedFile> searched =
+        ingest(dir).scan(filter, List.<QueryReporter>of(q -> scanned.increment()), 2);
+    assertEquals(direct.sum(), scanned.sum());
+    assertTrue(scanned.sum() > 0 && scanned.sum() < 3 * 11);
+    assertEquals(1, searched.size());
+    assertEquals(scanned.sum(), searched.get(0).parsed());
+    assertEquals(3 * 11 - scanned.sum(), searched.get(0).filtered());
+  }
+
+  @Test
+  public void testWriterRefusesNonEmptyDirectories(@TempDir final Path dir) throws IOException {
+    Files.writeString(dir.resolve("other.txt"), "not a store");
+    assertThrows(IOException.class, () -> new QueryStoreWriter(dir));
+    assertFalse(QueryStore.isStore(dir));
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Ticker;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnalysisJobQueueTest {
+
+  private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+  private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+  private static byte[] body() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(
+        ("--%s\r\nContent-Disposition: form-data; name=\"start_date\"\r\n\r\n2000-01-01\r\n"
+                + "--%s\r\nContent-Disposition: form-data; name=\"queriesjson\";"
+                + " filename=\"queries.json\"\r\nContent-Type: application/json\r\n\r\n")
+            .formatted(BOUNDARY, BOUNDARY)
+            .getBytes(StandardCharsets.UTF_8));
+    out.write(Files.readAllBytes(Path.of("src", "test", "resources", "queries.json")));
+    out.write("\r\n--%s--\r\n".formatted(BOUNDARY).getBytes(StandardCharsets.UTF_8));
+    return out.toByteArray();
+  }
+
+  private static AnalysisJob.Status await(final AnalysisJob job) throws InterruptedException {
+    final long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+    while (job.getState() == AnalysisJob.State.QUEUED
+        || job.getState() == AnalysisJob.State.RUNNING) {
+      assertTrue(System.nanoTime() < deadline, "job did not finish");
+      Thread.sleep(10);
+    }
+    return job.status();
+  }
+
+  @Test
+  void testJobsReportProgressAndAreAnsweredFromTheCache(@TempDir final Path dir) throws Exception {
+    final ReportCache cache =
+        new ReportCache(64 * 1024 * 1024, Duration.ofMinutes(10), null, 0, Ticker.systemTicker());
+    final AnalysisJobQueue queue =
+        new AnalysisJobQueue(1, 2, dir, 1024 * 1024, Duration.ofMinutes(10), cache);
+    final byte[] body = body();
+    final AnalysisJob job =
+        queue.submitQueriesJson(new ByteArrayInputStream(body), CONTENT_TYPE, body.length);
+    final AnalysisJob.Status status = await(job);
+    assertEquals(AnalysisJob.State.DONE, status.state(), status.error());
+    assertEquals(100, status.percent());
+    assertEquals(1, status.filesSearched());
+    assertEquals(11, status.queriesAnalyzed());
+    final byte[] report = Files.readAllBytes(job.getReport());
+    assertTrue(new String(report, StandardCharsets.UTF_8).contains("<html"));
+    assertEquals(0, queue.spooledBytes());
+    assertEquals(job, queue.get(job.getId()).orElseThrow());
+
+    final AnalysisJob again =
+        queue.submitQueriesJson(new ByteArrayInputStream(body), CONTENT_TYPE, -1);
+    assertEquals(AnalysisJob.State.DONE, again.getState());
+    assertArrayEquals(report, again.getCachedReport());
+    assertEquals(1, cache.stats().hits());
+    assertEquals(0, queue.spooledBytes());
+  }
+
+  @Test
+  void testUploadsOverTheSpoolBudgetAreRejected(@TempDir final Path dir) throws Exception {
+    final AnalysisJobQueue queue =
+        new AnalysisJobQueue(1, 2, dir, 1024, Duration.ofMinutes(10), null);
+    final byte[] body = body();
+    final AnalysisJobQueue.RejectedException tooLarge =
+        assertThrows(
+            AnalysisJobQueue.RejectedException.class,
+            () ->
+                queue.submitQueriesJson(new ByteArrayInputStream(body), CONTENT_TYPE, body.length));
+    assertEquals(413, tooLarge.getStatus());
+    // without a content length the budget is only found to be exceeded while spooling
+    final AnalysisJobQueue.RejectedException busy =
+        assertThrows(
+            AnalysisJobQueue.RejectedException.class,
+            () -> queue.submitQueriesJson(new ByteArrayInputStream(body), CONTENT_TYPE, -1));
+    assertEquals(503, busy.getStatus());
+    assertEquals(0, queue.spooledBytes());
+    try (var files = Files.list(dir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testTruncatedUploadsGiveTheirBudgetBack(@TempDir final Path dir) throws Exception {
+    final AnalysisJobQueue queue =
+        new AnalysisJobQueue(1, 2, dir, 1024 * 1024, Duration.ofMinutes(10), null);
+    final byte[] body = body();
+    // the client went away half way through the file
+    final byte[] truncated = Arrays.copyOf(body, body.length - 100);
+    for (int i = 0; i < 3; i++) {
+      assertThrows(
+          EOFException.class,
+          () -> queue.submitQueriesJson(new ByteArrayInputStream(truncated), CONTENT_TYPE, -1));
+      assertEquals(0, queue.spooledBytes());
+    }
+    try (var files = Files.list(dir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testUnknownJobs(@TempDir final Path dir) throws Exception {
+    final AnalysisJobQueue queue =
+        new AnalysisJobQueue(1, 2, dir, 1024, Duration.ofMinutes(10), null);
+    assertTrue(queue.get("missing").isEmpty());
+  }
+}
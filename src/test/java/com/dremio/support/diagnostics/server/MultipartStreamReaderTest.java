@@ -0,0 +1,147 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MultipartStreamReaderTest {
+
+  private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+  private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+  /** hands out a few bytes per read like a slow network */
+  private static InputStream trickle(final byte[] data) {
+    final Random random = new Random(42);
+    return new FilterInputStream(new ByteArrayInputStream(data)) {
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+      }
+    };
+  }
+
+  private static byte[] body(final byte[] file) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(
+        ("--%s\r\nContent-Disposition: form-data; name=\"window\"\r\n\r\n60000\r\n"
+                + "--%s\r\nContent-Disposition: form-data; name=\"limit\"\r\n\r\n5\r\n"
+                + "--%s\r\nContent-Disposition: form-data; name=\"queriesjson\";"
+                + " filename=\"queries.json\"\r\nContent-Type: application/json\r\n\r\n")
+            .formatted(BOUNDARY, BOUNDARY, BOUNDARY)
+            .getBytes(StandardCharsets.UTF_8));
+    out.write(file);
+    out.write("\r\n--%s--\r\n".formatted(BOUNDARY).getBytes(StandardCharsets.UTF_8));
+    return out.toByteArray();
+  }
+
+  @Test
+  void testFieldsThenFile() throws IOException {
+    // binary content with line breaks and dashes that look like the start of a boundary
+    final byte[] file = new byte[300_000];
+    new Random(7).nextBytes(file);
+    final byte[] almost = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(almost, 0, file, 1000, almost.length);
+    final MultipartStreamReader reader =
+        new MultipartStreamReader(trickle(body(file)), CONTENT_TYPE);
+    final MultipartStreamReader.Part window = reader.next();
+    assertEquals("window", window.name());
+    assertFalse(window.isFile());
+    assertEquals("60000", window.value());
+    final MultipartStreamReader.Part limit = reader.next();
+    assertEquals("limit", limit.name());
+    assertEquals("5", limit.value());
+    final MultipartStreamReader.Part upload = reader.next();
+    assertTrue(upload.isFile());
+    assertEquals("queriesjson", upload.name());
+    assertEquals("queries.json", upload.fileName());
+    assertArrayEquals(file, upload.content().readAllBytes());
+    assertNull(reader.next());
+  }
+
+  @Test
+  void testUnreadPartsAreSkipped() throws IOException {
+    final MultipartStreamReader reader =
+        new MultipartStreamReader(
+            new ByteArrayInputStream(body("{}".getBytes(StandardCharsets.UTF_8))), CONTENT_TYPE);
+    reader.next();
+    reader.next();
+    assertEquals("queries.json", reader.next().fileName());
+    assertNull(reader.next());
+  }
+
+  @Test
+  void testTruncatedBody() throws IOException {
+    final byte[] body = body(new byte[1000]);
+    final byte[] truncated = new byte[body.length - 20];
+    System.arraycopy(body, 0, truncated, 0, truncated.length);
+    final MultipartStreamReader reader =
+        new MultipartStreamReader(new ByteArrayInputStream(truncated), CONTENT_TYPE);
+    reader.next();
+    reader.next();
+    final InputStream file = reader.next().content();
+    assertThrows(EOFException.class, file::readAllBytes);
+  }
+
+  @Test
+  void testNotMultipart() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new MultipartStreamReader(new ByteArrayInputStream(new byte[0]), "text/plain"));
+  }
+
+  @Test
+  void testSmallReadsOnlySearchNewBytes() throws IOException {
+    // the buffer is filled in large reads and drained a byte at a time, searching the whole buffer
+    // for the boundary on every read would take minutes here
+    final byte[] file = new byte[4 * 1024 * 1024];
+    new Random(11).nextBytes(file);
+    final byte[] almost = ("\r\n--" + BOUNDARY.substring(0, 20)).getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i + almost.length < file.length; i += 100_003) {
+      System.arraycopy(almost, 0, file, i, almost.length);
+    }
+    final MultipartStreamReader reader =
+        new MultipartStreamReader(new ByteArrayInputStream(body(file)), CONTENT_TYPE);
+    reader.next();
+    reader.next();
+    final InputStream upload = reader.next().content();
+    final ByteArrayOutputStream read = new ByteArrayOutputStream();
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(30),
+        () -> {
+          final byte[] one = new byte[1];
+          while (upload.read(one, 0, 1) > 0) {
+            read.write(one[0]);
+          }
+        });
+    assertArrayEquals(file, read.toByteArray());
+    assertNull(reader.next());
+  }
+}
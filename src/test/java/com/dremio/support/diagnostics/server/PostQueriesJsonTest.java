@@ -0,0 +1,89 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.javalin.Javalin;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+class PostQueriesJsonTest {
+
+  private static final String BOUNDARY = "aaaa";
+
+  private static void field(final ByteArrayOutputStream out, final String name, final String value)
+      throws IOException {
+    out.write(
+        "--%s\r\nContent-Disposition: form-data; name=\"%s\"\r\n\r\n%s\r\n"
+            .formatted(BOUNDARY, name, value)
+            .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void file(final ByteArrayOutputStream out) throws IOException {
+    out.write(
+        ("--%s\r\nContent-Disposition: form-data; name=\"queriesjson\";"
+                + " filename=\"queries.json\"\r\nContent-Type: application/json\r\n\r\n")
+            .formatted(BOUNDARY)
+            .getBytes(StandardCharsets.UTF_8));
+    out.write(
+        Files.readAllBytes(
+            Path.of(PostQueriesJsonTest.class.getResource("/queries.json").getFile())));
+    out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static HttpResponse<String> post(final int port, final ByteArrayOutputStream body)
+      throws IOException, InterruptedException {
+    body.write("--%s--\r\n".formatted(BOUNDARY).getBytes(StandardCharsets.UTF_8));
+    return HttpClient.newHttpClient()
+        .send(
+            HttpRequest.newBuilder(URI.create("http://localhost:%d/queriesjson".formatted(port)))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+  }
+
+  @Test
+  void testFieldsAfterTheFileAreRejected() throws Exception {
+    final Javalin app = Javalin.create();
+    app.post("/queriesjson", new PostQueriesJson(x -> {}));
+    app.start(0);
+    try {
+      final ByteArrayOutputStream leading = new ByteArrayOutputStream();
+      field(leading, "window", "60000");
+      file(leading);
+      assertEquals(200, post(app.port(), leading).statusCode());
+
+      final ByteArrayOutputStream trailing = new ByteArrayOutputStream();
+      field(trailing, "limit", "5");
+      file(trailing);
+      field(trailing, "window", "60000");
+      final HttpResponse<String> rejected = post(app.port(), trailing);
+      assertEquals(400, rejected.statusCode());
+      assertTrue(rejected.body().contains("form field window was sent after the file"));
+    } finally {
+      app.stop();
+    }
+  }
+}
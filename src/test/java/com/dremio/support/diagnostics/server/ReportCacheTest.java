@@ -0,0 +1,267 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Ticker;
+import io.javalin.Javalin;
+import jakarta.servlet.DispatcherType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportCacheTest {
+
+  private static class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(final Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private static ReportCache.Report report(final String body) {
+    return new ReportCache.Report(
+        "text/html; charset=utf-8", null, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] body(final String boundary, final String window, final String file) {
+    return ("--%s\r\nContent-Disposition: form-data; name=\"window\"\r\n\r\n%s\r\n"
+            + "--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"top.txt\"\r\n"
+            + "Content-Type: text/plain\r\n\r\n%s\r\n--%s--\r\n")
+        .formatted(boundary, window, boundary, file, boundary)
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String key(final String boundary, final String window, final String file)
+      throws IOException {
+    return ReportCacheFilter.key(
+        "/ttop",
+        ReportCacheFilter.parts(
+            body(boundary, window, file), "multipart/form-data; boundary=" + boundary));
+  }
+
+  @Test
+  void testKeyIgnoresTheBoundary() throws IOException {
+    assertEquals(key("aaaa", "60000", "top output"), key("bbbbbb", "60000", "top output"));
+    assertNotEquals(key("aaaa", "60000", "top output"), key("aaaa", "1000", "top output"));
+    assertNotEquals(key("aaaa", "60000", "top output"), key("aaaa", "60000", "top outpuT"));
+  }
+
+  @Test
+  void testPartsShareTheBody() throws IOException {
+    final byte[] body = body("aaaa", "60000", "top output");
+    final List<ReportCacheFilter.BufferedPart> parts =
+        ReportCacheFilter.parts(body, "multipart/form-data; boundary=aaaa");
+    assertEquals(2, parts.size());
+    assertSame(body, parts.get(1).body());
+    assertEquals("top.txt", parts.get(1).getSubmittedFileName());
+    assertEquals(
+        "top output",
+        new String(parts.get(1).getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    assertEquals(
+        "60000", new String(parts.get(0).getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testReportsExpire() throws IOException {
+    final FakeTicker ticker = new FakeTicker();
+    final ReportCache cache = new ReportCache(1000, Duration.ofMinutes(10), null, 0, ticker);
+    cache.put("a", report("report a"));
+    assertEquals(
+        "report a", new String(cache.get("a").orElseThrow().body(), StandardCharsets.UTF_8));
+    ticker.advance(Duration.ofMinutes(11));
+    assertFalse(cache.get("a").isPresent());
+    final ReportCache.Stats stats = cache.stats();
+    assertEquals(1, stats.hits());
+    assertEquals(1, stats.misses());
+  }
+
+  @Test
+  void testEvictedReportsAreSpilledAndReadBack(@TempDir final Path spillDir) throws IOException {
+    final FakeTicker ticker = new FakeTicker();
+    final ReportCache cache = new ReportCache(400, Duration.ofMinutes(10), spillDir, 1000, ticker);
+    final String large = "x".repeat(100);
+    cache.put("a", report(large));
+    cache.put("b", report(large));
+    cache.put("c", report(large));
+    cache.put("d", report(large));
+    cache.put("e", report(large));
+    assertTrue(cache.stats().spilledEntries() > 0);
+    for (final String key : List.of("a", "b", "c", "d", "e")) {
+      assertArrayEquals(
+          large.getBytes(StandardCharsets.UTF_8), cache.get(key).orElseThrow().body(), key);
+    }
+    final ReportCache.Stats stats = cache.stats();
+    assertEquals(5, stats.hits());
+    assertTrue(stats.diskHits() > 0);
+    assertTrue(stats.bytes() <= 400);
+  }
+
+  @Test
+  void testSpillDirectoryIsBounded(@TempDir final Path spillDir) throws IOException {
+    final ReportCache cache =
+        new ReportCache(100, Duration.ofMinutes(10), spillDir, 250, new FakeTicker());
+    for (int i = 0; i < 20; i++) {
+      cache.put(String.valueOf(i), report("y".repeat(25)));
+    }
+    assertTrue(cache.stats().spilledBytes() <= 250);
+    try (var files = Files.list(spillDir)) {
+      assertEquals(cache.stats().spilledEntries(), files.count());
+    }
+  }
+
+  @Test
+  void testRepeatedUploadsAreServedFromTheCache() throws Exception {
+    final ReportCache cache =
+        new ReportCache(1024 * 1024, Duration.ofMinutes(10), null, 0, new FakeTicker());
+    final AtomicInteger rendered = new AtomicInteger();
+    final Javalin app =
+        Javalin.create(
+            config ->
+                config.jetty.modifyServletContextHandler(
+                    handler ->
+                        handler.addFilter(
+                            new FilterHolder(
+                                new ReportCacheFilter(
+                                    cache, 1024 * 1024, 1024 * 1024, 1024 * 1024)),
+                            "/*",
+                            EnumSet.of(DispatcherType.REQUEST))));
+    app.post(
+        "/ttop",
+        ctx -> {
+          rendered.incrementAndGet();
+          final ByteArrayOutputStream out = new ByteArrayOutputStream();
+          ctx.uploadedFiles().get(0).content().transferTo(out);
+          ctx.html("<html>" + ctx.formParam("window") + " " + out + "</html>");
+        });
+    app.post(
+        "/iostat",
+        ctx -> {
+          rendered.incrementAndGet();
+          ReportCacheFilter.doNotCache(ctx);
+          ctx.html("<html>error</html>");
+        });
+    app.start(0);
+    try {
+      final HttpClient client = HttpClient.newHttpClient();
+      final String first = post(client, app.port(), "/ttop", "aaaa", "60000", "load 1");
+      final String second = post(client, app.port(), "/ttop", "bbbb", "60000", "load 1");
+      final String third = post(client, app.port(), "/ttop", "cccc", "1000", "load 1");
+      assertEquals("<html>60000 load 1</html>", first);
+      assertEquals(first, second);
+      assertEquals("<html>1000 load 1</html>", third);
+      assertEquals(2, rendered.get());
+
+      post(client, app.port(), "/iostat", "aaaa", "60000", "load 1");
+      post(client, app.port(), "/iostat", "aaaa", "60000", "load 1");
+      assertEquals(4, rendered.get());
+      assertEquals(1, cache.stats().hits());
+    } finally {
+      app.stop();
+    }
+  }
+
+  @Test
+  void testUploadsOverTheBufferBudgetOrRequestLimitSkipTheCache() throws Exception {
+    final ReportCache cache =
+        new ReportCache(1024 * 1024, Duration.ofMinutes(10), null, 0, new FakeTicker());
+    final int size = body("aaaa", "60000", "load 1").length;
+    // /ttop keeps the request limit, /queriesjson streams so only the budget applies to it. The
+    // response can arrive before the budget is given back so it leaves room for two uploads
+    final ReportCacheFilter filter = new ReportCacheFilter(cache, 1024 * 1024, size - 1, 2 * size);
+    final AtomicInteger rendered = new AtomicInteger();
+    final Javalin app =
+        Javalin.create(
+            config ->
+                config.jetty.modifyServletContextHandler(
+                    handler ->
+                        handler.addFilter(
+                            new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST))));
+    app.post(
+        "/ttop",
+        ctx -> {
+          rendered.incrementAndGet();
+          ctx.html("<html>" + ctx.formParam("window") + "</html>");
+        });
+    app.post(
+        "/queriesjson",
+        ctx -> {
+          rendered.incrementAndGet();
+          ctx.html("<html>" + ctx.formParam("window") + "</html>");
+        });
+    app.start(0);
+    try {
+      final HttpClient client = HttpClient.newHttpClient();
+      assertEquals(
+          "<html>60000</html>", post(client, app.port(), "/ttop", "aaaa", "60000", "load 1"));
+      assertEquals(
+          "<html>60000</html>", post(client, app.port(), "/ttop", "aaaa", "60000", "load 1"));
+      assertEquals(2, rendered.get());
+      assertEquals(2, cache.stats().bypassed());
+
+      post(client, app.port(), "/queriesjson", "aaaa", "60000", "load 1");
+      post(client, app.port(), "/queriesjson", "aaaa", "60000", "load 1");
+      assertEquals(3, rendered.get());
+      assertEquals(1, cache.stats().hits());
+
+      post(client, app.port(), "/queriesjson", "aaaa", "60000", "x".repeat(2 * size));
+      assertEquals(4, rendered.get());
+      assertEquals(3, cache.stats().bypassed());
+    } finally {
+      app.stop();
+    }
+  }
+
+  private static String post(
+      final HttpClient client,
+      final int port,
+      final String path,
+      final String boundary,
+      final String window,
+      final String file)
+      throws IOException, InterruptedException {
+    final HttpRequest request =
+        HttpRequest.newBuilder(URI.create("http://localhost:%d%s".formatted(port, path)))
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body(boundary, window, file)))
+            .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+  }
+}
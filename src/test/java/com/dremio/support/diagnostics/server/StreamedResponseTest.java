@@ -0,0 +1,78 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.javalin.Javalin;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class StreamedResponseTest {
+
+  @Test
+  void testFailuresBeforeAndAfterTheReportStarted() throws Exception {
+    final Javalin app = Javalin.create();
+    app.get(
+        "/before",
+        ctx -> {
+          StreamedResponse output = null;
+          try {
+            throw new IOException("unreadable upload");
+          } catch (IOException e) {
+            StreamedResponse.fail(ctx, output, e);
+          }
+        });
+    app.get(
+        "/after",
+        ctx -> {
+          StreamedResponse output = null;
+          try {
+            ctx.contentType("text/html; charset=utf-8");
+            output = new StreamedResponse(ctx);
+            output.write("<html><body>half a report".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("renderer failed");
+          } catch (IOException e) {
+            StreamedResponse.fail(ctx, output, e);
+          }
+        });
+    app.start(0);
+    try {
+      final HttpClient client = HttpClient.newHttpClient();
+      final HttpResponse<String> before =
+          client.send(
+              HttpRequest.newBuilder(URI.create("http://localhost:%d/before".formatted(app.port())))
+                  .build(),
+              HttpResponse.BodyHandlers.ofString());
+      assertEquals("<html><body>unreadable upload</body>", before.body());
+      // the client must not get a complete looking response holding part of the report
+      assertThrows(
+          IOException.class,
+          () ->
+              client.send(
+                  HttpRequest.newBuilder(
+                          URI.create("http://localhost:%d/after".formatted(app.port())))
+                      .build(),
+                  HttpResponse.BodyHandlers.ofString()));
+    } finally {
+      app.stop();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class JsLibraryTextProviderTest {
+
+  private static byte[] render(final ReportOutput.Section section) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ReportOutput out = new ReportOutput(baos);
+    section.writeTo(out);
+    out.flush();
+    return baos.toByteArray();
+  }
+
+  @Test
+  void testLibrariesAreCached() throws IOException {
+    final JsLibraryTextProvider provider = new JsLibraryTextProvider();
+    final byte[] bytes = JsLibraryTextProvider.getLibBytes(JsLibraryTextProvider.PLOTLY);
+    assertSame(bytes, JsLibraryTextProvider.getLibBytes(JsLibraryTextProvider.PLOTLY));
+    assertSame(provider.getPlotlyJsText(), new JsLibraryTextProvider().getPlotlyJsText());
+    assertEquals(provider.getPlotlyJsText(), new String(bytes, StandardCharsets.UTF_8));
+    assertArrayEquals(bytes, render(provider.getLibSection(JsLibraryTextProvider.PLOTLY)));
+  }
+
+  @Test
+  void testExternalAssets() throws IOException {
+    final JsLibraryTextProvider provider = new JsLibraryTextProvider();
+    JsLibraryTextProvider.setExternalAssetsUrl("/assets/");
+    try {
+      final String expected = "</script><script src=\"/assets/mermaid-9.3.0.min.js\">";
+      assertEquals(expected, provider.getMermaidJsText());
+      assertEquals(
+          expected,
+          new String(
+              render(provider.getLibSection(JsLibraryTextProvider.MERMAID)),
+              StandardCharsets.UTF_8));
+    } finally {
+      JsLibraryTextProvider.setExternalAssetsUrl(null);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class QuantileSketchTest {
+
+  private static void assertWithin(final long expected, final long actual, final double accuracy) {
+    assertTrue(
+        Math.abs(actual - expected) <= Math.ceil(expected * accuracy),
+        "expected %d within %s but was %d".formatted(expected, accuracy, actual));
+  }
+
+  @Test
+  void testQuantilesAreWithinTheRelativeAccuracy() {
+    final QuantileSketch sketch = new QuantileSketch();
+    for (long i = 1; i <= 10_000; i++) {
+      sketch.add(i);
+    }
+    assertEquals(10_000, sketch.getCount());
+    assertWithin(5_000, sketch.quantile(0.5), 0.01);
+    assertWithin(9_500, sketch.quantile(0.95), 0.01);
+    assertWithin(9_900, sketch.quantile(0.99), 0.01);
+    assertEquals(1, sketch.quantile(0));
+    assertEquals(10_000, sketch.quantile(1));
+  }
+
+  @Test
+  void testMergedShardsMatchASingleSketch() {
+    final Random random = new Random(42);
+    final QuantileSketch whole = new QuantileSketch();
+    final QuantileSketch low = new QuantileSketch();
+    final QuantileSketch high = new QuantileSketch();
+    for (int i = 0; i < 50_000; i++) {
+      // log normal like latencies spread over several orders of magnitude
+      final long value = (long) Math.exp(random.nextGaussian() * 2 + 8);
+      whole.add(value);
+      (i % 2 == 0 ? low : high).add(value);
+    }
+    low.merge(high);
+    for (double q : new double[] {0.1, 0.5, 0.9, 0.99, 0.999}) {
+      assertEquals(whole.quantile(q), low.quantile(q));
+    }
+    assertEquals(whole.getMin(), low.getMin());
+    assertEquals(whole.getMax(), low.getMax());
+  }
+
+  @Test
+  void testZeroesAndEmptySketches() {
+    final QuantileSketch sketch = new QuantileSketch();
+    assertEquals(0, sketch.quantile(0.99));
+    sketch.add(0);
+    sketch.add(0);
+    sketch.add(0);
+    sketch.add(1_000_000);
+    assertEquals(0, sketch.quantile(0.5));
+    assertEquals(1_000_000, sketch.quantile(1));
+    sketch.merge(new QuantileSketch());
+    assertEquals(4, sketch.getCount());
+    assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.05)));
+  }
+}
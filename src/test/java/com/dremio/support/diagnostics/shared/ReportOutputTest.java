@@ -0,0 +1,57 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ReportOutputTest {
+
+  private static String render(final String template, final Object... args) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ReportOutput out = new ReportOutput(baos);
+    out.template(template, args);
+    out.flush();
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testTemplateMatchesFormatted() throws IOException {
+    final String template = "<style>width: 100%%;</style><p>%s</p>%s<div>%s</div>ü";
+    assertEquals(
+        template.formatted("a", "b", "c ▸"),
+        render(
+            template,
+            "a",
+            "b".getBytes(StandardCharsets.UTF_8),
+            (ReportOutput.Section) o -> o.write("c ").write("▸")));
+  }
+
+  @Test
+  void testArgumentsAreNotReinterpreted() throws IOException {
+    assertEquals("x 50%% %s y", render("x %s y", "50%% %s"));
+  }
+
+  @Test
+  void testMismatchedArguments() {
+    assertThrows(IllegalArgumentException.class, () -> render("%s %s", "a"));
+    assertThrows(IllegalArgumentException.class, () -> render("%s", "a", "b"));
+    assertThrows(IllegalArgumentException.class, () -> render("%d", 1));
+  }
+}
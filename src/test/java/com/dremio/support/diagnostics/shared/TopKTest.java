@@ -0,0 +1,62 @@
+/**
+ * Copyright 2022 Dremio
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.support.diagnostics.shared;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TopKTest {
+
+  @Test
+  void testKeepsHighestRanked() {
+    final TopK<Integer> top = new TopK<>(3, Comparator.naturalOrder());
+    for (int i : new int[] {5, 1, 9, 3, 7, 2, 8}) {
+      top.offer(i);
+    }
+    assertEquals(List.of(9, 8, 7), top.toSortedList());
+  }
+
+  @Test
+  void testRejectsItemsThatDoNotQualify() {
+    final TopK<Integer> top = new TopK<>(2, Comparator.naturalOrder());
+    assertTrue(top.offer(10));
+    assertTrue(top.offer(20));
+    assertFalse(top.offer(5));
+    // ties with the lowest kept item keep the first one offered
+    assertFalse(top.offer(10));
+    assertEquals(2, top.size());
+  }
+
+  @Test
+  void testZeroLimitKeepsNothing() {
+    final TopK<Integer> top = new TopK<>(0, Comparator.naturalOrder());
+    assertFalse(top.offer(1));
+    assertEquals(0, top.size());
+  }
+
+  @Test
+  void testMerge() {
+    final TopK<Integer> first = new TopK<>(3, Comparator.naturalOrder());
+    final TopK<Integer> second = new TopK<>(3, Comparator.naturalOrder());
+    List.of(1, 4, 6).forEach(first::offer);
+    List.of(2, 5, 3).forEach(second::offer);
+    first.addAll(second);
+    assertEquals(List.of(6, 5, 4), first.toSortedList());
+  }
+}
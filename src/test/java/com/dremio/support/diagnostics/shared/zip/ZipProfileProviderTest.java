@@ -15,17 +15,27 @@ package com.dremio.support.diagnostics.shared.zip;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.dremio.support.diagnostics.profilejson.ProfileJSONParser;
 import com.dremio.support.diagnostics.shared.PathAndStream;
 import com.dremio.support.diagnostics.shared.ZipProfileProvider;
 import com.dremio.support.diagnostics.shared.dto.profilejson.ProfileJSON;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class ZipProfileProviderTest {
 
@@ -56,6 +66,95 @@ class ZipProfileProviderTest {
   void testThatDremioVersionIsParsed() {
     assertEquals(profile.getDremioVersion(), "21.6.2-202210141639540835-ecf959e4");
   }
+
+  @Test
+  void testStreamedZipMatchesRandomAccess() throws IOException {
+    final URL resource = ClassLoader.getSystemClassLoader().getResource("testprofile.zip");
+    final byte[] zip = Files.readAllBytes(Path.of(resource.getFile()));
+    final PathAndStream stream =
+        new PathAndStream(Path.of("upload.zip"), new ByteArrayInputStream(zip));
+    final ProfileJSON streamed =
+        new ZipProfileProvider(new ProfileJSONParser(), new UnzipperImpl(), stream).getProfile();
+    assertEquals(profile.getDremioVersion(), streamed.getDremioVersion());
+    assertEquals(profile.getFragmentProfile().size(), streamed.getFragmentProfile().size());
+  }
+
+  private static byte[] profileJson() throws IOException {
+    final URL resource = ClassLoader.getSystemClassLoader().getResource("testprofile.zip");
+    try (ZipInputStream zip =
+        new ZipInputStream(Files.newInputStream(Path.of(resource.getFile())))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        if (entry.getName().startsWith("profile") && entry.getName().contains(".json")) {
+          return zip.readAllBytes();
+        }
+      }
+    }
+    throw new RuntimeException("test setup not correct as testprofile.zip has no profile json");
+  }
+
+  private static byte[] zip(final String entryName, final byte[] content) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.putNextEntry(new ZipEntry("header.json"));
+      zip.write("{}".getBytes());
+      zip.putNextEntry(new ZipEntry(entryName));
+      zip.write(content);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] gzip(final byte[] content) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(content);
+    }
+    return out.toByteArray();
+  }
+
+  /** reads the zip both from a file and as an upload stream */
+  private static void assertReadsProfile(final Path dir, final byte[] zip) throws IOException {
+    final Path zipFile = dir.resolve("archive.zip");
+    Files.write(zipFile, zip);
+    try (FileInputStream fs = new FileInputStream(zipFile.toFile())) {
+      final ProfileJSON fromFile =
+          new ZipProfileProvider(
+                  new ProfileJSONParser(), new UnzipperImpl(), new PathAndStream(zipFile, fs))
+              .getProfile();
+      assertEquals(profile.getDremioVersion(), fromFile.getDremioVersion());
+    }
+    final ProfileJSON streamed =
+        new ZipProfileProvider(
+                new ProfileJSONParser(),
+                new UnzipperImpl(),
+                new PathAndStream(Path.of("upload.zip"), new ByteArrayInputStream(zip)))
+            .getProfile();
+    assertEquals(profile.getDremioVersion(), streamed.getDremioVersion());
+  }
+
+  @Test
+  void testGzippedProfileEntryIsGunzipped(@TempDir final Path dir) throws IOException {
+    assertReadsProfile(dir, zip("profile_attempt_0.json.gz", gzip(profileJson())));
+  }
+
+  @Test
+  void testNestedArchivesAreWalked(@TempDir final Path dir) throws IOException {
+    assertReadsProfile(dir, zip("inner.zip", zip("profile_attempt_0.json", profileJson())));
+    assertReadsProfile(
+        dir, zip("inner.zip.gz", gzip(zip("profile_attempt_0.json.gz", gzip(profileJson())))));
+  }
+
+  @Test
+  void testZipWithoutAProfileFails() throws IOException {
+    final URL resource = ClassLoader.getSystemClassLoader().getResource("test.json.zip");
+    final File zipFile = new File(resource.getFile());
+    try (FileInputStream fs = new FileInputStream(zipFile)) {
+      final ZipProfileProvider provider =
+          new ZipProfileProvider(
+              new ProfileJSONParser(), new UnzipperImpl(), new PathAndStream(zipFile.toPath(), fs));
+      assertThrows(RuntimeException.class, provider::getProfile);
+    }
+  }
 }
 
 class ZipProfileWithMultipleJSONValues {